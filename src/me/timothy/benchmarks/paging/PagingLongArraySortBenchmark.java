@@ -0,0 +1,95 @@
+package me.timothy.benchmarks.paging;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import me.timothy.bots.paging.PagingLongArray;
+
+/**
+ * <p>Benchmarks sorting a PagingLongArray that is much larger than its memory
+ * budget. By default this sorts 100M random longs with 8M (64MB) in memory, which
+ * needs about 2.4GB of free space in the temp folder of the working directory.</p>
+ * 
+ * <p>Each iteration is a single sort. After each one the number of runs and merge
+ * passes over the disk is printed, along with how many passes merging the runs
+ * pairwise would have needed for comparison.</p>
+ * 
+ * @author Timothy
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class PagingLongArraySortBenchmark {
+	/**
+	 * The number of values to sort
+	 */
+	@Param({ "100000000" })
+	public int size;
+	
+	/**
+	 * The maximum number of values held in memory
+	 */
+	@Param({ "8388608" })
+	public int memoryBudget;
+	
+	/**
+	 * If the array is memory mapped
+	 */
+	@Param({ "false", "true" })
+	public boolean memoryMapped;
+	
+	private PagingLongArray array;
+	
+	@Setup(Level.Iteration)
+	public void setUp() {
+		array = new PagingLongArray(memoryBudget, memoryMapped);
+		Random random = new Random(4512);
+		for(int i = 0; i < size; i++) {
+			array.add(random.nextLong());
+		}
+	}
+	
+	@Benchmark
+	public void sort() {
+		array.sort();
+	}
+	
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		int runs = (size + memoryBudget - 1) / memoryBudget;
+		int pairwisePasses = 32 - Integer.numberOfLeadingZeros(runs - 1);
+		System.out.printf("%d runs, %d merge passes (pairwise merging would need %d)%n",
+				runs, array.getLastSortMergePasses(), pairwisePasses);
+		
+		array.dispose();
+		array = null;
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(PagingLongArraySortBenchmark.class.getSimpleName())
+				.build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,197 @@
+package me.timothy.benchmarks.summon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Produces the comment bodies fed through the summons by the benchmarks. The
+ * synthetic bodies are generated from a fixed seed so that runs are comparable,
+ * and mimic what shows up on /r/borrow: plain chatter, markdown links, user
+ * mentions, text escaped by the new reddit editor, summons, and the occasional
+ * very long comment.
+ * 
+ * @author Timothy
+ */
+public class CommentCorpus {
+	private static final String[] NAMES = new String[] {
+		"john", "Asdf_Jkl", "paul-12", "greg_", "LenderOfLast_Resort", "mary2019", "x_y_z"
+	};
+	
+	private static final String[] CHATTER = new String[] {
+		"Thanks for the quick loan, I'll pay you back on the 15th.",
+		"Can you PM me your paypal? I'll send it over once it clears.",
+		"I've lent to them before and they paid back early.",
+		"Please read the rules in the sidebar before posting a request.",
+		"Is anyone able to help? Rent is due on Friday and I'm $40 short.",
+		"I can do $100 if you can pay back $120 by next month.",
+		"Sent! Let me know when you get it.",
+		"This isn't the place for that, message the mods instead.",
+		"> I'll pay you back on the 1st\n\nIt's the 3rd and I haven't heard anything.",
+		"* Amount: $250\n* Repayment: $300\n* Date: 2019-05-01\n* Method: PayPal"
+	};
+	
+	private static final String[] CURRENCIES = new String[] { "", " USD", " EUR", " GBP", " CAD" };
+	
+	/**
+	 * Creates synthetic comment bodies of the given kind.
+	 * 
+	 * @param kind one of "plain" (no summons), "summons" (every body has one),
+	 * "long" (a few thousand characters each), or "mixed" (a realistic blend)
+	 * @param size the number of bodies
+	 * @return the bodies
+	 */
+	public static List<String> synthetic(String kind, int size) {
+		Random random = new Random(4512);
+		List<String> result = new ArrayList<>(size);
+		for(int i = 0; i < size; i++) {
+			switch(kind) {
+			case "plain":
+				result.add(plain(random));
+				break;
+			case "summons":
+				result.add(summon(random));
+				break;
+			case "long":
+				result.add(longBody(random));
+				break;
+			case "mixed":
+				int roll = random.nextInt(100);
+				if(roll < 70)
+					result.add(plain(random));
+				else if(roll < 95)
+					result.add(summon(random));
+				else
+					result.add(longBody(random));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown corpus kind " + kind);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Loads anonymized comment bodies from a file, with one body per line written
+	 * as a JSON string so that bodies can contain newlines.
+	 * 
+	 * @param path the file to load
+	 * @return the bodies
+	 * @throws IOException if the file cannot be read
+	 */
+	public static List<String> load(String path) throws IOException {
+		JSONParser parser = new JSONParser();
+		List<String> result = new ArrayList<>();
+		try(BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				if(line.trim().isEmpty())
+					continue;
+				
+				try {
+					result.add((String) parser.parse(line));
+				}catch(ParseException ex) {
+					throw new IOException("Bad line in " + path + ": " + line, ex);
+				}
+			}
+		}
+		return result;
+	}
+	
+	private static String name(Random random) {
+		return NAMES[random.nextInt(NAMES.length)];
+	}
+	
+	private static String mention(Random random) {
+		String name = name(random);
+		switch(random.nextInt(5)) {
+		case 0:
+			return "u/" + name;
+		case 1:
+			return "/u/" + name;
+		case 2:
+			return "[u/" + name + "](https://www.reddit.com/u/" + name + ")";
+		case 3:
+			return "[" + name + "](https://reddit.com/u/" + name + ")";
+		default:
+			return "/u/" + name.replace("_", "\\_");
+		}
+	}
+	
+	private static String money(Random random) {
+		String amount = Integer.toString(1 + random.nextInt(500));
+		if(random.nextBoolean())
+			amount += "." + (10 + random.nextInt(90));
+		switch(random.nextInt(3)) {
+		case 0:
+			return "$" + amount;
+		case 1:
+			return amount + "$";
+		default:
+			return amount + CURRENCIES[random.nextInt(CURRENCIES.length)];
+		}
+	}
+	
+	private static String plain(Random random) {
+		StringBuilder result = new StringBuilder(CHATTER[random.nextInt(CHATTER.length)]);
+		if(random.nextInt(3) == 0) {
+			result.append(" Ask ").append(mention(random)).append(" about it.");
+		}
+		if(random.nextInt(4) == 0) {
+			result.append("\n\nSee [the wiki](https://www.reddit.com/r/borrow/wiki/index) for details.");
+		}
+		if(random.nextInt(5) == 0) {
+			result.append(" I\\_really\\_mean it \\*this\\* time.");
+		}
+		return result.toString();
+	}
+	
+	private static String summon(Random random) {
+		String command;
+		switch(random.nextInt(7)) {
+		case 0:
+			command = "$check " + mention(random);
+			break;
+		case 1:
+			command = "$loan " + money(random);
+			break;
+		case 2:
+			command = "$paid " + mention(random) + " " + money(random);
+			break;
+		case 3:
+			command = (random.nextBoolean() ? "$paid_with_id " : "$paid\\_with\\_id ") + (1 + random.nextInt(100000)) + " " + money(random);
+			break;
+		case 4:
+			command = "$confirm " + mention(random) + " " + money(random);
+			break;
+		case 5:
+			command = "$unpaid " + mention(random);
+			break;
+		default:
+			command = "$loan " + mention(random) + " " + money(random);
+			break;
+		}
+		
+		if(random.nextBoolean())
+			return command;
+		return plain(random) + "\n\n" + command;
+	}
+	
+	private static String longBody(Random random) {
+		StringBuilder result = new StringBuilder();
+		while(result.length() < 4000) {
+			result.append(plain(random)).append("\n\n");
+		}
+		if(random.nextBoolean())
+			result.append(summon(random));
+		return result.toString();
+	}
+}
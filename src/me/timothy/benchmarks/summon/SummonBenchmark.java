@@ -0,0 +1,165 @@
+package me.timothy.benchmarks.summon;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import me.timothy.bots.summon.BadLoanSummon;
+import me.timothy.bots.summon.CheckSummon;
+import me.timothy.bots.summon.CommentSummon;
+import me.timothy.bots.summon.ConfirmSummon;
+import me.timothy.bots.summon.PaidSummon;
+import me.timothy.bots.summon.PaidWithIDSummon;
+import me.timothy.bots.summon.SuicideSummon;
+import me.timothy.bots.summon.UnpaidSummon;
+import me.timothy.bots.summon.loan.LoanSummon;
+import me.timothy.bots.summon.patterns.SummonPattern;
+import me.timothy.jreddit.info.Comment;
+
+/**
+ * <p>Benchmarks deciding which summons a comment might interact with, which the
+ * bot does for every comment it sees. Each operation is a single comment from the
+ * corpus, so the scores are the time and allocations per comment.</p>
+ * 
+ * <ul>
+ * <li>{@link #mightInteractWith(Blackhole)} goes through every comment summon
+ * registered in {@link me.timothy.bots.LoansBotMain}, the same way the bot does.</li>
+ * <li>{@link #patternFind(Blackhole)} runs the same patterns directly through a
+ * fresh {@link me.timothy.bots.summon.patterns.SummonMatcher} each, without any
+ * sharing between summons, for comparing changes to the matcher and tokens.</li>
+ * <li>{@link #patternFindUnfiltered(Blackhole)} is patternFind with matchers that
+ * try the tokens at every word, like before the {@link me.timothy.bots.summon.patterns.LiteralTrie
+ * LiteralTrie} prefilter, as the baseline for it.</li>
+ * </ul>
+ * 
+ * <p>Run with JMH on the classpath through {@link #main(String[])}, which adds the
+ * GC profiler for allocation rates. Set the corpusFile parameter to a file of
+ * anonymized real comments (see {@link CommentCorpus#load(String)}) to use those
+ * instead of the synthetic corpus.</p>
+ * 
+ * @author Timothy
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SummonBenchmark {
+	/**
+	 * The patterns of the comment summons which use one
+	 */
+	private static final SummonPattern[] PATTERNS = new SummonPattern[] {
+		CheckSummon.getPattern(),
+		LoanSummon.getPattern(),
+		BadLoanSummon.getPattern(),
+		PaidSummon.getPattern(),
+		PaidWithIDSummon.getPattern(),
+		ConfirmSummon.getPattern(),
+		UnpaidSummon.getPattern()
+	};
+	
+	/**
+	 * Which synthetic corpus to use; see {@link CommentCorpus#synthetic(String, int)}
+	 */
+	@Param({ "mixed", "plain", "summons", "long" })
+	public String corpus;
+	
+	/**
+	 * The number of synthetic comments
+	 */
+	@Param({ "5000" })
+	public int corpusSize;
+	
+	/**
+	 * A file of real comment bodies to use instead of the synthetic ones, or empty
+	 */
+	@Param({ "" })
+	public String corpusFile;
+	
+	private CommentSummon[] summons;
+	private Comment[] comments;
+	private int next;
+	
+	@Setup
+	public void setUp() throws IOException {
+		summons = new CommentSummon[] { new CheckSummon(), new LoanSummon(), new PaidSummon(), new ConfirmSummon(),
+				new UnpaidSummon(), new SuicideSummon(), new BadLoanSummon(), new PaidWithIDSummon() };
+		
+		List<String> bodies = corpusFile.isEmpty() ? CommentCorpus.synthetic(corpus, corpusSize) : CommentCorpus.load(corpusFile);
+		List<Comment> result = new ArrayList<>(bodies.size());
+		for(String body : bodies) {
+			result.add(createComment(body));
+		}
+		comments = result.toArray(new Comment[result.size()]);
+		next = 0;
+	}
+	
+	@Benchmark
+	public void mightInteractWith(Blackhole blackhole) {
+		Comment comment = nextComment();
+		for(CommentSummon summon : summons) {
+			blackhole.consume(summon.mightInteractWith(comment, null, null));
+		}
+	}
+	
+	@Benchmark
+	public void patternFind(Blackhole blackhole) {
+		String body = nextComment().body();
+		for(SummonPattern pattern : PATTERNS) {
+			blackhole.consume(pattern.matcher(body).find());
+		}
+	}
+	
+	@Benchmark
+	public void patternFindUnfiltered(Blackhole blackhole) {
+		String body = nextComment().body();
+		for(SummonPattern pattern : PATTERNS) {
+			blackhole.consume(pattern.unfilteredMatcher(body).find());
+		}
+	}
+	
+	private Comment nextComment() {
+		Comment comment = comments[next];
+		next = (next + 1) % comments.length;
+		return comment;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Comment createComment(String body) {
+		JSONObject obj = new JSONObject();
+		JSONObject data = new JSONObject();
+		data.put("body", body);
+		data.put("author", "benchmark");
+		obj.put("data", data);
+		return new Comment(obj);
+	}
+	
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(SummonBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+}
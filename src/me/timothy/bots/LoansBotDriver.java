@@ -10,14 +10,24 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import org.apache.logging.log4j.Level;
 import org.json.simple.parser.ParseException;
 
+import me.timothy.bots.database.BloomFilteredFullnameMapping;
+import me.timothy.bots.database.CachingUsernameMapping;
+import me.timothy.bots.database.FullnameMapping;
 import me.timothy.bots.database.MappingDatabase;
+import me.timothy.bots.database.UsernameMapping;
 import me.timothy.bots.diagnostics.Diagnostics;
+import me.timothy.bots.diagnostics.LatencyHistogram;
+import me.timothy.bots.diagnostics.MetricsRegistry;
 import me.timothy.bots.models.BannedUser;
 import me.timothy.bots.models.DelayedVettingRequest;
 import me.timothy.bots.models.LendersCampContributor;
@@ -26,11 +36,19 @@ import me.timothy.bots.models.Recheck;
 import me.timothy.bots.models.ResetPasswordRequest;
 import me.timothy.bots.models.Response;
 import me.timothy.bots.models.User;
+import me.timothy.bots.models.UserLoanStats;
 import me.timothy.bots.models.Username;
+import me.timothy.bots.redflags.RedFlagWorkerPool;
 import me.timothy.bots.redflags.RedFlagsDriver;
 import me.timothy.bots.responses.ResponseFormatter;
 import me.timothy.bots.responses.ResponseInfo;
 import me.timothy.bots.responses.ResponseInfoFactory;
+import me.timothy.bots.scheduler.RedditRateLimiter;
+import me.timothy.bots.scheduler.RedditRateLimiter.Permit;
+import me.timothy.bots.scheduler.RedditRateLimiter.Priority;
+import me.timothy.bots.scheduler.ScheduledTask;
+import me.timothy.bots.scheduler.ScheduledTask.TaskType;
+import me.timothy.bots.scheduler.TaskScheduler;
 import me.timothy.bots.specresps.RemoveFromLendersCamp;
 import me.timothy.bots.summon.CommentSummon;
 import me.timothy.bots.summon.LinkSummon;
@@ -55,6 +73,19 @@ public class LoansBotDriver extends BotDriver {
 	private static final int MAX_RECENTLY_CHECKED = 50;
 	private static final long FORCE_RECHECK_TIME_MS = 1000 * 60 * 60 * 24;
 	private static final boolean TEST_SERVER = false;
+	private static final long MINUTE_MS = 1000 * 60;
+	/** How long reddit tasks may take in total each loop before the rest wait for the next loop */
+	private static final long REDDIT_TASK_BUDGET_MS = 1000 * 60 * 2;
+	/** How many reddit requests may be made back-to-back after being idle */
+	private static final int REDDIT_BURST = 10;
+	/** The sustained number of reddit requests per minute */
+	private static final double REDDIT_REQUESTS_PER_MINUTE = 30;
+	/** The most fullnames reddit will return from a single info request */
+	private static final int RECHECK_BATCH_SIZE = 100;
+	/** The most batches of rechecks handled each loop, so summons are not held up */
+	private static final int MAX_RECHECK_BATCHES_PER_LOOP = 5;
+	/** The most users the moderators are asked to vet each loop */
+	private static final int VETTING_REQUESTS_PER_LOOP = 10;
 	
 	/**
 	 * Describes a very simply mapping of the username and time
@@ -82,8 +113,18 @@ public class LoansBotDriver extends BotDriver {
 	
 	private Diagnostics diagnostics;
 	
+	/** How long each phase of doLoop takes, reported as "loop.&lt;phase&gt;" */
+	private LatencyHistogram responsesLatency, summonsLatency, scheduledLatency;
+	
 	private RedFlagsDriver redFlagsDriver;
 	
+	/** Generates red flag reports off the driver thread, or null if red_flags.workers isn't set */
+	private RedFlagWorkerPool redFlagWorkers;
+	
+	private TaskScheduler scheduler;
+	
+	private RedditRateLimiter rateLimiter;
+	
 	/**
 	 * Exact echo of BotDriver constructor; initializes diagnostics
 	 * @param database database
@@ -98,27 +139,67 @@ public class LoansBotDriver extends BotDriver {
 			LinkSummon[] submissionSummons) {
 		super(database, config, bot, commentSummons, pmSummons, submissionSummons);
 		
+		rateLimiter = new RedditRateLimiter(REDDIT_BURST, REDDIT_REQUESTS_PER_MINUTE);
+		
 		((VettedSummon)pmSummons[0]).inviter = (user) -> {
 			new Retryable<Boolean>("Invite to lenders camp", maybeLoginAgainRunnable){
 				@Override
 				protected Boolean runImpl() throws Exception {
-					RedditUtils.addContributor("lenderscamp", user.username, bot.getUser());
+					try(Permit permit = rateLimiter.acquire(Priority.REPLY)) {
+						RedditUtils.addContributor("lenderscamp", user.username, bot.getUser());
+					}
 					return true;
 				}
 			}.run();
 		};
 		
 		diagnostics = new Diagnostics(new File("diagnostics.log"));
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		responsesLatency = metrics.histogram("loop.responses");
+		summonsLatency = metrics.histogram("loop.summons");
+		scheduledLatency = metrics.histogram("loop.scheduled");
+		UsernameMapping usernameMapping = ((LoansDatabase)database).getUsernameMapping();
+		if(usernameMapping instanceof CachingUsernameMapping) {
+			diagnostics.addReporter("Username cache", ((CachingUsernameMapping)usernameMapping)::describe);
+		}
+		FullnameMapping fullnameMapping = ((LoansDatabase)database).getFullnameMapping();
+		if(fullnameMapping instanceof BloomFilteredFullnameMapping) {
+			diagnostics.addReporter("Fullname filter", ((BloomFilteredFullnameMapping)fullnameMapping)::describe);
+		}
+		diagnostics.addReporter("Reddit rate limiter", rateLimiter::describe);
+		metrics.gauge("reddit.waiting", rateLimiter::getWaiting);
 		
 		recentlyPassedCheckUsers = new ArrayList<RequirementsCheckedUser>();
 		
-		redFlagsDriver = new RedFlagsDriver((LoansDatabase)database, (LoansFileConfiguration)config, bot, maybeLoginAgainRunnable, 2000);
+		redFlagsDriver = new RedFlagsDriver((LoansDatabase)database, (LoansFileConfiguration)config, bot, maybeLoginAgainRunnable, rateLimiter);
 		for(LinkSummon l : submissionSummons) {
 			if(l instanceof RedFlagSummon) {
 				((RedFlagSummon)l).setDriver(redFlagsDriver);
 				break;
 			}
 		}
+		
+		String redFlagWorkersProp = config.getProperty("red_flags.workers");
+		int numRedFlagWorkers = (redFlagWorkersProp == null) ? 0 : Integer.parseInt(redFlagWorkersProp.trim());
+		if(numRedFlagWorkers > 0) {
+			redFlagWorkers = new RedFlagWorkerPool(redFlagsDriver, (LoansDatabase)database, numRedFlagWorkers);
+			redFlagWorkers.start();
+			diagnostics.addReporter("Red flag workers", redFlagWorkers::describe);
+		}
+		
+		scheduler = new TaskScheduler(2, REDDIT_TASK_BUDGET_MS, ((LoansDatabase)database)::releaseConnection);
+		scheduleTasks();
+		diagnostics.addReporter("Scheduler", scheduler::describe);
+	}
+	
+	/**
+	 * Stops the background work started by this driver, letting running tasks
+	 * finish. Should be called when the bot is shutting down.
+	 */
+	public void shutdown() {
+		scheduler.shutdown();
+		if(redFlagWorkers != null)
+			redFlagWorkers.shutdown();
 	}
 
 	/* (non-Javadoc)
@@ -150,7 +231,9 @@ public class LoansBotDriver extends BotDriver {
 				}
 			}
 		}
-		super.handleReply(replyable, response);
+		try(Permit permit = rateLimiter.acquire(Priority.REPLY)) {
+			super.handleReply(replyable, response);
+		}
 	}
 	
 	
@@ -161,49 +244,57 @@ public class LoansBotDriver extends BotDriver {
 	@Override
 	protected void doLoop() throws IOException, ParseException,
 	java.text.ParseException {
-		logger.debug("Scanning for new claim codes..");
-		handleClaimCodes();
-		sleepFor(BRIEF_PAUSE_MS);
+		logger.debug("Checking for modified responses..");
+		long start = System.nanoTime();
+		((LoansDatabase)database).refreshResponses();
+		long finished = System.nanoTime();
+		responsesLatency.record(finished - start);
 		
+		start = finished;
 		if(!TEST_SERVER) {
-			logger.debug("Scanning for recheck requests..");
-			handleRechecks();
-			sleepFor(BRIEF_PAUSE_MS);
+			super.doLoop();
+		}else {
+			logger.trace("Considering relogging in..");
+			maybeLoginAgain();
 		}
+		finished = System.nanoTime();
+		summonsLatency.record(finished - start);
 		
-		logger.debug("Scanning for reset password requests..");
-		handleResetPasswordRequests();
-		sleepFor(BRIEF_PAUSE_MS);
+		start = finished;
+		scheduler.runDue();
+		scheduledLatency.record(System.nanoTime() - start);
+	}
+	
+	/**
+	 * Registers the recurring work done after summons each loop. Reddit tasks
+	 * run on the driver thread in priority order; database tasks run on the
+	 * schedulers workers.
+	 */
+	private void scheduleTasks() {
+		final LoansDatabase ldb = (LoansDatabase) database;
 		
+		scheduler.schedule(new ScheduledTask("claim codes", TaskType.REDDIT, 0, 0, 10000, this::handleClaimCodes));
 		if(!TEST_SERVER) {
-			logger.debug("Checking for non-bot additions to lenders camp..");
-			updateLendersCampContributors();
-			
-			logger.debug("Sending vetting requests..");
-			requestAddsToLendersCampContributors();
-			
-			logger.debug("Removing promo blacklist lenders camp contributors..");
-			handleRemovalsFromLendersCampContributors();
+			scheduler.schedule(new ScheduledTask("rechecks", TaskType.REDDIT, 1, 0, 10000, this::handleRechecks));
 		}
-		
-		logger.debug("Performing self-assessment...");
-		handleDiagnostics();
-		
-		logger.debug("Pruning recent posts table...");
-		pruneRecentPosts();
-		
-		logger.debug("Running the red flags driver...");
-		redFlagsDriver.handleQueue(21);
-		
-		logger.debug("Pruning old failed login attempts...");
-		((LoansDatabase)database).getFailedLoginAttemptMapping().prune();
-		
+		scheduler.schedule(new ScheduledTask("reset passwords", TaskType.REDDIT, 2, 0, 5000, this::handleResetPasswordRequests));
 		if(!TEST_SERVER) {
-			super.doLoop();
-		}else {
-			logger.trace("Considering relogging in..");
-			maybeLoginAgain();
-		}
+			scheduler.schedule(new ScheduledTask("lenders camp sync", TaskType.REDDIT, 3, 15 * MINUTE_MS, 10000,
+					this::updateLendersCampContributors));
+			scheduler.schedule(new ScheduledTask("vetting requests", TaskType.REDDIT, 4, 5 * MINUTE_MS, 10000,
+					this::requestAddsToLendersCampContributors));
+			scheduler.schedule(new ScheduledTask("lenders camp removals", TaskType.REDDIT, 5, 5 * MINUTE_MS, 10000,
+					this::handleRemovalsFromLendersCampContributors));
+		}
+		if(redFlagWorkers == null) {
+			scheduler.schedule(new ScheduledTask("red flags", TaskType.REDDIT, 10, 0, 60000, () -> redFlagsDriver.handleQueue(21)));
+		}
+		
+		scheduler.schedule(new ScheduledTask("diagnostics", TaskType.DATABASE, 0, MINUTE_MS, 1000, this::handleDiagnostics));
+		scheduler.schedule(new ScheduledTask("fullname filter", TaskType.DATABASE, 1, MINUTE_MS, 5000, ldb::maintainFullnames));
+		scheduler.schedule(new ScheduledTask("prune recent posts", TaskType.DATABASE, 2, 10 * MINUTE_MS, 5000, this::pruneRecentPosts));
+		scheduler.schedule(new ScheduledTask("prune failed logins", TaskType.DATABASE, 3, 10 * MINUTE_MS, 5000,
+				() -> ldb.getFailedLoginAttemptMapping().prune()));
 	}
 
 	/**
@@ -225,18 +316,19 @@ public class LoansBotDriver extends BotDriver {
 				message = message.replace("<user>", username.username);
 				message = message.replace("<code>", user.claimCode);
 				message = message.replace("<codeurl>", "https://redditloans.com/claim.php?username=" + username.username + "&user_id=" + user.id + "&claim_code=" + user.claimCode);
-				sendMessage(username.username, "RedditLoans Account Claimed", message);
+				try(Permit permit = rateLimiter.acquire(Priority.MESSAGE)) {
+					sendMessage(username.username, "RedditLoans Account Claimed", message);
+				}
 				
 				user.claimLinkSentAt = new Timestamp(System.currentTimeMillis());
 				ldb.getUserMapping().save(user);
-				sleepFor(BRIEF_PAUSE_MS);
 			}
 		}
 	}
 	
 	/**
-	 * Loops through all queued rechecks and handles
-	 * them, then removes them from the queue
+	 * Loops through queued rechecks in batches as large as reddit allows and
+	 * handles them, removing each batch from the queue as it goes
 	 */
 	private void handleRechecks() {
 		boolean silentMode = Boolean.valueOf(config.getProperty("rechecks.silent_mode"));
@@ -246,53 +338,103 @@ public class LoansBotDriver extends BotDriver {
 		if(rechecks.size() == 0)
 			return;
 		
-		List<Recheck[]> batches = new ArrayList<Recheck[]>();
+		int numBatches = Math.min(MAX_RECHECK_BATCHES_PER_LOOP, (rechecks.size() + RECHECK_BATCH_SIZE - 1) / RECHECK_BATCH_SIZE);
+		logger.info(String.format("Performing %d batches of rechecks (%d queued)", numBatches, rechecks.size()));
 		
-		while(rechecks.size() > 5 && batches.size() < 5) {
-			Recheck[] batch = new Recheck[5];
-			for(int i = 0; i < 5; i++) {
-				batch[i] = rechecks.get(0);
-				rechecks.remove(0);
+		for(int batchIndex = 0; batchIndex < numBatches; batchIndex++) {
+			int start = batchIndex * RECHECK_BATCH_SIZE;
+			List<Recheck> batch = rechecks.subList(start, Math.min(rechecks.size(), start + RECHECK_BATCH_SIZE));
+			
+			final String[] asStr = new String[batch.size()];
+			for(int i = 0; i < batch.size(); i++) {
+				asStr[i] = batch.get(i).fullname;
+			}
+			ldb.getRecheckMapping().deleteAll(batch);
+			
+			Listing listing = new Retryable<Listing>("Get things for rechecks", maybeLoginAgainRunnable) {
+				@Override
+				protected Listing runImpl() throws Exception {
+					try(Permit permit = rateLimiter.acquire(Priority.RECHECK)) {
+						return RedditUtils.getThings(asStr, bot.getUser());
+					}
+				}
+			}.run();
+			logger.trace(String.format("Batch size %d got %d things", batch.size(), listing.numChildren()));
+			
+			List<Thing> toHandle = new ArrayList<>();
+			for(int i = 0; i < listing.numChildren(); i++) {
+				Thing thing = listing.getChild(i);
+				if(database.containsFullname(thing.fullname())) {
+					logger.trace(String.format("Skipping %s because the database contains it", thing.fullname()));
+					continue;
+				}
+				toHandle.add(thing);
+			}
+			
+			Map<String, Link> parentLinks = fetchParentLinks(toHandle);
+			for(Thing thing : toHandle) {
+				handleRecheck(thing, parentLinks, silentMode);
 			}
-			batches.add(batch);
 		}
-		
-		if(rechecks.size() <= 5) {
-			Recheck[] lastBatch = rechecks.toArray(new Recheck[0]);
-			batches.add(lastBatch);
+	}
+	
+	/**
+	 * Fetches the links that the comments in the given list were posted in, using
+	 * as few requests as possible. Links which are themselves in the list are
+	 * reused rather than fetched again.
+	 * 
+	 * @param things the things being rechecked
+	 * @return the links by their fullname
+	 */
+	private Map<String, Link> fetchParentLinks(List<Thing> things) {
+		Map<String, Link> result = new HashMap<>();
+		for(Thing thing : things) {
+			if(thing instanceof Link) {
+				result.put(thing.fullname(), (Link) thing);
+			}
 		}
 		
-		logger.info("Performing " + batches.size() + " batches of rechecks");
-		
-		for(Recheck[] batch : batches) {
-			final String[] asStr = new String[batch.length];
-			for(int i = 0; i < batch.length; i++) {
-				asStr[i] = batch[i].fullname;
-				ldb.getRecheckMapping().delete(batch[i]);
+		Set<String> missing = new LinkedHashSet<>();
+		for(Thing thing : things) {
+			if(thing instanceof Comment) {
+				String linkId = ((Comment) thing).linkID();
+				if(!result.containsKey(linkId)) {
+					missing.add(linkId);
+				}
 			}
-			
-			Listing listing = new Retryable<Listing>("Get things for rechecks", maybeLoginAgainRunnable) {
+		}
+		
+		List<String> missingList = new ArrayList<>(missing);
+		for(int start = 0; start < missingList.size(); start += RECHECK_BATCH_SIZE) {
+			final String[] asStr = missingList.subList(start, Math.min(missingList.size(), start + RECHECK_BATCH_SIZE)).toArray(new String[0]);
+			Listing listing = new Retryable<Listing>("Get parent links for rechecks", maybeLoginAgainRunnable) {
 				@Override
 				protected Listing runImpl() throws Exception {
-					return RedditUtils.getThings(asStr, bot.getUser());
+					try(Permit permit = rateLimiter.acquire(Priority.RECHECK)) {
+						return RedditUtils.getThings(asStr, bot.getUser());
+					}
 				}
 			}.run();
-			logger.trace(String.format("Batch size %d got %d things", batch.length, listing.numChildren()));
+			
 			for(int i = 0; i < listing.numChildren(); i++) {
-				Thing thing = listing.getChild(i);
-				
-				handleRecheck(thing, silentMode);
+				Thing child = listing.getChild(i);
+				if(child instanceof Link) {
+					result.put(child.fullname(), (Link) child);
+				}
 			}
 		}
+		return result;
 	}
 
 	/**
 	 * Handles a particular recheck by determining its type
 	 * and calling the appropriate function in BotDriver
 	 * @param thing the thing to recheck
+	 * @param parentLinks the links the comments being rechecked were posted in, by fullname
 	 * @param silentMode if the bot is in silent mode for rechecks
 	 */
-	private void handleRecheck(Thing thing, boolean silentMode) {
+	private void handleRecheck(Thing thing, Map<String, Link> parentLinks, boolean silentMode) {
+		// handling an earlier thing in the batch may have handled this one too
 		if(database.containsFullname(thing.fullname())) {
 			logger.trace(String.format("Skipping %s because the database contains it", thing.fullname()));
 			return;
@@ -301,18 +443,10 @@ public class LoansBotDriver extends BotDriver {
 		if(thing instanceof Comment) {
 			Comment comment = (Comment) thing;
 			
-			final String linkId = comment.linkID();
-			Listing listing = new Retryable<Listing>("Get things for rechecks", maybeLoginAgainRunnable) {
-				@Override
-				protected Listing runImpl() throws Exception {
-					return RedditUtils.getThings(new String[] { linkId }, bot.getUser());
-				}
-			}.run();
-			sleepFor(BRIEF_PAUSE_MS);
-			if(listing.numChildren() != 1) {
+			Link link = parentLinks.get(comment.linkID());
+			if(link == null) {
 				logger.warn("Couldn't find link author for comment " + comment.fullname());
 			}else {
-				Link link = (Link) listing.getChild(0);
 				comment.linkAuthor(link.author());
 				comment.linkURL(link.url());
 			}
@@ -325,10 +459,11 @@ public class LoansBotDriver extends BotDriver {
 			Listing replies = new Retryable<Listing>("Get link replies for link recheck", maybeLoginAgainRunnable) {
 				@Override
 				protected Listing runImpl() throws Exception {
-					return RedditUtils.getLinkReplies(bot.getUser(), link.id());
+					try(Permit permit = rateLimiter.acquire(Priority.RECHECK)) {
+						return RedditUtils.getLinkReplies(bot.getUser(), link.id());
+					}
 				}
 			}.run();
-			sleepFor(BRIEF_PAUSE_MS);
 			
 			List<Comment> commentsToLookAt = new ArrayList<>();
 			for(int i = 0; i < replies.numChildren(); i++) {
@@ -368,13 +503,7 @@ public class LoansBotDriver extends BotDriver {
 		
 		logger.debug(String.format("There are %d pending reset password requests", resetPasswordRequests.size()));
 		
-		boolean first = true;
 		for(ResetPasswordRequest rpr : resetPasswordRequests) {
-			if(!first)
-				sleepFor(BRIEF_PAUSE_MS);
-			else
-				first = false;
-			
 			User user = db.getUserMapping().fetchById(rpr.userId);
 			if(user == null) {
 				logger.warn(String.format("Reset Password Request id=%d has user_id=%d, which is not correlated with any user", rpr.id, rpr.userId));
@@ -391,7 +520,9 @@ public class LoansBotDriver extends BotDriver {
 			List<Username> usernames = db.getUsernameMapping().fetchByUserId(user.id);
 			for(Username username : usernames) {
 				logger.info(String.format("Sending reset password code to %s", username.username));
-				sendMessage(username.username, "RedditLoans Reset Password", message);
+				try(Permit permit = rateLimiter.acquire(Priority.MESSAGE)) {
+					sendMessage(username.username, "RedditLoans Reset Password", message);
+				}
 				
 				rpr.resetCodeSent = true;
 				db.getResetPasswordRequestMapping().save(rpr);
@@ -409,10 +540,11 @@ public class LoansBotDriver extends BotDriver {
 		Listing contribs = new Retryable<Listing>("Get lenderscamp contributors", maybeLoginAgainRunnable){
 			@Override
 			protected Listing runImpl() throws Exception {
-				return RedditUtils.getContributorsForSubreddit("lenderscamp", bot.getUser());
+				try(Permit permit = rateLimiter.acquire(Priority.RECHECK)) {
+					return RedditUtils.getContributorsForSubreddit("lenderscamp", bot.getUser());
+				}
 			}
 		}.run();
-		sleepFor(BRIEF_PAUSE_MS);
 		
 		for(int i = 0; i < contribs.numChildren(); i++) {
 			Account contribAcc = (Account) contribs.getChild(i);
@@ -432,131 +564,86 @@ public class LoansBotDriver extends BotDriver {
 	
 	/**
 	 * Handles sending the modmail messages about users who have reached a certain threshold in the
-	 * number of loans lent that implies we may want to give them additional privileges. This
-	 * scans users who have recently created loans. If these users are not on the promotion
-	 * blacklist and have never been put on it, it adds them to that list and messages the 
-	 * moderators to either remove them from the blacklist (implicitly granting them additional
-	 * privileges and also automatically inviting them to the subreddit /r/lenderscamp), or
-	 * updating the reason for why they are not on the blacklist.
+	 * number of loans lent that implies we may want to give them additional privileges. The candidates
+	 * come straight from the {@link me.timothy.bots.database.UserLoanStatsMapping#fetchVettingCandidates(int, int, Timestamp, int)
+	 * loan summaries}. If these users are not on the promotion blacklist and have never been put on it, 
+	 * it adds them to that list and messages the moderators to either remove them from the blacklist 
+	 * (implicitly granting them additional privileges and also automatically inviting them to the 
+	 * subreddit /r/lenderscamp), or updating the reason for why they are not on the blacklist.
 	 */
 	private void requestAddsToLendersCampContributors() {
-		final long UTC_TO_GMT_MILLIS = -8 * 60 * 60 * 1000; 
-		
 		LoansDatabase ldb = (LoansDatabase) database;
-		// This can take an extremely long time to catch up - lets make sure it doesn't lose its
-		// progress on restarts
-		Properties defaultProps = new Properties();
-		defaultProps.setProperty("id_next", "1");
-		defaultProps.setProperty("last_check", "-1");
-		Properties lccProgressProps = new Properties(defaultProps);
-		File checkFile = new File("lenders_camp_contributors_progress.properties");
-		if(checkFile.exists()) {
-			try(FileReader fr = new FileReader(checkFile)) {
-				lccProgressProps.load(fr);
-			}catch(IOException ex) {
-				logger.catching(ex);
-			}
-		}
-		int idNext = Integer.valueOf(lccProgressProps.getProperty("id_next"));
-		long lastCheck = Long.valueOf(lccProgressProps.getProperty("last_check"));
-		long theTime = new Date().getTime();
 		
-		List<Integer> userIdsToCheck = new ArrayList<>();
-		if(lastCheck > 0) {
-			Timestamp timestamp = new Timestamp(lastCheck + UTC_TO_GMT_MILLIS);
-			userIdsToCheck.addAll(ldb.getLoanMapping().fetchLenderIdsWithNewLoanSince(timestamp));
-		}
+		int reqNumComplAsLender = Integer.parseInt(config.getProperty("lenders_camp.num_completed_as_lender"));
+		int reqNumStartedAsLender = Integer.parseInt(config.getProperty("lenders_camp.num_started_as_lender"));
+		int reqMSSinceOldestPaid = Integer.parseInt(config.getProperty("lenders_camp.ms_since_oldest_paid"));
 		
-		int numAdditional = 10 - userIdsToCheck.size();
-		for(int i = 0; i < numAdditional; i++) {
-			if(idNext > ldb.getUserMapping().fetchMaxUserId())
-				break;
-			userIdsToCheck.add(idNext);
-			idNext++;
-		}
+		// each candidate is blacklisted or has its delayed request rerequested below, so the
+		// next call picks up where this one left off
+		List<UserLoanStats> candidates = ldb.getUserLoanStatsMapping().fetchVettingCandidates(
+				reqNumComplAsLender, reqNumStartedAsLender, 
+				new Timestamp(System.currentTimeMillis() - reqMSSinceOldestPaid), VETTING_REQUESTS_PER_LOOP);
+		if(candidates.isEmpty())
+			return;
 		
 		String bodyFormatStd = ldb.getResponseMapping().fetchByName("vet_user_initial_pm_body").responseBody;
 		String bodyFormatDvr = ldb.getResponseMapping().fetchByName("vet_user_delayed_pm_body").responseBody;
 		
 		DateFormat dateFmt = DateFormat.getDateTimeInstance();
 		
-		int reqNumComplAsLender = Integer.parseInt(config.getProperty("lenders_camp.num_completed_as_lender"));
-		int reqNumStartedAsLender = Integer.parseInt(config.getProperty("lenders_camp.num_started_as_lender"));
-		int reqMSSinceOldestPaid = Integer.parseInt(config.getProperty("lenders_camp.ms_since_oldest_paid"));
-		
 		// can't be bot since bot is this.bot
 		User _bot = ldb.getUserMapping().fetchOrCreateByName(config.getProperty("user.username"));
 		
-		for(Integer userToCheckId : userIdsToCheck) {
-			User userToCheck = ldb.getUserMapping().fetchById(userToCheckId);
-			if(userToCheck == null)
-				continue;
-			
-			List<Username> usernames = ldb.getUsernameMapping().fetchByUserId(userToCheck.id);
-			int[] numLoansInfo = ldb.getLoanMapping().fetchNumberOfLoansCompletedWithUserAsLender(userToCheck.id);
-			long timeSinceOldest = ldb.getLoanMapping().fetchTimeSinceEarliestRepaidLoan(userToCheck.id);
-			int numberOfLoansAsLender = numLoansInfo[0];
-			int numberCompletedAsLender = numLoansInfo[1];
+		for(UserLoanStats stats : candidates) {
+			List<Username> usernames = ldb.getUsernameMapping().fetchByUserId(stats.userId);
+			long timeSinceOldest = stats.timeSinceEarliestRepaid();
+			int numberOfLoansAsLender = stats.loansAsLender;
+			int numberCompletedAsLender = stats.completedAsLender;
 			
 			DelayedVettingRequest dvr = null;
-			if(!ldb.getPromotionBlacklistMapping().fetchAllById(userToCheck.id).isEmpty()) {
-				dvr = ldb.getDelayedVettingRequestMapping().fetchByUserId(userToCheck.id);
-				if(dvr == null || dvr.numberLoans > numberOfLoansAsLender)
-					continue;
+			if(!ldb.getPromotionBlacklistMapping().fetchAllById(stats.userId).isEmpty()) {
+				dvr = ldb.getDelayedVettingRequestMapping().fetchByUserId(stats.userId);
 			}
 			
-			if(numberCompletedAsLender >= reqNumComplAsLender && 
-					numberOfLoansAsLender >= reqNumStartedAsLender &&
-					timeSinceOldest > reqMSSinceOldestPaid &&
-					!ldb.getLccMapping().contains(userToCheck.id) && 
-					(dvr != null || !ldb.getPromotionBlacklistMapping().contains(userToCheck.id))) {
-				logger.info(String.format("Asking mods to vet user %d (%s) (%d loans as lender, %d completed, %s ms since oldest $paid)", userToCheck.id, usernames.get(0).username, numberOfLoansAsLender, numberCompletedAsLender, timeSinceOldest));
-				int numberStartedAsBorrower = ldb.getLoanMapping().fetchNumberOfLoansWithUserAsBorrower(userToCheck.id);
-				if(dvr != null) {
-					dvr.rerequestedAt = new Timestamp(System.currentTimeMillis());
-					ldb.getDelayedVettingRequestMapping().save(dvr);
+			logger.info(String.format("Asking mods to vet user %d (%s) (%d loans as lender, %d completed, %s ms since oldest $paid)", stats.userId, usernames.get(0).username, numberOfLoansAsLender, numberCompletedAsLender, timeSinceOldest));
+			int numberStartedAsBorrower = stats.loansAsBorrower;
+			if(dvr != null) {
+				dvr.rerequestedAt = new Timestamp(System.currentTimeMillis());
+				ldb.getDelayedVettingRequestMapping().save(dvr);
+			}else {
+				ldb.getPromotionBlacklistMapping().save(new PromotionBlacklist(-1, stats.userId, _bot.id, "Vetting required", 
+						new Timestamp(System.currentTimeMillis()), null));
+			}
+			for(final Username username : usernames) {
+				Timestamp timeOfOldest = new Timestamp(System.currentTimeMillis() - timeSinceOldest);
+				
+				ResponseInfo respInfo = new ResponseInfo(ResponseInfoFactory.base);
+				respInfo.addTemporaryString("username", username.username);
+				respInfo.addTemporaryString("num completed as lender", Integer.toString(numberOfLoansAsLender));
+				respInfo.addTemporaryString("num actually completed as lender", Integer.toString(numberCompletedAsLender));
+				respInfo.addTemporaryString("num started as borrower", Integer.toString(numberStartedAsBorrower));
+				respInfo.addTemporaryString("date of oldest paid", dateFmt.format(timeOfOldest));
+				String body = null;
+				if(dvr == null) {
+					body = new ResponseFormatter(bodyFormatStd, respInfo).getFormattedResponse(config, ldb);
 				}else {
-					ldb.getPromotionBlacklistMapping().save(new PromotionBlacklist(-1, userToCheck.id, _bot.id, "Vetting required", 
-							new Timestamp(System.currentTimeMillis()), null));
+					respInfo.addTemporaryString("delayed_at", SimpleDateFormat.getDateTimeInstance().format(dvr.createdAt));
+					respInfo.addTemporaryString("delayed_reason", dvr.reason);
+					body = new ResponseFormatter(bodyFormatDvr, respInfo).getFormattedResponse(config, ldb);
 				}
-				for(final Username username : usernames) {
-					Timestamp timeOfOldest = new Timestamp(System.currentTimeMillis() - timeSinceOldest);
-					
-					ResponseInfo respInfo = new ResponseInfo(ResponseInfoFactory.base);
-					respInfo.addTemporaryString("username", username.username);
-					respInfo.addTemporaryString("num completed as lender", Integer.toString(numberOfLoansAsLender));
-					respInfo.addTemporaryString("num actually completed as lender", Integer.toString(numberCompletedAsLender));
-					respInfo.addTemporaryString("num started as borrower", Integer.toString(numberStartedAsBorrower));
-					respInfo.addTemporaryString("date of oldest paid", dateFmt.format(timeOfOldest));
-					String body = null;
-					if(dvr == null) {
-						body = new ResponseFormatter(bodyFormatStd, respInfo).getFormattedResponse(config, ldb);
-					}else {
-						respInfo.addTemporaryString("delayed_at", SimpleDateFormat.getDateTimeInstance().format(dvr.createdAt));
-						respInfo.addTemporaryString("delayed_reason", dvr.reason);
-						body = new ResponseFormatter(bodyFormatDvr, respInfo).getFormattedResponse(config, ldb);
-					}
-					
-					final String bodyCp = body;
-					new Retryable<Boolean>("Send vet request", maybeLoginAgainRunnable) {
-						@Override
-						protected Boolean runImpl() throws Exception {
+				
+				final String bodyCp = body;
+				new Retryable<Boolean>("Send vet request", maybeLoginAgainRunnable) {
+					@Override
+					protected Boolean runImpl() throws Exception {
+						try(Permit permit = rateLimiter.acquire(Priority.MESSAGE)) {
 							RedditUtils.sendPersonalMessage(bot.getUser(), "/r/borrow", "Vetting Required: /u/" + username.username, bodyCp);
-							return Boolean.TRUE;
 						}
-					}.run();
-					sleepFor(BRIEF_PAUSE_MS);
-				}
+						return Boolean.TRUE;
+					}
+				}.run();
 			}
 		}
-		
-		lccProgressProps.setProperty("id_next", String.valueOf(idNext));
-		lccProgressProps.setProperty("last_check", String.valueOf(theTime));
-		try(BufferedWriter fw = new BufferedWriter(new FileWriter(checkFile))) {
-			lccProgressProps.store(fw, "Lenders Camp Contributors Progress Information");
-		}catch(IOException ex) {
-			logger.catching(ex);
-		}
 	}
 	
 	/**
@@ -674,8 +761,10 @@ public class LoansBotDriver extends BotDriver {
 
 			@Override
 			protected Boolean runImpl() throws Exception {
-				Account account = RedditUtils.getAccountFor(bot.getUser(), username);
-				sleepFor(BRIEF_PAUSE_MS);
+				Account account;
+				try(Permit permit = rateLimiter.acquire(Priority.REPLY)) {
+					account = RedditUtils.getAccountFor(bot.getUser(), username);
+				}
 				
 				if(account == null) {
 					logger.debug(String.format("Got not account information for %s, assuming he fails the test", username));
@@ -709,8 +798,10 @@ public class LoansBotDriver extends BotDriver {
 
 				@Override
 				protected Boolean runImpl() throws Exception {
-					ContributorsListing contrib = RedditUtils.getContributorsForSubredditByName("borrow", username, bot.getUser());
-					sleepFor(BRIEF_PAUSE_MS);
+					ContributorsListing contrib;
+					try(Permit permit = rateLimiter.acquire(Priority.REPLY)) {
+						contrib = RedditUtils.getContributorsForSubredditByName("borrow", username, bot.getUser());
+					}
 					
 					if(contrib == null || contrib.numChildren() != 1) {
 						logger.debug(String.format("%s is not an approved submitter to /r/borrow", username));
@@ -859,9 +950,11 @@ public class LoansBotDriver extends BotDriver {
 
 			@Override
 			protected Boolean runImpl() throws Exception {
-				ContributorsListing cl = RedditUtils.getContributorsForSubredditByName(
-						"lenderscamp", inf.getUserToRemove(), bot.getUser());
-				sleepFor(BRIEF_PAUSE_MS);
+				ContributorsListing cl;
+				try(Permit permit = rateLimiter.acquire(Priority.RECHECK)) {
+					cl = RedditUtils.getContributorsForSubredditByName(
+							"lenderscamp", inf.getUserToRemove(), bot.getUser());
+				}
 				
 				boolean found = false;
 				for(int i = 0, len = cl.numChildren(); i < len; i++) {
@@ -876,21 +969,27 @@ public class LoansBotDriver extends BotDriver {
 					return true;
 				}
 				
-				if (isModerator("lenderscamp", inf.getUserToRemove())) {
+				boolean moderator;
+				try(Permit permit = rateLimiter.acquire(Priority.RECHECK)) {
+					moderator = isModerator("lenderscamp", inf.getUserToRemove());
+				}
+				if (moderator) {
 					logger.warn("Tried to remove moderator of lenderscamp as contributor - preventing");
 					return false;
 				}
-				sleepFor(BRIEF_PAUSE_MS);
 				
-				if (isModerator(LoansBotUtils.PRIMARY_SUBREDDIT, inf.getUserToRemove())) {
+				try(Permit permit = rateLimiter.acquire(Priority.RECHECK)) {
+					moderator = isModerator(LoansBotUtils.PRIMARY_SUBREDDIT, inf.getUserToRemove());
+				}
+				if (moderator) {
 					logger.warn("Tried to remove moderator of prim sub as contributor to lenderscamp - preventing");
 					return false;
 				}
-				sleepFor(BRIEF_PAUSE_MS);
 				
-				RedditUtils.removeContributor("lenderscamp", inf.getUserToRemove(), bot.getUser());
+				try(Permit permit = rateLimiter.acquire(Priority.RECHECK)) {
+					RedditUtils.removeContributor("lenderscamp", inf.getUserToRemove(), bot.getUser());
+				}
 				logger.printf(Level.INFO, "Removed /u/%s from lenderscamp", inf.getUserToRemove());
-				sleepFor(BRIEF_PAUSE_MS);
 				return true;
 			}
 			
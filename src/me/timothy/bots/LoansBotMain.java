@@ -1,5 +1,6 @@
 package me.timothy.bots;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.SQLException;
 
@@ -54,6 +55,7 @@ public class LoansBotMain {
 		
 		logger.debug("Connecting to database..");
 		LoansDatabase database = new LoansDatabase();
+		database.setFullnameFilterSnapshot(new File("fullnames_filter.dat"));
 		
 		try {
 			database.connect(config.getProperty("database.username"), config.getProperty("database.password"), config.getProperty("database.url"), Boolean.getBoolean(config.getProperty("database.useSSL")));
@@ -65,11 +67,22 @@ public class LoansBotMain {
 		logger.debug("Verifying database schema..");
 		database.validateTableState();
 		
+		if(args.length > 0 && args[0].equals("--rebuild-loan-stats")) {
+			logger.info("Rebuilding loan stats..");
+			database.inTransaction((db) -> db.getUserLoanStatsMapping().rebuild());
+			database.disconnect();
+			return;
+		}
+		
+		logger.debug("Loading fullname filter..");
+		database.maintainFullnames();
+		
 		logger.debug("Running loans bot driver");
-		BotDriver driver = new LoansBotDriver(database, config, loansBot,
+		LoansBotDriver driver = new LoansBotDriver(database, config, loansBot,
 				new CommentSummon[] { new CheckSummon(), new LoanSummon(), new PaidSummon(), new ConfirmSummon(), new UnpaidSummon(), new SuicideSummon(), new BadLoanSummon(), new PaidWithIDSummon() }, 
 				new PMSummon[] { new VettedSummon() },
 				new LinkSummon[] { new CheckSummon(), new SuicideSummon(), new RecentPostSummon(), new RedFlagSummon() });
+		Runtime.getRuntime().addShutdownHook(new Thread(driver::shutdown, "loansbot-shutdown"));
 		
 		while(true) {
 			try {
@@ -9,7 +9,11 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
@@ -155,14 +159,32 @@ public class LoansBotUtils {
 				"Amount Repaid", "Unpaid?", "Original Thread", "Date Given", "Date Paid Back");
 		
 		int toShow = loans.size() > max ? max : loans.size();
+		
+		// Fetch everything the rows need up front so the table costs a constant number of queries
+		int[] loanIds = new int[toShow];
+		Set<Integer> userIdsSet = new HashSet<>();
+		for(int i = 0; i < toShow; i++) {
+			Loan l = loans.get(i);
+			loanIds[i] = l.id;
+			userIdsSet.add(l.lenderId);
+			userIdsSet.add(l.borrowerId);
+		}
+		int[] userIds = userIdsSet.stream().mapToInt(Integer::intValue).toArray();
+		
+		Map<Integer, List<Username>> usernamesByUserId = groupUsernamesByUserId(db.getUsernameMapping().fetchByUserIds(userIds));
+		Map<Integer, CreationInfo> cInfoByLoanId = new HashMap<>();
+		for(CreationInfo cInfo : db.getCreationInfoMapping().fetchManyByLoanIds(loanIds)) {
+			cInfoByLoanId.put(cInfo.loanId, cInfo);
+		}
+		
 		for(int i = 0; i < toShow; i++) {
 			Loan l = loans.get(i);
-			User uLend = db.getUserMapping().fetchById(l.lenderId);
-			User uBorr = db.getUserMapping().fetchById(l.borrowerId);
-			CreationInfo cInfo = db.getCreationInfoMapping().fetchByLoanId(l.id);
+			List<Username> lenderUsernames = usernamesByUserId.getOrDefault(l.lenderId, Collections.emptyList());
+			List<Username> borrowerUsernames = usernamesByUserId.getOrDefault(l.borrowerId, Collections.emptyList());
+			CreationInfo cInfo = cInfoByLoanId.get(l.id);
 			
 			
-			table.addRow(getUsernamesSeperatedWith(uLend, db, " aka "), getUsernamesSeperatedWith(uBorr, db, " aka "), BotUtils.getCostString(l.principalCents/100.), 
+			table.addRow(formatUsernamesSeparatedWith(lenderUsernames, " aka ", false), formatUsernamesSeparatedWith(borrowerUsernames, " aka ", false), BotUtils.getCostString(l.principalCents/100.), 
 					BotUtils.getCostString(l.principalRepaymentCents/100.), l.unpaid ? "***UNPAID***" : "", 
 							(cInfo != null && cInfo.type == CreationInfo.CreationType.REDDIT) ? String.format("[Original Thread](%s)", cInfo.thread) : "",
 							l.createdAt != null ? BotUtils.getDateStringFromJUTC(l.createdAt.getTime()) : "",
@@ -202,6 +224,21 @@ public class LoansBotUtils {
 		return formatUsernamesSeparatedWith(usernames, separator, false);
 	}
 	
+	/**
+	 * Groups the given usernames by their user id, preserving the order
+	 * they were given in.
+	 * 
+	 * @param usernames the usernames to group
+	 * @return a map from user id to the usernames with that user id
+	 */
+	public static Map<Integer, List<Username>> groupUsernamesByUserId(List<Username> usernames) {
+		Map<Integer, List<Username>> result = new HashMap<>();
+		for(Username username : usernames) {
+			result.computeIfAbsent(username.userId, (userId) -> new ArrayList<>()).add(username);
+		}
+		return result;
+	}
+	
 	/**
 	 * Returns the usernames formatted with the given separator. Optionally the users are formatted
 	 * to create a link in reddit to their account.
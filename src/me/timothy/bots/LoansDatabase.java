@@ -1,12 +1,13 @@
 package me.timothy.bots;
 
+import java.io.File;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -14,6 +15,9 @@ import org.apache.logging.log4j.Logger;
 import me.timothy.bots.database.AdminUpdateMapping;
 import me.timothy.bots.database.BannedUserMapping;
 import me.timothy.bots.database.BorrowerReqPMOptOutMapping;
+import me.timothy.bots.database.BloomFilteredFullnameMapping;
+import me.timothy.bots.database.CachingResponseMapping;
+import me.timothy.bots.database.CachingUsernameMapping;
 import me.timothy.bots.database.CreationInfoMapping;
 import me.timothy.bots.database.DelayedVettingRequestMapping;
 import me.timothy.bots.database.FailedLoginAttemptMapping;
@@ -27,11 +31,12 @@ import me.timothy.bots.database.RecentPostMapping;
 import me.timothy.bots.database.RecheckMapping;
 import me.timothy.bots.database.RedFlagForSubredditMapping;
 import me.timothy.bots.database.RedFlagMapping;
+import me.timothy.bots.database.RedFlagQueueClaimMapping;
 import me.timothy.bots.database.RedFlagQueueSpotMapping;
+import me.timothy.bots.database.RedFlagReportCheckpointMapping;
 import me.timothy.bots.database.RedFlagReportMapping;
 import me.timothy.bots.database.RedFlagUserHistoryCommentMapping;
 import me.timothy.bots.database.RedFlagUserHistoryLinkMapping;
-import me.timothy.bots.database.RedFlagUserHistorySortMapping;
 import me.timothy.bots.database.RepaymentMapping;
 import me.timothy.bots.database.ResetPasswordRequestMapping;
 import me.timothy.bots.database.ResponseHistoryMapping;
@@ -43,12 +48,14 @@ import me.timothy.bots.database.SavedQueryUserMapping;
 import me.timothy.bots.database.SchemaValidator;
 import me.timothy.bots.database.ShareCodeMapping;
 import me.timothy.bots.database.SiteSessionMapping;
+import me.timothy.bots.database.UserLoanStatsMapping;
 import me.timothy.bots.database.UserMapping;
 import me.timothy.bots.database.UsernameMapping;
 import me.timothy.bots.database.WarningMapping;
 import me.timothy.bots.database.mysql.MysqlAdminUpdateMapping;
 import me.timothy.bots.database.mysql.MysqlBannedUserMapping;
 import me.timothy.bots.database.mysql.MysqlBorrowerReqPMOptOutMapping;
+import me.timothy.bots.database.mysql.MysqlConnectionPool;
 import me.timothy.bots.database.mysql.MysqlCreationInfoMapping;
 import me.timothy.bots.database.mysql.MysqlDelayedVettingRequestMapping;
 import me.timothy.bots.database.mysql.MysqlFailedLoginAttemptMapping;
@@ -60,11 +67,12 @@ import me.timothy.bots.database.mysql.MysqlRecentPostMapping;
 import me.timothy.bots.database.mysql.MysqlRecheckMapping;
 import me.timothy.bots.database.mysql.MysqlRedFlagForSubredditMapping;
 import me.timothy.bots.database.mysql.MysqlRedFlagMapping;
+import me.timothy.bots.database.mysql.MysqlRedFlagQueueClaimMapping;
 import me.timothy.bots.database.mysql.MysqlRedFlagQueueSpotMapping;
+import me.timothy.bots.database.mysql.MysqlRedFlagReportCheckpointMapping;
 import me.timothy.bots.database.mysql.MysqlRedFlagReportMapping;
 import me.timothy.bots.database.mysql.MysqlRedFlagUserHistoryCommentMapping;
 import me.timothy.bots.database.mysql.MysqlRedFlagUserHistoryLinkMapping;
-import me.timothy.bots.database.mysql.MysqlRedFlagUserHistorySortMapping;
 import me.timothy.bots.database.mysql.MysqlRepaymentMapping;
 import me.timothy.bots.database.mysql.MysqlResetPasswordRequestMapping;
 import me.timothy.bots.database.mysql.MysqlResponseHistoryMapping;
@@ -75,6 +83,7 @@ import me.timothy.bots.database.mysql.MysqlSavedQueryParamMapping;
 import me.timothy.bots.database.mysql.MysqlSavedQueryUserMapping;
 import me.timothy.bots.database.mysql.MysqlShareCodeMapping;
 import me.timothy.bots.database.mysql.MysqlSiteSessionMapping;
+import me.timothy.bots.database.mysql.MysqlUserLoanStatsMapping;
 import me.timothy.bots.database.mysql.MysqlUserMapping;
 import me.timothy.bots.database.mysql.MysqlUsernameMapping;
 import me.timothy.bots.database.mysql.MysqlWarningMapping;
@@ -92,11 +101,12 @@ import me.timothy.bots.models.RecentPost;
 import me.timothy.bots.models.Recheck;
 import me.timothy.bots.models.RedFlag;
 import me.timothy.bots.models.RedFlagForSubreddit;
+import me.timothy.bots.models.RedFlagQueueClaim;
 import me.timothy.bots.models.RedFlagQueueSpot;
 import me.timothy.bots.models.RedFlagReport;
+import me.timothy.bots.models.RedFlagReportCheckpoint;
 import me.timothy.bots.models.RedFlagUserHistoryComment;
 import me.timothy.bots.models.RedFlagUserHistoryLink;
-import me.timothy.bots.models.RedFlagUserHistorySort;
 import me.timothy.bots.models.Repayment;
 import me.timothy.bots.models.ResetPasswordRequest;
 import me.timothy.bots.models.Response;
@@ -108,6 +118,7 @@ import me.timothy.bots.models.SavedQueryUser;
 import me.timothy.bots.models.ShareCode;
 import me.timothy.bots.models.SiteSession;
 import me.timothy.bots.models.User;
+import me.timothy.bots.models.UserLoanStats;
 import me.timothy.bots.models.Username;
 import me.timothy.bots.models.Warning;
 
@@ -117,7 +128,18 @@ import me.timothy.bots.models.Warning;
  * @author Timothy
  */
 public class LoansDatabase extends Database implements MappingDatabase {
+	/** Maximum number of connections kept open while no thread is using them */
+	private static final int MAX_IDLE_CONNECTIONS = 4;
+	/** Maximum number of prepared statements cached on each connection */
+	private static final int MAX_STATEMENTS_PER_CONNECTION = 128;
+	/** Maximum number of usernames and user ids kept in the username cache */
+	private static final int USERNAME_CACHE_SIZE = 10000;
+	/** How long a cached username is trusted before it is fetched again */
+	private static final long USERNAME_CACHE_EXPIRE_MS = 1000 * 60 * 10;
+	
 	private Logger logger;
+	private File fullnameFilterSnapshot;
+	private MysqlConnectionPool pool;
 	private Connection connection;
 	
 	private List<ObjectMapping<?>> mappings;
@@ -127,10 +149,26 @@ public class LoansDatabase extends Database implements MappingDatabase {
 		logger = LogManager.getLogger();
 	}
 	
+	/**
+	 * Sets where the fullname bloom filter is saved between restarts, so
+	 * it does not need to be rebuilt from the entire fullnames table on
+	 * startup. Takes effect on the next {@link #connect(String, String, String, boolean) connect}.
+	 * 
+	 * @param file the snapshot file, or null to always rebuild the filter
+	 */
+	public void setFullnameFilterSnapshot(File file) {
+		fullnameFilterSnapshot = file;
+	}
+	
 	/**
 	 * Connects to the specified database. If there is an active connection
 	 * already, the active connection is explicity closed.
 	 * 
+	 * <p>The mappings share a connection pool; each thread which uses them
+	 * is given its own connection, and connections which are lost (such as
+	 * when MySQL restarts) are replaced automatically. Batched inserts are
+	 * rewritten by the driver into multi-row inserts.</p>
+	 * 
 	 * @param username
 	 *            the username
 	 * @param password
@@ -142,25 +180,30 @@ public class LoansDatabase extends Database implements MappingDatabase {
 	 */
 	public void connect(String username, String password, String url, boolean useSSL)
 			throws SQLException {
-		if (connection != null) {
+		if (pool != null) {
 			disconnect();
 		}
 		
-		String trueURL = url + "?useSSL=" + useSSL;
-		connection = DriverManager.getConnection(trueURL, username, password);
+		String trueURL = url + "?useSSL=" + useSSL + "&rewriteBatchedStatements=true";
+		pool = new MysqlConnectionPool(trueURL, username, password, MAX_IDLE_CONNECTIONS, MAX_STATEMENTS_PER_CONNECTION);
+		pool.verify();
+		connection = pool.getConnection();
 		
 		mappings = new ArrayList<>();
 		mappingsDict = new HashMap<>();
-		addMapping(Fullname.class, new MysqlFullnameMapping(this, connection));
+		addMapping(Fullname.class, new BloomFilteredFullnameMapping(new MysqlFullnameMapping(this, connection), 
+				fullnameFilterSnapshot));
 		addMapping(User.class, new MysqlUserMapping(this, connection));
-		addMapping(Username.class, new MysqlUsernameMapping(this, connection));
+		addMapping(Username.class, new CachingUsernameMapping(new MysqlUsernameMapping(this, connection), 
+				USERNAME_CACHE_SIZE, USERNAME_CACHE_EXPIRE_MS));
 		addMapping(Loan.class, new MysqlLoanMapping(this, connection));
-		addMapping(Response.class, new MysqlResponseMapping(this, connection));
+		addMapping(Response.class, new CachingResponseMapping(new MysqlResponseMapping(this, connection)));
 		addMapping(AdminUpdate.class, new MysqlAdminUpdateMapping(this, connection));
 		addMapping(CreationInfo.class, new MysqlCreationInfoMapping(this, connection));
 		addMapping(LendersCampContributor.class, new MysqlLCCMapping(this, connection));
 		addMapping(Recheck.class, new MysqlRecheckMapping(this, connection));
 		addMapping(Repayment.class, new MysqlRepaymentMapping(this, connection));
+		addMapping(UserLoanStats.class, new MysqlUserLoanStatsMapping(this, connection));
 		addMapping(ResetPasswordRequest.class, new MysqlResetPasswordRequestMapping(this, connection));
 		addMapping(ResponseHistory.class, new MysqlResponseHistoryMapping(this, connection));
 		addMapping(ShareCode.class, new MysqlShareCodeMapping(this, connection));
@@ -177,7 +220,8 @@ public class LoansDatabase extends Database implements MappingDatabase {
 		addMapping(RedFlagForSubreddit.class, new MysqlRedFlagForSubredditMapping(this, connection));
 		addMapping(RedFlagUserHistoryComment.class, new MysqlRedFlagUserHistoryCommentMapping(this, connection));
 		addMapping(RedFlagUserHistoryLink.class, new MysqlRedFlagUserHistoryLinkMapping(this, connection));
-		addMapping(RedFlagUserHistorySort.class, new MysqlRedFlagUserHistorySortMapping(this, connection));
+		addMapping(RedFlagReportCheckpoint.class, new MysqlRedFlagReportCheckpointMapping(this, connection));
+		addMapping(RedFlagQueueClaim.class, new MysqlRedFlagQueueClaimMapping(this, connection));
 		addMapping(PromotionBlacklist.class, new MysqlPromotionBlacklistMapping(this, connection));
 		addMapping(DelayedVettingRequest.class, new MysqlDelayedVettingRequestMapping(this, connection));
 		addMapping(FailedLoginAttempt.class, new MysqlFailedLoginAttemptMapping(this, connection));
@@ -220,16 +264,121 @@ public class LoansDatabase extends Database implements MappingDatabase {
 	 * mappings (instead they will return null until the next connect)
 	 */
 	public void disconnect() {
-		try {
-			connection.close();
-		} catch (SQLException e) {
-			logger.throwing(e);
+		FullnameMapping fullnameMapping = getFullnameMapping();
+		if(fullnameMapping instanceof BloomFilteredFullnameMapping) {
+			((BloomFilteredFullnameMapping) fullnameMapping).flush();
 		}
 		
+		pool.close();
+		pool = null;
+		connection = null;
+		
 		mappings = null;
 		mappingsDict = null;
 	}
 	
+	/**
+	 * Returns the connection leased by the current thread to the pool. Threads
+	 * other than the main driver thread should call this when they finish using
+	 * the mappings.
+	 */
+	public void releaseConnection() {
+		if(pool != null) {
+			pool.release();
+		}
+	}
+	
+	/**
+	 * <p>Runs the given unit of work in a single transaction on the current
+	 * threads connection. Everything saved through the mappings inside the
+	 * unit of work is committed together once it returns, or rolled back if
+	 * it throws.</p>
+	 * 
+	 * <p>If this thread is already inside a transaction, the unit of work
+	 * simply becomes part of that transaction.</p>
+	 * 
+	 * <p>Nothing slow (such as talking to reddit) should be done inside the
+	 * unit of work, since the rows it touches stay locked until it finishes.</p>
+	 * 
+	 * @param unitOfWork the work to do, which is passed this database
+	 * @throws RuntimeException if the unit of work throws, after rolling back, or
+	 *                          if the transaction cannot be committed
+	 */
+	public void inTransaction(Consumer<LoansDatabase> unitOfWork) {
+		try {
+			if(!connection.getAutoCommit()) {
+				unitOfWork.accept(this);
+				return;
+			}
+			
+			connection.setAutoCommit(false);
+		}catch(SQLException ex) {
+			logger.throwing(ex);
+			throw new RuntimeException(ex);
+		}
+		
+		boolean committed = false;
+		try {
+			unitOfWork.accept(this);
+			connection.commit();
+			committed = true;
+		}catch(SQLException ex) {
+			logger.throwing(ex);
+			throw new RuntimeException(ex);
+		}finally {
+			if(!committed) {
+				rollback();
+			}
+			
+			try {
+				connection.setAutoCommit(true);
+			}catch(SQLException ex) {
+				logger.throwing(ex);
+			}
+		}
+	}
+	
+	/**
+	 * Rolls back the current transaction and drops anything cached which may
+	 * have come from it.
+	 */
+	private void rollback() {
+		try {
+			connection.rollback();
+		}catch(SQLException ex) {
+			logger.throwing(ex);
+		}
+		
+		UsernameMapping usernameMapping = getUsernameMapping();
+		if(usernameMapping instanceof CachingUsernameMapping) {
+			((CachingUsernameMapping) usernameMapping).clear();
+		}
+	}
+	
+	/**
+	 * Reloads the cached responses if they have been modified since they
+	 * were loaded. This costs one query if nothing has changed, and should
+	 * be called about once per loop.
+	 */
+	public void refreshResponses() {
+		ResponseMapping responseMapping = getResponseMapping();
+		if(responseMapping instanceof CachingResponseMapping) {
+			((CachingResponseMapping) responseMapping).refreshIfModified();
+		}
+	}
+	
+	/**
+	 * Brings the fullname bloom filter up to date with fullnames added by
+	 * other programs and periodically saves it. Should be called about once
+	 * per loop.
+	 */
+	public void maintainFullnames() {
+		FullnameMapping fullnameMapping = getFullnameMapping();
+		if(fullnameMapping instanceof BloomFilteredFullnameMapping) {
+			((BloomFilteredFullnameMapping) fullnameMapping).maintain();
+		}
+	}
+	
 	public AdminUpdateMapping getAdminUpdateMapping() {
 		return (AdminUpdateMapping) mappingsDict.get(AdminUpdate.class);
 	}
@@ -308,8 +457,11 @@ public class LoansDatabase extends Database implements MappingDatabase {
 	public RedFlagUserHistoryLinkMapping getRedFlagUserHistoryLinkMapping() {
 		return (RedFlagUserHistoryLinkMapping) mappingsDict.get(RedFlagUserHistoryLink.class);
 	}
-	public RedFlagUserHistorySortMapping getRedFlagUserHistorySortMapping() {
-		return (RedFlagUserHistorySortMapping) mappingsDict.get(RedFlagUserHistorySort.class);
+	public RedFlagReportCheckpointMapping getRedFlagReportCheckpointMapping() {
+		return (RedFlagReportCheckpointMapping) mappingsDict.get(RedFlagReportCheckpoint.class);
+	}
+	public RedFlagQueueClaimMapping getRedFlagQueueClaimMapping() {
+		return (RedFlagQueueClaimMapping) mappingsDict.get(RedFlagQueueClaim.class);
 	}
 	public PromotionBlacklistMapping getPromotionBlacklistMapping() { 
 		return (PromotionBlacklistMapping) mappingsDict.get(PromotionBlacklist.class);
@@ -326,6 +478,9 @@ public class LoansDatabase extends Database implements MappingDatabase {
 	public BorrowerReqPMOptOutMapping getBorrowerReqPMOptOutMapping() {
 		return (BorrowerReqPMOptOutMapping) mappingsDict.get(BorrowerReqPMOptOut.class);
 	}
+	public UserLoanStatsMapping getUserLoanStatsMapping() {
+		return (UserLoanStatsMapping) mappingsDict.get(UserLoanStats.class);
+	}
 	
 	/*
 	 * The following don't match the "MapperDatabase" I have setup, because I'm subclassing
@@ -0,0 +1,349 @@
+package me.timothy.bots.database;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import me.timothy.bots.models.Fullname;
+
+/**
+ * <p>Wraps a fullname mapping with a {@link FullnameBloomFilter bloom filter}, so
+ * that {@link #contains(String)} only goes to the underlying mapping when the
+ * fullname might be there. Almost every fullname the bot checks is new, so this
+ * skips nearly all of those queries.</p>
+ * 
+ * <p>The filter is built by {@link #maintain()}, which should be called once at
+ * startup and then periodically. The first call loads the filter from a snapshot
+ * file (if one was given and it is still consistent with the table) or streams
+ * through the whole table; until then {@link #contains(String)} goes straight to
+ * the underlying mapping. Fullnames saved through this mapping are added to the
+ * filter immediately. Later calls pick up rows inserted by anything other than
+ * this mapping, rebuild the filter once it is over capacity, and rewrite the
+ * snapshot.</p>
+ * 
+ * <p>Ids are handed out when a row is inserted, not when it is committed, so a
+ * row can become visible after rows with higher ids. Catching up therefore
+ * rescans the last {@link #CATCH_UP_OVERLAP} ids before the highest one seen,
+ * which also covers rows that were still uncommitted when a snapshot was
+ * written.</p>
+ * 
+ * <p>A new filter, whether loaded or built, is only used once it has caught up
+ * with the table, so a failure part way through never leaves a filter missing
+ * fullnames that are stored. Building, catching up and writing the snapshot are
+ * done without holding the lock that {@link #contains(String)} needs, except
+ * briefly to add each page.</p>
+ * 
+ * @author Timothy
+ */
+public class BloomFilteredFullnameMapping implements FullnameMapping, SchemaValidator {
+	private static final Logger logger = LogManager.getLogger();
+	
+	/** Smallest number of fullnames the filter is sized for */
+	private static final long MIN_CAPACITY = 1 << 20;
+	/** Number of fullnames fetched at a time when streaming the table */
+	private static final int PAGE_SIZE = 10000;
+	/** Number of ids below the highest one seen which are scanned again when catching up */
+	private static final int CATCH_UP_OVERLAP = 1000;
+	/** Minimum time between snapshot writes */
+	private static final long SNAPSHOT_INTERVAL_MS = 1000 * 60 * 10;
+	
+	private final FullnameMapping delegate;
+	private final File snapshotFile;
+	/** Held by maintain and flush, so only one of them loads, builds or writes at a time */
+	private final Object maintainLock = new Object();
+	
+	private FullnameBloomFilter filter;
+	/** Fullnames saved while a new filter is being built, or null if one isn't */
+	private List<String> savedWhileBuilding;
+	/** The highest id added to the filter; fullnames with lower ids may still be committing */
+	private int maxIdSeen;
+	private boolean dirty;
+	private long lastSnapshotAt;
+	
+	private long definiteMisses;
+	private long confirmedHits;
+	private long falsePositives;
+	
+	/**
+	 * Wraps the given mapping
+	 * 
+	 * @param delegate the mapping which actually stores fullnames
+	 * @param snapshotFile where to persist the filter between restarts, or null to rebuild it every time
+	 */
+	public BloomFilteredFullnameMapping(FullnameMapping delegate, File snapshotFile) {
+		this.delegate = delegate;
+		this.snapshotFile = snapshotFile;
+	}
+	
+	@Override
+	public void save(Fullname a) throws IllegalArgumentException {
+		delegate.save(a);
+		
+		synchronized(this) {
+			if(filter != null) {
+				filter.add(a.fullname);
+				dirty = true;
+			}
+			if(savedWhileBuilding != null) {
+				savedWhileBuilding.add(a.fullname);
+			}
+		}
+	}
+	
+	@Override
+	public List<Fullname> fetchAll() {
+		return delegate.fetchAll();
+	}
+	
+	@Override
+	public boolean contains(String fullname) {
+		synchronized(this) {
+			if(filter != null && !filter.mightContain(fullname)) {
+				definiteMisses++;
+				return false;
+			}
+		}
+		
+		boolean result = delegate.contains(fullname);
+		synchronized(this) {
+			if(filter != null) {
+				if(result) {
+					confirmedHits++;
+				}else {
+					falsePositives++;
+				}
+			}
+		}
+		return result;
+	}
+	
+	@Override
+	public List<Fullname> fetchAfterId(int id, int limit) {
+		return delegate.fetchAfterId(id, limit);
+	}
+	
+	@Override
+	public int fetchMaxId() {
+		return delegate.fetchMaxId();
+	}
+	
+	/**
+	 * Loads the filter if it hasn't been yet, adds fullnames which were inserted
+	 * without going through this mapping, rebuilds the filter if it has grown past
+	 * its capacity, and writes the snapshot if it is due. Should be called once at
+	 * startup, which may take a while on a large table, and then about once per loop.
+	 */
+	public void maintain() {
+		synchronized(maintainLock) {
+			FullnameBloomFilter current;
+			synchronized(this) {
+				current = filter;
+			}
+			
+			if(current == null) {
+				load();
+			}else {
+				int highWaterMark;
+				synchronized(this) {
+					highWaterMark = maxIdSeen;
+				}
+				highWaterMark = catchUp(current, highWaterMark);
+				synchronized(this) {
+					maxIdSeen = Math.max(maxIdSeen, highWaterMark);
+				}
+			}
+			
+			boolean overCapacity;
+			synchronized(this) {
+				overCapacity = filter.isOverCapacity();
+			}
+			if(overCapacity) {
+				logger.info("Fullname filter is over capacity; rebuilding it");
+				rebuild();
+			}
+			
+			if(snapshotFile != null && System.currentTimeMillis() - lastSnapshotAt >= SNAPSHOT_INTERVAL_MS) {
+				writeSnapshotIfDirty();
+			}
+		}
+	}
+	
+	/**
+	 * Writes the snapshot now if the filter has changed since it was last written.
+	 * Should be called before shutting down.
+	 */
+	public void flush() {
+		synchronized(maintainLock) {
+			if(snapshotFile != null) {
+				writeSnapshotIfDirty();
+			}
+		}
+	}
+	
+	/**
+	 * Describes the effectiveness of the filter for diagnostics
+	 * 
+	 * @return a short human-readable summary of the filter
+	 */
+	public synchronized String describe() {
+		if(filter == null)
+			return "not loaded";
+		
+		return String.format("%d definite misses, %d confirmed hits, %d false positives, %d/%d fullnames",
+				definiteMisses, confirmedHits, falsePositives, filter.getInsertions(), filter.getCapacity());
+	}
+	
+	@Override
+	public void validateSchema() throws IllegalStateException {
+		((SchemaValidator) delegate).validateSchema();
+	}
+	
+	@Override
+	public void purgeSchema() {
+		synchronized(maintainLock) {
+			synchronized(this) {
+				filter = null;
+				maxIdSeen = 0;
+				dirty = false;
+				if(snapshotFile != null && snapshotFile.exists() && !snapshotFile.delete()) {
+					logger.warn("Failed to delete fullname filter snapshot " + snapshotFile);
+				}
+			}
+			((SchemaValidator) delegate).purgeSchema();
+		}
+	}
+	
+	/**
+	 * Loads the filter from the snapshot, or builds it from the table. Must be 
+	 * called while synchronized on maintainLock.
+	 */
+	private void load() {
+		if(snapshotFile != null) {
+			try {
+				FullnameBloomFilter.Snapshot snapshot = FullnameBloomFilter.readSnapshot(snapshotFile);
+				if(snapshot != null && snapshot.highWaterMark <= delegate.fetchMaxId()) {
+					logger.debug("Loaded fullname filter snapshot up to id " + snapshot.highWaterMark);
+					lastSnapshotAt = System.currentTimeMillis();
+					catchUpAndUse(snapshot.filter, (int) snapshot.highWaterMark);
+					return;
+				}else if(snapshot != null) {
+					// The table was truncated or replaced since the snapshot was written
+					logger.warn("Fullname filter snapshot is ahead of the fullnames table; ignoring it");
+				}
+			}catch(IOException ex) {
+				logger.warn("Failed to read fullname filter snapshot; rebuilding it");
+				logger.throwing(ex);
+			}
+		}
+		
+		rebuild();
+	}
+	
+	/**
+	 * Builds a new filter by streaming the entire table, then starts using it.
+	 * Must be called while synchronized on maintainLock.
+	 */
+	private void rebuild() {
+		int maxId = delegate.fetchMaxId();
+		FullnameBloomFilter built = new FullnameBloomFilter(Math.max(MIN_CAPACITY, maxId * 2L));
+		catchUpAndUse(built, 0);
+		synchronized(this) {
+			dirty = true;
+		}
+		logger.info("Built fullname filter with " + built.getInsertions() + " fullnames");
+	}
+	
+	/**
+	 * Catches the new filter up with the table and then replaces the filter in
+	 * use with it, along with anything saved in the meantime. If catching up 
+	 * fails, the filter in use is left alone. Must be called while synchronized
+	 * on maintainLock.
+	 * 
+	 * @param built the new filter, which nothing else is using yet
+	 * @param highWaterMark the highest id already in the new filter
+	 */
+	private void catchUpAndUse(FullnameBloomFilter built, int highWaterMark) {
+		synchronized(this) {
+			savedWhileBuilding = new ArrayList<>();
+		}
+		try {
+			int newHighWaterMark = catchUp(built, highWaterMark);
+			synchronized(this) {
+				for(String fullname : savedWhileBuilding) {
+					if(!built.mightContain(fullname)) {
+						built.add(fullname);
+						dirty = true;
+					}
+				}
+				filter = built;
+				maxIdSeen = newHighWaterMark;
+			}
+		}finally {
+			synchronized(this) {
+				savedWhileBuilding = null;
+			}
+		}
+	}
+	
+	/**
+	 * Adds every fullname with an id above the high water mark to the filter,
+	 * rescanning the overlap below it for rows that committed out of order. 
+	 * Fullnames the filter already reports are skipped so the rescan doesn't
+	 * inflate the insertion count. Pages are fetched without holding the lock,
+	 * which is only held to add each page.
+	 * 
+	 * @param target the filter to add to
+	 * @param highWaterMark the highest id already in the filter
+	 * @return the highest id now in the filter
+	 */
+	private int catchUp(FullnameBloomFilter target, int highWaterMark) {
+		int afterId = Math.max(0, highWaterMark - CATCH_UP_OVERLAP);
+		while(true) {
+			List<Fullname> page = delegate.fetchAfterId(afterId, PAGE_SIZE);
+			synchronized(this) {
+				for(Fullname fullname : page) {
+					if(!target.mightContain(fullname.fullname)) {
+						target.add(fullname.fullname);
+						dirty = true;
+					}
+					afterId = Math.max(afterId, fullname.id);
+				}
+			}
+			highWaterMark = Math.max(highWaterMark, afterId);
+			if(page.size() < PAGE_SIZE)
+				return highWaterMark;
+		}
+	}
+	
+	/**
+	 * Writes a copy of the filter to the snapshot file if it has changed since
+	 * the snapshot was last written. Only the copy is made while holding the
+	 * lock. Must be called while synchronized on maintainLock.
+	 */
+	private void writeSnapshotIfDirty() {
+		FullnameBloomFilter copy;
+		int highWaterMark;
+		synchronized(this) {
+			if(filter == null || !dirty)
+				return;
+			copy = filter.copy();
+			highWaterMark = maxIdSeen;
+			dirty = false;
+		}
+		
+		try {
+			copy.writeSnapshot(snapshotFile, highWaterMark);
+		}catch(IOException ex) {
+			logger.warn("Failed to write fullname filter snapshot");
+			logger.throwing(ex);
+			synchronized(this) {
+				dirty = true;
+			}
+		}
+		lastSnapshotAt = System.currentTimeMillis();
+	}
+}
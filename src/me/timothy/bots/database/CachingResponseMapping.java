@@ -0,0 +1,176 @@
+package me.timothy.bots.database;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import me.timothy.bots.models.Response;
+
+/**
+ * <p>Wraps a response mapping with an in-memory copy of every response. Almost
+ * every reply the bot makes looks up one or more responses by name, and the
+ * responses themselves are only changed by moderators through the website.</p>
+ * 
+ * <p>The responses are loaded in full the first time they are needed. After that
+ * {@link #refreshIfModified()} should be called periodically (once per driver loop);
+ * it reloads everything only if the most recent updated at or the number of responses
+ * has changed, the latter catching responses deleted through the website. Saves through
+ * this mapping are written through to the cache immediately, and names which are not
+ * in the cache fall back to the underlying mapping so newly added responses work
+ * before the next refresh.</p>
+ * 
+ * <p>The models returned are copies, so callers may modify them freely.</p>
+ * 
+ * @author Timothy
+ */
+public class CachingResponseMapping implements ResponseMapping, SchemaValidator {
+	private static final Logger logger = LogManager.getLogger();
+	
+	private final ResponseMapping delegate;
+	
+	/** Maps response names to responses; replaced wholesale on refresh, null until loaded */
+	private volatile Map<String, Response> byName;
+	/** The max updated at when byName was loaded */
+	private volatile Timestamp loadedMaxUpdatedAt;
+	/** The number of responses when byName was loaded */
+	private volatile int loadedCount;
+	
+	/**
+	 * Wraps the given mapping
+	 * 
+	 * @param delegate the mapping which actually stores the responses
+	 */
+	public CachingResponseMapping(ResponseMapping delegate) {
+		this.delegate = delegate;
+	}
+	
+	@Override
+	public void save(Response a) throws IllegalArgumentException {
+		delegate.save(a);
+		
+		synchronized(this) {
+			Map<String, Response> current = byName;
+			if(current != null) {
+				Map<String, Response> updated = new HashMap<>(current);
+				updated.values().removeIf((r) -> r.id == a.id);
+				updated.put(a.name, copy(a));
+				byName = updated;
+			}
+		}
+	}
+	
+	@Override
+	public List<Response> fetchAll() {
+		return delegate.fetchAll();
+	}
+	
+	@Override
+	public Response fetchByName(String name) {
+		Map<String, Response> current = byName;
+		if(current == null) {
+			current = load();
+		}
+		
+		Response cached = current.get(name);
+		if(cached != null)
+			return copy(cached);
+		
+		Response fromDb = delegate.fetchByName(name);
+		if(fromDb != null) {
+			synchronized(this) {
+				if(byName != null) {
+					Map<String, Response> updated = new HashMap<>(byName);
+					updated.put(fromDb.name, copy(fromDb));
+					byName = updated;
+				}
+			}
+		}
+		return fromDb;
+	}
+	
+	@Override
+	public Timestamp fetchMaxUpdatedAt() {
+		return delegate.fetchMaxUpdatedAt();
+	}
+	
+	@Override
+	public int fetchCount() {
+		return delegate.fetchCount();
+	}
+	
+	/**
+	 * Reloads every response if any response has been modified, added or
+	 * deleted since they were last loaded. Costs two small queries when
+	 * nothing has changed.
+	 * 
+	 * @return true if the responses were reloaded, false otherwise
+	 */
+	public boolean refreshIfModified() {
+		if(byName == null) {
+			load();
+			return true;
+		}
+		
+		Timestamp maxUpdatedAt = delegate.fetchMaxUpdatedAt();
+		Timestamp loaded = loadedMaxUpdatedAt;
+		boolean sameUpdatedAt = maxUpdatedAt == null ? loaded == null : maxUpdatedAt.equals(loaded);
+		if(sameUpdatedAt && delegate.fetchCount() == loadedCount)
+			return false;
+		
+		logger.debug("Responses were modified; reloading them");
+		load();
+		return true;
+	}
+	
+	/**
+	 * Forgets every cached response, so that they are loaded again on next use.
+	 */
+	public synchronized void clear() {
+		byName = null;
+		loadedMaxUpdatedAt = null;
+		loadedCount = 0;
+	}
+	
+	@Override
+	public void validateSchema() throws IllegalStateException {
+		((SchemaValidator) delegate).validateSchema();
+	}
+	
+	@Override
+	public void purgeSchema() {
+		clear();
+		((SchemaValidator) delegate).purgeSchema();
+	}
+	
+	/**
+	 * Loads every response from the underlying mapping into the cache.
+	 * 
+	 * @return the newly loaded responses by name
+	 */
+	private synchronized Map<String, Response> load() {
+		// Fetch the timestamp and count first so a modification during the load is seen by the next refresh
+		Timestamp maxUpdatedAt = delegate.fetchMaxUpdatedAt();
+		int count = delegate.fetchCount();
+		List<Response> responses = delegate.fetchAll();
+		
+		Map<String, Response> loaded = new HashMap<>();
+		for(Response response : responses) {
+			loaded.put(response.name, response);
+		}
+		
+		byName = loaded;
+		loadedMaxUpdatedAt = maxUpdatedAt;
+		loadedCount = count;
+		return loaded;
+	}
+	
+	private static Response copy(Response response) {
+		return new Response(response.id, response.name, response.responseBody,
+				response.createdAt == null ? null : new Timestamp(response.createdAt.getTime()),
+				response.updatedAt == null ? null : new Timestamp(response.updatedAt.getTime()));
+	}
+}
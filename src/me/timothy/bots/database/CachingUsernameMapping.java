@@ -0,0 +1,363 @@
+package me.timothy.bots.database;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import me.timothy.bots.models.Username;
+
+/**
+ * <p>Wraps a username mapping with a bounded, in-memory cache for the lookups
+ * which nearly every summon makes: username to user id and user id to usernames.</p>
+ * 
+ * <p>Username lookups are case-insensitive, which matches the collation of the
+ * usernames table. Entries are evicted least-recently-used once the cache reaches
+ * its size cap and expire after a fixed time, since other programs (the website)
+ * can modify the usernames table as well. Saving through this mapping invalidates
+ * every entry the username could have been cached under.</p>
+ * 
+ * <p>Every invalidation bumps a generation counter. A lookup which missed only
+ * caches what it read from the database if the generation is unchanged, so a
+ * read which raced a save can't put the old value back after the save
+ * invalidated it.</p>
+ * 
+ * <p>The models returned are copies, so callers may modify them freely.</p>
+ * 
+ * @author Timothy
+ */
+public class CachingUsernameMapping implements UsernameMapping, SchemaValidator {
+	/**
+	 * A cached value and when it was cached
+	 * 
+	 * @param <V> the type of value
+	 */
+	private static class Entry<V> {
+		final V value;
+		final long cachedAt;
+		
+		Entry(V value) {
+			this.value = value;
+			this.cachedAt = System.currentTimeMillis();
+		}
+	}
+	
+	/**
+	 * A LinkedHashMap in access-order which evicts once it exceeds
+	 * the maximum size
+	 * 
+	 * @param <K> the key type
+	 * @param <V> the value type
+	 */
+	private static class LRUMap<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = 1L;
+		private final int maxSize;
+		
+		LRUMap(int maxSize) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+		}
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > maxSize;
+		}
+	}
+	
+	private final UsernameMapping delegate;
+	private final long expireMS;
+	
+	private final LRUMap<String, Entry<Username>> byUsername;
+	private final LRUMap<Integer, Entry<List<Username>>> byUserId;
+	
+	private long hits;
+	private long misses;
+	
+	/** Incremented whenever entries are invalidated; guarded by this */
+	private long generation;
+	
+	/**
+	 * Wraps the given mapping
+	 * 
+	 * @param delegate the mapping which actually stores the usernames
+	 * @param maxSize the maximum number of entries kept in each direction
+	 * @param expireMS how long an entry may be used before it is fetched again
+	 */
+	public CachingUsernameMapping(UsernameMapping delegate, int maxSize, long expireMS) {
+		this.delegate = delegate;
+		this.expireMS = expireMS;
+		
+		byUsername = new LRUMap<>(maxSize);
+		byUserId = new LRUMap<>(maxSize);
+	}
+	
+	@Override
+	public void save(Username a) throws IllegalArgumentException {
+		synchronized(this) {
+			invalidate(a);
+		}
+		delegate.save(a);
+		synchronized(this) {
+			// The save may have been an update that was seen in between
+			invalidate(a);
+		}
+	}
+	
+	@Override
+	public List<Username> fetchAll() {
+		return delegate.fetchAll();
+	}
+	
+	@Override
+	public Username fetchById(int usernameId) {
+		return delegate.fetchById(usernameId);
+	}
+	
+	@Override
+	public List<Username> fetchByUserId(int userId) {
+		long readGeneration;
+		synchronized(this) {
+			List<Username> cached = getIfFresh(byUserId, userId);
+			if(cached != null) {
+				hits++;
+				return copy(cached);
+			}
+			misses++;
+			readGeneration = generation;
+		}
+		
+		List<Username> fromDb = delegate.fetchByUserId(userId);
+		synchronized(this) {
+			if(readGeneration == generation) {
+				cacheUserId(userId, fromDb);
+			}
+		}
+		return copy(fromDb);
+	}
+	
+	@Override
+	public List<Username> fetchByUserIds(int... userIds) {
+		List<Username> result = new ArrayList<>();
+		int[] missing = new int[userIds.length];
+		int numMissing = 0;
+		long readGeneration;
+		
+		synchronized(this) {
+			readGeneration = generation;
+			for(int userId : userIds) {
+				List<Username> cached = getIfFresh(byUserId, userId);
+				if(cached != null) {
+					hits++;
+					result.addAll(copy(cached));
+				}else {
+					misses++;
+					missing[numMissing++] = userId;
+				}
+			}
+		}
+		
+		if(numMissing == 0)
+			return result;
+		
+		int[] toFetch = new int[numMissing];
+		System.arraycopy(missing, 0, toFetch, 0, numMissing);
+		List<Username> fromDb = delegate.fetchByUserIds(toFetch);
+		
+		synchronized(this) {
+			if(readGeneration != generation) {
+				result.addAll(copy(fromDb));
+				return result;
+			}
+			
+			for(int userId : toFetch) {
+				List<Username> forUser = new ArrayList<>();
+				for(Username username : fromDb) {
+					if(username.userId == userId) {
+						forUser.add(username);
+					}
+				}
+				cacheUserId(userId, forUser);
+			}
+		}
+		
+		result.addAll(copy(fromDb));
+		return result;
+	}
+	
+	@Override
+	public Username fetchByUsername(String username) {
+		if(username == null)
+			return delegate.fetchByUsername(username);
+		
+		String key = key(username);
+		long readGeneration;
+		synchronized(this) {
+			Username cached = getIfFresh(byUsername, key);
+			if(cached != null) {
+				hits++;
+				return copy(cached);
+			}
+			misses++;
+			readGeneration = generation;
+		}
+		
+		Username fromDb = delegate.fetchByUsername(username);
+		if(fromDb == null) {
+			// Not cached; the user might be created by someone else at any time
+			return null;
+		}
+		
+		synchronized(this) {
+			if(readGeneration == generation) {
+				byUsername.put(key, new Entry<>(copy(fromDb)));
+			}
+		}
+		return fromDb;
+	}
+	
+	@Override
+	public void validateSchema() throws IllegalStateException {
+		((SchemaValidator) delegate).validateSchema();
+	}
+	
+	@Override
+	public void purgeSchema() {
+		synchronized(this) {
+			clear();
+		}
+		((SchemaValidator) delegate).purgeSchema();
+	}
+	
+	/**
+	 * Removes everything from the cache. This should be used if the usernames
+	 * table is known to have been modified outside of this mapping.
+	 */
+	public synchronized void clear() {
+		generation++;
+		byUsername.clear();
+		byUserId.clear();
+	}
+	
+	/**
+	 * @return the number of lookups which were served from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+	
+	/**
+	 * @return the number of lookups which had to go to the underlying mapping
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+	
+	/**
+	 * @return the number of entries currently cached, in both directions
+	 */
+	public synchronized int size() {
+		return byUsername.size() + byUserId.size();
+	}
+	
+	/**
+	 * Describes the hit rate and size of the cache for diagnostics
+	 * 
+	 * @return a short human-readable summary of the cache
+	 */
+	public synchronized String describe() {
+		long total = hits + misses;
+		double hitRate = total == 0 ? 0 : ((double) hits / total) * 100.;
+		return String.format("%d hits, %d misses (%.1f%% hit rate), %d usernames and %d user ids cached",
+				hits, misses, hitRate, byUsername.size(), byUserId.size());
+	}
+	
+	/**
+	 * Removes every entry which could reference the given username. Must be
+	 * called while synchronized on this.
+	 * 
+	 * @param a the username being saved
+	 */
+	private void invalidate(Username a) {
+		generation++;
+		if(a.username != null) {
+			byUsername.remove(key(a.username));
+		}
+		byUserId.remove(a.userId);
+		
+		if(a.id > 0) {
+			// An update could have changed the username or user id
+			Iterator<Entry<Username>> nameIter = byUsername.values().iterator();
+			while(nameIter.hasNext()) {
+				if(nameIter.next().value.id == a.id) {
+					nameIter.remove();
+				}
+			}
+			
+			Iterator<Entry<List<Username>>> userIter = byUserId.values().iterator();
+			while(userIter.hasNext()) {
+				for(Username cached : userIter.next().value) {
+					if(cached.id == a.id) {
+						userIter.remove();
+						break;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Caches the usernames for the given user id, and each of the usernames
+	 * individually. Must be called while synchronized on this.
+	 * 
+	 * @param userId the user id
+	 * @param usernames all the usernames for that user id
+	 */
+	private void cacheUserId(int userId, List<Username> usernames) {
+		List<Username> copied = copy(usernames);
+		byUserId.put(userId, new Entry<>(copied));
+		for(Username username : copied) {
+			byUsername.put(key(username.username), new Entry<>(username));
+		}
+	}
+	
+	/**
+	 * Fetches the value for the key if it is in the map and has not expired.
+	 * Expired entries are removed.
+	 * 
+	 * @param map the map to look in
+	 * @param key the key
+	 * @return the value or null
+	 */
+	private <K, V> V getIfFresh(Map<K, Entry<V>> map, K key) {
+		Entry<V> entry = map.get(key);
+		if(entry == null)
+			return null;
+		
+		if(System.currentTimeMillis() - entry.cachedAt > expireMS) {
+			map.remove(key);
+			return null;
+		}
+		return entry.value;
+	}
+	
+	private static String key(String username) {
+		return username.toLowerCase(Locale.ROOT);
+	}
+	
+	private static Username copy(Username username) {
+		return new Username(username.id, username.userId, username.username,
+				username.createdAt == null ? null : new Timestamp(username.createdAt.getTime()),
+				username.updatedAt == null ? null : new Timestamp(username.updatedAt.getTime()));
+	}
+	
+	private static List<Username> copy(List<Username> usernames) {
+		List<Username> result = new ArrayList<>(usernames.size());
+		for(Username username : usernames) {
+			result.add(copy(username));
+		}
+		return result;
+	}
+}
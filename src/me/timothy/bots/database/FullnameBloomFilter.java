@@ -0,0 +1,224 @@
+package me.timothy.bots.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * <p>A fixed-size bloom filter over reddit fullnames. It can say a fullname is
+ * <i>definitely not</i> in the set, or that it <i>might</i> be. Fullnames are
+ * compared case-insensitively to match the fullnames table.</p>
+ * 
+ * <p>The filter is sized for an expected number of insertions at roughly a 1% false
+ * positive rate. It keeps working past that number, just with more false positives,
+ * so callers should rebuild it with a larger capacity once {@link #isOverCapacity()}.</p>
+ * 
+ * @author Timothy
+ */
+public class FullnameBloomFilter {
+	/** Identifies snapshot files */
+	private static final int SNAPSHOT_MAGIC = 0x464E4246; // FNBF
+	/** Bumped whenever the snapshot format or the hashing changes */
+	private static final int SNAPSHOT_VERSION = 1;
+	
+	/** About 1% false positives at capacity */
+	private static final int BITS_PER_ELEMENT = 10;
+	private static final int NUM_HASHES = 7;
+	
+	private final long[] words;
+	private final long numBits;
+	private final long capacity;
+	private long insertions;
+	
+	/**
+	 * Creates an empty filter sized for the given number of fullnames
+	 * 
+	 * @param capacity the number of fullnames expected to be added
+	 */
+	public FullnameBloomFilter(long capacity) {
+		this(capacity, new long[wordsFor(capacity)], 0);
+	}
+	
+	private FullnameBloomFilter(long capacity, long[] words, long insertions) {
+		this.capacity = capacity;
+		this.words = words;
+		this.numBits = words.length * 64L;
+		this.insertions = insertions;
+	}
+	
+	/**
+	 * Adds the fullname to the filter
+	 * 
+	 * @param fullname the fullname
+	 */
+	public void add(String fullname) {
+		String normalized = normalize(fullname);
+		long h1 = hash1(normalized);
+		long h2 = hash2(normalized);
+		for(int i = 0; i < NUM_HASHES; i++) {
+			long bit = index(h1, h2, i);
+			words[(int) (bit >>> 6)] |= 1L << bit;
+		}
+		insertions++;
+	}
+	
+	/**
+	 * Checks if the fullname might have been added to this filter. If this
+	 * returns false the fullname was definitely never added.
+	 * 
+	 * @param fullname the fullname
+	 * @return false if the fullname was never added, true if it may have been
+	 */
+	public boolean mightContain(String fullname) {
+		String normalized = normalize(fullname);
+		long h1 = hash1(normalized);
+		long h2 = hash2(normalized);
+		for(int i = 0; i < NUM_HASHES; i++) {
+			long bit = index(h1, h2, i);
+			if((words[(int) (bit >>> 6)] & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * @return a new filter containing the same fullnames as this one
+	 */
+	public FullnameBloomFilter copy() {
+		return new FullnameBloomFilter(capacity, words.clone(), insertions);
+	}
+	
+	/**
+	 * @return the number of fullnames this filter was sized for
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * @return the number of times add has been called
+	 */
+	public long getInsertions() {
+		return insertions;
+	}
+	
+	/**
+	 * @return true if more fullnames have been added than the filter was sized for
+	 */
+	public boolean isOverCapacity() {
+		return insertions > capacity;
+	}
+	
+	/**
+	 * Writes this filter to the given file along with the given value, which should
+	 * describe how up to date the filter is. The file is replaced atomically.
+	 * 
+	 * @param file the file to write to
+	 * @param highWaterMark the value to store with the filter
+	 * @throws IOException if one occurs
+	 */
+	public void writeSnapshot(File file, long highWaterMark) throws IOException {
+		File tmp = new File(file.getPath() + ".tmp");
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1 << 16))) {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeLong(capacity);
+			out.writeLong(insertions);
+			out.writeLong(highWaterMark);
+			out.writeInt(words.length);
+			for(long word : words) {
+				out.writeLong(word);
+			}
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * A filter loaded from a snapshot and the high water mark it was stored with
+	 */
+	public static class Snapshot {
+		public final FullnameBloomFilter filter;
+		public final long highWaterMark;
+		
+		private Snapshot(FullnameBloomFilter filter, long highWaterMark) {
+			this.filter = filter;
+			this.highWaterMark = highWaterMark;
+		}
+	}
+	
+	/**
+	 * Reads a filter written with {@link #writeSnapshot(File, long)}.
+	 * 
+	 * @param file the file to read from
+	 * @return the snapshot, or null if the file is missing, from an incompatible version or inconsistent
+	 * @throws IOException if the file exists but cannot be read, including if it is truncated
+	 */
+	public static Snapshot readSnapshot(File file) throws IOException {
+		if(!file.exists())
+			return null;
+		
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+			if(in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION)
+				return null;
+			
+			long capacity = in.readLong();
+			long insertions = in.readLong();
+			long highWaterMark = in.readLong();
+			int numWords = in.readInt();
+			if(capacity <= 0 || insertions < 0 || highWaterMark < 0 || numWords != wordsFor(capacity))
+				return null;
+			
+			long[] words = new long[numWords];
+			for(int i = 0; i < words.length; i++) {
+				words[i] = in.readLong();
+			}
+			return new Snapshot(new FullnameBloomFilter(capacity, words, insertions), highWaterMark);
+		}
+	}
+	
+	private static int wordsFor(long capacity) {
+		return (int) ((Math.max(capacity, 64) * BITS_PER_ELEMENT + 63) / 64);
+	}
+	
+	private long index(long h1, long h2, int i) {
+		// Kirsch-Mitzenmacher: derive k hashes from two independent ones
+		long combined = h1 + i * h2;
+		return (combined & Long.MAX_VALUE) % numBits;
+	}
+	
+	private static String normalize(String fullname) {
+		return fullname.toLowerCase(Locale.ROOT);
+	}
+	
+	/** 64-bit FNV-1a */
+	private static long hash1(String str) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0, len = str.length(); i < len; i++) {
+			hash ^= str.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+	
+	/** Polynomial hash passed through the murmur3 finalizer */
+	private static long hash2(String str) {
+		long hash = 1125899906842597L;
+		for(int i = 0, len = str.length(); i < len; i++) {
+			hash = 31 * hash + str.charAt(i);
+		}
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash | 1; // must be odd so the k indexes differ
+	}
+}
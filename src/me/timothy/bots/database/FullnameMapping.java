@@ -1,5 +1,7 @@
 package me.timothy.bots.database;
 
+import java.util.List;
+
 import me.timothy.bots.models.Fullname;
 
 /**
@@ -14,4 +16,21 @@ public interface FullnameMapping extends ObjectMapping<Fullname> {
 	 * @return if it can be found
 	 */
 	public boolean contains(String fullname);
+	
+	/**
+	 * Fetches up to {@code limit} fullnames with an id strictly greater than the
+	 * specified id, ordered by id ascending. Used to stream through the mapping.
+	 * 
+	 * @param id the id to fetch after
+	 * @param limit the maximum number of fullnames to fetch
+	 * @return the fullnames after the given id, or an empty list
+	 */
+	public List<Fullname> fetchAfterId(int id, int limit);
+	
+	/**
+	 * Fetches the largest id of any fullname in the mapping
+	 * 
+	 * @return the largest id or 0 if there are no fullnames
+	 */
+	public int fetchMaxId();
 }
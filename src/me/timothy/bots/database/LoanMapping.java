@@ -6,11 +6,24 @@ import java.util.List;
 import me.timothy.bots.models.Loan;
 
 /**
- * Describes a loan mapping
+ * Describes a loan mapping. Saving loans also refreshes the
+ * {@link UserLoanStatsMapping loan summaries} of their lenders and borrowers.
  * 
  * @author Timothy
  */
 public interface LoanMapping extends ObjectMapping<Loan> {
+	/**
+	 * Saves each of the given loans the same way as {@link #save(Object) save}, but
+	 * sends the inserts and the updates to the database as one batch each. This
+	 * is not atomic on its own; use it within
+	 * {@link me.timothy.bots.LoansDatabase#inTransaction(java.util.function.Consumer) a transaction}
+	 * if it needs to be.
+	 * 
+	 * @param loans the loans to save
+	 * @throws IllegalArgumentException if any of the loans are not ready to be saved, in which case none are saved
+	 */
+	public void saveAll(List<Loan> loans) throws IllegalArgumentException;
+	
 	/**
 	 * Fetch the loan with the given id in the database if it exists, otherwise
 	 * returns null.
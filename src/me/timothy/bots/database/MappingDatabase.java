@@ -32,10 +32,12 @@ public interface MappingDatabase {
 	public RedFlagForSubredditMapping getRedFlagForSubredditMapping();
 	public RedFlagUserHistoryCommentMapping getRedFlagUserHistoryCommentMapping();
 	public RedFlagUserHistoryLinkMapping getRedFlagUserHistoryLinkMapping();
-	public RedFlagUserHistorySortMapping getRedFlagUserHistorySortMapping();
+	public RedFlagReportCheckpointMapping getRedFlagReportCheckpointMapping();
+	public RedFlagQueueClaimMapping getRedFlagQueueClaimMapping();
 	public PromotionBlacklistMapping getPromotionBlacklistMapping();
 	public DelayedVettingRequestMapping getDelayedVettingRequestMapping();
 	public FailedLoginAttemptMapping getFailedLoginAttemptMapping();
 	public ResponseOptOutMapping getResponseOptOutMapping();
 	public BorrowerReqPMOptOutMapping getBorrowerReqPMOptOutMapping();
+	public UserLoanStatsMapping getUserLoanStatsMapping();
 }
@@ -1,5 +1,7 @@
 package me.timothy.bots.database;
 
+import java.util.List;
+
 import me.timothy.bots.models.Recheck;
 
 /**
@@ -13,4 +15,10 @@ public interface RecheckMapping extends ObjectMapping<Recheck> {
 	 * @param recheck the recheck to delete
 	 */
 	public void delete(Recheck recheck);
+	
+	/**
+	 * Deletes all of the specified rechecks from the mapping at once
+	 * @param rechecks the rechecks to delete
+	 */
+	public void deleteAll(List<Recheck> rechecks);
 }
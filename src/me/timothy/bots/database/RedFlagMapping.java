@@ -1,5 +1,6 @@
 package me.timothy.bots.database;
 
+import java.util.Collection;
 import java.util.List;
 
 import me.timothy.bots.models.RedFlag;
@@ -26,4 +27,23 @@ public interface RedFlagMapping extends ObjectMapping<RedFlag> {
 	 * @return the flag that matches the search or null
 	 */
 	public RedFlag fetchByReportAndTypeAndIden(int reportId, String type, String iden);
+	
+	/**
+	 * Copies every red flag on one report to another report, keeping the counts.
+	 * The copies get new ids but keep when they were created.
+	 * 
+	 * @param fromReportId the report to copy the flags from
+	 * @param toReportId the report to copy the flags to
+	 */
+	public void copyToReport(int fromReportId, int toReportId);
+	
+	/**
+	 * Adds the given flags to the report. A flag with the same type and identifier
+	 * as one already on the report adds its count to that one, and the rest are
+	 * inserted. The flags must already be de-duplicated amongst themselves.
+	 * 
+	 * @param reportId the report to add the flags to
+	 * @param flags the flags to add; their report ids and ids are set as they are saved
+	 */
+	public void mergeIntoReport(int reportId, Collection<RedFlag> flags);
 }
@@ -0,0 +1,54 @@
+package me.timothy.bots.database;
+
+import java.sql.Timestamp;
+
+import me.timothy.bots.models.RedFlagQueueClaim;
+
+/**
+ * Describes a mapping for RedFlagQueueClaim s. Claims are unique by username, 
+ * and taking, renewing and releasing a claim are each a single statement, so 
+ * two workers can never both believe they hold a spot for the same username.
+ * 
+ * @author Timothy
+ */
+public interface RedFlagQueueClaimMapping extends ObjectMapping<RedFlagQueueClaim> {
+	/**
+	 * Fetch the claim on the given queue spot
+	 * 
+	 * @param queueSpotId the id of the queue spot
+	 * @return the claim or null if the spot has never been claimed
+	 */
+	public RedFlagQueueClaim fetchByQueueSpotID(int queueSpotId);
+	
+	/**
+	 * Claims the given queue spot for the worker if no spot for the same username
+	 * is claimed, the claim was last renewed before staleBefore, or the claimed 
+	 * spot has been completed.
+	 * 
+	 * @param queueSpotId the id of the queue spot
+	 * @param usernameId the id of the username the queue spot is for
+	 * @param worker the name of the worker
+	 * @param staleBefore claims last renewed before this are abandoned
+	 * @return true if the worker now holds the claim, false if another worker holds
+	 * a claim on this username
+	 */
+	public boolean claim(int queueSpotId, int usernameId, String worker, Timestamp staleBefore);
+	
+	/**
+	 * Renews the workers claim on the given queue spot
+	 * 
+	 * @param queueSpotId the id of the queue spot
+	 * @param worker the name of the worker
+	 * @return true if the worker still held the claim, false if it was taken over
+	 */
+	public boolean renew(int queueSpotId, String worker);
+	
+	/**
+	 * Releases the workers claim on the given queue spot. Does nothing if the 
+	 * worker doesn't hold the claim.
+	 * 
+	 * @param queueSpotId the id of the queue spot
+	 * @param worker the name of the worker
+	 */
+	public void release(int queueSpotId, String worker);
+}
@@ -1,5 +1,6 @@
 package me.timothy.bots.database;
 
+import java.sql.Timestamp;
 import java.util.List;
 
 import me.timothy.bots.models.RedFlagQueueSpot;
@@ -23,6 +24,25 @@ public interface RedFlagQueueSpotMapping extends ObjectMapping<RedFlagQueueSpot>
 	 */
 	public RedFlagQueueSpot fetchOldestUncompleted();
 	
+	/**
+	 * Fetch the oldest uncompleted red flag queue spots that a worker could claim. This
+	 * excludes spots for usernames which have a spot with a live 
+	 * {@link me.timothy.bots.models.RedFlagQueueClaim claim}, so that two workers don't
+	 * generate reports on the same username at once. Claims can change right after
+	 * this, so these are only candidates; claiming one is what decides.
+	 * 
+	 * @param staleBefore claims last renewed before this are abandoned
+	 * @param limit the maximum number of spots to return
+	 * @return the oldest claimable queue spots, oldest first
+	 */
+	public List<RedFlagQueueSpot> fetchOldestUnclaimed(Timestamp staleBefore, int limit);
+	
+	/**
+	 * Count the red flag queue spots that are not yet completed
+	 * @return the number of uncompleted queue spots
+	 */
+	public int countUncompleted();
+	
 	/**
 	 * Fetch the red flag queue spots with the given RedFlagReport id
 	 * @param reportId the RedFlagReport id
@@ -0,0 +1,19 @@
+package me.timothy.bots.database;
+
+import me.timothy.bots.models.RedFlagReportCheckpoint;
+
+/**
+ * Describes a mapping for RedFlagReportCheckpoint s. Saving a checkpoint for
+ * a report that already has one replaces it.
+ * 
+ * @author Timothy
+ */
+public interface RedFlagReportCheckpointMapping extends ObjectMapping<RedFlagReportCheckpoint> {
+	/**
+	 * Fetch the checkpoint for the given report
+	 * 
+	 * @param reportId the id of the report
+	 * @return the checkpoint or null if the report doesn't have one
+	 */
+	public RedFlagReportCheckpoint fetchByReportID(int reportId);
+}
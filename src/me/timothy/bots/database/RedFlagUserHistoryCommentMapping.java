@@ -2,6 +2,7 @@ package me.timothy.bots.database;
 
 import java.sql.Timestamp;
 import java.util.List;
+import java.util.function.ObjIntConsumer;
 
 import me.timothy.bots.models.RedFlagUserHistoryComment;
 
@@ -11,6 +12,15 @@ import me.timothy.bots.models.RedFlagUserHistoryComment;
  * @author Timothy
  */
 public interface RedFlagUserHistoryCommentMapping extends ObjectMapping<RedFlagUserHistoryComment> {
+	/**
+	 * Saves each of the given comments the same way as {@link #save(Object) save}, but
+	 * sends the inserts and the updates to the database as one batch each.
+	 * 
+	 * @param comments the comments to save
+	 * @throws IllegalArgumentException if any of the comments are not ready to be saved, in which case none are saved
+	 */
+	public void saveAll(List<RedFlagUserHistoryComment> comments) throws IllegalArgumentException;
+	
 	/**
 	 * Fetch the comment with the given id.
 	 * 
@@ -19,6 +29,25 @@ public interface RedFlagUserHistoryCommentMapping extends ObjectMapping<RedFlagU
 	 */
 	public RedFlagUserHistoryComment fetchByID(int id);
 	
+	/**
+	 * Fetch the comments with the given ids, in no particular order. Ids which
+	 * do not exist are skipped.
+	 * 
+	 * @param ids the ids in the database
+	 * @return the corresponding comments
+	 */
+	public List<RedFlagUserHistoryComment> fetchByIDs(int... ids);
+	
+	/**
+	 * Passes the created at time and id of every comment for the given report to
+	 * the consumer, without loading the rest of each comment. This is used to sort
+	 * a users history before processing it.
+	 * 
+	 * @param reportId the report
+	 * @param consumer called with the created at and id of each comment
+	 */
+	public void fetchIdsAndCreatedAtByReport(int reportId, ObjIntConsumer<Timestamp> consumer);
+	
 	/**
 	 * Fetch any comments for the given report that occurred at the given timestamp
 	 * @param reportId the report
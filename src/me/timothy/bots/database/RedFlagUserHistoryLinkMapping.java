@@ -2,6 +2,7 @@ package me.timothy.bots.database;
 
 import java.sql.Timestamp;
 import java.util.List;
+import java.util.function.ObjIntConsumer;
 
 import me.timothy.bots.models.RedFlagUserHistoryLink;
 
@@ -11,11 +12,39 @@ import me.timothy.bots.models.RedFlagUserHistoryLink;
  * @author Timothy
  */
 public interface RedFlagUserHistoryLinkMapping extends ObjectMapping<RedFlagUserHistoryLink> {
+	/**
+	 * Saves each of the given links the same way as {@link #save(Object) save}, but
+	 * sends the inserts and the updates to the database as one batch each.
+	 * 
+	 * @param links the links to save
+	 * @throws IllegalArgumentException if any of the links are not ready to be saved, in which case none are saved
+	 */
+	public void saveAll(List<RedFlagUserHistoryLink> links) throws IllegalArgumentException;
+	
 	/**
 	 * Fetch the link with the given id
 	 * @param id id of the row to fetch
 	 */
 	public RedFlagUserHistoryLink fetchByID(int id);
+	
+	/**
+	 * Fetch the links with the given ids, in no particular order. Ids which
+	 * do not exist are skipped.
+	 * 
+	 * @param ids the ids in the database
+	 * @return the corresponding links
+	 */
+	public List<RedFlagUserHistoryLink> fetchByIDs(int... ids);
+	
+	/**
+	 * Passes the created at time and id of every link for the given report to
+	 * the consumer, without loading the rest of each link. This is used to sort
+	 * a users history before processing it.
+	 * 
+	 * @param reportId the report
+	 * @param consumer called with the created at and id of each link
+	 */
+	public void fetchIdsAndCreatedAtByReport(int reportId, ObjIntConsumer<Timestamp> consumer);
 
 	/**
 	 * Fetch any links for the given report that occurred at the given timestamp
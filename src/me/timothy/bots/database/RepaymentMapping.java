@@ -5,11 +5,24 @@ import java.util.List;
 import me.timothy.bots.models.Repayment;
 
 /**
- * Describes a repayment mapping
+ * Describes a repayment mapping. Saving repayments also refreshes the
+ * {@link UserLoanStatsMapping loan summaries} of the lenders and borrowers of their loans.
  * 
  * @author Timothy
  */
 public interface RepaymentMapping extends ObjectMapping<Repayment> {
+	/**
+	 * Saves each of the given repayments the same way as {@link #save(Object) save}, but
+	 * sends the inserts and the updates to the database as one batch each. This
+	 * is not atomic on its own; use it within
+	 * {@link me.timothy.bots.LoansDatabase#inTransaction(java.util.function.Consumer) a transaction}
+	 * if it needs to be.
+	 * 
+	 * @param repayments the repayments to save
+	 * @throws IllegalArgumentException if any of the repayments are not ready to be saved, in which case none are saved
+	 */
+	public void saveAll(List<Repayment> repayments) throws IllegalArgumentException;
+	
 	/**
 	 * Fetches the repayment information for the specified loan.
 	 * 
@@ -1,5 +1,7 @@
 package me.timothy.bots.database;
 
+import java.sql.Timestamp;
+
 import me.timothy.bots.models.Response;
 
 /**
@@ -14,4 +16,20 @@ public interface ResponseMapping extends ObjectMapping<Response> {
 	 * @return the response with that name or null
 	 */
 	public Response fetchByName(String name);
+	
+	/**
+	 * Fetches the most recent updated at timestamp of any response. This
+	 * is meant to be a cheap way to detect if responses have been modified.
+	 * 
+	 * @return the most recent updated at, or null if there are no responses
+	 */
+	public Timestamp fetchMaxUpdatedAt();
+	
+	/**
+	 * Fetches how many responses there are. Deleting a response doesn't
+	 * change the most recent updated at, but it does change this.
+	 * 
+	 * @return the number of responses
+	 */
+	public int fetchCount();
 }
@@ -0,0 +1,97 @@
+package me.timothy.bots.database;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+import me.timothy.bots.models.Loan;
+import me.timothy.bots.models.Repayment;
+import me.timothy.bots.models.UserLoanStats;
+
+/**
+ * <p>Describes a mapping for the per-user loan summaries. The loan and
+ * repayment mappings apply the change each save makes to the summaries of the
+ * users it touches, in the same transaction, so neither reading nor writing a
+ * summary has to aggregate the loans table. The full recomputes are only for
+ * backfilling and repairing the summaries.</p>
+ * 
+ * <p>Users who have never been part of a loan may not have a row.</p>
+ * 
+ * @author Timothy
+ */
+public interface UserLoanStatsMapping extends ObjectMapping<UserLoanStats> {
+	/**
+	 * Fetches the summary for the given user. If the user has no row,
+	 * a summary with every count at zero is returned.
+	 * 
+	 * @param userId the user
+	 * @return the summary for that user, never null
+	 */
+	public UserLoanStats fetchByUserId(int userId);
+	
+	/**
+	 * Adjusts the summaries of the lenders and borrowers of the given loans by the
+	 * difference between how each loan was counted before it was saved and how it is
+	 * counted now. Should be called in the same transaction as the save, after it.
+	 * 
+	 * @param before the loans as they were before they were saved, by id; loans which
+	 *               were just inserted are not in here
+	 * @param after the loans as they were saved
+	 */
+	public void applyLoanChanges(Map<Integer, Loan> before, List<Loan> after);
+	
+	/**
+	 * Moves the earliest repayment of the lenders back to the given newly inserted
+	 * repayments where they are earlier and on a loan which is repaid in full. Should
+	 * be called in the same transaction as the insert, after it.
+	 * 
+	 * @param repayments the repayments which were just inserted
+	 */
+	public void applyNewRepayments(List<Repayment> repayments);
+	
+	/**
+	 * Recomputes the summaries of the given users from their loans and
+	 * repayments. This is for repairing summaries; saves should use
+	 * {@link #applyLoanChanges(Map, List)} instead.
+	 * 
+	 * @param userIds the users to recompute
+	 */
+	public void refresh(int... userIds);
+	
+	/**
+	 * Recomputes the summaries of the lenders and borrowers of the given
+	 * loans. Like {@link #refresh(int...)} this is for repairs, such as after
+	 * a repayment was changed in place.
+	 * 
+	 * @param loanIds the loans whose users to recompute
+	 */
+	public void refreshForLoans(int... loanIds);
+	
+	/**
+	 * Throws away every summary and recomputes them all with a single pass over
+	 * the loans table. This is not atomic on its own; use it within
+	 * {@link me.timothy.bots.LoansDatabase#inTransaction(java.util.function.Consumer) a transaction}
+	 * if the summaries are being read at the same time.
+	 */
+	public void rebuild();
+	
+	/**
+	 * <p>Fetches the summaries of users who have lent enough to be vetted for
+	 * lenderscamp and who have not been asked about yet. That is, users which
+	 * meet each threshold, are not lenderscamp contributors, and are either
+	 * not on the promotion blacklist or have a delayed vetting request which
+	 * has not been rerequested and whose number of loans has been reached.</p>
+	 * 
+	 * <p>Users drop out of this list as soon as they are blacklisted or their
+	 * delayed vetting request is rerequested, so no progress needs to be kept
+	 * between calls.</p>
+	 * 
+	 * @param minCompletedAsLender the minimum number of loans completed as lender
+	 * @param minLoansAsLender the minimum number of loans as lender
+	 * @param earliestRepaidBefore the earliest repayment must be strictly before this, if there is one
+	 * @param limit the maximum number of summaries to return
+	 * @return up to limit candidates, in ascending order of user id
+	 */
+	public List<UserLoanStats> fetchVettingCandidates(int minCompletedAsLender, int minLoansAsLender,
+			Timestamp earliestRepaidBefore, int limit);
+}
@@ -17,6 +17,14 @@ public interface UserMapping extends ObjectMapping<User> {
 	 */
 	public User fetchById(int id);
 	
+	/**
+	 * Fetches the users with <i>any</i> of the specified ids
+	 * 
+	 * @param ids the ids of the users to fetch
+	 * @return the users with an id in ids, or an empty list
+	 */
+	public List<User> fetchManyByIds(int... ids);
+	
 	/**
 	 * Either fetches the user with the specified username, or 
 	 * if no such user exists, create one.
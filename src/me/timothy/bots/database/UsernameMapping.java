@@ -26,6 +26,14 @@ public interface UsernameMapping extends ObjectMapping<Username> {
 	 */
 	public List<Username> fetchByUserId(int userId);
 	
+	/**
+	 * Fetches all the usernames that <i>any</i> of the specified user ids have
+	 * 
+	 * @param userIds the user ids
+	 * @return all usernames any of the user ids are known by, or an empty list
+	 */
+	public List<Username> fetchByUserIds(int... userIds);
+	
 	/**
 	 * Fetches the username with the specified username as its username (?!)
 	 * 
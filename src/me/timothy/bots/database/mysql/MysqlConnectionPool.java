@@ -0,0 +1,520 @@
+package me.timothy.bots.database.mysql;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>A small pool of MySQL connections with a per-connection prepared statement
+ * cache.</p>
+ * 
+ * <p>Mappings are not handed a physical connection. Instead they receive the
+ * connection returned from {@link #getConnection()}, which routes every call to
+ * the physical connection bound to the calling thread. Threads lease a connection
+ * on first use and keep it until they call {@link #release()}, so work on separate
+ * threads runs on separate connections while a single thread (and thus a single
+ * transaction) always sees the same one.</p>
+ * 
+ * <p>{@code prepareStatement} on the routed connection returns a cached statement
+ * when the same sql has been prepared on that physical connection before. Closing
+ * such a statement clears its parameters and returns it to the cache rather than
+ * closing it. A statement which is never closed is reclaimed once the caller can
+ * no longer reach it, or when its thread releases the connection, so a mapping
+ * which forgets to close a statement can't pin it in the cache forever.</p>
+ * 
+ * <p>Connections are validated when leased if they have been idle for a while, and
+ * any connection which reports a connection-level failure is discarded, so the
+ * mappings recover on their own after MySQL restarts.</p>
+ * 
+ * @author Timothy
+ */
+public class MysqlConnectionPool {
+	private static final Logger logger = LogManager.getLogger();
+	
+	/** Connections which have not been used for this long are validated before they are leased */
+	private static final long VALIDATE_AFTER_IDLE_MS = 30000;
+	/** How long we wait for the server to respond to a validation request */
+	private static final int VALIDATE_TIMEOUT_S = 5;
+	
+	/**
+	 * A physical connection and its statement cache.
+	 */
+	private class PooledConnection {
+		/** The real connection */
+		final Connection connection;
+		/** Maps sql (+ generated keys flag) to the cached statement */
+		final Map<String, CachedStatement> statements;
+		/** The last time this connection was leased or returned */
+		long lastUsedAt;
+		/** True if this connection reported a connection-level failure */
+		boolean broken;
+		
+		PooledConnection(Connection connection) {
+			this.connection = connection;
+			this.lastUsedAt = System.currentTimeMillis();
+			this.statements = new LinkedHashMap<String, CachedStatement>(16, 0.75f, true);
+		}
+		
+		/**
+		 * Closes the least recently used statements which are not in use until
+		 * the cache is no larger than maxStatementsPerConnection. Statements in
+		 * use are skipped rather than stopping the eviction.
+		 */
+		void evict() {
+			Iterator<CachedStatement> iter = statements.values().iterator();
+			while(statements.size() > maxStatementsPerConnection && iter.hasNext()) {
+				CachedStatement cached = iter.next();
+				if(cached.inUse())
+					continue;
+				
+				closeQuietly(cached.statement);
+				iter.remove();
+			}
+		}
+		
+		/**
+		 * Returns every statement to the cache, since the thread which had them
+		 * is done with this connection. Statements still checked out were leaked.
+		 */
+		void reclaimAll() {
+			int leaked = 0;
+			for(CachedStatement cached : statements.values()) {
+				if(cached.inUse()) {
+					leaked++;
+				}
+				cached.reclaim();
+			}
+			
+			if(leaked > 0) {
+				logger.printf(Level.WARN, "%d prepared statements were never closed; reclaimed them", leaked);
+			}
+		}
+		
+		/**
+		 * Closes the underlying connection and all of its cached statements
+		 */
+		void close() {
+			for(CachedStatement cached : statements.values()) {
+				closeQuietly(cached.statement);
+			}
+			statements.clear();
+			
+			try {
+				connection.close();
+			}catch(SQLException ex) {
+				logger.throwing(ex);
+			}
+		}
+	}
+	
+	/**
+	 * A prepared statement living in a connections statement cache
+	 */
+	private static class CachedStatement {
+		/** The real statement */
+		final PreparedStatement statement;
+		/**
+		 * The wrapper handed to the caller, between prepareStatement and close. It's
+		 * weakly held so a wrapper the caller dropped without closing is noticed.
+		 */
+		WeakReference<PreparedStatement> lease;
+		/** The handler of the wrapper, so it can be closed if the statement is reclaimed */
+		CachedStatementHandler handler;
+		
+		CachedStatement(PreparedStatement statement) {
+			this.statement = statement;
+		}
+		
+		/**
+		 * @return true if a caller still holds this statement and hasn't closed it
+		 */
+		boolean inUse() {
+			return lease != null && lease.get() != null;
+		}
+		
+		/**
+		 * @return true if the statement was handed out and then dropped without being closed
+		 */
+		boolean leaked() {
+			return lease != null && lease.get() == null;
+		}
+		
+		/**
+		 * Takes the statement back from whoever has it, closing their wrapper
+		 */
+		void reclaim() {
+			if(handler != null) {
+				handler.closedByCaller = true;
+			}
+			lease = null;
+			handler = null;
+		}
+	}
+	
+	private final String url;
+	private final String username;
+	private final String password;
+	private final int maxIdleConnections;
+	private final int maxStatementsPerConnection;
+	
+	private final Deque<PooledConnection> idle;
+	private final ThreadLocal<PooledConnection> leased;
+	private final Connection routingConnection;
+	private volatile boolean closed;
+	
+	/**
+	 * Creates a new pool which connects with the given parameters. No connections
+	 * are opened until they are needed.
+	 * 
+	 * @param url the jdbc url, including any parameters
+	 * @param username the username to connect with
+	 * @param password the password to connect with
+	 * @param maxIdleConnections the maximum number of connections kept around while no thread is using them
+	 * @param maxStatementsPerConnection the maximum number of prepared statements cached per connection
+	 */
+	public MysqlConnectionPool(String url, String username, String password, int maxIdleConnections, int maxStatementsPerConnection) {
+		this.url = url;
+		this.username = username;
+		this.password = password;
+		this.maxIdleConnections = maxIdleConnections;
+		this.maxStatementsPerConnection = maxStatementsPerConnection;
+		
+		idle = new ArrayDeque<>();
+		leased = new ThreadLocal<>();
+		routingConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new RoutingHandler());
+	}
+	
+	/**
+	 * Opens a connection and returns it to the pool immediately, to fail fast
+	 * if the database cannot be reached at all.
+	 * 
+	 * @throws SQLException if a connection cannot be established
+	 */
+	public void verify() throws SQLException {
+		acquire();
+		release();
+	}
+	
+	/**
+	 * Returns the connection which should be handed to mappings. Every call
+	 * made on it is routed to the connection leased by the calling thread.
+	 * 
+	 * @return the routing connection
+	 */
+	public Connection getConnection() {
+		return routingConnection;
+	}
+	
+	/**
+	 * Returns the connection leased by the current thread, if any, back to the
+	 * pool. Threads that are about to go idle or terminate should call this.
+	 */
+	public void release() {
+		PooledConnection pc = leased.get();
+		if(pc == null)
+			return;
+		
+		leased.remove();
+		pc.lastUsedAt = System.currentTimeMillis();
+		pc.reclaimAll();
+		
+		boolean keep = false;
+		if(!pc.broken && !closed) {
+			try {
+				keep = pc.connection.getAutoCommit();
+			}catch(SQLException ex) {
+				logger.throwing(ex);
+			}
+			
+			if(!keep) {
+				// Someone left a transaction open; don't let it leak into another thread
+				logger.warn("Connection released with autocommit disabled; discarding it");
+			}
+		}
+		
+		if(keep) {
+			synchronized(idle) {
+				if(idle.size() < maxIdleConnections) {
+					idle.push(pc);
+					return;
+				}
+			}
+		}
+		pc.close();
+	}
+	
+	/**
+	 * Closes every connection in the pool. Connections currently leased by
+	 * other threads are closed when they are released.
+	 */
+	public void close() {
+		closed = true;
+		release();
+		
+		synchronized(idle) {
+			while(!idle.isEmpty()) {
+				idle.pop().close();
+			}
+		}
+	}
+	
+	/**
+	 * Fetches the connection leased by the current thread, leasing one from
+	 * the pool or opening a new one if necessary.
+	 * 
+	 * @return the connection for this thread
+	 * @throws SQLException if a new connection cannot be opened
+	 */
+	private PooledConnection acquire() throws SQLException {
+		if(closed)
+			throw new SQLException("Connection pool is closed");
+		
+		PooledConnection pc = leased.get();
+		if(pc != null && isUsable(pc)) {
+			pc.lastUsedAt = System.currentTimeMillis();
+			return pc;
+		}
+		
+		if(pc != null) {
+			logger.warn("Discarding broken database connection");
+			leased.remove();
+			pc.close();
+		}
+		
+		while(true) {
+			synchronized(idle) {
+				pc = idle.poll();
+			}
+			if(pc == null)
+				break;
+			
+			if(isUsable(pc)) {
+				break;
+			}
+			pc.close();
+		}
+		
+		if(pc == null) {
+			logger.debug("Opening new database connection");
+			pc = new PooledConnection(DriverManager.getConnection(url, username, password));
+		}
+		
+		pc.lastUsedAt = System.currentTimeMillis();
+		leased.set(pc);
+		return pc;
+	}
+	
+	/**
+	 * Determines if the given connection can still be used, validating it
+	 * with the server if it has been idle for a while.
+	 * 
+	 * @param pc the connection
+	 * @return if it is safe to use
+	 */
+	private boolean isUsable(PooledConnection pc) {
+		if(pc.broken)
+			return false;
+		
+		try {
+			if(pc.connection.isClosed())
+				return false;
+			if(System.currentTimeMillis() - pc.lastUsedAt < VALIDATE_AFTER_IDLE_MS)
+				return true;
+			
+			return pc.connection.isValid(VALIDATE_TIMEOUT_S);
+		}catch(SQLException ex) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Prepares the statement on the given connection, using the cache where
+	 * possible. Statements prepared with anything other than a sql string
+	 * and an optional generated keys flag are not cached.
+	 * 
+	 * @param pc the connection
+	 * @param method the prepareStatement overload that was called
+	 * @param args the arguments it was called with
+	 * @return the statement to return to the caller
+	 * @throws Throwable if preparing the statement fails
+	 */
+	private PreparedStatement prepare(PooledConnection pc, Method method, Object[] args) throws Throwable {
+		String key;
+		if(args.length == 1) {
+			key = (String) args[0];
+		}else if(args.length == 2 && args[1] instanceof Integer) {
+			key = args[1] + ":" + args[0];
+		}else {
+			return (PreparedStatement) invoke(pc, pc.connection, method, args);
+		}
+		
+		CachedStatement cached = pc.statements.get(key);
+		if(cached != null && cached.leaked()) {
+			logger.warn("Prepared statement was never closed; reclaiming it: " + key);
+			cached.reclaim();
+		}
+		
+		if(cached != null && cached.inUse()) {
+			// e.g. the same query nested inside a loop over its own results
+			return (PreparedStatement) invoke(pc, pc.connection, method, args);
+		}
+		
+		if(cached == null) {
+			cached = new CachedStatement((PreparedStatement) invoke(pc, pc.connection, method, args));
+			pc.statements.put(key, cached);
+		}
+		
+		CachedStatementHandler handler = new CachedStatementHandler(pc, cached);
+		PreparedStatement wrapper = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+				new Class<?>[] { PreparedStatement.class }, handler);
+		cached.handler = handler;
+		cached.lease = new WeakReference<>(wrapper);
+		pc.evict();
+		return wrapper;
+	}
+	
+	/**
+	 * Invokes the method on the target, unwrapping reflection exceptions and marking
+	 * the connection as broken if the failure was a connection-level one.
+	 * 
+	 * @param pc the connection the target belongs to
+	 * @param target the connection or statement
+	 * @param method the method to invoke
+	 * @param args the arguments
+	 * @return the result of the invocation
+	 * @throws Throwable the exception thrown by the invocation
+	 */
+	private static Object invoke(PooledConnection pc, Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		}catch(InvocationTargetException ex) {
+			Throwable cause = ex.getCause();
+			if(isConnectionFailure(cause)) {
+				pc.broken = true;
+			}
+			throw cause;
+		}
+	}
+	
+	/**
+	 * Determines if the exception means the connection it came from is unusable.
+	 * 
+	 * @param th the exception
+	 * @return if the connection should be discarded
+	 */
+	private static boolean isConnectionFailure(Throwable th) {
+		if(th instanceof SQLRecoverableException || th instanceof SQLNonTransientConnectionException)
+			return true;
+		if(th instanceof SQLException) {
+			String state = ((SQLException) th).getSQLState();
+			// SQLSTATE class 08 is "connection exception"
+			return state != null && state.startsWith("08");
+		}
+		return false;
+	}
+	
+	private static void closeQuietly(PreparedStatement statement) {
+		try {
+			statement.close();
+		}catch(SQLException ex) {
+			logger.throwing(ex);
+		}
+	}
+	
+	/**
+	 * Routes calls on the connection handed to mappings to the current
+	 * threads leased connection.
+	 */
+	private class RoutingHandler implements InvocationHandler {
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch(method.getName()) {
+			case "close":
+				release();
+				return null;
+			case "isClosed":
+				return closed;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "toString":
+				return "MysqlConnectionPool routing connection (" + url + ")";
+			}
+			
+			PooledConnection pc = acquire();
+			if(method.getName().equals("prepareStatement")) {
+				return prepare(pc, method, args);
+			}
+			return MysqlConnectionPool.invoke(pc, pc.connection, method, args);
+		}
+	}
+	
+	/**
+	 * Wraps a cached statement so that closing it returns it to the cache
+	 */
+	private class CachedStatementHandler implements InvocationHandler {
+		private final PooledConnection pc;
+		private final CachedStatement cached;
+		boolean closedByCaller;
+		
+		CachedStatementHandler(PooledConnection pc, CachedStatement cached) {
+			this.pc = pc;
+			this.cached = cached;
+		}
+		
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch(method.getName()) {
+			case "close":
+				if(!closedByCaller) {
+					cached.reclaim();
+					try {
+						cached.statement.clearParameters();
+						cached.statement.clearBatch();
+					}catch(SQLException ex) {
+						pc.statements.values().remove(cached);
+						closeQuietly(cached.statement);
+					}
+				}
+				return null;
+			case "isClosed":
+				return closedByCaller;
+			case "getConnection":
+				return routingConnection;
+			case "equals":
+				return proxy == args[0];
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			}
+			
+			if(closedByCaller)
+				throw new SQLException("Statement is closed");
+			try {
+				return MysqlConnectionPool.invoke(pc, cached.statement, method, args);
+			}catch(SQLException ex) {
+				// Mappings rethrow without closing the statement; don't let it stay checked out forever
+				cached.reclaim();
+				throw ex;
+			}
+		}
+	}
+}
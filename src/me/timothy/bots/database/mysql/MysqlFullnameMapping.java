@@ -81,6 +81,48 @@ public class MysqlFullnameMapping extends MysqlObjectMapping<Fullname> implement
 		}
 	}
 
+	@Override
+	public List<Fullname> fetchAfterId(int id, int limit) {
+		try {
+			PreparedStatement statement = connection.prepareStatement("SELECT * FROM fullnames WHERE id>? ORDER BY id ASC LIMIT ?");
+			statement.setInt(1, id);
+			statement.setInt(2, limit);
+			
+			List<Fullname> fullnames = new ArrayList<>();
+			ResultSet results = statement.executeQuery();
+			while(results.next()) {
+				fullnames.add(fetchFromSet(results));
+			}
+			results.close();
+			statement.close();
+			
+			return fullnames;
+		}catch(SQLException sqlE) {
+			logger.throwing(sqlE);
+			throw new RuntimeException(sqlE);
+		}
+	}
+
+	@Override
+	public int fetchMaxId() {
+		try {
+			PreparedStatement statement = connection.prepareStatement("SELECT MAX(id) FROM fullnames");
+			
+			ResultSet results = statement.executeQuery();
+			int maxId = 0;
+			if(results.next()) {
+				maxId = results.getInt(1);
+			}
+			results.close();
+			statement.close();
+			
+			return maxId;
+		}catch(SQLException sqlE) {
+			logger.throwing(sqlE);
+			throw new RuntimeException(sqlE);
+		}
+	}
+
 	@Override
 	public List<Fullname> fetchAll() {
 		try {
@@ -8,7 +8,10 @@ import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,6 +22,12 @@ import me.timothy.bots.models.Loan;
 
 public class MysqlLoanMapping extends MysqlObjectWithIDMapping<Loan> implements LoanMapping {
 	private static Logger logger = LogManager.getLogger();
+	private static final String INSERT_SQL = "INSERT INTO loans (lender_id, borrower_id, "
+			+ "principal_cents, principal_repayment_cents, unpaid, deleted, deleted_reason, created_at, "
+			+ "updated_at, deleted_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String UPDATE_SQL = "UPDATE loans SET lender_id=?, borrower_id=?, "
+			+ "principal_cents=?, principal_repayment_cents=?, unpaid=?, deleted=?, deleted_reason=?, "
+			+ "created_at=?, updated_at=?, deleted_at=? WHERE id=?";
 	
 	public MysqlLoanMapping(LoansDatabase database, Connection connection) {
 		super(database, connection, "loans",
@@ -37,59 +46,77 @@ public class MysqlLoanMapping extends MysqlObjectWithIDMapping<Loan> implements
 
 	@Override
 	public void save(Loan a) throws IllegalArgumentException {
-		if(!a.isValid())
-			throw new IllegalArgumentException(a + " is not valid");
-		
-		if(a.createdAt != null) { a.createdAt.setNanos(0); }
-		if(a.updatedAt != null) { a.updatedAt.setNanos(0); }
-		if(a.deletedAt != null) { a.deletedAt.setNanos(0); }
-		
-		try {
-			PreparedStatement statement;
-			
-			if(a.id > 0) {
-				statement = connection.prepareStatement("UPDATE loans SET lender_id=?, borrower_id=?, "
-						+ "principal_cents=?, principal_repayment_cents=?, unpaid=?, deleted=?, deleted_reason=?, "
-						+ "created_at=?, updated_at=?, deleted_at=? WHERE id=?");
-			}else {
-				statement = connection.prepareStatement("INSERT INTO loans (lender_id, borrower_id, "
-						+ "principal_cents, principal_repayment_cents, unpaid, deleted, deleted_reason, created_at, "
-						+ "updated_at, deleted_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
-			}
-			
-			int counter = 1;
-			statement.setInt(counter++, a.lenderId);
-			statement.setInt(counter++, a.borrowerId);
-			statement.setInt(counter++, a.principalCents);
-			statement.setInt(counter++, a.principalRepaymentCents);
-			statement.setBoolean(counter++, a.unpaid);
-			statement.setBoolean(counter++, a.deleted);
-			statement.setString(counter++, a.deletedReason);
-			statement.setTimestamp(counter++, a.createdAt);
-			statement.setTimestamp(counter++, a.updatedAt);
-			statement.setTimestamp(counter++, a.deletedAt);
+		saveAll(Collections.singletonList(a));
+	}
+	
+	@Override
+	public void saveAll(List<Loan> loans) throws IllegalArgumentException {
+		for(Loan a : loans) {
+			if(!a.isValid())
+				throw new IllegalArgumentException(a + " is not valid");
 			
-			if(a.id > 0) {
-				statement.setInt(counter++, a.id);
-				statement.execute();
-			}else {
-				statement.execute();
-				
-				ResultSet keys = statement.getGeneratedKeys();
-				if(keys.next()) {
-					a.id = keys.getInt(1);
-				}else {
-					keys.close();
-					statement.close();
-					throw new RuntimeException("Expected generated keys for loans table, but didn't get any!");
-				}
-				keys.close();
-			}
-			statement.close();
-		}catch(SQLException ex) {
-			logger.throwing(ex);
-			throw new RuntimeException(ex);
+			if(a.createdAt != null) { a.createdAt.setNanos(0); }
+			if(a.updatedAt != null) { a.updatedAt.setNanos(0); }
+			if(a.deletedAt != null) { a.deletedAt.setNanos(0); }
 		}
+		
+		// the summaries are adjusted by how each loan changed, so the old rows are locked until the stats are written
+		database.inTransaction((db) -> {
+			Map<Integer, Loan> before = fetchForUpdate(loans);
+			saveAllBatched(loans, INSERT_SQL, UPDATE_SQL, (a) -> a.id, (a, id) -> a.id = id, this::setFields);
+			db.getUserLoanStatsMapping().applyLoanChanges(before, loans);
+		});
+	}
+		
+	/**
+	 * Fetches and locks the current rows of the given loans which are already
+	 * in the database. Must be called in a transaction.
+	 * 
+	 * @param loans the loans about to be saved
+	 * @return the rows as they are now by id; loans without an id are missing
+	 */
+	private Map<Integer, Loan> fetchForUpdate(List<Loan> loans) {
+		final int[] ids = loans.stream().mapToInt(loan -> loan.id).filter(id -> id > 0).toArray();
+		if(ids.length == 0)
+			return Collections.emptyMap();
+		
+		return fetchByAction("SELECT * FROM loans WHERE id IN (" + createPlaceholders(ids.length) + ") FOR UPDATE",
+				(statement) -> {
+					for(int i = 0; i < ids.length; i++) {
+						statement.setInt(i + 1, ids[i]);
+					}
+				},
+				(set) -> {
+					Map<Integer, Loan> result = new HashMap<>();
+					while(set.next()) {
+						Loan loan = fetchFromSet(set);
+						result.put(loan.id, loan);
+					}
+					return result;
+				});
+	}
+	
+	/**
+	 * Sets every field except the id, starting at the first parameter
+	 * 
+	 * @param statement the insert or update statement
+	 * @param a the loan
+	 * @return the index of the next parameter
+	 * @throws SQLException if one occurs
+	 */
+	private int setFields(PreparedStatement statement, Loan a) throws SQLException {
+		int counter = 1;
+		statement.setInt(counter++, a.lenderId);
+		statement.setInt(counter++, a.borrowerId);
+		statement.setInt(counter++, a.principalCents);
+		statement.setInt(counter++, a.principalRepaymentCents);
+		statement.setBoolean(counter++, a.unpaid);
+		statement.setBoolean(counter++, a.deleted);
+		statement.setString(counter++, a.deletedReason);
+		statement.setTimestamp(counter++, a.createdAt);
+		statement.setTimestamp(counter++, a.updatedAt);
+		statement.setTimestamp(counter++, a.deletedAt);
+		return counter;
 	}
 
 	@Override
@@ -14,6 +14,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
@@ -22,6 +24,8 @@ import org.apache.logging.log4j.Logger;
 import me.timothy.bots.LoansDatabase;
 import me.timothy.bots.database.ObjectMapping;
 import me.timothy.bots.database.SchemaValidator;
+import me.timothy.bots.diagnostics.LatencyHistogram;
+import me.timothy.bots.diagnostics.MetricsRegistry;
 
 /**
  * Describes an ObjectMapping and SchemaValidator combination based on mysql
@@ -103,6 +107,21 @@ public abstract class MysqlObjectMapping<A> implements ObjectMapping<A>, SchemaV
 			}
 		}
 	}
+	/** Effectively acting as a function definition */
+	protected interface PreparedStatementSetFields<B> {
+		/**
+		 * Sets every field of b except the id, starting at the first parameter,
+		 * for an insert or update statement which lists the columns in the same
+		 * order and ends with the id for updates.
+		 * 
+		 * @param statement the statement
+		 * @param b the object to save
+		 * @return the index of the next parameter
+		 * @throws SQLException if one occurs
+		 */
+		public int setFields(PreparedStatement statement, B b) throws SQLException;
+	}
+	
 	/** Effectively acting as a function definition */
 	protected interface PreparedStatementFetchResult<B> {
 		/**
@@ -119,6 +138,13 @@ public abstract class MysqlObjectMapping<A> implements ObjectMapping<A>, SchemaV
 	
 	private static final Logger logger = LogManager.getLogger();
 	
+	/**
+	 * The most rows sent in one batch by saveAllBatched. The connection rewrites
+	 * each batch of inserts into a single multi-row insert, which has to fit in
+	 * max_allowed_packet.
+	 */
+	protected static final int MAX_BATCH_SIZE = 500;
+	
 	/**
 	 * Using other mappings is discouraged since it couples mappings, however
 	 * the practicality occasionally offsets the principle here.
@@ -135,6 +161,12 @@ public abstract class MysqlObjectMapping<A> implements ObjectMapping<A>, SchemaV
 	 */
 	protected MysqlColumn[] columns;
 	
+	/**
+	 * How long statements through fetchByAction and through runStatement or
+	 * runUpdate take, reported as "sql.&lt;table&gt;.fetch" and "sql.&lt;table&gt;.update"
+	 */
+	private LatencyHistogram fetchLatency, updateLatency;
+	
 	/**
 	 * Sets the {@code connection} to the specified connection and the 
 	 * {@code database} to the specified database, as well as enough information
@@ -150,6 +182,10 @@ public abstract class MysqlObjectMapping<A> implements ObjectMapping<A>, SchemaV
 		this.connection = connection;
 		this.table = table;
 		this.columns = columns;
+		
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		fetchLatency = metrics.histogram("sql." + table + ".fetch");
+		updateLatency = metrics.histogram("sql." + table + ".update");
 	}
 	
 	@Override
@@ -168,6 +204,7 @@ public abstract class MysqlObjectMapping<A> implements ObjectMapping<A>, SchemaV
 	 * @return result from fetchFunc
 	 */
 	protected <B> B fetchByAction(String statement, PreparedStatementSetVars setVars, PreparedStatementFetchResult<B> fetchFunc) {
+		long start = System.nanoTime();
 		try {
 			PreparedStatement pStatement = connection.prepareStatement(statement);
 			if(setVars != null)
@@ -183,6 +220,8 @@ public abstract class MysqlObjectMapping<A> implements ObjectMapping<A>, SchemaV
 			logger.error("SQLException occurred on MysqlObjectMapping<A>#fetchByAction. statement=" + statement + ", table=" + table);
 			logger.throwing(e);
 			throw new RuntimeException(e);
+		}finally {
+			fetchLatency.record(System.nanoTime() - start);
 		}
 	}
 	
@@ -193,6 +232,7 @@ public abstract class MysqlObjectMapping<A> implements ObjectMapping<A>, SchemaV
 	 * @param setVars the variables to set, if any
 	 */
 	protected void runStatement(String statement, PreparedStatementSetVars setVars) {
+		long start = System.nanoTime();
 		try {
 			PreparedStatement pStatement = connection.prepareStatement(statement);
 			if(setVars != null)
@@ -204,6 +244,107 @@ public abstract class MysqlObjectMapping<A> implements ObjectMapping<A>, SchemaV
 			logger.error("SQLException occurred on MysqlObjectMapping<A>#runStatement. statement=" + statement + ", table=" + table);
 			logger.throwing(e);
 			throw new RuntimeException(e);
+		}finally {
+			updateLatency.record(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Runs the given insert, update or delete statement, setting the given variables if they are given.
+	 * 
+	 * @param statement the SQL to execute
+	 * @param setVars the variables to set, if any
+	 * @return the number of rows the statement matched
+	 */
+	protected int runUpdate(String statement, PreparedStatementSetVars setVars) {
+		long start = System.nanoTime();
+		try {
+			PreparedStatement pStatement = connection.prepareStatement(statement);
+			if(setVars != null)
+				setVars.setVars(pStatement);
+			
+			int result = pStatement.executeUpdate();
+			pStatement.close();
+			return result;
+		}catch(SQLException e) {
+			logger.error("SQLException occurred on MysqlObjectMapping<A>#runUpdate. statement=" + statement + ", table=" + table);
+			logger.throwing(e);
+			throw new RuntimeException(e);
+		}finally {
+			updateLatency.record(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Saves every a with as few round trips as possible. As with an id above 0 are
+	 * updated and the rest are inserted, each in batches of at most {@link #MAX_BATCH_SIZE}.
+	 * The ids generated for the inserts are assigned back to them in order. This
+	 * does not validate anything, and should be called in a transaction so a failed
+	 * batch doesn't leave part of the list saved.
+	 * 
+	 * @param as the objects to save
+	 * @param insertSql the insert statement, whose parameters are set by setFields
+	 * @param updateSql the update statement, whose parameters are set by setFields followed by the id
+	 * @param getId gets the id of an a
+	 * @param setId sets the id of an a
+	 * @param setFields sets every parameter except the id
+	 */
+	protected void saveAllBatched(List<A> as, String insertSql, String updateSql, ToIntFunction<A> getId,
+			ObjIntConsumer<A> setId, PreparedStatementSetFields<A> setFields) {
+		List<A> inserts = new ArrayList<>();
+		List<A> updates = new ArrayList<>();
+		for(A a : as) {
+			if(getId.applyAsInt(a) > 0) {
+				updates.add(a);
+			}else {
+				inserts.add(a);
+			}
+		}
+		
+		long start = System.nanoTime();
+		try {
+			if(!updates.isEmpty()) {
+				PreparedStatement statement = connection.prepareStatement(updateSql);
+				for(int from = 0; from < updates.size(); from += MAX_BATCH_SIZE) {
+					for(A a : updates.subList(from, Math.min(updates.size(), from + MAX_BATCH_SIZE))) {
+						int counter = setFields.setFields(statement, a);
+						statement.setInt(counter++, getId.applyAsInt(a));
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				}
+				statement.close();
+			}
+			
+			if(!inserts.isEmpty()) {
+				PreparedStatement statement = connection.prepareStatement(insertSql, Statement.RETURN_GENERATED_KEYS);
+				for(int from = 0; from < inserts.size(); from += MAX_BATCH_SIZE) {
+					List<A> batch = inserts.subList(from, Math.min(inserts.size(), from + MAX_BATCH_SIZE));
+					for(A a : batch) {
+						setFields.setFields(statement, a);
+						statement.addBatch();
+					}
+					statement.executeBatch();
+					
+					ResultSet keys = statement.getGeneratedKeys();
+					for(A a : batch) {
+						if(!keys.next()) {
+							keys.close();
+							statement.close();
+							throw new RuntimeException("Expected generated keys from " + table + ", but didn't get enough!");
+						}
+						setId.accept(a, keys.getInt(1));
+					}
+					keys.close();
+				}
+				statement.close();
+			}
+		}catch(SQLException e) {
+			logger.error("SQLException occurred on MysqlObjectMapping<A>#saveAllBatched. table=" + table);
+			logger.throwing(e);
+			throw new RuntimeException(e);
+		}finally {
+			updateLatency.record(System.nanoTime() - start);
 		}
 	}
 	
@@ -109,6 +109,25 @@ public class MysqlRecheckMapping extends MysqlObjectMapping<Recheck> implements
 		}
 	}
 
+	@Override
+	public void deleteAll(List<Recheck> rechecks) {
+		if(rechecks.isEmpty())
+			return;
+		
+		for(Recheck recheck : rechecks) {
+			if(recheck.id < 1) {
+				throw new IllegalArgumentException("Recheck deletion is done by id, so " + recheck + " is not valid");
+			}
+		}
+		
+		runStatement("DELETE FROM rechecks WHERE id IN (" + createPlaceholders(rechecks.size()) + ")", 
+				(statement) -> {
+					for(int i = 0; i < rechecks.size(); i++) {
+						statement.setInt(i + 1, rechecks.get(i).id);
+					}
+				});
+	}
+
 	/**
 	 * Gets the recheck in the current row of the set 
 	 * @param results the resultset
@@ -6,7 +6,12 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -17,6 +22,9 @@ import me.timothy.bots.models.RedFlag;
 
 public class MysqlRedFlagMapping extends MysqlObjectWithIDMapping<RedFlag> implements RedFlagMapping {
 	private static final Logger logger = LogManager.getLogger();
+	private static final String INSERT_SQL = "INSERT INTO red_flags (report_id, type, identifier, description, count, "
+			+ "created_at) VALUES (?, ?, ?, ?, ?, ?)";
+	private static final String UPDATE_SQL = "UPDATE red_flags SET report_id=?, type=?, identifier=?, description=?, count=?, created_at=? WHERE id=?";
 
 	public MysqlRedFlagMapping(LoansDatabase database, Connection connection) {
 		super(database, connection, "red_flags", 
@@ -39,19 +47,12 @@ public class MysqlRedFlagMapping extends MysqlObjectWithIDMapping<RedFlag> imple
 		try {
 			PreparedStatement statement;
 			if(a.id <= 0) {
-				statement = connection.prepareStatement("INSERT INTO " + table + " (report_id, type, identifier, description, count, "
-						+ "created_at) VALUES (?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+				statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
 			}else {
-				statement = connection.prepareStatement("UPDATE " + table + " SET report_id=?, type=?, identifier=?, description=?, count=?, created_at=? WHERE id=?");
+				statement = connection.prepareStatement(UPDATE_SQL);
 			}
 			
-			int counter = 1;
-			statement.setInt(counter++, a.reportId);
-			statement.setString(counter++, a.type.databaseIdentifier);
-			statement.setString(counter++, a.identifier);
-			statement.setString(counter++, a.description);
-			statement.setInt(counter++, a.count);
-			statement.setTimestamp(counter++, a.createdAt);
+			int counter = setFields(statement, a);
 			
 			if(a.id > 0) {
 				statement.setInt(counter++, a.id);
@@ -94,6 +95,67 @@ public class MysqlRedFlagMapping extends MysqlObjectWithIDMapping<RedFlag> imple
 				fetchFromSetFunction());
 	}
 
+	@Override
+	public void copyToReport(int fromReportId, int toReportId) {
+		runStatement("INSERT INTO " + table + " (report_id, type, identifier, description, count, created_at) "
+				+ "SELECT ?, type, identifier, description, count, created_at FROM " + table + " WHERE report_id=?", 
+				new PreparedStatementSetVarsUnsafe(
+						new MysqlTypeValueTuple(Types.INTEGER, toReportId),
+						new MysqlTypeValueTuple(Types.INTEGER, fromReportId)));
+	}
+
+	@Override
+	public void mergeIntoReport(int reportId, Collection<RedFlag> flags) {
+		if(flags.isEmpty())
+			return;
+		
+		Map<String, Map<String, RedFlag>> existing = new HashMap<>();
+		for(RedFlag flag : fetchByReportID(reportId)) {
+			existing.computeIfAbsent(flag.type.databaseIdentifier, (k) -> new HashMap<>()).put(flag.identifier, flag);
+		}
+		
+		List<RedFlag> merged = new ArrayList<>(flags.size());
+		for(RedFlag flag : flags) {
+			flag.reportId = reportId;
+			if(!flag.isValid())
+				throw new IllegalArgumentException(flag + " is not valid");
+			
+			RedFlag similiar = existing.getOrDefault(flag.type.databaseIdentifier, Collections.emptyMap()).get(flag.identifier);
+			if(similiar != null) {
+				// only the count changes; the rest of the row is kept as it was
+				flag.id = similiar.id;
+				flag.description = similiar.description;
+				flag.createdAt = similiar.createdAt;
+				flag.count += similiar.count;
+			}else {
+				flag.id = -1;
+			}
+			if (flag.createdAt != null) { flag.createdAt.setNanos(0); }
+			merged.add(flag);
+		}
+		
+		saveAllBatched(merged, INSERT_SQL, UPDATE_SQL, (a) -> a.id, (a, id) -> a.id = id, this::setFields);
+	}
+	
+	/**
+	 * Sets every field except the id, starting at the first parameter
+	 * 
+	 * @param statement the insert or update statement
+	 * @param a the red flag
+	 * @return the index of the next parameter
+	 * @throws SQLException if one occurs
+	 */
+	private int setFields(PreparedStatement statement, RedFlag a) throws SQLException {
+		int counter = 1;
+		statement.setInt(counter++, a.reportId);
+		statement.setString(counter++, a.type.databaseIdentifier);
+		statement.setString(counter++, a.identifier);
+		statement.setString(counter++, a.description);
+		statement.setInt(counter++, a.count);
+		statement.setTimestamp(counter++, a.createdAt);
+		return counter;
+	}
+
 	@Override
 	protected RedFlag fetchFromSet(ResultSet set) throws SQLException {
 		return new RedFlag(set.getInt("id"), set.getInt("report_id"), set.getString("type"), set.getString("identifier"), set.getString("description"), 
@@ -112,7 +174,7 @@ public class MysqlRedFlagMapping extends MysqlObjectWithIDMapping<RedFlag> imple
 				+ "count INT NOT NULL, "
 				+ "created_at timestamp NOT NULL DEFAULT '1970-01-01 00:00:01', "
 				+ "PRIMARY KEY(id), "
-				+ "INDEX ind_rf_uniq (report_id, type, identifier), " // this can be used for foreign key as well
+				+ "UNIQUE INDEX ind_rf_uniq (report_id, type, identifier), " // this can be used for foreign key as well
 				+ "FOREIGN KEY (report_id) REFERENCES red_flag_reports(id)"
 				+ ")");
 		statement.close();
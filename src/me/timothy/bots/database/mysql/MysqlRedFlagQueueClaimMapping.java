@@ -0,0 +1,110 @@
+package me.timothy.bots.database.mysql;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import me.timothy.bots.LoansDatabase;
+import me.timothy.bots.database.RedFlagQueueClaimMapping;
+import me.timothy.bots.models.RedFlagQueueClaim;
+
+public class MysqlRedFlagQueueClaimMapping extends MysqlObjectMapping<RedFlagQueueClaim> implements RedFlagQueueClaimMapping {
+	public MysqlRedFlagQueueClaimMapping(LoansDatabase database, Connection connection) {
+		super(database, connection, "red_flag_queue_claims",
+				new MysqlColumn(Types.INTEGER, "queue_spot_id"),
+				new MysqlColumn(Types.INTEGER, "username_id"),
+				new MysqlColumn(Types.VARCHAR, "worker"),
+				new MysqlColumn(Types.TIMESTAMP, "claimed_at"));
+	}
+	
+	@Override
+	public void save(RedFlagQueueClaim a) throws IllegalArgumentException {
+		if(!a.isValid())
+			throw new IllegalArgumentException(a + " is not valid");
+		
+		a.claimedAt.setNanos(0);
+		
+		runStatement("INSERT INTO " + table + " (queue_spot_id, username_id, worker, claimed_at) VALUES (?, ?, ?, ?) "
+				+ "ON DUPLICATE KEY UPDATE queue_spot_id=VALUES(queue_spot_id), worker=VALUES(worker), claimed_at=VALUES(claimed_at)",
+				new PreparedStatementSetVarsUnsafe(
+						new MysqlTypeValueTuple(Types.INTEGER, a.queueSpotId),
+						new MysqlTypeValueTuple(Types.INTEGER, a.usernameId),
+						new MysqlTypeValueTuple(Types.VARCHAR, a.worker),
+						new MysqlTypeValueTuple(Types.TIMESTAMP, a.claimedAt)));
+	}
+	
+	@Override
+	public RedFlagQueueClaim fetchByQueueSpotID(int queueSpotId) {
+		return fetchByAction("SELECT * FROM " + table + " WHERE queue_spot_id=?",
+				new PreparedStatementSetVarsUnsafe(new MysqlTypeValueTuple(Types.INTEGER, queueSpotId)),
+				fetchFromSetFunction());
+	}
+	
+	@Override
+	public boolean claim(int queueSpotId, int usernameId, String worker, Timestamp staleBefore) {
+		Timestamp now = new Timestamp((System.currentTimeMillis() / 1000) * 1000);
+		
+		// the row is unique by username, so only one worker can insert it; if it's
+		// already there, only one worker can take it over since the update is atomic
+		int inserted = runUpdate("INSERT IGNORE INTO " + table + " (queue_spot_id, username_id, worker, claimed_at) VALUES (?, ?, ?, ?)",
+				new PreparedStatementSetVarsUnsafe(
+						new MysqlTypeValueTuple(Types.INTEGER, queueSpotId),
+						new MysqlTypeValueTuple(Types.INTEGER, usernameId),
+						new MysqlTypeValueTuple(Types.VARCHAR, worker),
+						new MysqlTypeValueTuple(Types.TIMESTAMP, now)));
+		if(inserted > 0)
+			return true;
+		
+		return runUpdate("UPDATE " + table + " SET queue_spot_id=?, worker=?, claimed_at=? WHERE username_id=? "
+				+ "AND (worker=? OR claimed_at<? OR queue_spot_id IN (SELECT id FROM red_flag_queue_spots WHERE completed_at IS NOT NULL))",
+				new PreparedStatementSetVarsUnsafe(
+						new MysqlTypeValueTuple(Types.INTEGER, queueSpotId),
+						new MysqlTypeValueTuple(Types.VARCHAR, worker),
+						new MysqlTypeValueTuple(Types.TIMESTAMP, now),
+						new MysqlTypeValueTuple(Types.INTEGER, usernameId),
+						new MysqlTypeValueTuple(Types.VARCHAR, worker),
+						new MysqlTypeValueTuple(Types.TIMESTAMP, staleBefore))) > 0;
+	}
+	
+	@Override
+	public boolean renew(int queueSpotId, String worker) {
+		return runUpdate("UPDATE " + table + " SET claimed_at=? WHERE queue_spot_id=? AND worker=?",
+				new PreparedStatementSetVarsUnsafe(
+						new MysqlTypeValueTuple(Types.TIMESTAMP, new Timestamp((System.currentTimeMillis() / 1000) * 1000)),
+						new MysqlTypeValueTuple(Types.INTEGER, queueSpotId),
+						new MysqlTypeValueTuple(Types.VARCHAR, worker))) > 0;
+	}
+	
+	@Override
+	public void release(int queueSpotId, String worker) {
+		runStatement("DELETE FROM " + table + " WHERE queue_spot_id=? AND worker=?",
+				new PreparedStatementSetVarsUnsafe(
+						new MysqlTypeValueTuple(Types.INTEGER, queueSpotId),
+						new MysqlTypeValueTuple(Types.VARCHAR, worker)));
+	}
+	
+	@Override
+	protected RedFlagQueueClaim fetchFromSet(ResultSet set) throws SQLException {
+		return new RedFlagQueueClaim(set.getInt("queue_spot_id"), set.getInt("username_id"), set.getString("worker"), 
+				set.getTimestamp("claimed_at"));
+	}
+	
+	@Override
+	protected void createTable() throws SQLException {
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE " + table + " ("
+				+ "queue_spot_id INT NOT NULL, "
+				+ "username_id INT NOT NULL, "
+				+ "worker VARCHAR(50) NOT NULL, "
+				+ "claimed_at TIMESTAMP NOT NULL DEFAULT '1970-01-01 00:00:01', "
+				+ "PRIMARY KEY (username_id), "
+				+ "UNIQUE KEY (queue_spot_id), "
+				+ "FOREIGN KEY (queue_spot_id) REFERENCES red_flag_queue_spots(id), "
+				+ "FOREIGN KEY (username_id) REFERENCES usernames(id)"
+				+ ")");
+		statement.close();
+	}
+}
@@ -90,6 +90,28 @@ public class MysqlRedFlagQueueSpotMapping extends MysqlObjectWithIDMapping<RedFl
 				fetchFromSetFunction());
 	}
 
+	@Override
+	public List<RedFlagQueueSpot> fetchOldestUnclaimed(Timestamp staleBefore, int limit) {
+		return fetchByAction("SELECT s.* FROM " + table + " s WHERE s.completed_at IS NULL "
+				+ "AND NOT EXISTS (SELECT 1 FROM red_flag_queue_claims c JOIN " + table + " o ON o.id=c.queue_spot_id "
+				+ "WHERE c.username_id=s.username_id AND o.completed_at IS NULL AND c.claimed_at>=?) "
+				+ "ORDER BY s.created_at ASC LIMIT ?", 
+				new PreparedStatementSetVarsUnsafe(
+						new MysqlTypeValueTuple(Types.TIMESTAMP, staleBefore),
+						new MysqlTypeValueTuple(Types.INTEGER, limit)), 
+				fetchListFromSetFunction());
+	}
+	
+	@Override
+	public int countUncompleted() {
+		return fetchByAction("SELECT COUNT(*) FROM " + table + " WHERE completed_at IS NULL", 
+				null, 
+				(set) -> {
+					set.next();
+					return set.getInt(1);
+				});
+	}
+
 	@Override
 	public List<RedFlagQueueSpot> fetchByReportId(int reportId, boolean onlyUncompleted) {
 		return fetchByAction("SELECT * FROM " + table + " WHERE report_id=? AND (? = 0 OR completed_at IS NULL)", 
@@ -0,0 +1,70 @@
+package me.timothy.bots.database.mysql;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import me.timothy.bots.LoansDatabase;
+import me.timothy.bots.database.RedFlagReportCheckpointMapping;
+import me.timothy.bots.models.RedFlagReportCheckpoint;
+
+public class MysqlRedFlagReportCheckpointMapping extends MysqlObjectMapping<RedFlagReportCheckpoint> implements RedFlagReportCheckpointMapping {
+	public MysqlRedFlagReportCheckpointMapping(LoansDatabase database, Connection connection) {
+		super(database, connection, "red_flag_report_checkpoints",
+				new MysqlColumn(Types.INTEGER, "report_id"),
+				new MysqlColumn(Types.VARCHAR, "newest_fullname"),
+				new MysqlColumn(Types.TIMESTAMP, "newest_created_at"),
+				new MysqlColumn(Types.LONGVARCHAR, "detector_state"),
+				new MysqlColumn(Types.TIMESTAMP, "created_at"));
+	}
+	
+	@Override
+	public void save(RedFlagReportCheckpoint a) throws IllegalArgumentException {
+		if(!a.isValid())
+			throw new IllegalArgumentException(a + " is not valid");
+		
+		if(a.newestCreatedAt != null) { a.newestCreatedAt.setNanos(0); }
+		a.createdAt.setNanos(0);
+		
+		runStatement("INSERT INTO " + table + " (report_id, newest_fullname, newest_created_at, detector_state, created_at) "
+				+ "VALUES (?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE newest_fullname=VALUES(newest_fullname), "
+				+ "newest_created_at=VALUES(newest_created_at), detector_state=VALUES(detector_state), "
+				+ "created_at=VALUES(created_at)",
+				new PreparedStatementSetVarsUnsafe(
+						new MysqlTypeValueTuple(Types.INTEGER, a.reportId),
+						new MysqlTypeValueTuple(Types.VARCHAR, a.newestFullname),
+						new MysqlTypeValueTuple(Types.TIMESTAMP, a.newestCreatedAt),
+						new MysqlTypeValueTuple(Types.LONGVARCHAR, a.detectorState),
+						new MysqlTypeValueTuple(Types.TIMESTAMP, a.createdAt)));
+	}
+	
+	@Override
+	public RedFlagReportCheckpoint fetchByReportID(int reportId) {
+		return fetchByAction("SELECT * FROM " + table + " WHERE report_id=?",
+				new PreparedStatementSetVarsUnsafe(new MysqlTypeValueTuple(Types.INTEGER, reportId)),
+				fetchFromSetFunction());
+	}
+	
+	@Override
+	protected RedFlagReportCheckpoint fetchFromSet(ResultSet set) throws SQLException {
+		return new RedFlagReportCheckpoint(set.getInt("report_id"), set.getString("newest_fullname"),
+				set.getTimestamp("newest_created_at"), set.getString("detector_state"), set.getTimestamp("created_at"));
+	}
+	
+	@Override
+	protected void createTable() throws SQLException {
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE " + table + " ("
+				+ "report_id INT NOT NULL, "
+				+ "newest_fullname VARCHAR(50) NULL DEFAULT NULL, "
+				+ "newest_created_at TIMESTAMP NULL DEFAULT NULL, "
+				+ "detector_state TEXT NOT NULL, "
+				+ "created_at TIMESTAMP NOT NULL DEFAULT '1970-01-01 00:00:01', "
+				+ "PRIMARY KEY (report_id), "
+				+ "FOREIGN KEY (report_id) REFERENCES red_flag_reports(id)"
+				+ ")");
+		statement.close();
+	}
+}
@@ -7,7 +7,9 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.ObjIntConsumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -18,6 +20,10 @@ import me.timothy.bots.models.RedFlagUserHistoryLink;
 
 public class MysqlRedFlagUserHistoryLinkMapping extends MysqlObjectWithIDMapping<RedFlagUserHistoryLink> implements RedFlagUserHistoryLinkMapping {
 	private static final Logger logger = LogManager.getLogger();
+	private static final String INSERT_SQL = "INSERT INTO redflag_uhist_links (report_id, user_id, fullname, title, url, self_text, permalink, "
+			+ "subreddit, created_at, edited_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	private static final String UPDATE_SQL = "UPDATE redflag_uhist_links SET report_id=?, user_id=?, fullname=?, title=?, url=?, self_text=?, "
+			+ "permalink=?, subreddit=?, created_at=?, edited_at=? WHERE id=?";
 
 	public MysqlRedFlagUserHistoryLinkMapping(LoansDatabase database, Connection connection) {
 		super(database, connection, "redflag_uhist_links",
@@ -45,24 +51,12 @@ public class MysqlRedFlagUserHistoryLinkMapping extends MysqlObjectWithIDMapping
 		try {
 			PreparedStatement statement;
 			if(a.id < 0) {
-				statement = connection.prepareStatement("INSERT INTO " + table + "(report_id, user_id, fullname, title, url, self_text, permalink, "
-						+ "subreddit, created_at, edited_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+				statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS);
 			}else {
-				statement = connection.prepareStatement("UPDATE " + table + " SET report_id=?, user_id=?, fullname=?, title=?, url=?, self_text=?, "
-						+ "permalink=?, subreddit=?, created_at=?, edited_at=? WHERE id=?");
+				statement = connection.prepareStatement(UPDATE_SQL);
 			}
 			
-			int counter = 1;
-			statement.setInt(counter++, a.reportId);
-			statement.setInt(counter++, a.userId);
-			statement.setString(counter++, a.fullname);
-			statement.setString(counter++, a.title);
-			statement.setString(counter++, a.url);
-			statement.setString(counter++, a.selfText);
-			statement.setString(counter++, a.permalink);
-			statement.setString(counter++, a.subreddit);
-			statement.setTimestamp(counter++, a.createdAt);
-			statement.setTimestamp(counter++, a.editedAt);
+			int counter = setFields(statement, a);
 
 			if (a.id > 0) {
 				statement.setInt(counter++, a.id);
@@ -86,7 +80,68 @@ public class MysqlRedFlagUserHistoryLinkMapping extends MysqlObjectWithIDMapping
 			throw new RuntimeException(e);
 		}
 	}
+
+	@Override
+	public void saveAll(List<RedFlagUserHistoryLink> links) throws IllegalArgumentException {
+		for(RedFlagUserHistoryLink a : links) {
+			if(!a.isValid())
+				throw new IllegalArgumentException(a + " is not valid!");
+			
+			if(a.createdAt != null) { a.createdAt.setNanos(0); }
+			if(a.editedAt != null) { a.editedAt.setNanos(0); }
+		}
+		
+		saveAllBatched(links, INSERT_SQL, UPDATE_SQL, (a) -> a.id, (a, id) -> a.id = id, this::setFields);
+	}
+	
+	/**
+	 * Sets every field except the id, starting at the first parameter
+	 * 
+	 * @param statement the insert or update statement
+	 * @param a the link
+	 * @return the index of the next parameter
+	 * @throws SQLException if one occurs
+	 */
+	private int setFields(PreparedStatement statement, RedFlagUserHistoryLink a) throws SQLException {
+		int counter = 1;
+		statement.setInt(counter++, a.reportId);
+		statement.setInt(counter++, a.userId);
+		statement.setString(counter++, a.fullname);
+		statement.setString(counter++, a.title);
+		statement.setString(counter++, a.url);
+		statement.setString(counter++, a.selfText);
+		statement.setString(counter++, a.permalink);
+		statement.setString(counter++, a.subreddit);
+		statement.setTimestamp(counter++, a.createdAt);
+		statement.setTimestamp(counter++, a.editedAt);
+		return counter;
+	}
 	
+	@Override
+	public List<RedFlagUserHistoryLink> fetchByIDs(int... ids) {
+		if(ids.length == 0)
+			return new ArrayList<>();
+		
+		return fetchByAction("SELECT * FROM " + table + " WHERE id IN (" + createPlaceholders(ids.length) + ")", 
+				(statement) -> {
+					for(int i = 0; i < ids.length; i++) {
+						statement.setInt(i + 1, ids[i]);
+					}
+				}, fetchListFromSetFunction());
+	}
+	
+	@Override
+	public void fetchIdsAndCreatedAtByReport(int reportId, ObjIntConsumer<Timestamp> consumer) {
+		fetchByAction("SELECT id, created_at FROM " + table + " WHERE report_id=?", 
+				new PreparedStatementSetVarsUnsafe(new MysqlTypeValueTuple(Types.INTEGER, reportId)), 
+				(set) -> {
+					while(set.next()) {
+						consumer.accept(set.getTimestamp(2), set.getInt(1));
+					}
+					return null;
+				});
+	}
+
 	@Override
 	public void deleteByReportID(int reportId) {
 		runStatement("DELETE FROM " + table + " WHERE report_id=?", new PreparedStatementSetVarsUnsafe(new MysqlTypeValueTuple(Types.INTEGER, reportId)));
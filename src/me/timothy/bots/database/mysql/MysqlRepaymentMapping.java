@@ -7,6 +7,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
@@ -18,6 +19,10 @@ import me.timothy.bots.models.Repayment;
 
 public class MysqlRepaymentMapping extends MysqlObjectMapping<Repayment> implements RepaymentMapping {
 	private static final Logger logger = LogManager.getLogger();
+	private static final String INSERT_SQL = "INSERT INTO repayments (loan_id, amount_cents, "
+			+ "created_at, updated_at) VALUES (?, ?, ?, ?)";
+	private static final String UPDATE_SQL = "UPDATE repayments SET loan_id=?, amount_cents=?, "
+			+ "created_at=?, updated_at=? WHERE id=?";
 	
 	public MysqlRepaymentMapping(LoansDatabase database, Connection connection) {
 		super(database, connection, "repayments",
@@ -30,49 +35,53 @@ public class MysqlRepaymentMapping extends MysqlObjectMapping<Repayment> impleme
 
 	@Override
 	public void save(Repayment a) throws IllegalArgumentException {
-		if(!a.isValid())
-			throw new IllegalArgumentException(a + " is not valid");
-		
-		if(a.createdAt != null) { a.createdAt.setNanos(0); }
-		if(a.updatedAt != null) { a.updatedAt.setNanos(0); }
-		
-		try {
-			PreparedStatement statement;
-			if(a.id > 0) {
-				statement = connection.prepareStatement("UPDATE repayments SET loan_id=?, amount_cents=?, "
-						+ "created_at=?, updated_at=? WHERE id=?");
-			}else {
-				statement = connection.prepareStatement("INSERT INTO repayments (loan_id, amount_cents, "
-						+ "created_at, updated_at) VALUES (?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
-			}
+		saveAll(Collections.singletonList(a));
+	}
+	
+	@Override
+	public void saveAll(List<Repayment> repayments) throws IllegalArgumentException {
+		List<Repayment> inserts = new ArrayList<>();
+		List<Repayment> updates = new ArrayList<>();
+		for(Repayment a : repayments) {
+			if(!a.isValid())
+				throw new IllegalArgumentException(a + " is not valid");
 			
-			int counter = 1;
-			statement.setInt(counter++, a.loanId);	
-			statement.setInt(counter++, a.amountCents);
-			statement.setTimestamp(counter++, a.createdAt);
-			statement.setTimestamp(counter++, a.updatedAt);
+			if(a.createdAt != null) { a.createdAt.setNanos(0); }
+			if(a.updatedAt != null) { a.updatedAt.setNanos(0); }
 			
 			if(a.id > 0) {
-				statement.setInt(counter++, a.id);
-				statement.execute();
+				updates.add(a);
 			}else {
-				statement.execute();
-				
-				ResultSet keys = statement.getGeneratedKeys();
-				if(keys.next()) {
-					a.id = keys.getInt(1);
-				}else {
-					keys.close();
-					statement.close();
-					throw new RuntimeException("Expected generated keys from repayments but didn't get any!");
-				}
-				keys.close();
+				inserts.add(a);
 			}
-			statement.close();
-		}catch(SQLException e) {
-			logger.throwing(e);
-			throw new RuntimeException(e);
 		}
+		
+		database.inTransaction((db) -> {
+			saveAllBatched(repayments, INSERT_SQL, UPDATE_SQL, (a) -> a.id, (a, id) -> a.id = id, this::setFields);
+		
+			db.getUserLoanStatsMapping().applyNewRepayments(inserts);
+			if(!updates.isEmpty()) {
+				// repayments are never changed in place by the bot, so this repair is rare
+				db.getUserLoanStatsMapping().refreshForLoans(updates.stream().mapToInt(repayment -> repayment.loanId).toArray());
+			}
+		});
+	}
+	
+	/**
+	 * Sets every field except the id, starting at the first parameter
+	 * 
+	 * @param statement the insert or update statement
+	 * @param a the repayment
+	 * @return the index of the next parameter
+	 * @throws SQLException if one occurs
+	 */
+	private int setFields(PreparedStatement statement, Repayment a) throws SQLException {
+		int counter = 1;
+		statement.setInt(counter++, a.loanId);	
+		statement.setInt(counter++, a.amountCents);
+		statement.setTimestamp(counter++, a.createdAt);
+		statement.setTimestamp(counter++, a.updatedAt);
+		return counter;
 	}
 
 	@Override
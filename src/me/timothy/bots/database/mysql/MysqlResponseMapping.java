@@ -5,6 +5,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
 import java.util.List;
@@ -27,7 +28,7 @@ public class MysqlResponseMapping extends MysqlObjectMapping<Response> implement
 				new MysqlColumn(Types.TIMESTAMP, "created_at"),
 				new MysqlColumn(Types.TIMESTAMP, "updated_at"));
 	}
-
+	
 	@Override
 	public void save(Response a) throws IllegalArgumentException {
 		if(!a.isValid())
@@ -75,7 +76,7 @@ public class MysqlResponseMapping extends MysqlObjectMapping<Response> implement
 			throw new RuntimeException(e);
 		}
 	}
-
+	
 	@Override
 	public Response fetchByName(String name) {
 		try {
@@ -96,7 +97,47 @@ public class MysqlResponseMapping extends MysqlObjectMapping<Response> implement
 			throw new RuntimeException(e);
 		}
 	}
-
+	
+	@Override
+	public Timestamp fetchMaxUpdatedAt() {
+		try {
+			PreparedStatement statement = connection.prepareStatement("SELECT MAX(updated_at) FROM responses");
+			
+			ResultSet results = statement.executeQuery();
+			Timestamp maxUpdatedAt = null;
+			if(results.next()) {
+				maxUpdatedAt = results.getTimestamp(1);
+			}
+			results.close();
+			
+			statement.close();
+			return maxUpdatedAt;
+		}catch(SQLException e) {
+			logger.throwing(e);
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	public int fetchCount() {
+		try {
+			PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM responses");
+			
+			ResultSet results = statement.executeQuery();
+			int count = 0;
+			if(results.next()) {
+				count = results.getInt(1);
+			}
+			results.close();
+			
+			statement.close();
+			return count;
+		}catch(SQLException e) {
+			logger.throwing(e);
+			throw new RuntimeException(e);
+		}
+	}
+	
 	@Override
 	public List<Response> fetchAll() {
 		try {
@@ -116,7 +157,7 @@ public class MysqlResponseMapping extends MysqlObjectMapping<Response> implement
 			throw new RuntimeException(e);
 		}
 	}
-
+	
 	/**
 	 * Fetches the response in the current row of the result set
 	 * @param results the result set
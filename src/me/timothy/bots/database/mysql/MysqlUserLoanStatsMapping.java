@@ -0,0 +1,443 @@
+package me.timothy.bots.database.mysql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import me.timothy.bots.LoansDatabase;
+import me.timothy.bots.database.UserLoanStatsMapping;
+import me.timothy.bots.models.Loan;
+import me.timothy.bots.models.Repayment;
+import me.timothy.bots.models.UserLoanStats;
+
+public class MysqlUserLoanStatsMapping extends MysqlObjectMapping<UserLoanStats> implements UserLoanStatsMapping {
+	private static final Logger logger = LogManager.getLogger();
+	private static final String UPSERT_SQL = "INSERT INTO user_loan_stats (user_id, loans_as_lender, "
+			+ "completed_as_lender, loans_as_borrower, outstanding_as_borrower, earliest_repaid_at) "
+			+ "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE loans_as_lender=VALUES(loans_as_lender), "
+			+ "completed_as_lender=VALUES(completed_as_lender), loans_as_borrower=VALUES(loans_as_borrower), "
+			+ "outstanding_as_borrower=VALUES(outstanding_as_borrower), earliest_repaid_at=VALUES(earliest_repaid_at)";
+	/** Recomputes the summary for each user in the IN list which follows; uses the lender and borrower indexes on loans */
+	private static final String REFRESH_SQL = "INSERT INTO user_loan_stats (user_id, loans_as_lender, "
+			+ "completed_as_lender, loans_as_borrower, outstanding_as_borrower, earliest_repaid_at) "
+			+ "SELECT users.id, "
+			+ "(SELECT COUNT(*) FROM loans WHERE loans.lender_id=users.id AND loans.deleted=0), "
+			+ "(SELECT COUNT(*) FROM loans WHERE loans.lender_id=users.id AND loans.deleted=0 "
+			+ "AND loans.principal_cents=loans.principal_repayment_cents), "
+			+ "(SELECT COUNT(*) FROM loans WHERE loans.borrower_id=users.id AND loans.deleted=0), "
+			+ "(SELECT COUNT(*) FROM loans WHERE loans.borrower_id=users.id AND loans.deleted=0 AND loans.unpaid=0 "
+			+ "AND loans.principal_repayment_cents<loans.principal_cents), "
+			+ "(SELECT MIN(repayments.created_at) FROM loans JOIN repayments ON loans.id=repayments.loan_id "
+			+ "WHERE loans.lender_id=users.id AND loans.deleted=0 AND loans.principal_cents=loans.principal_repayment_cents) "
+			+ "FROM users WHERE users.id IN (%s) ON DUPLICATE KEY UPDATE loans_as_lender=VALUES(loans_as_lender), "
+			+ "completed_as_lender=VALUES(completed_as_lender), loans_as_borrower=VALUES(loans_as_borrower), "
+			+ "outstanding_as_borrower=VALUES(outstanding_as_borrower), earliest_repaid_at=VALUES(earliest_repaid_at)";
+	/** Adds the given counts to a users summary, creating it if necessary */
+	private static final String ADD_SQL = "INSERT INTO user_loan_stats (user_id, loans_as_lender, "
+			+ "completed_as_lender, loans_as_borrower, outstanding_as_borrower) VALUES (?, ?, ?, ?, ?) "
+			+ "ON DUPLICATE KEY UPDATE loans_as_lender=loans_as_lender+VALUES(loans_as_lender), "
+			+ "completed_as_lender=completed_as_lender+VALUES(completed_as_lender), "
+			+ "loans_as_borrower=loans_as_borrower+VALUES(loans_as_borrower), "
+			+ "outstanding_as_borrower=outstanding_as_borrower+VALUES(outstanding_as_borrower)";
+	/** Moves a users earliest repayment back to the given time if it is earlier */
+	private static final String EARLIER_REPAID_SQL = "UPDATE user_loan_stats SET "
+			+ "earliest_repaid_at=LEAST(COALESCE(earliest_repaid_at, ?), ?) WHERE user_id=?";
+	/** Moves the earliest repayment of a loans lender back to the given time if it is earlier and the loan is repaid in full */
+	private static final String EARLIER_REPAID_FOR_LOAN_SQL = "UPDATE user_loan_stats JOIN loans ON loans.lender_id=user_loan_stats.user_id "
+			+ "SET user_loan_stats.earliest_repaid_at=LEAST(COALESCE(user_loan_stats.earliest_repaid_at, ?), ?) "
+			+ "WHERE loans.id=? AND loans.deleted=0 AND loans.principal_cents=loans.principal_repayment_cents";
+	/** Recomputes just the earliest repayment of each user in the IN list which follows */
+	private static final String RECOMPUTE_EARLIEST_REPAID_SQL = "UPDATE user_loan_stats SET earliest_repaid_at="
+			+ "(SELECT MIN(repayments.created_at) FROM loans JOIN repayments ON loans.id=repayments.loan_id "
+			+ "WHERE loans.lender_id=user_loan_stats.user_id AND loans.deleted=0 "
+			+ "AND loans.principal_cents=loans.principal_repayment_cents) WHERE user_id IN (%s)";
+	/** How many summaries are sent to the database at once while rebuilding */
+	private static final int REBUILD_BATCH_SIZE = 1000;
+	
+	public MysqlUserLoanStatsMapping(LoansDatabase database, Connection connection) {
+		super(database, connection, "user_loan_stats",
+				new MysqlColumn(Types.INTEGER, "user_id"),
+				new MysqlColumn(Types.INTEGER, "loans_as_lender"),
+				new MysqlColumn(Types.INTEGER, "completed_as_lender"),
+				new MysqlColumn(Types.INTEGER, "loans_as_borrower"),
+				new MysqlColumn(Types.INTEGER, "outstanding_as_borrower"),
+				new MysqlColumn(Types.TIMESTAMP, "earliest_repaid_at"),
+				new MysqlColumn(Types.TIMESTAMP, "updated_at"));
+	}
+	
+	@Override
+	public void save(UserLoanStats a) throws IllegalArgumentException {
+		if(!a.isValid())
+			throw new IllegalArgumentException(a + " is not valid");
+		
+		if(a.earliestRepaidAt != null) { a.earliestRepaidAt.setNanos(0); }
+		
+		try {
+			PreparedStatement statement = connection.prepareStatement(UPSERT_SQL);
+			setFields(statement, a);
+			statement.execute();
+			statement.close();
+		}catch(SQLException ex) {
+			logger.throwing(ex);
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	@Override
+	public UserLoanStats fetchByUserId(int userId) {
+		UserLoanStats result = fetchByAction("SELECT * FROM user_loan_stats WHERE user_id=?",
+				new PreparedStatementSetVarsUnsafe(new MysqlTypeValueTuple(Types.INTEGER, userId)),
+				fetchFromSetFunction());
+		if(result == null)
+			return new UserLoanStats(userId);
+		return result;
+	}
+	
+	@Override
+	public void applyLoanChanges(Map<Integer, Loan> before, List<Loan> after) {
+		Map<Integer, int[]> deltas = new HashMap<>();
+		List<Loan> newlyCompleted = new ArrayList<>();
+		Set<Integer> lostCompleted = new HashSet<>();
+		for(Loan a : after) {
+			Loan old = before.get(a.id);
+			if(old != null) {
+				addCounts(deltas, old, -1);
+			}
+			addCounts(deltas, a, 1);
+			
+			boolean wasCompleted = old != null && isCompleted(old);
+			boolean sameLender = old != null && old.lenderId == a.lenderId;
+			if(isCompleted(a) && !(wasCompleted && sameLender)) {
+				newlyCompleted.add(a);
+			}
+			if(wasCompleted && !(isCompleted(a) && sameLender)) {
+				// the earliest repayment can only move forward, which needs the other loans
+				lostCompleted.add(old.lenderId);
+			}
+		}
+		
+		try {
+			PreparedStatement statement = connection.prepareStatement(ADD_SQL);
+			boolean any = false;
+			for(Map.Entry<Integer, int[]> delta : deltas.entrySet()) {
+				int[] counts = delta.getValue();
+				if(counts[0] == 0 && counts[1] == 0 && counts[2] == 0 && counts[3] == 0)
+					continue;
+				
+				int counter = 1;
+				statement.setInt(counter++, delta.getKey());
+				for(int count : counts) {
+					statement.setInt(counter++, count);
+				}
+				statement.addBatch();
+				any = true;
+			}
+			if(any) {
+				statement.executeBatch();
+			}
+			statement.close();
+			
+			if(!newlyCompleted.isEmpty()) {
+				Map<Integer, Timestamp> earliestByLoan = fetchEarliestRepayments(newlyCompleted);
+				statement = connection.prepareStatement(EARLIER_REPAID_SQL);
+				any = false;
+				for(Loan a : newlyCompleted) {
+					Timestamp earliest = earliestByLoan.get(a.id);
+					if(earliest == null || lostCompleted.contains(a.lenderId))
+						continue;
+					
+					statement.setTimestamp(1, earliest);
+					statement.setTimestamp(2, earliest);
+					statement.setInt(3, a.lenderId);
+					statement.addBatch();
+					any = true;
+				}
+				if(any) {
+					statement.executeBatch();
+				}
+				statement.close();
+			}
+		}catch(SQLException ex) {
+			logger.throwing(ex);
+			throw new RuntimeException(ex);
+		}
+		
+		if(!lostCompleted.isEmpty()) {
+			final int[] lenderIds = lostCompleted.stream().mapToInt(Integer::intValue).toArray();
+			runStatement(String.format(RECOMPUTE_EARLIEST_REPAID_SQL, createPlaceholders(lenderIds.length)),
+					(statement) -> {
+						for(int i = 0; i < lenderIds.length; i++) {
+							statement.setInt(i + 1, lenderIds[i]);
+						}
+					});
+		}
+	}
+	
+	@Override
+	public void applyNewRepayments(List<Repayment> repayments) {
+		if(repayments.isEmpty())
+			return;
+		
+		try {
+			PreparedStatement statement = connection.prepareStatement(EARLIER_REPAID_FOR_LOAN_SQL);
+			for(Repayment a : repayments) {
+				statement.setTimestamp(1, a.createdAt);
+				statement.setTimestamp(2, a.createdAt);
+				statement.setInt(3, a.loanId);
+				statement.addBatch();
+			}
+			statement.executeBatch();
+			statement.close();
+		}catch(SQLException ex) {
+			logger.throwing(ex);
+			throw new RuntimeException(ex);
+		}
+	}
+	
+	/**
+	 * Adds how the loan is counted in the summaries of its lender and borrower,
+	 * times sign, to the deltas. The deltas are in the same order as the counts
+	 * in {@link #ADD_SQL}.
+	 * 
+	 * @param deltas the deltas so far by user id
+	 * @param loan the loan
+	 * @param sign 1 to count the loan, -1 to uncount it
+	 */
+	private static void addCounts(Map<Integer, int[]> deltas, Loan loan, int sign) {
+		if(loan.deleted)
+			return;
+		
+		int[] lender = deltas.computeIfAbsent(loan.lenderId, (id) -> new int[4]);
+		lender[0] += sign;
+		if(loan.principalCents == loan.principalRepaymentCents) {
+			lender[1] += sign;
+		}
+		
+		int[] borrower = deltas.computeIfAbsent(loan.borrowerId, (id) -> new int[4]);
+		borrower[2] += sign;
+		if(!loan.unpaid && loan.principalRepaymentCents < loan.principalCents) {
+			borrower[3] += sign;
+		}
+	}
+	
+	private static boolean isCompleted(Loan loan) {
+		return !loan.deleted && loan.principalCents == loan.principalRepaymentCents;
+	}
+	
+	/**
+	 * Fetches the earliest repayment on each of the given loans
+	 * 
+	 * @param loans the loans
+	 * @return the earliest repayment by loan id; loans without repayments are missing
+	 */
+	private Map<Integer, Timestamp> fetchEarliestRepayments(List<Loan> loans) {
+		return fetchByAction("SELECT loan_id, MIN(created_at) FROM repayments WHERE loan_id IN ("
+				+ createPlaceholders(loans.size()) + ") GROUP BY loan_id",
+				(statement) -> {
+					for(int i = 0; i < loans.size(); i++) {
+						statement.setInt(i + 1, loans.get(i).id);
+					}
+				},
+				(set) -> {
+					Map<Integer, Timestamp> result = new HashMap<>();
+					while(set.next()) {
+						result.put(set.getInt(1), set.getTimestamp(2));
+					}
+					return result;
+				});
+	}
+	
+	@Override
+	public void refresh(int... userIds) {
+		final int[] distinct = IntStream.of(userIds).filter(id -> id > 0).distinct().toArray();
+		if(distinct.length == 0)
+			return;
+		
+		runStatement(String.format(REFRESH_SQL, createPlaceholders(distinct.length)),
+				(statement) -> {
+					for(int i = 0; i < distinct.length; i++) {
+						statement.setInt(i + 1, distinct[i]);
+					}
+				});
+	}
+	
+	@Override
+	public void refreshForLoans(int... loanIds) {
+		final int[] distinct = IntStream.of(loanIds).filter(id -> id > 0).distinct().toArray();
+		if(distinct.length == 0)
+			return;
+		
+		int[] userIds = fetchByAction("SELECT lender_id, borrower_id FROM loans WHERE id IN (" + createPlaceholders(distinct.length) + ")",
+				(statement) -> {
+					for(int i = 0; i < distinct.length; i++) {
+						statement.setInt(i + 1, distinct[i]);
+					}
+				},
+				(set) -> {
+					IntStream.Builder ids = IntStream.builder();
+					while(set.next()) {
+						ids.add(set.getInt(1));
+						ids.add(set.getInt(2));
+					}
+					return ids.build().toArray();
+				});
+		refresh(userIds);
+	}
+	
+	@Override
+	public void rebuild() {
+		Map<Integer, UserLoanStats> stats = new HashMap<>();
+		
+		try {
+			PreparedStatement statement = connection.prepareStatement(
+					"SELECT lender_id, borrower_id, principal_cents, principal_repayment_cents, unpaid FROM loans WHERE deleted=0",
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			// streams rows one at a time instead of loading the whole table
+			statement.setFetchSize(Integer.MIN_VALUE);
+			ResultSet results = statement.executeQuery();
+			while(results.next()) {
+				int lenderId = results.getInt(1);
+				int borrowerId = results.getInt(2);
+				int principal = results.getInt(3);
+				int principalRepayment = results.getInt(4);
+				boolean unpaid = results.getBoolean(5);
+				
+				UserLoanStats lender = stats.computeIfAbsent(lenderId, UserLoanStats::new);
+				lender.loansAsLender++;
+				if(principal == principalRepayment) {
+					lender.completedAsLender++;
+				}
+				
+				UserLoanStats borrower = stats.computeIfAbsent(borrowerId, UserLoanStats::new);
+				borrower.loansAsBorrower++;
+				if(!unpaid && principalRepayment < principal) {
+					borrower.outstandingAsBorrower++;
+				}
+			}
+			results.close();
+			statement.close();
+			
+			statement = connection.prepareStatement("SELECT loans.lender_id, MIN(repayments.created_at) FROM loans "
+					+ "JOIN repayments ON loans.id=repayments.loan_id WHERE loans.deleted=0 "
+					+ "AND loans.principal_cents=loans.principal_repayment_cents GROUP BY loans.lender_id");
+			results = statement.executeQuery();
+			while(results.next()) {
+				UserLoanStats lender = stats.get(results.getInt(1));
+				if(lender != null) {
+					lender.earliestRepaidAt = results.getTimestamp(2);
+				}
+			}
+			results.close();
+			statement.close();
+			
+			runStatement("DELETE FROM user_loan_stats", null);
+			
+			statement = connection.prepareStatement(UPSERT_SQL);
+			int pending = 0;
+			for(UserLoanStats a : stats.values()) {
+				setFields(statement, a);
+				statement.addBatch();
+				if(++pending == REBUILD_BATCH_SIZE) {
+					statement.executeBatch();
+					pending = 0;
+				}
+			}
+			if(pending > 0) {
+				statement.executeBatch();
+			}
+			statement.close();
+		}catch(SQLException ex) {
+			logger.throwing(ex);
+			throw new RuntimeException(ex);
+		}
+		
+		logger.info("Rebuilt the loan stats of " + stats.size() + " users");
+	}
+	
+	@Override
+	public List<UserLoanStats> fetchVettingCandidates(int minCompletedAsLender, int minLoansAsLender,
+			Timestamp earliestRepaidBefore, int limit) {
+		return fetchByAction("SELECT * FROM user_loan_stats WHERE completed_as_lender>=? AND loans_as_lender>=? "
+				+ "AND (earliest_repaid_at IS NULL OR earliest_repaid_at<?) "
+				+ "AND NOT EXISTS (SELECT 1 FROM lenders_camp_contributors WHERE lenders_camp_contributors.user_id=user_loan_stats.user_id) "
+				+ "AND (NOT EXISTS (SELECT 1 FROM promo_blacklist_users WHERE promo_blacklist_users.user_id=user_loan_stats.user_id) "
+				+ "OR EXISTS (SELECT 1 FROM delayed_vetting_requests WHERE delayed_vetting_requests.user_id=user_loan_stats.user_id "
+				+ "AND delayed_vetting_requests.rerequested_at IS NULL "
+				+ "AND delayed_vetting_requests.number_loans<=user_loan_stats.loans_as_lender)) "
+				+ "ORDER BY user_id ASC LIMIT ?", 
+				new PreparedStatementSetVarsUnsafe(
+						new MysqlTypeValueTuple(Types.INTEGER, minCompletedAsLender),
+						new MysqlTypeValueTuple(Types.INTEGER, minLoansAsLender),
+						new MysqlTypeValueTuple(Types.TIMESTAMP, earliestRepaidBefore),
+						new MysqlTypeValueTuple(Types.INTEGER, limit)), 
+				fetchListFromSetFunction());
+	}
+	
+	@Override
+	public List<UserLoanStats> fetchAll() {
+		return fetchByAction("SELECT * FROM user_loan_stats", null, fetchListFromSetFunction());
+	}
+	
+	/**
+	 * Sets every field except updated at, starting at the first parameter
+	 * 
+	 * @param statement the upsert statement
+	 * @param a the summary
+	 * @return the index of the next parameter
+	 * @throws SQLException if one occurs
+	 */
+	private int setFields(PreparedStatement statement, UserLoanStats a) throws SQLException {
+		int counter = 1;
+		statement.setInt(counter++, a.userId);
+		statement.setInt(counter++, a.loansAsLender);
+		statement.setInt(counter++, a.completedAsLender);
+		statement.setInt(counter++, a.loansAsBorrower);
+		statement.setInt(counter++, a.outstandingAsBorrower);
+		statement.setTimestamp(counter++, a.earliestRepaidAt);
+		return counter;
+	}
+	
+	@Override
+	protected UserLoanStats fetchFromSet(ResultSet set) throws SQLException {
+		return new UserLoanStats(set.getInt("user_id"), set.getInt("loans_as_lender"), set.getInt("completed_as_lender"),
+				set.getInt("loans_as_borrower"), set.getInt("outstanding_as_borrower"),
+				set.getTimestamp("earliest_repaid_at"), set.getTimestamp("updated_at"));
+	}
+	
+	/**
+	 * Creates the table and fills it from the loans already in the database
+	 */
+	@Override
+	protected void createTable() throws SQLException {
+		Statement statement = connection.createStatement();
+		statement.execute("CREATE TABLE user_loan_stats ("
+				+ "user_id INT NOT NULL, "
+				+ "loans_as_lender INT NOT NULL DEFAULT 0, "
+				+ "completed_as_lender INT NOT NULL DEFAULT 0, "
+				+ "loans_as_borrower INT NOT NULL DEFAULT 0, "
+				+ "outstanding_as_borrower INT NOT NULL DEFAULT 0, "
+				+ "earliest_repaid_at TIMESTAMP NULL DEFAULT NULL, "
+				+ "updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP, "
+				+ "PRIMARY KEY (user_id), "
+				+ "INDEX ind_uls_completed (completed_as_lender), "
+				+ "FOREIGN KEY (user_id) REFERENCES users(id)"
+				+ ")");
+		statement.close();
+		
+		rebuild();
+	}
+}
@@ -122,6 +122,32 @@ public class MysqlUserMapping extends MysqlObjectMapping<User> implements UserMa
 		}
 	}
 
+	@Override
+	public List<User> fetchManyByIds(int... ids) {
+		if(ids.length == 0)
+			return new ArrayList<>();
+		
+		try {
+			PreparedStatement statement = connection.prepareStatement("SELECT * FROM users WHERE id IN (" + createPlaceholders(ids.length) + ")");
+			int counter = 1;
+			for(int id : ids) {
+				statement.setInt(counter++, id);
+			}
+			
+			ResultSet results = statement.executeQuery();
+			List<User> users = new ArrayList<>();
+			while(results.next()) {
+				users.add(fetchFromSet(results));
+			}
+			results.close();
+			statement.close();
+			return users;
+		}catch(SQLException ex) {
+			logger.throwing(ex);
+			throw new RuntimeException(ex);
+		}
+	}
+
 	@Override
 	public User fetchOrCreateByName(String usernameStr) {
 		Username username = database.getUsernameMapping().fetchByUsername(usernameStr);
@@ -37,7 +37,7 @@ public class MysqlUsernameMapping extends MysqlObjectMapping<Username> implement
 		
 		try {
 			PreparedStatement statement;
-			if(a.id > 1) {
+			if(a.id > 0) {
 				statement = connection.prepareStatement("UPDATE usernames SET user_id=?, username=?, created_at=?, updated_at=? WHERE id=?");
 			}else {
 				statement = connection.prepareStatement("INSERT INTO usernames (user_id, username, created_at, updated_at) VALUES (?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
@@ -49,7 +49,7 @@ public class MysqlUsernameMapping extends MysqlObjectMapping<Username> implement
 			statement.setTimestamp(counter++, a.createdAt);
 			statement.setTimestamp(counter++, a.updatedAt);
 			
-			if(a.id > 1) {
+			if(a.id > 0) {
 				statement.setInt(counter++, a.id);
 				statement.execute();
 			}else {
@@ -114,6 +114,33 @@ public class MysqlUsernameMapping extends MysqlObjectMapping<Username> implement
 		}
 	}
 
+	@Override
+	public List<Username> fetchByUserIds(int... userIds) {
+		if(userIds.length == 0)
+			return new ArrayList<>();
+		
+		try {
+			PreparedStatement statement = connection.prepareStatement("SELECT * FROM usernames WHERE user_id IN (" + createPlaceholders(userIds.length) + ")");
+			int counter = 1;
+			for(int userId : userIds) {
+				statement.setInt(counter++, userId);
+			}
+			
+			ResultSet results = statement.executeQuery();
+			List<Username> usernames = new ArrayList<>();
+			while(results.next()) {
+				usernames.add(fetchFromSet(results));
+			}
+			results.close();
+			
+			statement.close();
+			return usernames;
+		}catch(SQLException ex) {
+			logger.throwing(ex);
+			throw new RuntimeException(ex);
+		}
+	}
+
 	@Override
 	public Username fetchByUsername(String usernameStr) {
 		try {
@@ -4,7 +4,10 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.function.Supplier;
 
 import me.timothy.bots.LoansBotUtils;
 
@@ -28,17 +31,37 @@ public class Diagnostics {
 	private long timeMSLast;
 	
 	private long memoryFreeLast;
+	
+	private List<String> reporterNames;
+	private List<Supplier<String>> reporters;
+	
+	private MetricsRegistry metrics;
 	/**
 	 * Initializes the diagnostics to append
-	 * to the specified file.
+	 * to the specified file, reporting the
+	 * default metrics registry.
 	 * 
 	 * @param file the file to append to
 	 */
 	public Diagnostics(File file) {
+		this(file, MetricsRegistry.getDefault());
+	}
+	
+	/**
+	 * Initializes the diagnostics to append
+	 * to the specified file.
+	 * 
+	 * @param file the file to append to
+	 * @param metrics the metrics to report on every tick
+	 */
+	public Diagnostics(File file, MetricsRegistry metrics) {
 		logger = LogManager.getLogger();
 		logFile = file;
+		this.metrics = metrics;
 		
 		dateFormatter = DateFormat.getDateTimeInstance();
+		reporterNames = new ArrayList<>();
+		reporters = new ArrayList<>();
 		
 		firstCreated = System.currentTimeMillis();
 		onInitialize();
@@ -76,9 +99,22 @@ public class Diagnostics {
 		}
 	}
 	
+	/**
+	 * Adds a reporter which is asked for a one-line description of some
+	 * component (such as a cache) on every tick
+	 * 
+	 * @param name the name to prefix the description with
+	 * @param reporter supplies the description
+	 */
+	public void addReporter(String name, Supplier<String> reporter) {
+		reporterNames.add(name);
+		reporters.add(reporter);
+	}
+	
 	/**
 	 * Dumps diagnostics to file and potentially gives
-	 * memory warnings;
+	 * memory warnings; the latency percentiles are
+	 * of the time since the last tick.
 	 */
 	public void diagnose() {
 		Runtime runtime = Runtime.getRuntime();
@@ -101,6 +137,13 @@ public class Diagnostics {
 					"Free memory: %d (%f%% utilization) (diff from las (pos is bad): %d)\n" +
 					"Max Memory: %d\n",
 					elapsedTimeFormatted, uptimeFormatted, freeMemory, percFreeMemory, freeMemDiffFromLast, maxMemory));
+			for(int i = 0; i < reporters.size(); i++) {
+				fw.append(reporterNames.get(i)).append(": ").append(reporters.get(i).get()).append("\n");
+			}
+			fw.append("Metrics:\n");
+			for(String line : metrics.report()) {
+				fw.append("  ").append(line).append("\n");
+			}
 		}catch(IOException ex) {
 			throw new RuntimeException(ex);
 		}
@@ -0,0 +1,182 @@
+package me.timothy.bots.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long something takes in a fixed set of log-linear buckets, in
+ * the style of an HDR histogram. Each power of two is split into 16 equal
+ * buckets, so any recorded duration is known to within about 6%, and the
+ * whole range of a long takes under 1000 buckets. Recording never allocates
+ * or locks, so it is cheap enough for every sql statement and reddit request.
+ * 
+ * The histogram counts since the last {@link #snapshot() snapshot}, so each
+ * diagnostics tick reports the percentiles of just that tick.
+ * 
+ * @author Timothy
+ */
+public class LatencyHistogram {
+	/**
+	 * How many bits of each value are kept exactly; 2^4 = 16 buckets per power of two
+	 */
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	
+	private final AtomicLongArray counts;
+	private final LongAdder sum;
+	private final AtomicLong max;
+	private final LongAdder total;
+	
+	/**
+	 * Creates an empty histogram
+	 */
+	public LatencyHistogram() {
+		counts = new AtomicLongArray(NUM_BUCKETS);
+		sum = new LongAdder();
+		max = new AtomicLong();
+		total = new LongAdder();
+	}
+	
+	/**
+	 * Records a single duration
+	 * 
+	 * @param nanos the duration in nanoseconds; negative durations are treated as 0
+	 */
+	public void record(long nanos) {
+		if(nanos < 0)
+			nanos = 0;
+		
+		counts.incrementAndGet(bucketOf(nanos));
+		sum.add(nanos);
+		total.increment();
+		
+		long current = max.get();
+		while(nanos > current && !max.compareAndSet(current, nanos)) {
+			current = max.get();
+		}
+	}
+	
+	/**
+	 * @return how many durations have been recorded since this histogram was created
+	 */
+	public long getTotalCount() {
+		return total.sum();
+	}
+	
+	/**
+	 * Takes the counts recorded since the last snapshot and starts counting
+	 * again. Durations recorded while the snapshot is taken end up in either
+	 * this snapshot or the next one, never both.
+	 * 
+	 * @return the durations recorded since the last snapshot
+	 */
+	public Snapshot snapshot() {
+		long[] snapshotCounts = new long[NUM_BUCKETS];
+		long count = 0;
+		for(int i = 0; i < NUM_BUCKETS; i++) {
+			snapshotCounts[i] = counts.getAndSet(i, 0);
+			count += snapshotCounts[i];
+		}
+		return new Snapshot(snapshotCounts, count, sum.sumThenReset(), max.getAndSet(0));
+	}
+	
+	/**
+	 * Determines which bucket a value goes in. Values below 16 get a bucket
+	 * each; above that the bucket is the position of the highest bit and the
+	 * 4 bits after it.
+	 * 
+	 * @param value the non-negative value
+	 * @return the index of its bucket
+	 */
+	static int bucketOf(long value) {
+		if(value < SUB_BUCKETS)
+			return (int) value;
+		
+		int highestBit = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	/**
+	 * @param bucket the index of a bucket
+	 * @return the smallest value which goes in that bucket
+	 */
+	static long lowestValueOf(int bucket) {
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		
+		int highestBit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return (SUB_BUCKETS + subBucket) << (highestBit - SUB_BUCKET_BITS);
+	}
+	
+	/**
+	 * The durations recorded by a histogram between two snapshots
+	 * 
+	 * @author Timothy
+	 */
+	public static class Snapshot {
+		private final long[] counts;
+		private final long count;
+		private final long sum;
+		private final long max;
+		
+		private Snapshot(long[] counts, long count, long sum, long max) {
+			this.counts = counts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+		
+		/**
+		 * @return how many durations were recorded
+		 */
+		public long getCount() {
+			return count;
+		}
+		
+		/**
+		 * @return the longest duration recorded in nanoseconds, or 0 if none were
+		 */
+		public long getMax() {
+			return max;
+		}
+		
+		/**
+		 * @return the average duration in nanoseconds, or 0 if none were recorded
+		 */
+		public long getMean() {
+			return count == 0 ? 0 : sum / count;
+		}
+		
+		/**
+		 * Estimates the duration which the given fraction of durations were at
+		 * or below, from the middle of the bucket it falls in. The longest
+		 * duration is known exactly.
+		 * 
+		 * @param percentile the percentile, from 0 to 100
+		 * @return the estimated duration in nanoseconds, or 0 if none were recorded
+		 */
+		public long getPercentile(double percentile) {
+			if(count == 0)
+				return 0;
+			
+			long rank = Math.max(1, (long) Math.ceil(count * percentile / 100.));
+			if(rank >= count)
+				return max;
+			
+			long seen = 0;
+			for(int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if(seen >= rank) {
+					long low = lowestValueOf(i);
+					long high = i + 1 < NUM_BUCKETS ? lowestValueOf(i + 1) - 1 : Long.MAX_VALUE;
+					return Math.min(max, low + (high - low) / 2);
+				}
+			}
+			return max;
+		}
+	}
+}
@@ -0,0 +1,113 @@
+package me.timothy.bots.diagnostics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the counters, gauges and latency histograms of the bot by name so
+ * {@link Diagnostics} can report them on every tick. Names are dotted, such
+ * as "task.rechecks" or "sql.loans.fetch".
+ * 
+ * Most code uses the {@link #getDefault() default registry}, since the
+ * mappings and schedulers which record metrics are created in many places.
+ * Looking up a metric is a hash lookup, so hot paths should look their
+ * metrics up once and keep them.
+ * 
+ * @author Timothy
+ */
+public class MetricsRegistry {
+	private static final MetricsRegistry DEFAULT = new MetricsRegistry();
+	
+	private final ConcurrentHashMap<String, LongAdder> counters;
+	private final ConcurrentHashMap<String, LongSupplier> gauges;
+	private final ConcurrentHashMap<String, LatencyHistogram> histograms;
+	
+	/**
+	 * Creates an empty registry
+	 */
+	public MetricsRegistry() {
+		counters = new ConcurrentHashMap<>();
+		gauges = new ConcurrentHashMap<>();
+		histograms = new ConcurrentHashMap<>();
+	}
+	
+	/**
+	 * @return the registry shared by the whole bot
+	 */
+	public static MetricsRegistry getDefault() {
+		return DEFAULT;
+	}
+	
+	/**
+	 * Gets the counter with the given name, creating it if necessary
+	 * 
+	 * @param name the name of the counter
+	 * @return the counter
+	 */
+	public LongAdder counter(String name) {
+		return counters.computeIfAbsent(name, (n) -> new LongAdder());
+	}
+	
+	/**
+	 * Registers a gauge, which is asked for its value on every report. This
+	 * replaces any gauge with the same name.
+	 * 
+	 * @param name the name of the gauge
+	 * @param gauge supplies the current value
+	 */
+	public void gauge(String name, LongSupplier gauge) {
+		gauges.put(name, gauge);
+	}
+	
+	/**
+	 * Gets the histogram with the given name, creating it if necessary
+	 * 
+	 * @param name the name of the histogram
+	 * @return the histogram
+	 */
+	public LatencyHistogram histogram(String name) {
+		return histograms.computeIfAbsent(name, (n) -> new LatencyHistogram());
+	}
+	
+	/**
+	 * Describes every metric, one per line and sorted by name. This takes a
+	 * snapshot of every histogram, so the percentiles are of the durations
+	 * since the last report. Histograms with nothing recorded since then are
+	 * left out.
+	 * 
+	 * @return the lines of the report
+	 */
+	public List<String> report() {
+		List<String> result = new ArrayList<>();
+		
+		for(Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+			result.add(String.format("%s: %d", counter.getKey(), counter.getValue().sum()));
+		}
+		
+		for(Map.Entry<String, LongSupplier> gauge : new TreeMap<>(gauges).entrySet()) {
+			result.add(String.format("%s: %d", gauge.getKey(), gauge.getValue().getAsLong()));
+		}
+		
+		for(Map.Entry<String, LatencyHistogram> histogram : new TreeMap<>(histograms).entrySet()) {
+			LatencyHistogram.Snapshot snapshot = histogram.getValue().snapshot();
+			if(snapshot.getCount() == 0)
+				continue;
+			
+			result.add(String.format("%s: %d calls (p50 %s, p99 %s, max %s, mean %s)", histogram.getKey(), snapshot.getCount(),
+					formatNanos(snapshot.getPercentile(50)), formatNanos(snapshot.getPercentile(99)),
+					formatNanos(snapshot.getMax()), formatNanos(snapshot.getMean())));
+		}
+		return result;
+	}
+	
+	private static String formatNanos(long nanos) {
+		if(nanos < 1000000)
+			return String.format("%.1fus", nanos / 1000.);
+		return String.format("%.1fms", nanos / 1000000.);
+	}
+}
@@ -0,0 +1,100 @@
+package me.timothy.bots.models;
+
+import java.sql.Timestamp;
+
+/**
+ * Marks a spot in the red flag queue as being worked on by one of the red
+ * flag workers, so that the other workers leave it and every other spot for
+ * the same username alone. Workers renew their
+ * claims while they work; a claim which hasn't been renewed for a while is
+ * considered abandoned (for example because the bot restarted) and may be
+ * taken over.
+ * 
+ * @author Timothy
+ */
+public class RedFlagQueueClaim {
+	/**
+	 * The id of the queue spot that is claimed
+	 */
+	public int queueSpotId;
+	
+	/**
+	 * The id of the username the queue spot is for. There is at most one claim
+	 * per username, so only one worker generates a report on a username at once
+	 */
+	public int usernameId;
+	
+	/**
+	 * The name of the worker that holds the claim
+	 */
+	public String worker;
+	
+	/**
+	 * When the worker last took or renewed the claim
+	 */
+	public Timestamp claimedAt;
+	
+	/**
+	 * @param queueSpotId the id of the queue spot that is claimed
+	 * @param usernameId the id of the username the queue spot is for
+	 * @param worker the name of the worker that holds the claim
+	 * @param claimedAt when the worker last took or renewed the claim
+	 */
+	public RedFlagQueueClaim(int queueSpotId, int usernameId, String worker, Timestamp claimedAt) {
+		this.queueSpotId = queueSpotId;
+		this.usernameId = usernameId;
+		this.worker = worker;
+		this.claimedAt = claimedAt;
+	}
+	
+	/**
+	 * Determines if this claim is theoretically valid
+	 * 
+	 * @return if this has all the important parts
+	 */
+	public boolean isValid() {
+		return queueSpotId > 0 && usernameId > 0 && worker != null && !worker.isEmpty() && claimedAt != null;
+	}
+	
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((claimedAt == null) ? 0 : claimedAt.hashCode());
+		result = prime * result + queueSpotId;
+		result = prime * result + usernameId;
+		result = prime * result + ((worker == null) ? 0 : worker.hashCode());
+		return result;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (!(obj instanceof RedFlagQueueClaim))
+			return false;
+		RedFlagQueueClaim other = (RedFlagQueueClaim) obj;
+		if (claimedAt == null) {
+			if (other.claimedAt != null)
+				return false;
+		} else if (!claimedAt.equals(other.claimedAt))
+			return false;
+		if (queueSpotId != other.queueSpotId)
+			return false;
+		if (usernameId != other.usernameId)
+			return false;
+		if (worker == null) {
+			if (other.worker != null)
+				return false;
+		} else if (!worker.equals(other.worker))
+			return false;
+		return true;
+	}
+	
+	@Override
+	public String toString() {
+		return "RedFlagQueueClaim [queueSpotId=" + queueSpotId + ", usernameId=" + usernameId + ", worker=" + worker + ", claimedAt=" + claimedAt + "]";
+	}
+}
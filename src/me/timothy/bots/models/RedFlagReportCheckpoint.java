@@ -0,0 +1,120 @@
+package me.timothy.bots.models;
+
+import java.sql.Timestamp;
+
+/**
+ * Remembers how far through a users history a completed red flag report got
+ * and where the detectors were when it finished, so that the next report on
+ * the same user only needs to go through what is newer.
+ * 
+ * @author Timothy
+ */
+public class RedFlagReportCheckpoint {
+	/**
+	 * The id of the report this checkpoint is for. There is at most one
+	 * checkpoint per report
+	 */
+	public int reportId;
+	
+	/**
+	 * The fullname of the newest thing in the users history that the report
+	 * went through, or null if the history was empty
+	 */
+	public String newestFullname;
+	
+	/**
+	 * When the newest thing in the users history that the report went through
+	 * was created, or null if the history was empty
+	 */
+	public Timestamp newestCreatedAt;
+	
+	/**
+	 * A json object from the simple class name of each detector to the state it
+	 * saved after going through the history
+	 */
+	public String detectorState;
+	
+	/**
+	 * When this checkpoint was saved
+	 */
+	public Timestamp createdAt;
+	
+	/**
+	 * @param reportId the id of the report this checkpoint is for
+	 * @param newestFullname the fullname of the newest history item the report went through
+	 * @param newestCreatedAt when the newest history item the report went through was created
+	 * @param detectorState the json object of detector states
+	 * @param createdAt when this checkpoint was saved
+	 */
+	public RedFlagReportCheckpoint(int reportId, String newestFullname, Timestamp newestCreatedAt,
+			String detectorState, Timestamp createdAt) {
+		this.reportId = reportId;
+		this.newestFullname = newestFullname;
+		this.newestCreatedAt = newestCreatedAt;
+		this.detectorState = detectorState;
+		this.createdAt = createdAt;
+	}
+	
+	/**
+	 * Determines if this checkpoint is theoretically valid
+	 * 
+	 * @return if this has all the important parts
+	 */
+	public boolean isValid() {
+		return reportId > 0 && detectorState != null && createdAt != null
+				&& (newestFullname == null) == (newestCreatedAt == null);
+	}
+	
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((createdAt == null) ? 0 : createdAt.hashCode());
+		result = prime * result + ((detectorState == null) ? 0 : detectorState.hashCode());
+		result = prime * result + ((newestCreatedAt == null) ? 0 : newestCreatedAt.hashCode());
+		result = prime * result + ((newestFullname == null) ? 0 : newestFullname.hashCode());
+		result = prime * result + reportId;
+		return result;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (!(obj instanceof RedFlagReportCheckpoint))
+			return false;
+		RedFlagReportCheckpoint other = (RedFlagReportCheckpoint) obj;
+		if (createdAt == null) {
+			if (other.createdAt != null)
+				return false;
+		} else if (!createdAt.equals(other.createdAt))
+			return false;
+		if (detectorState == null) {
+			if (other.detectorState != null)
+				return false;
+		} else if (!detectorState.equals(other.detectorState))
+			return false;
+		if (newestCreatedAt == null) {
+			if (other.newestCreatedAt != null)
+				return false;
+		} else if (!newestCreatedAt.equals(other.newestCreatedAt))
+			return false;
+		if (newestFullname == null) {
+			if (other.newestFullname != null)
+				return false;
+		} else if (!newestFullname.equals(other.newestFullname))
+			return false;
+		if (reportId != other.reportId)
+			return false;
+		return true;
+	}
+	
+	@Override
+	public String toString() {
+		return "RedFlagReportCheckpoint [reportId=" + reportId + ", newestFullname=" + newestFullname
+				+ ", newestCreatedAt=" + newestCreatedAt + ", detectorState=" + detectorState + ", createdAt="
+				+ createdAt + "]";
+	}
+}
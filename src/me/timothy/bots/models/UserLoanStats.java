@@ -0,0 +1,117 @@
+package me.timothy.bots.models;
+
+import java.sql.Timestamp;
+
+/**
+ * A summary of the loans a user has been part of, kept up to date as loans and
+ * repayments are saved so that vetting and triggers don't need to aggregate the
+ * loans table. Deleted loans are never counted.
+ * 
+ * @author Timothy
+ */
+public class UserLoanStats {
+	public int userId;
+	/** The number of loans with this user as the lender */
+	public int loansAsLender;
+	/** The number of loans with this user as the lender which were repaid in full */
+	public int completedAsLender;
+	/** The number of loans with this user as the borrower */
+	public int loansAsBorrower;
+	/** The number of loans with this user as the borrower which are not repaid and not marked unpaid */
+	public int outstandingAsBorrower;
+	/** The earliest repayment on a loan this user lent which was repaid in full, or null */
+	public Timestamp earliestRepaidAt;
+	public Timestamp updatedAt;
+	
+	public UserLoanStats(int userId, int loansAsLender, int completedAsLender, int loansAsBorrower,
+			int outstandingAsBorrower, Timestamp earliestRepaidAt, Timestamp updatedAt) {
+		this.userId = userId;
+		this.loansAsLender = loansAsLender;
+		this.completedAsLender = completedAsLender;
+		this.loansAsBorrower = loansAsBorrower;
+		this.outstandingAsBorrower = outstandingAsBorrower;
+		this.earliestRepaidAt = earliestRepaidAt;
+		this.updatedAt = updatedAt;
+	}
+	
+	/**
+	 * Creates the stats for a user who has not been part of any loans
+	 * 
+	 * @param userId the user
+	 */
+	public UserLoanStats(int userId) {
+		this(userId, 0, 0, 0, 0, null, null);
+	}
+	
+	/**
+	 * Determines how long ago the earliest repayment on a loan this user
+	 * completed as the lender was made.
+	 * 
+	 * @return milliseconds since {@link #earliestRepaidAt}, or Long.MAX_VALUE if there is none
+	 */
+	public long timeSinceEarliestRepaid() {
+		if(earliestRepaidAt == null)
+			return Long.MAX_VALUE;
+		return System.currentTimeMillis() - earliestRepaidAt.getTime();
+	}
+	
+	/**
+	 * Ensures the user id is strictly positive and the counts are not negative
+	 * 
+	 * @return if this model is plausibly valid
+	 */
+	public boolean isValid() {
+		return userId > 0 && loansAsLender >= 0 && completedAsLender >= 0 && loansAsBorrower >= 0
+				&& outstandingAsBorrower >= 0;
+	}
+	
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + completedAsLender;
+		result = prime * result + ((earliestRepaidAt == null) ? 0 : earliestRepaidAt.hashCode());
+		result = prime * result + loansAsBorrower;
+		result = prime * result + loansAsLender;
+		result = prime * result + outstandingAsBorrower;
+		result = prime * result + userId;
+		return result;
+	}
+	
+	/**
+	 * Compares everything except {@link #updatedAt}, which is set by the database
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		UserLoanStats other = (UserLoanStats) obj;
+		if (completedAsLender != other.completedAsLender)
+			return false;
+		if (earliestRepaidAt == null) {
+			if (other.earliestRepaidAt != null)
+				return false;
+		} else if (!earliestRepaidAt.equals(other.earliestRepaidAt))
+			return false;
+		if (loansAsBorrower != other.loansAsBorrower)
+			return false;
+		if (loansAsLender != other.loansAsLender)
+			return false;
+		if (outstandingAsBorrower != other.outstandingAsBorrower)
+			return false;
+		if (userId != other.userId)
+			return false;
+		return true;
+	}
+	
+	@Override
+	public String toString() {
+		return "UserLoanStats [userId=" + userId + ", loansAsLender=" + loansAsLender + ", completedAsLender="
+				+ completedAsLender + ", loansAsBorrower=" + loansAsBorrower + ", outstandingAsBorrower="
+				+ outstandingAsBorrower + ", earliestRepaidAt=" + earliestRepaidAt + ", updatedAt=" + updatedAt + "]";
+	}
+}
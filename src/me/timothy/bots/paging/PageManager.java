@@ -0,0 +1,163 @@
+package me.timothy.bots.paging;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Shares a temporary folder and a memory budget between paging arrays. Each
+ * array reserves the memory for its in-memory window from the budget when it
+ * is created and releases it when it is disposed, so a single budget can be
+ * split between all the arrays of an analysis.
+ * 
+ * The folder is only created once an array actually pages, and is deleted
+ * along with anything left in it when the manager is disposed. This class is
+ * thread-safe, though the arrays using it are not.
+ * 
+ * @author Timothy
+ */
+public class PageManager {
+	private static final Logger logger = LogManager.getLogger();
+	
+	private static final String FILE_EXTENSION = ".dat";
+	
+	/**
+	 * The most bytes the arrays using this manager may hold in memory
+	 */
+	private final long memoryBudget;
+	
+	/**
+	 * How many bytes of the budget have been reserved
+	 */
+	private long reserved;
+	
+	/**
+	 * The folder which contains the page files, or null if it hasn't been created yet
+	 */
+	private Path tempFolder;
+	
+	/**
+	 * Used to give each file in the folder a unique name
+	 */
+	private int fileCounter;
+	
+	/**
+	 * If this manager has been disposed
+	 */
+	private boolean disposed;
+	
+	/**
+	 * Create a new page manager
+	 * 
+	 * @param memoryBudget the most bytes the arrays using this manager may hold in memory
+	 */
+	public PageManager(long memoryBudget) {
+		if(memoryBudget <= 0)
+			throw new IllegalArgumentException("Memory budget of " + memoryBudget + " is not valid (must be strictly positive)");
+		
+		this.memoryBudget = memoryBudget;
+	}
+	
+	/**
+	 * Reserve the given number of bytes from the budget
+	 * 
+	 * @param bytes the number of bytes to reserve
+	 * @throws IllegalStateException if that would go over the budget
+	 */
+	public synchronized void reserve(long bytes) {
+		if(reserved + bytes > memoryBudget)
+			throw new IllegalStateException(String.format("Cannot reserve %d bytes; %d of the %d byte budget are already reserved", bytes, reserved, memoryBudget));
+		
+		reserved += bytes;
+	}
+	
+	/**
+	 * Release bytes that were reserved from the budget
+	 * 
+	 * @param bytes the number of bytes to release
+	 */
+	public synchronized void release(long bytes) {
+		reserved -= bytes;
+	}
+	
+	/**
+	 * @return the most bytes the arrays using this manager may hold in memory
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+	
+	/**
+	 * @return how many bytes of the budget are not reserved
+	 */
+	public synchronized long getRemainingBudget() {
+		return memoryBudget - reserved;
+	}
+	
+	/**
+	 * Create a new empty file in the temporary folder, creating the folder if necessary
+	 * 
+	 * @param prefix what the file name should start with
+	 * @return the path to the new file
+	 * @throws IOException if one occurs
+	 */
+	public synchronized Path createFile(String prefix) throws IOException {
+		if(disposed)
+			throw new IllegalStateException("this object has been disposed!");
+		
+		if(tempFolder == null) {
+			Path basePath = FileSystems.getDefault().getPath("temp");
+			
+			Files.createDirectories(basePath);
+			
+			Random rnd = new Random();
+			
+			Path myBasePath = null;
+			while(myBasePath == null) {
+				int uuid = rnd.nextInt(Integer.MAX_VALUE);
+				
+				Path path = Paths.get(basePath.toString(), Integer.toHexString(uuid));
+				if(!Files.exists(path))
+					myBasePath = path;
+			}
+			
+			Files.createDirectories(myBasePath);
+			tempFolder = myBasePath.toAbsolutePath().normalize();
+		}
+		
+		Path file = Paths.get(tempFolder.toString(), prefix + "_" + Integer.toHexString(fileCounter++) + FILE_EXTENSION);
+		Files.createFile(file);
+		return file;
+	}
+	
+	/**
+	 * Delete the temporary folder and anything left in it. The arrays using this
+	 * manager should be disposed first.
+	 */
+	public synchronized void dispose() {
+		disposed = true;
+		if(tempFolder == null)
+			return;
+		
+		try {
+			try(DirectoryStream<Path> files = Files.newDirectoryStream(tempFolder)) {
+				for(Path file : files) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(tempFolder);
+		} catch (IOException e) {
+			logger.printf(Level.ERROR, "Failed to delete temporary page folder at %s: %s", tempFolder.toString(), e.getMessage());
+			logger.catching(e);
+		}
+		tempFolder = null;
+	}
+}
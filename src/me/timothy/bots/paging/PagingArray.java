@@ -0,0 +1,1137 @@
+package me.timothy.bots.paging;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The common parts of the paging arrays. A paging array acts much like a
+ * primitive array, except that it has explicit file paging over a certain size.
+ * Every value is a record of a fixed number of bytes with a long key that the
+ * array can be sorted and searched by, and is meant for data analysis for arrays
+ * which will certainly not exceed disk space capacity but may blow up memory.
+ * 
+ * Subclasses keep the in-memory window as a primitive array of their own type
+ * and move it to and from the page file in bulk through the abstract methods,
+ * so nothing is boxed. The page file is written big-endian, one record after
+ * another.
+ * 
+ * When memory mapped, the page file is written and read through mapped
+ * segments rather than a buffered channel, and reads outside of the window go
+ * straight to those segments instead of reloading the window. Mapped buffers
+ * are unmapped as soon as they're done with, rather than whenever they're
+ * garbage collected, since a file can't be truncated, replaced or deleted on
+ * Windows while it is mapped.
+ * 
+ * This class must be disposed when completed, and assumes a write then sort
+ * then read model.
+ * 
+ * @author Timothy
+ */
+public abstract class PagingArray {
+	private static final Logger logger = LogManager.getLogger();
+	
+	/**
+	 * Unmaps a mapped buffer right away, or null if this JVM doesn't allow it
+	 */
+	private static final Consumer<ByteBuffer> unmapper = findUnmapper();
+	
+	/**
+	 * How many bytes are in each mapped segment of the page file when memory
+	 * mapped. Segments only hold whole records, so may be slightly smaller.
+	 */
+	private static final int SEGMENT_BYTES = 1 << 20;
+	
+	/**
+	 * The most runs that are merged at once while sorting. Each one needs an
+	 * open file and a buffer of BUFFER_BYTES.
+	 */
+	private static final int MAX_MERGE_WIDTH = 64;
+	
+	/**
+	 * How many bytes are buffered for each file read or written without
+	 * mapping it, including the runs while merging
+	 */
+	private static final int BUFFER_BYTES = 1 << 16;
+	
+	/**
+	 * How many bytes each RecordStream reads at a time. A stream holds two of these,
+	 * one being read and one being filled.
+	 */
+	private static final int STREAM_BUFFER_BYTES = 1 << 20;
+	
+	/**
+	 * Fills the next buffer of each RecordStream in the background
+	 */
+	private static final ExecutorService readAheadExecutor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "paging-read-ahead");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	/**
+	 * The maximum number of records that we can hold in memory.
+	 */
+	protected final int maxArraySize;
+	
+	/**
+	 * How many bytes are in each record
+	 */
+	private final int recordBytes;
+	
+	/**
+	 * If the page file is accessed through mapped segments
+	 */
+	private final boolean memoryMapped;
+	
+	/**
+	 * The manager that the page files are created through and the window is
+	 * reserved from
+	 */
+	private final PageManager manager;
+	
+	/**
+	 * If the manager was created for just this array
+	 */
+	private final boolean ownsManager;
+	
+	/**
+	 * How many records are in each mapped segment
+	 */
+	private final int segmentRecords;
+	
+	/**
+	 * If the window has been allocated yet
+	 */
+	private boolean windowAllocated;
+	
+	/**
+	 * How many records of the window are in use
+	 */
+	private int windowLength;
+	
+	/**
+	 * What index in the entire array does the first record of the window correspond with
+	 */
+	private long windowOffset;
+	
+	/**
+	 * If the window is NOT SAVED and is AFTER the saved part
+	 */
+	private boolean windowIsTail;
+	
+	/**
+	 * The file that is being used for paging, or null if this array hasn't been paged yet
+	 */
+	private Path pageFile;
+	
+	/**
+	 * The segments of the page file that have been mapped so far, or null if
+	 * the page file has changed since they were mapped. Only used when memory
+	 * mapped.
+	 */
+	private ByteBuffer[] segments;
+	
+	/**
+	 * How many records are in this array in total.
+	 */
+	private long size;
+	
+	/**
+	 * How many merge passes the last sort took
+	 */
+	private int lastSortMergePasses;
+	
+	/**
+	 * If this object has already been disposed
+	 */
+	private boolean disposed;
+	
+	/**
+	 * Create a new paging array that is in write mode and holds no more than
+	 * the specified number of records in memory.
+	 * 
+	 * @param manager the manager to page through, or null to use one just for this array
+	 * @param maxArraySize maximum number of records in memory
+	 * @param recordBytes the number of bytes in each record
+	 * @param memoryMapped true to access the page file through memory mapped segments, false for a buffered channel
+	 * @throws IllegalStateException if the window doesn't fit in the remaining budget of the manager
+	 */
+	protected PagingArray(PageManager manager, int maxArraySize, int recordBytes, boolean memoryMapped) {
+		maxArraySize = (maxArraySize / 8) * 8;
+		if(maxArraySize <= 0) {
+			throw new RuntimeException("Max array size (rounded down to next multiple of 8) of " + maxArraySize + " is not valid (must be strictly positive)");
+		}
+		if(recordBytes <= 0 || recordBytes > BUFFER_BYTES) {
+			throw new IllegalArgumentException("Record size of " + recordBytes + " bytes is not valid");
+		}
+		
+		this.maxArraySize = maxArraySize;
+		this.recordBytes = recordBytes;
+		this.memoryMapped = memoryMapped;
+		this.segmentRecords = SEGMENT_BYTES / recordBytes;
+		this.ownsManager = manager == null;
+		this.manager = manager != null ? manager : new PageManager(maxArraySize * (long)recordBytes);
+		this.manager.reserve(maxArraySize * (long)recordBytes);
+	}
+	
+	/**
+	 * Allocate the window so that it can hold maxArraySize records
+	 */
+	protected abstract void allocateWindow();
+	
+	/**
+	 * Release the window
+	 */
+	protected abstract void releaseWindow();
+	
+	/**
+	 * Put records from the window into the buffer, starting at the buffers
+	 * position. This must not change the position of the buffer.
+	 * 
+	 * @param buffer the buffer to put into
+	 * @param from the index in the window of the first record to put
+	 * @param count the number of records to put
+	 */
+	protected abstract void writeWindow(ByteBuffer buffer, int from, int count);
+	
+	/**
+	 * Get records from the buffer into the window, starting at the buffers
+	 * position. This must not change the position of the buffer.
+	 * 
+	 * @param buffer the buffer to get from
+	 * @param to the index in the window of the first record to get
+	 * @param count the number of records to get
+	 */
+	protected abstract void readWindow(ByteBuffer buffer, int to, int count);
+	
+	/**
+	 * Sort the start of the window in ascending order by key
+	 * 
+	 * @param count the number of records to sort
+	 */
+	protected abstract void sortWindow(int count);
+	
+	/**
+	 * @param index the index in the window of a record
+	 * @return the key of that record
+	 */
+	protected abstract long windowKey(int index);
+	
+	/**
+	 * @param buffer a buffer of records
+	 * @param position the position of a record in the buffer
+	 * @return the key of that record
+	 */
+	protected abstract long bufferKey(ByteBuffer buffer, int position);
+	
+	/**
+	 * Saves records from the window to the given path
+	 * @param path the path to the file to save to
+	 * @param from the index in the window of the first record to save
+	 * @param count the number of records to save
+	 * @param append true to append, false not to
+	 * @throws IOException if one occurs
+	 */
+	private void saveTo(Path path, int from, int count, boolean append) throws IOException {
+		if(path.equals(pageFile))
+			releaseSegments();
+		
+		OpenOption[] options = append ? new OpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE }
+			: new OpenOption[] { StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING };
+		
+		try (FileChannel channel = FileChannel.open(path, options)) {
+			long start = channel.size();
+			if(memoryMapped) {
+				for(int written = 0; written < count; written += segmentRecords) {
+					int chunk = Math.min(segmentRecords, count - written);
+					ByteBuffer buffer = channel.map(MapMode.READ_WRITE, start + written * (long)recordBytes, chunk * (long)recordBytes);
+					writeWindow(buffer, from + written, chunk);
+					unmap(buffer);
+				}
+				return;
+			}
+			
+			int bufferRecords = BUFFER_BYTES / recordBytes;
+			ByteBuffer buffer = ByteBuffer.allocate(bufferRecords * recordBytes);
+			channel.position(start);
+			for(int written = 0; written < count; written += bufferRecords) {
+				int chunk = Math.min(bufferRecords, count - written);
+				buffer.clear();
+				writeWindow(buffer, from + written, chunk);
+				buffer.limit(chunk * recordBytes);
+				while(buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Load the start of the window from the given path.
+	 * @param path the path to load from
+	 * @param seek the number of records to skip
+	 * @param count the number of records to load
+	 * @throws IOException if one occurs
+	 */
+	private void loadFrom(Path path, long seek, int count) throws IOException {
+		long lengthBytes = Files.size(path);
+		long lengthRecords = lengthBytes / recordBytes;
+		if(seek < 0 || seek + (long)count > lengthRecords)
+			throw new EOFException("reached end of file (file size = " + lengthBytes + "bytes / " + lengthRecords + "records, wanted " + count + " records after " + seek + ")");
+		
+		if(!windowAllocated) {
+			allocateWindow();
+			windowAllocated = true;
+		}
+		
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long start = seek * recordBytes;
+			if(memoryMapped) {
+				for(int read = 0; read < count; read += segmentRecords) {
+					int chunk = Math.min(segmentRecords, count - read);
+					ByteBuffer buffer = channel.map(MapMode.READ_ONLY, start + read * (long)recordBytes, chunk * (long)recordBytes);
+					readWindow(buffer, read, chunk);
+					unmap(buffer);
+				}
+			}else {
+				int bufferRecords = BUFFER_BYTES / recordBytes;
+				ByteBuffer buffer = ByteBuffer.allocate(bufferRecords * recordBytes);
+				channel.position(start);
+				for(int read = 0; read < count; read += bufferRecords) {
+					int chunk = Math.min(bufferRecords, count - read);
+					buffer.clear();
+					buffer.limit(chunk * recordBytes);
+					while(buffer.hasRemaining()) {
+						if(channel.read(buffer) < 0)
+							throw new EOFException("reached end of file (file size = " + lengthBytes + "bytes)");
+					}
+					buffer.flip();
+					readWindow(buffer, read, chunk);
+				}
+			}
+		}
+		
+		windowLength = count;
+	}
+	
+	/**
+	 * Save the window to the page file and empty it, updating the windowOffset.
+	 * @throws IOException if one occurs
+	 */
+	private void page() throws IOException {
+		if(!windowIsTail)
+			throw new IllegalStateException("cannot page when not at tail");
+		
+		if(windowLength == 0)
+			return;
+		
+		if(pageFile == null)
+			pageFile = manager.createFile("page");
+		
+		saveTo(pageFile, 0, windowLength, true);
+		
+		windowOffset = size;
+		windowLength = 0;
+	}
+	
+	/**
+	 * Makes room for one more record at the end of this array, paging if
+	 * necessary. The caller must then write the record to the window at the
+	 * returned index.
+	 * 
+	 * @return the index in the window to write the new record to
+	 */
+	protected final int prepareAdd() {
+		checkNotDisposed();
+		
+		if(!windowAllocated) {
+			allocateWindow();
+			windowAllocated = true;
+		}
+		
+		if(!windowIsTail) {
+			windowLength = 0;
+			windowIsTail = true;
+			windowOffset = size;
+		}else if(windowLength == maxArraySize) {
+			try {
+				page();
+			} catch (IOException e) {
+				logger.throwing(e);
+				throw new RuntimeException(e);
+			}
+		}
+		
+		size++;
+		return windowLength++;
+	}
+	
+	/**
+	 * Makes the record at the given index readable. If the record is in the
+	 * window, or the array isn't memory mapped and so loads the records page
+	 * into the window, this returns true and the record is at windowIndex(index).
+	 * Otherwise this returns false and the record is in segment(index) at
+	 * segmentPosition(index).
+	 * 
+	 * @param index the index of the record
+	 * @return true if the record is in the window, false if it is in its segment
+	 */
+	protected final boolean fetch(long index) {
+		checkNotDisposed();
+		
+		if(windowOffset <= index && windowOffset + windowLength > index) {
+			return true;
+		}
+		
+		if(index < 0 || index >= size)
+			throw new IllegalArgumentException(String.format("index is outside of range! index=%d, size=%d", index, size));
+		
+		if(windowIsTail) {
+			try {
+				page();
+			} catch (IOException e) {
+				logger.printf(Level.ERROR, "Failed to fetch(%d) - needed to page because not at tail but got error: %s", index, e.getMessage());
+				logger.throwing(e);
+				throw new RuntimeException(e);
+			}
+		}
+		
+		if(memoryMapped)
+			return false;
+		
+		long desiredOffset = (index / maxArraySize) * maxArraySize;
+		int numToLoad = (int)Math.min(maxArraySize, size - desiredOffset);
+		
+		try {
+			loadFrom(pageFile, desiredOffset, numToLoad);
+		} catch (IOException e) {
+			logger.printf(Level.ERROR, "Failed to fetch(%d) - wanted to do loadFrom(%s, %d, %s) but got error: %s", index, pageFile.toString(), desiredOffset, numToLoad, e.getMessage());
+			logger.throwing(e);
+			throw new RuntimeException(e);
+		}
+		
+		windowIsTail = false;
+		windowOffset = desiredOffset;
+		return true;
+	}
+	
+	/**
+	 * @param index the index of a record that fetch returned true for
+	 * @return the index of that record in the window
+	 */
+	protected final int windowIndex(long index) {
+		return (int)(index - windowOffset);
+	}
+	
+	/**
+	 * Get the mapped segment of the page file containing the given index,
+	 * mapping it if it hasn't been yet.
+	 * 
+	 * @param index the index of a record that fetch returned false for
+	 * @return the segment containing that record
+	 */
+	protected final ByteBuffer segment(long index) {
+		int segment = (int)(index / segmentRecords);
+		try {
+			if(segments == null) {
+				long lengthRecords = Files.size(pageFile) / recordBytes;
+				segments = new ByteBuffer[(int)((lengthRecords + segmentRecords - 1) / segmentRecords)];
+			}
+			
+			ByteBuffer buffer = segments[segment];
+			if(buffer == null) {
+				try (FileChannel channel = FileChannel.open(pageFile, StandardOpenOption.READ)) {
+					long start = segment * (long)segmentRecords * recordBytes;
+					long length = Math.min(segmentRecords * (long)recordBytes, channel.size() - start);
+					buffer = channel.map(MapMode.READ_ONLY, start, length);
+				}
+				segments[segment] = buffer;
+			}
+			return buffer;
+		} catch (IOException e) {
+			logger.printf(Level.ERROR, "Failed to map segment %d of the page file %s: %s", segment, pageFile.toString(), e.getMessage());
+			logger.throwing(e);
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * @param index the index of a record that fetch returned false for
+	 * @return the position of that record in its segment
+	 */
+	protected final int segmentPosition(long index) {
+		return (int)(index % segmentRecords) * recordBytes;
+	}
+	
+	/**
+	 * @param index the index of a record
+	 * @return the key of that record
+	 */
+	protected final long keyAt(long index) {
+		if(fetch(index))
+			return windowKey(windowIndex(index));
+		return bufferKey(segment(index), segmentPosition(index));
+	}
+	
+	/**
+	 * Get the key of the record at the given index without loading its page
+	 * into the window, by reading just that record if it isn't already in the
+	 * window or a mapped segment.
+	 * 
+	 * @param index the index of the record
+	 * @return the key of that record
+	 */
+	private long boundaryKey(long index) {
+		if(windowOffset <= index && windowOffset + windowLength > index)
+			return windowKey(windowIndex(index));
+		
+		if(memoryMapped)
+			return keyAt(index);
+		
+		if(windowIsTail) {
+			try {
+				page();
+			} catch (IOException e) {
+				logger.throwing(e);
+				throw new RuntimeException(e);
+			}
+		}
+		
+		ByteBuffer buffer = ByteBuffer.allocate(recordBytes);
+		try (FileChannel channel = FileChannel.open(pageFile, StandardOpenOption.READ)) {
+			while(buffer.hasRemaining()) {
+				if(channel.read(buffer, index * recordBytes + buffer.position()) < 0)
+					throw new EOFException("reached end of file reading record " + index);
+			}
+		} catch (IOException e) {
+			logger.printf(Level.ERROR, "Failed to read the key of record %d from %s: %s", index, pageFile.toString(), e.getMessage());
+			logger.throwing(e);
+			throw new RuntimeException(e);
+		}
+		return bufferKey(buffer, 0);
+	}
+	
+	/**
+	 * Find the first record whose key is at least the given key in this array,
+	 * which must be sorted. When paged, this first binary searches the first key
+	 * of each page, reading only those records, and then searches within the one
+	 * page that can contain the answer.
+	 * 
+	 * @param key the key to search for
+	 * @return the index of the first record with a key of at least key, or size() if there isn't one
+	 */
+	protected final long lowerBound(long key) {
+		long low = 0;
+		long high = size;
+		if(pageFile != null && size > maxArraySize) {
+			// the last page starting with a key less than the key holds the answer or ends right before it
+			long lowPage = 0;
+			long highPage = (size + maxArraySize - 1) / maxArraySize;
+			while(lowPage < highPage) {
+				long midPage = (lowPage + highPage) >>> 1;
+				if(boundaryKey(midPage * maxArraySize) < key)
+					lowPage = midPage + 1;
+				else
+					highPage = midPage;
+			}
+			
+			if(lowPage == 0)
+				return 0;
+			
+			low = (lowPage - 1) * maxArraySize + 1;
+			high = Math.min(size, lowPage * maxArraySize);
+		}
+		
+		while(low < high) {
+			long mid = (low + high) >>> 1;
+			if(keyAt(mid) < key)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+	
+	/**
+	 * Search for the given key in this array, which must be sorted.
+	 * 
+	 * @param key the key to search for
+	 * @return the index of the first record with the key if there is one, otherwise (-(insertion point) - 1)
+	 * like Arrays.binarySearch
+	 */
+	protected final long search(long key) {
+		long index = lowerBound(key);
+		if(index < size && keyAt(index) == key)
+			return index;
+		return -(index + 1);
+	}
+	
+	/**
+	 * Stream the records in [from, to) in order
+	 * 
+	 * @param from the index of the first record
+	 * @param to one past the index of the last record
+	 * @return a stream of those records
+	 */
+	protected final RecordStream stream(long from, long to) {
+		checkNotDisposed();
+		if(from < 0 || to > size || from > to)
+			throw new IllegalArgumentException(String.format("range is outside of range! from=%d, to=%d, size=%d", from, to, size));
+		
+		return new RecordStream(from, to);
+	}
+	
+	/**
+	 * Merges the given sorted runs into the output file in a single pass, using
+	 * a heap of the runs ordered by the key of their next record.
+	 * 
+	 * @param runs the sorted runs to merge
+	 * @param out the output file, which will be sorted
+	 * @throws IOException if one occurs
+	 */
+	private void mergeRuns(List<Path> runs, Path out) throws IOException {
+		RunReader[] readers = new RunReader[runs.size()];
+		try {
+			int[] heap = new int[readers.length];
+			long[] heads = new long[readers.length];
+			int heapSize = 0;
+			for(int i = 0; i < readers.length; i++) {
+				readers[i] = new RunReader(runs.get(i), recordBytes);
+				if(readers[i].hasNext()) {
+					heads[i] = bufferKey(readers[i].bytes, readers[i].bytes.position());
+					heap[heapSize++] = i;
+				}
+			}
+			
+			for(int i = heapSize / 2 - 1; i >= 0; i--) {
+				siftDown(heap, heapSize, heads, i);
+			}
+			
+			try(RunWriter writer = new RunWriter(out, recordBytes)) {
+				while(heapSize > 0) {
+					RunReader top = readers[heap[0]];
+					writer.write(top.bytes);
+					
+					if(top.hasNext()) {
+						heads[heap[0]] = bufferKey(top.bytes, top.bytes.position());
+					}else {
+						heap[0] = heap[--heapSize];
+					}
+					siftDown(heap, heapSize, heads, 0);
+				}
+			}
+		}finally {
+			for(RunReader reader : readers) {
+				if(reader != null)
+					reader.close();
+			}
+		}
+	}
+	
+	/**
+	 * Moves the run at the given index of the heap down until neither of its
+	 * children have a smaller head
+	 * 
+	 * @param heap the indexes of the runs, as a binary min-heap on their heads
+	 * @param heapSize how many entries of heap are in use
+	 * @param heads the key of the next record of each run
+	 * @param index the index in heap to sift down
+	 */
+	private static void siftDown(int[] heap, int heapSize, long[] heads, int index) {
+		int run = heap[index];
+		long value = heads[run];
+		while(true) {
+			int child = index * 2 + 1;
+			if(child >= heapSize)
+				break;
+			
+			if(child + 1 < heapSize && heads[heap[child + 1]] < heads[heap[child]])
+				child++;
+			
+			if(heads[heap[child]] >= value)
+				break;
+			
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = run;
+	}
+	
+	/**
+	 * Sorts this array in ascending order by key. In memory this just sorts the window.
+	 * Otherwise each block of the page file is sorted in memory and saved as a run, then
+	 * the runs are merged MAX_MERGE_WIDTH at a time, which is a single pass over the disk
+	 * unless there are more runs than that.
+	 */
+	public void sort() {
+		checkNotDisposed();
+		
+		if(pageFile == null) {
+			if(windowLength > 0)
+				sortWindow(windowLength);
+			lastSortMergePasses = 0;
+			return;
+		}
+		
+		if(windowIsTail) {
+			try {
+				page();
+			} catch (IOException e) {
+				logger.printf(Level.ERROR, "Sorting required paging (at tail), but failed with error: %s", e.getMessage());
+				logger.throwing(e);
+				throw new RuntimeException(e);
+			}
+		}
+		
+		try {
+			int totalBlocks = (int)((size + maxArraySize - 1) / maxArraySize);
+			
+			List<Path> runs = new ArrayList<>(totalBlocks);
+			for(int block = 0; block < totalBlocks; block++) {
+				long blockOffset = block * (long)maxArraySize;
+				loadFrom(pageFile, blockOffset, (int)Math.min(maxArraySize, size - blockOffset));
+				sortWindow(windowLength);
+				
+				Path run = manager.createFile("run");
+				saveTo(run, 0, windowLength, false);
+				runs.add(run);
+			}
+			
+			int pass = 0;
+			while(runs.size() > 1) {
+				pass++;
+				
+				List<Path> merged = new ArrayList<>((runs.size() + MAX_MERGE_WIDTH - 1) / MAX_MERGE_WIDTH);
+				for(int start = 0; start < runs.size(); start += MAX_MERGE_WIDTH) {
+					List<Path> group = runs.subList(start, Math.min(runs.size(), start + MAX_MERGE_WIDTH));
+					if(group.size() == 1) {
+						merged.add(group.get(0));
+						continue;
+					}
+					
+					Path out = manager.createFile("run");
+					mergeRuns(group, out);
+					for(Path run : group) {
+						Files.delete(run);
+					}
+					merged.add(out);
+				}
+				runs = merged;
+			}
+			
+			logger.printf(Level.DEBUG, "Sorted %d records in %d runs with %d merge passes", size, totalBlocks, pass);
+			lastSortMergePasses = pass;
+			
+			releaseSegments();
+			Files.move(runs.get(0), pageFile, StandardCopyOption.REPLACE_EXISTING);
+			loadFrom(pageFile, 0, (int)Math.min(maxArraySize, size));
+			windowIsTail = false;
+			windowOffset = 0;
+		}catch(IOException e) {
+			logger.printf(Level.ERROR, "sort() failed during actual sort with message: %s", e.getMessage());
+			logger.throwing(e);
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * How many merge passes over the disk the last sort needed. This is 0 if the
+	 * last sort was entirely in memory or needed only one run.
+	 * 
+	 * @return the number of merge passes of the last sort
+	 */
+	public int getLastSortMergePasses() {
+		return lastSortMergePasses;
+	}
+	
+	/**
+	 * How many records are in this array.
+	 * @return the number of records in this array.
+	 */
+	public long size() {
+		return size;
+	}
+	
+	/**
+	 * Dispose of this object and any backing file stores, and release its
+	 * window from the budget of its manager
+	 */
+	public void dispose() {
+		if(disposed)
+			return;
+		
+		if(windowAllocated)
+			releaseWindow();
+		windowAllocated = false;
+		windowLength = 0;
+		releaseSegments();
+		disposed = true;
+		
+		if(pageFile != null) {
+			try {
+				Files.delete(pageFile);
+			} catch (IOException e) {
+				logger.printf(Level.ERROR, "Failed to delete page file at %s: %s", pageFile.toString(), e.getMessage());
+				logger.catching(e);
+			}
+		}
+		
+		manager.release(maxArraySize * (long)recordBytes);
+		if(ownsManager)
+			manager.dispose();
+	}
+	
+	/**
+	 * Unmaps the segments of the page file that have been mapped so far, so that
+	 * the page file can be changed. They are mapped again as they are needed.
+	 */
+	private void releaseSegments() {
+		if(segments == null)
+			return;
+		
+		for(ByteBuffer segment : segments) {
+			if(segment != null)
+				unmap(segment);
+		}
+		segments = null;
+	}
+	
+	/**
+	 * Unmaps the mapped buffer if this JVM allows it, otherwise it stays mapped
+	 * until it is garbage collected. The buffer must not be used afterward.
+	 * 
+	 * @param buffer the mapped buffer
+	 */
+	private static void unmap(ByteBuffer buffer) {
+		if(unmapper != null)
+			unmapper.accept(buffer);
+	}
+	
+	/**
+	 * Finds a way to unmap mapped buffers. There is no public api for it, so this
+	 * uses Unsafe.invokeCleaner on java 9 and later, and the buffers cleaner on
+	 * java 8.
+	 * 
+	 * @return something which unmaps mapped buffers, or null if there is nothing
+	 */
+	private static Consumer<ByteBuffer> findUnmapper() {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			Object unsafe = theUnsafe.get(null);
+			return (buffer) -> invokeQuietly(() -> invokeCleaner.invoke(unsafe, buffer));
+		}catch(ReflectiveOperationException | RuntimeException e) {
+			// not java 9 or later
+		}
+		
+		try {
+			Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+			Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+			return (buffer) -> invokeQuietly(() -> clean.invoke(cleaner.invoke(buffer)));
+		}catch(ReflectiveOperationException | RuntimeException e) {
+			logger.warn("Mapped page files can't be unmapped on this JVM, so they will stay mapped until garbage collected");
+			return null;
+		}
+	}
+	
+	/**
+	 * Something that invokes a method reflectively
+	 */
+	private interface ReflectiveCall {
+		void invoke() throws ReflectiveOperationException;
+	}
+	
+	/**
+	 * Runs a reflective call to unmap a buffer, logging instead of failing if
+	 * it doesn't work; the buffer is still unmapped once garbage collected.
+	 * 
+	 * @param call the call
+	 */
+	private static void invokeQuietly(ReflectiveCall call) {
+		try {
+			call.invoke();
+		}catch(ReflectiveOperationException | RuntimeException e) {
+			logger.printf(Level.WARN, "Failed to unmap a page file buffer: %s", e.toString());
+		}
+	}
+	
+	private void checkNotDisposed() {
+		if(disposed)
+			throw new IllegalStateException("this object has been disposed!");
+	}
+	
+	/**
+	 * Reads records in order a buffer at a time, filling the next buffer in the
+	 * background while the current one is used. Once paged this reads the page
+	 * file directly, so it neither disturbs nor is disturbed by get.
+	 * 
+	 * @author Timothy
+	 */
+	protected final class RecordStream {
+		private final long end;
+		private final int bufferRecords;
+		
+		/**
+		 * The buffer being read, positioned after the current record
+		 */
+		private ByteBuffer current;
+		
+		/**
+		 * The buffer being filled by pending
+		 */
+		private ByteBuffer spare;
+		
+		/**
+		 * Fills spare, or null if there is nothing left to load
+		 */
+		private Future<?> pending;
+		
+		/**
+		 * The index of the next record to load into a buffer
+		 */
+		private long nextLoad;
+		
+		/**
+		 * The index of the next record to be returned
+		 */
+		private long nextIndex;
+		
+		/**
+		 * The position of the current record in current
+		 */
+		private int position;
+		
+		private RecordStream(long from, long to) {
+			if(pageFile != null && windowIsTail) {
+				try {
+					page();
+				} catch (IOException e) {
+					logger.throwing(e);
+					throw new RuntimeException(e);
+				}
+			}
+			
+			this.end = to;
+			this.bufferRecords = STREAM_BUFFER_BYTES / recordBytes;
+			this.current = ByteBuffer.allocate(bufferRecords * recordBytes);
+			this.current.limit(0);
+			this.spare = ByteBuffer.allocate(bufferRecords * recordBytes);
+			this.nextLoad = from;
+			this.nextIndex = from;
+			this.position = -1;
+			load();
+		}
+		
+		/**
+		 * @return if there is another record
+		 */
+		public boolean hasNext() {
+			return nextIndex < end;
+		}
+		
+		/**
+		 * Move to the next record
+		 * @throws NoSuchElementException if there isn't one
+		 */
+		public void next() {
+			if(!hasNext())
+				throw new NoSuchElementException();
+			
+			if(!current.hasRemaining()) {
+				try {
+					pending.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				} catch (ExecutionException e) {
+					logger.printf(Level.ERROR, "Failed to read ahead in %s: %s", String.valueOf(pageFile), e.getCause().getMessage());
+					logger.throwing(e);
+					throw new RuntimeException(e.getCause());
+				}
+				
+				ByteBuffer tmp = current;
+				current = spare;
+				spare = tmp;
+				load();
+			}
+			
+			position = current.position();
+			current.position(position + recordBytes);
+			nextIndex++;
+		}
+		
+		/**
+		 * @return the index of the current record
+		 */
+		public long index() {
+			return nextIndex - 1;
+		}
+		
+		/**
+		 * @return the buffer containing the current record
+		 */
+		public ByteBuffer buffer() {
+			return current;
+		}
+		
+		/**
+		 * @return the position of the current record in buffer()
+		 */
+		public int position() {
+			return position;
+		}
+		
+		/**
+		 * Start filling spare with the next records
+		 */
+		private void load() {
+			if(nextLoad >= end) {
+				pending = null;
+				return;
+			}
+			
+			final ByteBuffer into = spare;
+			final long start = nextLoad;
+			final int count = (int)Math.min(bufferRecords, end - nextLoad);
+			nextLoad += count;
+			
+			into.clear();
+			into.limit(count * recordBytes);
+			if(pageFile == null) {
+				// everything is still in the window
+				writeWindow(into, windowIndex(start), count);
+				pending = CompletableFuture.completedFuture(null);
+				return;
+			}
+			
+			final Path file = pageFile;
+			pending = readAheadExecutor.submit(() -> {
+				try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+					long filePosition = start * recordBytes;
+					while(into.hasRemaining()) {
+						int read = channel.read(into, filePosition);
+						if(read < 0)
+							throw new EOFException("reached end of file " + file + " reading records " + start + " to " + (start + count));
+						filePosition += read;
+					}
+				}
+				into.flip();
+				return null;
+			});
+		}
+	}
+	
+	/**
+	 * Reads the records of a run a buffer at a time
+	 */
+	private static class RunReader implements Closeable {
+		private final FileChannel channel;
+		
+		/**
+		 * The buffered records, positioned at the next record
+		 */
+		private final ByteBuffer bytes;
+		
+		public RunReader(Path path, int recordBytes) throws IOException {
+			this.channel = FileChannel.open(path, StandardOpenOption.READ);
+			this.bytes = ByteBuffer.allocate((BUFFER_BYTES / recordBytes) * recordBytes);
+			this.bytes.limit(0);
+		}
+		
+		/**
+		 * @return if there is another record in the run, reading the next buffer if necessary
+		 * @throws IOException if one occurs
+		 */
+		public boolean hasNext() throws IOException {
+			if(bytes.hasRemaining())
+				return true;
+			
+			bytes.clear();
+			while(bytes.hasRemaining()) {
+				if(channel.read(bytes) < 0)
+					break;
+			}
+			bytes.flip();
+			return bytes.hasRemaining();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Writes the records of a run a buffer at a time
+	 */
+	private static class RunWriter implements Closeable {
+		private final FileChannel channel;
+		private final int recordBytes;
+		private final ByteBuffer bytes;
+		
+		public RunWriter(Path path, int recordBytes) throws IOException {
+			this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			this.recordBytes = recordBytes;
+			this.bytes = ByteBuffer.allocate((BUFFER_BYTES / recordBytes) * recordBytes);
+		}
+		
+		/**
+		 * Copy the record at the position of the given buffer, moving that buffer
+		 * past it
+		 * 
+		 * @param from the buffer of a RunReader
+		 * @throws IOException if one occurs
+		 */
+		public void write(ByteBuffer from) throws IOException {
+			if(bytes.remaining() < recordBytes)
+				flush();
+			
+			System.arraycopy(from.array(), from.arrayOffset() + from.position(), bytes.array(), bytes.arrayOffset() + bytes.position(), recordBytes);
+			bytes.position(bytes.position() + recordBytes);
+			from.position(from.position() + recordBytes);
+		}
+		
+		private void flush() throws IOException {
+			bytes.flip();
+			while(bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			bytes.clear();
+		}
+		
+		@Override
+		public void close() throws IOException {
+			try {
+				flush();
+			}finally {
+				channel.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package me.timothy.bots.paging;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * This class acts much like an int array, except that it has explicit
+ * file paging over a certain size, such as for loan or user ids. It takes
+ * half the memory and disk of a PagingLongArray for the same number of
+ * values. This class must be disposed when completed.
+ * 
+ * @author Timothy
+ * @see PagingArray
+ */
+public class PagingIntArray extends PagingArray {
+	/**
+	 * The window of values we have in memory
+	 */
+	private int[] memoryArray;
+	
+	/**
+	 * Create a new paging int array that is in write mode and holds
+	 * an array no greater than the specified size in memory, reserved
+	 * from the budget of the given manager.
+	 * 
+	 * @param manager the manager to page through, or null to use one just for this array
+	 * @param maxArraySize maximum array size
+	 * @param memoryMapped true to access the page file through memory mapped segments, false for streams
+	 */
+	public PagingIntArray(PageManager manager, int maxArraySize, boolean memoryMapped) {
+		super(manager, maxArraySize, 4, memoryMapped);
+	}
+	
+	/**
+	 * Add the given int to this array
+	 * @param val the value to add
+	 */
+	public void add(int val) {
+		int index = prepareAdd();
+		memoryArray[index] = val;
+	}
+	
+	/**
+	 * Fetch the value in this array at the given index
+	 * @param index the index to fetch
+	 * @return the corresponding value at that index
+	 */
+	public int get(long index) {
+		if(fetch(index))
+			return memoryArray[windowIndex(index)];
+		return segment(index).getInt(segmentPosition(index));
+	}
+	
+	/**
+	 * Search for the given value in this array, which must be sorted.
+	 * 
+	 * @param val the value to search for
+	 * @return the index of the first occurrence of the value if it's in the array, otherwise (-(insertion point) - 1)
+	 */
+	public long binarySearch(int val) {
+		return search(val);
+	}
+	
+	/**
+	 * Iterate through the values of this array in order, without boxing. The
+	 * values are streamed a page at a time with the next page read in the
+	 * background, without disturbing the page loaded for get.
+	 * 
+	 * @return an iterator over the values
+	 */
+	public PrimitiveIterator.OfInt iterator() {
+		return iterator(0, size());
+	}
+	
+	/**
+	 * Iterate through the values in [fromValue, toValue) of this array, which
+	 * must be sorted. This finds where to start and stop with binary searches
+	 * and then streams the values like iterator().
+	 * 
+	 * @param fromValue the smallest value to include
+	 * @param toValue one past the largest value to include
+	 * @return an iterator over the values in the range
+	 */
+	public PrimitiveIterator.OfInt rangeScan(int fromValue, int toValue) {
+		long from = lowerBound(fromValue);
+		long to = Math.max(from, lowerBound(toValue));
+		return iterator(from, to);
+	}
+	
+	/**
+	 * Iterate through the values in [from, to) of this array
+	 * 
+	 * @param from the index of the first value
+	 * @param to one past the index of the last value
+	 * @return an iterator over those values
+	 */
+	public PrimitiveIterator.OfInt iterator(long from, long to) {
+		final RecordStream stream = stream(from, to);
+		return new PrimitiveIterator.OfInt() {
+			@Override
+			public boolean hasNext() {
+				return stream.hasNext();
+			}
+			
+			@Override
+			public int nextInt() {
+				stream.next();
+				return stream.buffer().getInt(stream.position());
+			}
+		};
+	}
+	
+	@Override
+	protected void allocateWindow() {
+		memoryArray = new int[maxArraySize];
+	}
+	
+	@Override
+	protected void releaseWindow() {
+		memoryArray = null;
+	}
+	
+	@Override
+	protected void writeWindow(ByteBuffer buffer, int from, int count) {
+		buffer.asIntBuffer().put(memoryArray, from, count);
+	}
+	
+	@Override
+	protected void readWindow(ByteBuffer buffer, int to, int count) {
+		buffer.asIntBuffer().get(memoryArray, to, count);
+	}
+	
+	@Override
+	protected void sortWindow(int count) {
+		Arrays.parallelSort(memoryArray, 0, count);
+	}
+	
+	@Override
+	protected long windowKey(int index) {
+		return memoryArray[index];
+	}
+	
+	@Override
+	protected long bufferKey(ByteBuffer buffer, int position) {
+		return buffer.getInt(position);
+	}
+}
@@ -0,0 +1,263 @@
+package me.timothy.bots.paging;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class acts much like an array of fixed-width records of longs, such
+ * as (timestamp, id) pairs, except that it has explicit file paging over a
+ * certain size. One field of the records is the key that the array is sorted
+ * and searched by. The records are stored flat, so nothing is boxed. This
+ * class must be disposed when completed.
+ * 
+ * @author Timothy
+ * @see PagingArray
+ */
+public class PagingRecordArray extends PagingArray {
+	/**
+	 * How many longs are in each record
+	 */
+	private final int width;
+	
+	/**
+	 * Which field of each record is its key
+	 */
+	private final int keyField;
+	
+	/**
+	 * The window of records we have in memory, one after another
+	 */
+	private long[] memoryArray;
+	
+	/**
+	 * Create a new paging record array that is in write mode and holds
+	 * no more than the specified number of records in memory, reserved
+	 * from the budget of the given manager.
+	 * 
+	 * @param manager the manager to page through, or null to use one just for this array
+	 * @param maxArraySize maximum number of records in memory
+	 * @param width the number of longs in each record
+	 * @param keyField which field of each record is its key
+	 * @param memoryMapped true to access the page file through memory mapped segments, false for streams
+	 */
+	public PagingRecordArray(PageManager manager, int maxArraySize, int width, int keyField, boolean memoryMapped) {
+		super(manager, maxArraySize, width * 8, memoryMapped);
+		if(keyField < 0 || keyField >= width)
+			throw new IllegalArgumentException("Key field " + keyField + " is not valid for records of width " + width);
+		
+		this.width = width;
+		this.keyField = keyField;
+	}
+	
+	/**
+	 * @return the number of longs in each record
+	 */
+	public int getWidth() {
+		return width;
+	}
+	
+	/**
+	 * Add the given record to this array
+	 * @param record the fields of the record, which are copied
+	 */
+	public void add(long[] record) {
+		if(record.length != width)
+			throw new IllegalArgumentException("Record has " + record.length + " fields but this array has records of width " + width);
+		
+		int index = prepareAdd();
+		System.arraycopy(record, 0, memoryArray, index * width, width);
+	}
+	
+	/**
+	 * Fetch a field of the record at the given index
+	 * @param index the index of the record
+	 * @param field which field of the record to fetch
+	 * @return the value of that field
+	 */
+	public long get(long index, int field) {
+		if(field < 0 || field >= width)
+			throw new IllegalArgumentException("Field " + field + " is not valid for records of width " + width);
+		
+		if(fetch(index))
+			return memoryArray[windowIndex(index) * width + field];
+		return segment(index).getLong(segmentPosition(index) + field * 8);
+	}
+	
+	/**
+	 * Fetch the record at the given index
+	 * @param index the index of the record
+	 * @param into where to copy the fields of the record; must be at least width long
+	 */
+	public void get(long index, long[] into) {
+		if(fetch(index)) {
+			System.arraycopy(memoryArray, windowIndex(index) * width, into, 0, width);
+			return;
+		}
+		
+		ByteBuffer segment = segment(index);
+		int position = segmentPosition(index);
+		for(int field = 0; field < width; field++) {
+			into[field] = segment.getLong(position + field * 8);
+		}
+	}
+	
+	/**
+	 * Search for a record with the given key in this array, which must be sorted.
+	 * 
+	 * @param key the key to search for
+	 * @return the index of the first record with that key if there is one, otherwise (-(insertion point) - 1)
+	 */
+	public long binarySearch(long key) {
+		return search(key);
+	}
+	
+	/**
+	 * @return a cursor positioned before the first record
+	 */
+	public Cursor cursor() {
+		return new Cursor(stream(0, size()));
+	}
+	
+	/**
+	 * Get a cursor over the records with keys in [fromKey, toKey) of this
+	 * array, which must be sorted.
+	 * 
+	 * @param fromKey the smallest key to include
+	 * @param toKey one past the largest key to include
+	 * @return a cursor positioned before the first record in the range
+	 */
+	public Cursor rangeScan(long fromKey, long toKey) {
+		long from = lowerBound(fromKey);
+		long to = Math.max(from, lowerBound(toKey));
+		return new Cursor(stream(from, to));
+	}
+	
+	@Override
+	protected void allocateWindow() {
+		memoryArray = new long[maxArraySize * width];
+	}
+	
+	@Override
+	protected void releaseWindow() {
+		memoryArray = null;
+	}
+	
+	@Override
+	protected void writeWindow(ByteBuffer buffer, int from, int count) {
+		buffer.asLongBuffer().put(memoryArray, from * width, count * width);
+	}
+	
+	@Override
+	protected void readWindow(ByteBuffer buffer, int to, int count) {
+		buffer.asLongBuffer().get(memoryArray, to * width, count * width);
+	}
+	
+	/**
+	 * Heap sorts the records in place, since the records can't be sorted
+	 * by Arrays without copying them out
+	 */
+	@Override
+	protected void sortWindow(int count) {
+		for(int i = count / 2 - 1; i >= 0; i--) {
+			siftDown(i, count);
+		}
+		
+		for(int end = count - 1; end > 0; end--) {
+			swap(0, end);
+			siftDown(0, end);
+		}
+	}
+	
+	@Override
+	protected long windowKey(int index) {
+		return memoryArray[index * width + keyField];
+	}
+	
+	@Override
+	protected long bufferKey(ByteBuffer buffer, int position) {
+		return buffer.getLong(position + keyField * 8);
+	}
+	
+	/**
+	 * Moves the record at the given index of the window down the max-heap
+	 * until neither of its children have a larger key
+	 * 
+	 * @param index the index of the record in the window
+	 * @param count the number of records in the heap
+	 */
+	private void siftDown(int index, int count) {
+		while(true) {
+			int child = index * 2 + 1;
+			if(child >= count)
+				return;
+			
+			if(child + 1 < count && windowKey(child + 1) > windowKey(child))
+				child++;
+			
+			if(windowKey(child) <= windowKey(index))
+				return;
+			
+			swap(index, child);
+			index = child;
+		}
+	}
+	
+	private void swap(int a, int b) {
+		int offsetA = a * width;
+		int offsetB = b * width;
+		for(int field = 0; field < width; field++) {
+			long tmp = memoryArray[offsetA + field];
+			memoryArray[offsetA + field] = memoryArray[offsetB + field];
+			memoryArray[offsetB + field] = tmp;
+		}
+	}
+	
+	/**
+	 * Goes through the records in order without copying them out. The records
+	 * are streamed a page at a time with the next page read in the background.
+	 * 
+	 * @author Timothy
+	 */
+	public class Cursor {
+		private final RecordStream stream;
+		private boolean positioned;
+		
+		private Cursor(RecordStream stream) {
+			this.stream = stream;
+		}
+		
+		/**
+		 * Move to the next record
+		 * @return false if there are no more records
+		 */
+		public boolean next() {
+			if(!stream.hasNext()) {
+				positioned = false;
+				return false;
+			}
+			
+			stream.next();
+			positioned = true;
+			return true;
+		}
+		
+		/**
+		 * @return the index of the current record
+		 */
+		public long index() {
+			return stream.index();
+		}
+		
+		/**
+		 * @param field which field of the current record to fetch
+		 * @return the value of that field
+		 */
+		public long get(int field) {
+			if(!positioned)
+				throw new IllegalStateException("the cursor is not on a record");
+			if(field < 0 || field >= width)
+				throw new IllegalArgumentException("Field " + field + " is not valid for records of width " + width);
+			
+			return stream.buffer().getLong(stream.position() + field * 8);
+		}
+	}
+}
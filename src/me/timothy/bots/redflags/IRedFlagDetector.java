@@ -20,6 +20,17 @@ public interface IRedFlagDetector {
 	 * @param username the username we are scanning
 	 */
 	public void start(Username username);
+	
+	/**
+	 * This is called instead of start when we're scanning the given username
+	 * again but only through the history that is newer than the last scan. The
+	 * history that follows continues from where the last scan left off.
+	 * 
+	 * @param username the username we are scanning
+	 * @param state what saveState returned at the end of the last scan
+	 */
+	public void resume(Username username, String state);
+	
 	/**
 	 * Parse the given comment and return any red flags it raised for you. The 
 	 * resulting red flags should not have been saved to the database yet, and
@@ -55,4 +66,12 @@ public interface IRedFlagDetector {
 	 * @return true for a resweep, false otherwise
 	 */
 	public boolean requiresResweep();
+	
+	/**
+	 * Called after finish() when a scan is complete to get whatever this
+	 * detector needs to resume the scan later with only newer history.
+	 * 
+	 * @return the state to pass to resume; never null
+	 */
+	public String saveState();
 }
@@ -28,6 +28,12 @@ public class RedFlagForActivityGapDetector implements IRedFlagDetector {
 	
 	@Override
 	public void start(Username username) {
+		lastTimestamp = null;
+	}
+	
+	@Override
+	public void resume(Username username, String state) {
+		lastTimestamp = state.isEmpty() ? null : new Timestamp(Long.parseLong(state));
 	}
 
 	private List<RedFlag> produceRedFlag(Timestamp gapStart, Timestamp gapEnd) {
@@ -75,5 +81,10 @@ public class RedFlagForActivityGapDetector implements IRedFlagDetector {
 	public boolean requiresResweep() {
 		return false;
 	}
+	
+	@Override
+	public String saveState() {
+		return lastTimestamp == null ? "" : Long.toString(lastTimestamp.getTime());
+	}
 
 }
@@ -2,7 +2,9 @@ package me.timothy.bots.redflags;
 
 import java.sql.Timestamp;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import me.timothy.bots.LoansDatabase;
 import me.timothy.bots.LoansFileConfiguration;
@@ -13,12 +15,17 @@ import me.timothy.bots.models.RedFlagUserHistoryLink;
 import me.timothy.bots.models.Username;
 
 /**
- * Adds a red flag for subreddits in the RedFlagForSubreddit table
+ * Adds a red flag for subreddits in the RedFlagForSubreddit table. The table is
+ * loaded once at the start of each sweep, so going through a history doesn't 
+ * touch the database and changes to the table show up on the next report.
  * 
  * @author Timothy
  */
 public class RedFlagForSubredditDetector implements IRedFlagDetector {
 	private LoansDatabase database;
+	
+	/** The flagged subreddits by lower-cased name, as of the start of this sweep */
+	private Map<String, RedFlagForSubreddit> flaggedSubreddits;
 
 	public RedFlagForSubredditDetector(LoansDatabase db, LoansFileConfiguration config) {
 		database = db;
@@ -26,10 +33,31 @@ public class RedFlagForSubredditDetector implements IRedFlagDetector {
 
 	@Override
 	public void start(Username username) {
+		loadFlaggedSubreddits();
+	}
+	
+	@Override
+	public void resume(Username username, String state) {
+		loadFlaggedSubreddits();
+	}
+	
+	/**
+	 * Loads every flagged subreddit into memory. Subreddit names are compared
+	 * without regard to case, just like the database does.
+	 */
+	private void loadFlaggedSubreddits() {
+		List<RedFlagForSubreddit> all = database.getRedFlagForSubredditMapping().fetchAll();
+		flaggedSubreddits = new HashMap<>(Math.max(16, all.size() * 2));
+		for(RedFlagForSubreddit redFlag : all) {
+			flaggedSubreddits.putIfAbsent(redFlag.subreddit.toLowerCase(), redFlag);
+		}
 	}
 
 	private List<RedFlag> redFlagForSubreddit(String subreddit) {
-		RedFlagForSubreddit redFlag = database.getRedFlagForSubredditMapping().fetchBySubreddit(subreddit);
+		if(subreddit == null)
+			return Collections.emptyList();
+		
+		RedFlagForSubreddit redFlag = flaggedSubreddits.get(subreddit.toLowerCase());
 
 		if(redFlag == null)
 			return Collections.emptyList();
@@ -56,4 +84,9 @@ public class RedFlagForSubredditDetector implements IRedFlagDetector {
 	public boolean requiresResweep() {
 		return false;
 	}
+	
+	@Override
+	public String saveState() {
+		return "";
+	}
 }
@@ -0,0 +1,344 @@
+package me.timothy.bots.redflags;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import me.timothy.bots.LoansBotUtils;
+import me.timothy.bots.LoansDatabase;
+import me.timothy.bots.diagnostics.LatencyHistogram;
+import me.timothy.bots.diagnostics.MetricsRegistry;
+import me.timothy.bots.models.RedFlagQueueSpot;
+
+/**
+ * <p>Generates red flag reports on several threads at once, as an alternative to
+ * {@link RedFlagsDriver#handleQueue(int)} on the driver thread. Each worker
+ * {@link me.timothy.bots.database.RedFlagQueueClaimMapping#claim(int, int, String, Timestamp) claims}
+ * the oldest spot in the queue for a username that no other worker has claimed, then
+ * crawls and scores that users history with its own detectors until the report is done.</p>
+ * 
+ * <p>The claims of every worker are renewed on a timer, so sorting and sweeping a long
+ * history or waiting on the rate limiter doesn't let them lapse. A claim which hasn't 
+ * been renewed for {@link #CLAIM_TIMEOUT_MS} is considered abandoned and the spot is 
+ * picked up by the next worker to look, continuing the report where it stopped. A 
+ * worker stops before its next write once it can't be sure it still holds its claim,
+ * so it never writes over the worker that took the spot over.</p>
+ * 
+ * <p>Every request to reddit still goes through the drivers shared
+ * {@link me.timothy.bots.scheduler.RedditRateLimiter rate limiter}, so adding workers
+ * lets reports use idle request capacity without crowding out summons.</p>
+ * 
+ * <p>The queue depth, claim latency, time spent queued and report duration are
+ * recorded in the default {@link MetricsRegistry} under "redflags.*".</p>
+ * 
+ * @author Timothy
+ */
+public class RedFlagWorkerPool {
+	private static final Logger logger = LogManager.getLogger();
+	/** How many requests a worker makes between checking if the pool is shutting down */
+	private static final int REQUESTS_PER_PASS = 10;
+	/** How long a worker waits before looking at an empty queue again */
+	private static final long IDLE_POLL_MS = 15000;
+	/** The longest a worker waits after repeated failures; the wait doubles from {@link #IDLE_POLL_MS} up to this */
+	private static final long MAX_FAILURE_BACKOFF_MS = 1000 * 60 * 5;
+	/** Claims which haven't been renewed for this long are abandoned */
+	private static final long CLAIM_TIMEOUT_MS = 1000 * 60 * 10;
+	/** How often held claims are renewed */
+	private static final long RENEWAL_INTERVAL_MS = 1000 * 60 * 2;
+	/** How many claimable spots are considered at once when claiming */
+	private static final int CLAIM_CANDIDATES = 5;
+	
+	private final RedFlagsDriver driver;
+	private final LoansDatabase database;
+	private final List<Thread> threads;
+	private final ScheduledExecutorService renewer;
+	private final Set<Claim> heldClaims;
+	private final LatencyHistogram claimLatency;
+	private final LatencyHistogram queuedLatency;
+	private final LatencyHistogram reportLatency;
+	private final LongAdder lostClaimsCounter;
+	private volatile boolean running;
+	
+	private long claims;
+	private long totalClaimMS;
+	private long maxClaimMS;
+	private long totalQueuedMS;
+	private long reports;
+	private long totalReportMS;
+	private long maxReportMS;
+	private long lostClaims;
+	
+	/**
+	 * Creates a pool of workers which aren't started yet
+	 * 
+	 * @param driver the driver which generates the reports
+	 * @param database the database
+	 * @param numWorkers the number of workers
+	 */
+	public RedFlagWorkerPool(RedFlagsDriver driver, LoansDatabase database, int numWorkers) {
+		if(numWorkers < 1)
+			throw new IllegalArgumentException("numWorkers must be at least 1");
+		
+		this.driver = driver;
+		this.database = database;
+		this.threads = new ArrayList<>();
+		for(int i = 1; i <= numWorkers; i++) {
+			final String name = "red-flag-worker-" + i;
+			Thread thread = new Thread(() -> work(name), name);
+			thread.setDaemon(true);
+			threads.add(thread);
+		}
+		this.renewer = Executors.newSingleThreadScheduledExecutor((r) -> {
+			Thread thread = new Thread(r, "red-flag-claim-renewer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.heldClaims = ConcurrentHashMap.newKeySet();
+		
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		this.claimLatency = metrics.histogram("redflags.claim");
+		this.queuedLatency = metrics.histogram("redflags.queued");
+		this.reportLatency = metrics.histogram("redflags.report");
+		this.lostClaimsCounter = metrics.counter("redflags.lost_claims");
+	}
+	
+	/**
+	 * Starts every worker
+	 */
+	public void start() {
+		running = true;
+		for(Thread thread : threads) {
+			thread.start();
+		}
+		renewer.scheduleWithFixedDelay(this::renewClaims, RENEWAL_INTERVAL_MS, RENEWAL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+		MetricsRegistry.getDefault().gauge("redflags.queue_depth", () -> database.getRedFlagQueueSpotMapping().countUncompleted());
+	}
+	
+	/**
+	 * Stops every worker, waiting briefly for them to save their progress. Reports
+	 * that were interrupted are continued from where they stopped once their claims
+	 * expire.
+	 */
+	public void shutdown() {
+		running = false;
+		for(Thread thread : threads) {
+			thread.interrupt();
+		}
+		try {
+			for(Thread thread : threads) {
+				thread.join(30000);
+			}
+		}catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}finally {
+			renewer.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Describes how long claims and reports have taken since the workers started
+	 * for diagnostics. The queue depth is the "redflags.queue_depth" gauge.
+	 * 
+	 * @return a short human-readable summary of the workers
+	 */
+	public String describe() {
+		synchronized(this) {
+			long avgClaim = claims == 0 ? 0 : totalClaimMS / claims;
+			long avgQueued = claims == 0 ? 0 : totalQueuedMS / claims;
+			long avgReport = reports == 0 ? 0 : totalReportMS / reports;
+			return String.format("%d workers, %d claims (avg %dms, max %dms, avg %s queued), "
+					+ "%d reports (avg %s, max %s), %d claims lost", threads.size(), claims, avgClaim, maxClaimMS,
+					LoansBotUtils.formatInterval(avgQueued), reports, LoansBotUtils.formatInterval(avgReport), 
+					LoansBotUtils.formatInterval(maxReportMS), lostClaims);
+		}
+	}
+	
+	/**
+	 * The loop run by each worker thread. After a failure the worker waits before
+	 * claiming again, twice as long for every failure in a row, so a spot which
+	 * keeps failing doesn't get retried in a tight loop.
+	 * 
+	 * @param name the name of this worker, which identifies its claims
+	 */
+	private void work(String name) {
+		List<IRedFlagDetector> detectors = driver.createDetectors();
+		int failures = 0;
+		while(running) {
+			boolean idle = true;
+			try {
+				if(!driver.isSuppressed()) {
+					Claim claim = claimNext(name);
+					if(claim != null) {
+						idle = false;
+						workOn(claim, detectors);
+					}
+				}
+				failures = 0;
+			}catch(Exception ex) {
+				failures++;
+				logger.error(name + " failed to generate a red flag report (" + failures + " failures in a row)");
+				logger.catching(ex);
+			}finally {
+				database.releaseConnection();
+			}
+			
+			long waitMS = 0;
+			if(failures > 0) {
+				waitMS = Math.min(IDLE_POLL_MS << Math.min(failures - 1, 8), MAX_FAILURE_BACKOFF_MS);
+			}else if(idle) {
+				waitMS = IDLE_POLL_MS;
+			}
+			if(waitMS > 0 && running) {
+				try {
+					Thread.sleep(waitMS);
+				}catch(InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Renews every claim held by a worker. Claims which were taken over are marked
+	 * lost, so their worker stops before its next write.
+	 */
+	private void renewClaims() {
+		try {
+			for(Claim claim : heldClaims) {
+				long now = System.currentTimeMillis();
+				if(database.getRedFlagQueueClaimMapping().renew(claim.spot.id, claim.worker)) {
+					claim.renewedAt = now;
+				}else if(heldClaims.contains(claim)) {
+					claim.lost = true;
+				}
+			}
+		}catch(Exception ex) {
+			// the claims are still checked by their age, and this runs again soon
+			logger.error("Failed to renew red flag queue claims");
+			logger.catching(ex);
+		}finally {
+			database.releaseConnection();
+		}
+	}
+	
+	/**
+	 * Claims the oldest spot in the queue for a username which isn't claimed by
+	 * another worker
+	 * 
+	 * @param name the name of this worker
+	 * @return the claim, or null if there is nothing to claim
+	 */
+	private Claim claimNext(String name) {
+		long start = System.currentTimeMillis();
+		long startNanos = System.nanoTime();
+		Timestamp staleBefore = new Timestamp(start - CLAIM_TIMEOUT_MS);
+		List<RedFlagQueueSpot> candidates = database.getRedFlagQueueSpotMapping().fetchOldestUnclaimed(staleBefore, CLAIM_CANDIDATES);
+		for(RedFlagQueueSpot candidate : candidates) {
+			long claimedAt = System.currentTimeMillis();
+			if(!database.getRedFlagQueueClaimMapping().claim(candidate.id, candidate.usernameId, name, staleBefore))
+				continue;
+			
+			// whoever had it before may have finished it since we looked
+			RedFlagQueueSpot spot = database.getRedFlagQueueSpotMapping().fetchByID(candidate.id);
+			if(spot.completedAt != null) {
+				database.getRedFlagQueueClaimMapping().release(spot.id, name);
+				continue;
+			}
+			
+			long now = System.currentTimeMillis();
+			claimLatency.record(System.nanoTime() - startNanos);
+			queuedLatency.record(TimeUnit.MILLISECONDS.toNanos(now - spot.createdAt.getTime()));
+			synchronized(this) {
+				claims++;
+				totalClaimMS += now - start;
+				maxClaimMS = Math.max(maxClaimMS, now - start);
+				totalQueuedMS += now - spot.createdAt.getTime();
+			}
+			logger.printf(Level.DEBUG, "%s claimed red flag queue spot %d", name, spot.id);
+			return new Claim(spot, name, claimedAt);
+		}
+		return null;
+	}
+	
+	/**
+	 * Works on the claimed spot until its report is done, the claim is lost,
+	 * or the pool is shut down. The claim is always released.
+	 * 
+	 * @param claim the claim on the spot
+	 * @param detectors this workers detectors
+	 */
+	private void workOn(Claim claim, List<IRedFlagDetector> detectors) {
+		RedFlagQueueSpot spot = claim.spot;
+		long start = System.nanoTime();
+		heldClaims.add(claim);
+		try {
+			while(running && spot.completedAt == null) {
+				driver.handleSpot(spot, REQUESTS_PER_PASS, detectors, claim::isHeld);
+			}
+		}catch(RedFlagsDriver.ClaimLostException ex) {
+			logger.printf(Level.WARN, "%s lost its claim on red flag queue spot %d", claim.worker, spot.id);
+			lostClaimsCounter.increment();
+			synchronized(this) {
+				lostClaims++;
+			}
+			return;
+		}finally {
+			heldClaims.remove(claim);
+			database.getRedFlagQueueClaimMapping().release(spot.id, claim.worker);
+		}
+		
+		if(spot.completedAt != null) {
+			long nanos = System.nanoTime() - start;
+			reportLatency.record(nanos);
+			long time = TimeUnit.NANOSECONDS.toMillis(nanos);
+			synchronized(this) {
+				reports++;
+				totalReportMS += time;
+				maxReportMS = Math.max(maxReportMS, time);
+			}
+		}
+	}
+	
+	/**
+	 * A claim held by one of the workers
+	 * 
+	 * @author Timothy
+	 */
+	private static class Claim {
+		final RedFlagQueueSpot spot;
+		final String worker;
+		/** When the claim was last taken or renewed, from just before the statement */
+		volatile long renewedAt;
+		/** If another worker took the spot over */
+		volatile boolean lost;
+		
+		Claim(RedFlagQueueSpot spot, String worker, long renewedAt) {
+			this.spot = spot;
+			this.worker = worker;
+			this.renewedAt = renewedAt;
+		}
+		
+		/**
+		 * Determines if the worker can be sure it still holds the claim. Another
+		 * worker can only take it over once it is abandoned, so the claim is held
+		 * until then; a renewal interval is left over so that a write started now
+		 * finishes before that.
+		 * 
+		 * @return if the claim is held
+		 */
+		boolean isHeld() {
+			return !lost && System.currentTimeMillis() - renewedAt < CLAIM_TIMEOUT_MS - RENEWAL_INTERVAL_MS;
+		}
+	}
+}
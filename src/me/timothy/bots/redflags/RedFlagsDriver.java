@@ -3,14 +3,20 @@ package me.timothy.bots.redflags;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.sql.Timestamp;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
 
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import me.timothy.bots.Bot;
@@ -19,14 +25,16 @@ import me.timothy.bots.LoansFileConfiguration;
 import me.timothy.bots.Retryable;
 import me.timothy.bots.database.RedFlagUserHistoryCommentMapping;
 import me.timothy.bots.database.RedFlagUserHistoryLinkMapping;
-import me.timothy.bots.database.RedFlagUserHistorySortMapping;
 import me.timothy.bots.models.RedFlag;
 import me.timothy.bots.models.RedFlagQueueSpot;
 import me.timothy.bots.models.RedFlagReport;
+import me.timothy.bots.models.RedFlagReportCheckpoint;
 import me.timothy.bots.models.RedFlagUserHistoryComment;
 import me.timothy.bots.models.RedFlagUserHistoryLink;
-import me.timothy.bots.models.RedFlagUserHistorySort;
 import me.timothy.bots.models.Username;
+import me.timothy.bots.scheduler.RedditRateLimiter;
+import me.timothy.bots.scheduler.RedditRateLimiter.Permit;
+import me.timothy.bots.scheduler.RedditRateLimiter.Priority;
 import me.timothy.jreddit.RedditUtils;
 import me.timothy.jreddit.info.Comment;
 import me.timothy.jreddit.info.Link;
@@ -41,13 +49,16 @@ import me.timothy.jreddit.info.Thing;
  */
 public class RedFlagsDriver {
 	private static final Logger logger = LogManager.getLogger();
-	protected final long briefPauseMS;
+	/** How many history items are sorted in memory before spilling to disk */
+	private static final int HISTORY_SORT_MEMORY_BUDGET = 1 << 16;
+	protected final RedditRateLimiter rateLimiter;
 	
 	protected LoansDatabase database;
 	protected LoansFileConfiguration config;
 	protected Bot bot;
 	protected Runnable maybeLoginAgainRunnable;
 	
+	/** The detectors used by {@link #handleQueue(int)} */
 	protected List<IRedFlagDetector> redFlagDetectors;
 	
 	/**
@@ -56,18 +67,39 @@ public class RedFlagsDriver {
 	 * @param loansConfig file configuration
 	 * @param loansBot bot
 	 * @param maybeLoginAgainRunnable the runnable to try relogging in 
+	 * @param rateLimiter paces requests to reddit
 	 */
 	public RedFlagsDriver(LoansDatabase loansDatabase, LoansFileConfiguration loansConfig, Bot loansBot, Runnable maybeLoginAgainRunnable,
-			long briefPauseMS) {
+			RedditRateLimiter rateLimiter) {
 		this.database = loansDatabase;
 		this.config = loansConfig;
 		this.bot = loansBot;
 		this.maybeLoginAgainRunnable = maybeLoginAgainRunnable;
-		this.briefPauseMS = briefPauseMS;
+		this.rateLimiter = rateLimiter;
 		
-		redFlagDetectors = new ArrayList<>();
-		redFlagDetectors.add(new RedFlagForSubredditDetector(loansDatabase, loansConfig));
-		redFlagDetectors.add(new RedFlagForActivityGapDetector());
+		redFlagDetectors = createDetectors();
+	}
+	
+	/**
+	 * Creates a new set of red flag detectors. Detectors keep state while going
+	 * through a users history, so each thread generating reports needs its own.
+	 * 
+	 * @return a new instance of every detector
+	 */
+	List<IRedFlagDetector> createDetectors() {
+		List<IRedFlagDetector> detectors = new ArrayList<>();
+		detectors.add(new RedFlagForSubredditDetector(database, config));
+		detectors.add(new RedFlagForActivityGapDetector());
+		return detectors;
+	}
+	
+	/**
+	 * Determines if red flag reports are turned off in the configuration
+	 * 
+	 * @return if red flag reports are suppressed
+	 */
+	public boolean isSuppressed() {
+		return config.getProperty("red_flags.suppress").equals("true");
 	}
 	
 	/**
@@ -82,7 +114,7 @@ public class RedFlagsDriver {
 		int requests = 0;
 		if(numRequests < 1)
 			return requests;
-		if(config.getProperty("red_flags.suppress").equals("true"))
+		if(isSuppressed())
 			return requests;
 		
 		while(requests < numRequests) {
@@ -106,34 +138,59 @@ public class RedFlagsDriver {
 		if(spot == null)
 			return 0;
 		
+		return handleSpot(spot, numRequests, redFlagDetectors, () -> true);
+	}
+	
+	/**
+	 * Start or continue the report for the given spot in the queue. The spot
+	 * is marked completed once the report is done.
+	 * 
+	 * @param spot the queue spot
+	 * @param numRequests approximately how many requests you want us to do
+	 * @param detectors the detectors to use, which must not be used by another thread at the same time
+	 * @param claimHeld checked before each write which whoever took the spot over could also make,
+	 * so that the report stops instead of writing over theirs
+	 * @return the number of requests performed
+	 * @throws ClaimLostException if claimHeld returns false
+	 */
+	int handleSpot(RedFlagQueueSpot spot, int numRequests, List<IRedFlagDetector> detectors, BooleanSupplier claimHeld) {
 		int requests;
 		if(spot.startedAt != null) {
-			requests = continueQueuedRedFlagReport(spot, numRequests);
+			requests = continueQueuedRedFlagReport(spot, numRequests, detectors, claimHeld);
 		}else {
-			requests = startQueuedRedFlagReport(spot, numRequests);
+			requests = startQueuedRedFlagReport(spot, numRequests, detectors, claimHeld);
 		}
 		
 		return requests;
 	}
 	
 	/**
-	 * Save the specified flags to the database for the given report after de-duplicating.
+	 * Stops the report on the spot if we no longer hold it
+	 * 
+	 * @param spot the queue spot
+	 * @param claimHeld if we still hold the spot
+	 * @throws ClaimLostException if claimHeld returns false
+	 */
+	private static void checkClaim(RedFlagQueueSpot spot, BooleanSupplier claimHeld) {
+		if(!claimHeld.getAsBoolean())
+			throw new ClaimLostException(spot.id);
+	}
+	
+	/**
+	 * Adds the specified flags to the flags found so far for a report, de-duplicating
+	 * by type and identifier. Nothing is saved until the report is done.
 	 * 
-	 * @param report the report
-	 * @param flags the flag
+	 * @param found the flags found so far by type and identifier
+	 * @param flags the flags to add, or null
 	 */
-	private void saveFlags(RedFlagReport report, List<RedFlag> flags) {
+	private void collectFlags(Map<Map.Entry<RedFlag.RedFlagType, String>, RedFlag> found, List<RedFlag> flags) {
 		if(flags == null)
 			return;
 		
 		for(RedFlag flag : flags) {
-			RedFlag similiar = database.getRedFlagMapping().fetchByReportAndTypeAndIden(report.id, flag.type.databaseIdentifier, flag.identifier);
+			RedFlag similiar = found.putIfAbsent(new AbstractMap.SimpleImmutableEntry<>(flag.type, flag.identifier), flag);
 			if(similiar != null) {
-				similiar.count++;
-				database.getRedFlagMapping().save(similiar);
-			}else {
-				flag.reportId = report.id;
-				database.getRedFlagMapping().save(flag);
+				similiar.count += flag.count;
 			}
 		}
 	}
@@ -143,9 +200,12 @@ public class RedFlagsDriver {
 	 * 
 	 * @param spot the queue spot
 	 * @param numRequests approximate number of requests we can make
+	 * @param detectors the detectors to use
+	 * @param claimHeld if we still hold the spot
 	 * @return the number of requests made
 	 */
-	private int continueQueuedRedFlagReport(RedFlagQueueSpot spot, int numRequests) {
+	private int continueQueuedRedFlagReport(RedFlagQueueSpot spot, int numRequests, List<IRedFlagDetector> detectors,
+			BooleanSupplier claimHeld) {
 		// if we got here we have a started_at and report_id 
 		// we may or may not have an after_fullname, but that's fine since we
 		// can pass null to start at the beginning (which is what we want if 
@@ -156,6 +216,13 @@ public class RedFlagsDriver {
 		RedFlagReport report = database.getRedFlagReportMapping().fetchByID(spot.reportId);
 		Username username = database.getUsernameMapping().fetchById(spot.usernameId);
 		logger.printf(Level.TRACE, "Continuing queued red flag report on %s (report id = %s)", username.username, report.id);
+		
+		// reports refreshed from an earlier report start with that reports checkpoint,
+		// and only need the history newer than it
+		RedFlagReportCheckpoint checkpoint = database.getRedFlagReportCheckpointMapping().fetchByReportID(report.id);
+		Map<String, String> detectorStates = (checkpoint == null) ? null : loadDetectorStates(checkpoint, detectors);
+		long checkpointMs = (detectorStates == null || checkpoint.newestCreatedAt == null) ? -1 : checkpoint.newestCreatedAt.getTime();
+		String checkpointFullname = (checkpointMs < 0) ? null : checkpoint.newestFullname;
 		int[] requests = new int[] { 0 };
 		while(requests[0] < numRequests) {
 			logger.trace("Fetching another page of history about " + username.username);
@@ -166,7 +233,7 @@ public class RedFlagsDriver {
 				protected Listing runImpl() throws Exception {
 					requests[0]++;
 					Listing result;
-					try {
+					try(Permit permit = rateLimiter.acquire(Priority.RED_FLAG_CRAWL)) {
 						result = RedditUtils.getUserHistory(username.username, "new", null, report.afterFullname, null, 25, bot.getUser());
 					}catch(FileNotFoundException exc) {
 						result = null;
@@ -184,92 +251,132 @@ public class RedFlagsDriver {
 				}
 				
 			}.run();
-			sleepFor(briefPauseMS);
 			
 			String oldestFullname = null;
 			double oldestRedditUTC = -1;
+			boolean reachedCheckpoint = false;
+			List<RedFlagUserHistoryComment> comments = new ArrayList<>();
+			List<RedFlagUserHistoryLink> links = new ArrayList<>();
 			for(int i = 0; i < history.numChildren(); i++) {
 				Thing child = history.getChild(i);
 				if(child instanceof Comment) {
 					Comment comment = (Comment)child;
+					if(reachedCheckpoint || isAtCheckpoint(comment.fullname(), comment.createdUTC(), checkpointMs, checkpointFullname)) {
+						reachedCheckpoint = true;
+						continue;
+					}
 					if(oldestFullname == null || (comment.createdUTC() < oldestRedditUTC)) {
 						oldestFullname = comment.fullname();
 						oldestRedditUTC = comment.createdUTC();
 					}
-					database.getRedFlagUserHistoryCommentMapping().save(new RedFlagUserHistoryComment(comment, report.id, username.userId));
+					comments.add(new RedFlagUserHistoryComment(comment, report.id, username.userId));
 				}else if(child instanceof Link) {
 					Link link = (Link)child;
+					if(reachedCheckpoint || isAtCheckpoint(link.fullname(), link.createdUTC(), checkpointMs, checkpointFullname)) {
+						reachedCheckpoint = true;
+						continue;
+					}
 					if(oldestFullname == null || (link.createdUTC() < oldestRedditUTC)) {
 						oldestFullname = link.fullname();
 						oldestRedditUTC = link.createdUTC();
 					}
-					database.getRedFlagUserHistoryLinkMapping().save(new RedFlagUserHistoryLink(link, report.id, username.userId));
+					links.add(new RedFlagUserHistoryLink(link, report.id, username.userId));
 				}
 			}
 			
-			if(oldestFullname == null) {
+			checkClaim(spot, claimHeld);
+			database.inTransaction((db) -> {
+				db.getRedFlagUserHistoryCommentMapping().saveAll(comments);
+				db.getRedFlagUserHistoryLinkMapping().saveAll(links);
+			});
+			
+			if(oldestFullname == null || reachedCheckpoint) {
 				// we're at the end
-				logger.trace("Reached the end of " + username.username + "'s history");
+				if(reachedCheckpoint) {
+					logger.trace("Reached " + username.username + "'s history from the previous report");
+				}else {
+					logger.trace("Reached the end of " + username.username + "'s history");
+				}
 				
 				logger.trace("Sorting " + username.username + "'s history for faster processing...");
 				long start = System.currentTimeMillis();
-				database.getRedFlagUserHistorySortMapping().produceSort(database, report.id);
+				SortedUserHistory history = SortedUserHistory.produce(database, report.id, HISTORY_SORT_MEMORY_BUDGET);
 				long time = System.currentTimeMillis() - start;
-				logger.printf(Level.TRACE, "Finished sorting history in %d milliseconds..", time);
+				logger.printf(Level.TRACE, "Finished sorting %d history items in %d milliseconds..", history.size(), time);
 				
 				logger.trace("Generating red flags...");
 				start = System.currentTimeMillis();
-				List<IRedFlagDetector> detectors = redFlagDetectors;
+				List<IRedFlagDetector> sweepDetectors = detectors;
 				RedFlagUserHistoryCommentMapping cMapping = database.getRedFlagUserHistoryCommentMapping();
 				RedFlagUserHistoryLinkMapping lMapping = database.getRedFlagUserHistoryLinkMapping();
-				RedFlagUserHistorySortMapping sMapping = database.getRedFlagUserHistorySortMapping();
+				SortedUserHistory.Item newest = null;
+				Map<Map.Entry<RedFlag.RedFlagType, String>, RedFlag> foundFlags = new LinkedHashMap<>();
 				
-				while(detectors != null) { 
-					long sweepStart = System.currentTimeMillis();
-					for(IRedFlagDetector detector : detectors) {
-						detector.start(username);
-					}
-					
-					RedFlagUserHistorySort next = sMapping.fetchNext(report.id, -1);
-					while(next != null) {
-						switch(next.table) { 
-						case Comment:
-							RedFlagUserHistoryComment comment = cMapping.fetchByID(next.foreignId);
-							for(IRedFlagDetector detector : detectors) {
-								saveFlags(report, detector.parseComment(comment));
+				try {
+					while(sweepDetectors != null) { 
+						checkClaim(spot, claimHeld);
+						long sweepStart = System.currentTimeMillis();
+						for(IRedFlagDetector detector : sweepDetectors) {
+							String state = (detectorStates == null) ? null : detectorStates.get(stateKey(detector));
+							if(state != null) {
+								detector.resume(username, state);
+							}else {
+								detector.start(username);
 							}
-							break;
-						case Link:
-							RedFlagUserHistoryLink link = lMapping.fetchByID(next.foreignId);
-							for(IRedFlagDetector detector : detectors) {
-								saveFlags(report, detector.parseLink(link));
+						}
+						
+						for(SortedUserHistory.Item item : history) {
+							newest = item;
+							if(item.comment != null) {
+								for(IRedFlagDetector detector : sweepDetectors) {
+									collectFlags(foundFlags, detector.parseComment(item.comment));
+								}
+							}else {
+								for(IRedFlagDetector detector : sweepDetectors) {
+									collectFlags(foundFlags, detector.parseLink(item.link));
+								}
 							}
-							break;
 						}
 						
-						next = sMapping.fetchNext(report.id, next.sort);
-					}
-					
-					List<IRedFlagDetector> newDetectors = null;
-					for(IRedFlagDetector detector : detectors) {
-						saveFlags(report, detector.finish());
-						if(detector.requiresResweep()) {
-							if(newDetectors == null) {
-								newDetectors = new ArrayList<>();
+						List<IRedFlagDetector> newDetectors = null;
+						for(IRedFlagDetector detector : sweepDetectors) {
+							collectFlags(foundFlags, detector.finish());
+							if(detector.requiresResweep()) {
+								if(newDetectors == null) {
+									newDetectors = new ArrayList<>();
+								}
+								newDetectors.add(detector);
+								
+								logger.printf(Level.TRACE, "Finished sweep in %d milliseconds - starting another sweep", System.currentTimeMillis() - sweepStart);
 							}
-							newDetectors.add(detector);
-							
-							logger.printf(Level.TRACE, "Finished sweep in %d milliseconds - starting another sweep", System.currentTimeMillis() - sweepStart);
 						}
+						sweepDetectors = newDetectors;
 					}
-					detectors = newDetectors;
+				}finally {
+					history.dispose();
 				}
 				time = System.currentTimeMillis() - start;
 				logger.printf(Level.TRACE, "Finished generating processing red flags in %d milliseconds", time);
 				
+				String newestFullname = (checkpoint == null) ? null : checkpoint.newestFullname;
+				Timestamp newestCreatedAt = (checkpoint == null) ? null : checkpoint.newestCreatedAt;
+				if(newest != null) {
+					newestFullname = (newest.comment != null) ? newest.comment.fullname : newest.link.fullname;
+					newestCreatedAt = (newest.comment != null) ? newest.comment.createdAt : newest.link.createdAt;
+				}
+				RedFlagReportCheckpoint newCheckpoint = new RedFlagReportCheckpoint(report.id, newestFullname, 
+						newestCreatedAt, saveDetectorStates(detectors), new Timestamp(System.currentTimeMillis()));
+				
+				// the flags and the checkpoint they lead up to are saved together
+				checkClaim(spot, claimHeld);
+				database.inTransaction((db) -> {
+					db.getRedFlagMapping().mergeIntoReport(report.id, foundFlags.values());
+					db.getRedFlagReportCheckpointMapping().save(newCheckpoint);
+				});
+				logger.printf(Level.TRACE, "Saved %d distinct red flags", foundFlags.size());
+				
 				logger.trace("Cleaning up red flag temporary table...");
 				start = System.currentTimeMillis();
-				sMapping.deleteByReport(report.id);
 				lMapping.deleteByReportID(report.id);
 				cMapping.deleteByReportID(report.id);
 				time = System.currentTimeMillis() - start;
@@ -278,7 +385,7 @@ public class RedFlagsDriver {
 				
 				
 				spot.completedAt = new Timestamp(System.currentTimeMillis());
-				database.getRedFlagQueueSpotMapping().save(spot);;
+				database.getRedFlagQueueSpotMapping().save(spot);
 				
 				report.completedAt = new Timestamp(System.currentTimeMillis());
 				database.getRedFlagReportMapping().save(report);
@@ -286,6 +393,7 @@ public class RedFlagsDriver {
 			}else {
 				logger.trace("We found more history (oldest fullname is now " + oldestFullname + " @ " + oldestRedditUTC + ")");
 				report.afterFullname = oldestFullname;
+				checkClaim(spot, claimHeld);
 				database.getRedFlagReportMapping().save(report);
 			}
 		}
@@ -298,9 +406,12 @@ public class RedFlagsDriver {
 	 * 
 	 * @param spot the queued spot
 	 * @param numRequests the approximate number of requests we can make
+	 * @param detectors the detectors to use
+	 * @param claimHeld if we still hold the spot
 	 * @return the number of requests made
 	 */
-	private int startQueuedRedFlagReport(RedFlagQueueSpot spot, int numRequests) {
+	private int startQueuedRedFlagReport(RedFlagQueueSpot spot, int numRequests, List<IRedFlagDetector> detectors, 
+			BooleanSupplier claimHeld) {
 		// We should determine if we already have a report for this guy
 		List<RedFlagReport> existingReports = database.getRedFlagReportMapping().fetchByUsernameID(spot.usernameId);
 		if(existingReports.size() != 0) {
@@ -323,16 +434,23 @@ public class RedFlagsDriver {
 					spot.startedAt = new Timestamp(System.currentTimeMillis());
 					spot.completedAt = new Timestamp(System.currentTimeMillis());
 					spot.reportId = latestReport.id;
+					checkClaim(spot, claimHeld);
 					database.getRedFlagQueueSpotMapping().save(spot);
 					Username username = database.getUsernameMapping().fetchById(spot.usernameId);
 					logger.debug("Not generating report on " + username.username + " - have recent enough report");
 					return 0;
 				}
+				
+				// it's too old, but we can pick up from where it left off
+				RedFlagReportCheckpoint checkpoint = database.getRedFlagReportCheckpointMapping().fetchByReportID(latestReport.id);
+				if(checkpoint != null && loadDetectorStates(checkpoint, detectors) != null) {
+					return startQueuedRedFlagReportFromCheckpoint(spot, latestReport, checkpoint, numRequests, detectors, claimHeld);
+				}
 			}
 		}
 		
 		// no report to use, lets get started
-		return startQueuedRedFlagReportWithNoPreviousReports(spot, numRequests);
+		return startQueuedRedFlagReportWithNoPreviousReports(spot, numRequests, detectors, claimHeld);
 	}
 	
 	/**
@@ -340,9 +458,12 @@ public class RedFlagsDriver {
 	 * 
 	 * @param spot the spot in the queue
 	 * @param numRequests the approximate number of requests we can make
+	 * @param detectors the detectors to use
+	 * @param claimHeld if we still hold the spot
 	 * @return the number of requests we made
 	 */
-	private int startQueuedRedFlagReportWithNoPreviousReports(RedFlagQueueSpot spot, int numRequests) {
+	private int startQueuedRedFlagReportWithNoPreviousReports(RedFlagQueueSpot spot, int numRequests, List<IRedFlagDetector> detectors,
+			BooleanSupplier claimHeld) {
 		Username username = database.getUsernameMapping().fetchById(spot.usernameId);
 		logger.info("Starting red flag report on " + username.username);
 		final long now = System.currentTimeMillis();
@@ -350,12 +471,123 @@ public class RedFlagsDriver {
 		spot.startedAt = new Timestamp(now);
 		
 		RedFlagReport report = new RedFlagReport(-1, spot.usernameId, null, new Timestamp(now), new Timestamp(now), null);
+		checkClaim(spot, claimHeld);
 		database.getRedFlagReportMapping().save(report);
 		
 		spot.reportId = report.id;
 		database.getRedFlagQueueSpotMapping().save(spot);
 		
-		return continueQueuedRedFlagReport(spot, numRequests);
+		return continueQueuedRedFlagReport(spot, numRequests, detectors, claimHeld);
+	}
+	
+	/**
+	 * Starts up a queued red flag report by refreshing a previous report on the same
+	 * username. The new report starts with the flags from the previous report and a 
+	 * copy of its checkpoint, so that only the newer history is fetched and the
+	 * detectors resume from where they were.
+	 * 
+	 * @param spot the spot in the queue
+	 * @param previous the completed report to refresh
+	 * @param checkpoint the checkpoint saved when the previous report completed
+	 * @param numRequests the approximate number of requests we can make
+	 * @param detectors the detectors to use
+	 * @param claimHeld if we still hold the spot
+	 * @return the number of requests we made
+	 */
+	private int startQueuedRedFlagReportFromCheckpoint(RedFlagQueueSpot spot, RedFlagReport previous, 
+			RedFlagReportCheckpoint checkpoint, int numRequests, List<IRedFlagDetector> detectors, BooleanSupplier claimHeld) {
+		Username username = database.getUsernameMapping().fetchById(spot.usernameId);
+		logger.info("Refreshing red flag report on " + username.username + " from report " + previous.id);
+		final long now = System.currentTimeMillis();
+		
+		spot.startedAt = new Timestamp(now);
+		
+		RedFlagReport report = new RedFlagReport(-1, spot.usernameId, null, new Timestamp(now), new Timestamp(now), null);
+		checkClaim(spot, claimHeld);
+		database.inTransaction((db) -> {
+			db.getRedFlagReportMapping().save(report);
+			db.getRedFlagMapping().copyToReport(previous.id, report.id);
+			db.getRedFlagReportCheckpointMapping().save(new RedFlagReportCheckpoint(report.id, checkpoint.newestFullname, 
+					checkpoint.newestCreatedAt, checkpoint.detectorState, new Timestamp(now)));
+			
+			spot.reportId = report.id;
+			db.getRedFlagQueueSpotMapping().save(spot);
+		});
+		
+		return continueQueuedRedFlagReport(spot, numRequests, detectors, claimHeld);
+	}
+	
+	/**
+	 * Determines if a history item, fetched newest first, is the first one that
+	 * was already covered by the checkpoint. Reddit only reports creation times to
+	 * the second, so an item from the same second as the checkpoint is only known to
+	 * be covered if it is the checkpoint item itself; the ones listed before it are
+	 * newer and the ones after it are skipped by the caller.
+	 * 
+	 * @param fullname the fullname of the item
+	 * @param createdUTC when the item was created in seconds since the epoch
+	 * @param checkpointMs when the newest item in the checkpoint was created, or -1 for no checkpoint
+	 * @param checkpointFullname the fullname of the newest item in the checkpoint
+	 * @return if this item and everything after it were already covered
+	 */
+	private static boolean isAtCheckpoint(String fullname, double createdUTC, long checkpointMs, String checkpointFullname) {
+		if(checkpointMs < 0)
+			return false;
+		return fullname.equals(checkpointFullname) || (long)(createdUTC * 1000) < checkpointMs;
+	}
+	
+	/**
+	 * Get the key that the state of the detector is saved under in a checkpoint
+	 * 
+	 * @param detector the detector
+	 * @return the key for the detector
+	 */
+	private static String stateKey(IRedFlagDetector detector) {
+		return detector.getClass().getSimpleName();
+	}
+	
+	/**
+	 * Saves the state of every detector as a json object for a checkpoint
+	 * 
+	 * @param detectors the detectors
+	 * @return the detector state for a checkpoint
+	 */
+	@SuppressWarnings("unchecked")
+	private String saveDetectorStates(List<IRedFlagDetector> detectors) {
+		JSONObject result = new JSONObject();
+		for(IRedFlagDetector detector : detectors) {
+			result.put(stateKey(detector), detector.saveState());
+		}
+		return result.toJSONString();
+	}
+	
+	/**
+	 * Loads the state of every detector from the checkpoint.
+	 * 
+	 * @param checkpoint the checkpoint
+	 * @param detectors the detectors
+	 * @return the state by detector key, or null if the checkpoint doesn't have state for every detector
+	 */
+	private Map<String, String> loadDetectorStates(RedFlagReportCheckpoint checkpoint, List<IRedFlagDetector> detectors) {
+		Object parsed;
+		try {
+			parsed = new JSONParser().parse(checkpoint.detectorState);
+		}catch(ParseException ex) {
+			logger.printf(Level.WARN, "Bad detector state on checkpoint for report %d: %s", checkpoint.reportId, ex.getMessage());
+			return null;
+		}
+		if(!(parsed instanceof JSONObject))
+			return null;
+		
+		JSONObject states = (JSONObject) parsed;
+		Map<String, String> result = new HashMap<>();
+		for(IRedFlagDetector detector : detectors) {
+			Object state = states.get(stateKey(detector));
+			if(!(state instanceof String))
+				return null;
+			result.put(stateKey(detector), (String) state);
+		}
+		return result;
 	}
 	
 	/**
@@ -366,28 +598,28 @@ public class RedFlagsDriver {
 	 * @param usernameId the id of the username to generate a report on
 	 */
 	public void enqueue(int usernameId) {
-		if(config.getProperty("red_flags.suppress").equals("true"))
+		if(isSuppressed())
 			return;
 		
 		database.getRedFlagQueueSpotMapping().save(
 				new RedFlagQueueSpot(-1, null, usernameId,
 						new Timestamp(System.currentTimeMillis()), null, null));
 	}
-
+	
 	/**
-	 * Sleeps for the specified time in milliseconds, as if by
-	 * {@code Thread.sleep(ms)}. Logs the exception and terminates
-	 * the program on error.
+	 * Thrown when the report on a queue spot stops because whoever was generating 
+	 * it no longer holds the spot. Nothing was written for the step it stopped at.
 	 * 
-	 * @param ms the time in milliseconds to sleep
+	 * @author Timothy
 	 */
-	protected void sleepFor(long ms) {
-		try {
-			logger.trace("Sleeping for " + ms + " milliseconds");
-			Thread.sleep(ms);
-		} catch (InterruptedException ex) {
-			logger.error(ex);
-			throw new RuntimeException("interrupted", ex);
+	static class ClaimLostException extends IllegalStateException {
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * @param queueSpotId the id of the queue spot that was lost
+		 */
+		ClaimLostException(int queueSpotId) {
+			super("Lost the claim on red flag queue spot " + queueSpotId);
 		}
 	}
 }
@@ -0,0 +1,226 @@
+package me.timothy.bots.redflags;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import me.timothy.bots.database.MappingDatabase;
+import me.timothy.bots.models.RedFlagUserHistoryComment;
+import me.timothy.bots.models.RedFlagUserHistoryLink;
+import me.timothy.bots.paging.PagingLongArray;
+
+/**
+ * <p>The comments and links saved for a red flag report, in the order they were
+ * posted. Links come before comments posted in the same second, and otherwise
+ * ties are broken by id.</p>
+ * 
+ * <p>Only the ids and created at times are loaded to produce the order. They are
+ * packed into longs (see {@link #pack(long, boolean, int)}) and sorted in a
+ * {@link PagingLongArray}, so very long histories spill to disk rather than
+ * memory. The comments and links themselves are loaded a page at a time while
+ * iterating.</p>
+ * 
+ * <p>This must be {@link #dispose() disposed} once it is no longer needed.</p>
+ * 
+ * @author Timothy
+ */
+public class SortedUserHistory implements Iterable<SortedUserHistory.Item> {
+	/**
+	 * A single comment or link in a users history. Exactly one of
+	 * comment and link is set.
+	 */
+	public static class Item {
+		/** The comment, or null if this is a link */
+		public final RedFlagUserHistoryComment comment;
+		/** The link, or null if this is a comment */
+		public final RedFlagUserHistoryLink link;
+		
+		private Item(RedFlagUserHistoryComment comment, RedFlagUserHistoryLink link) {
+			this.comment = comment;
+			this.link = link;
+		}
+	}
+	
+	/** 2005-01-01T00:00:00Z; nothing on reddit is older than this */
+	private static final long EPOCH_SECONDS = 1104537600L;
+	private static final int ID_BITS = 31;
+	private static final long ID_MASK = (1L << ID_BITS) - 1;
+	private static final long COMMENT_BIT = 1L << ID_BITS;
+	private static final int SECONDS_SHIFT = ID_BITS + 1;
+	/** Largest number of seconds since the epoch that fits in the remaining 31 bits */
+	private static final long MAX_SECONDS = (1L << (63 - SECONDS_SHIFT)) - 1;
+	
+	/** How many comments and links are fetched at a time while iterating */
+	private static final int FETCH_PAGE_SIZE = 250;
+	
+	private final MappingDatabase database;
+	private final PagingLongArray keys;
+	
+	private SortedUserHistory(MappingDatabase database, PagingLongArray keys) {
+		this.database = database;
+		this.keys = keys;
+	}
+	
+	/**
+	 * Sorts the history saved for the given report.
+	 * 
+	 * @param database the database containing the history
+	 * @param reportId the report whose history should be sorted
+	 * @param memoryBudget how many items may be held in memory before spilling to disk
+	 * @return the sorted history
+	 */
+	public static SortedUserHistory produce(MappingDatabase database, int reportId, int memoryBudget) {
+		PagingLongArray keys = new PagingLongArray(memoryBudget, true);
+		try {
+			database.getRedFlagUserHistoryLinkMapping().fetchIdsAndCreatedAtByReport(reportId,
+					(createdAt, id) -> keys.add(pack(toSeconds(createdAt), false, id)));
+			database.getRedFlagUserHistoryCommentMapping().fetchIdsAndCreatedAtByReport(reportId,
+					(createdAt, id) -> keys.add(pack(toSeconds(createdAt), true, id)));
+			
+			if(keys.size() > 0) {
+				keys.sort();
+			}
+		}catch(RuntimeException ex) {
+			keys.dispose();
+			throw ex;
+		}
+		return new SortedUserHistory(database, keys);
+	}
+	
+	/**
+	 * @return the number of comments and links in the history
+	 */
+	public long size() {
+		return keys.size();
+	}
+	
+	/**
+	 * Iterates the history in order. The history may be iterated more
+	 * than once, but not concurrently.
+	 */
+	@Override
+	public Iterator<Item> iterator() {
+		return new Iterator<Item>() {
+			private PrimitiveIterator.OfLong keyIterator = keys.iterator();
+			private long[] pageKeys = new long[FETCH_PAGE_SIZE];
+			private List<Item> page = new ArrayList<>();
+			private int pageIndex = 0;
+			
+			@Override
+			public boolean hasNext() {
+				// skips pages whose items were all deleted since sorting
+				while(pageIndex >= page.size() && keyIterator.hasNext()) {
+					int numKeys = 0;
+					while(numKeys < FETCH_PAGE_SIZE && keyIterator.hasNext()) {
+						pageKeys[numKeys++] = keyIterator.nextLong();
+					}
+					page = fetchPage(pageKeys, numKeys);
+					pageIndex = 0;
+				}
+				return pageIndex < page.size();
+			}
+			
+			@Override
+			public Item next() {
+				if(!hasNext())
+					throw new NoSuchElementException();
+				return page.get(pageIndex++);
+			}
+		};
+	}
+	
+	/**
+	 * Deletes any files used to sort the history
+	 */
+	public void dispose() {
+		keys.dispose();
+	}
+	
+	/**
+	 * Loads the comments and links for the given keys, in order
+	 * 
+	 * @param pageKeys the keys
+	 * @param numKeys how many of pageKeys are used
+	 * @return the items for those keys
+	 */
+	private List<Item> fetchPage(long[] pageKeys, int numKeys) {
+		int[] commentIds = new int[numKeys];
+		int[] linkIds = new int[numKeys];
+		int numComments = 0, numLinks = 0;
+		for(int i = 0; i < numKeys; i++) {
+			long key = pageKeys[i];
+			if(isComment(key)) {
+				commentIds[numComments++] = unpackId(key);
+			}else {
+				linkIds[numLinks++] = unpackId(key);
+			}
+		}
+		
+		Map<Integer, RedFlagUserHistoryComment> comments = new HashMap<>();
+		if(numComments > 0) {
+			int[] ids = new int[numComments];
+			System.arraycopy(commentIds, 0, ids, 0, numComments);
+			for(RedFlagUserHistoryComment comment : database.getRedFlagUserHistoryCommentMapping().fetchByIDs(ids)) {
+				comments.put(comment.id, comment);
+			}
+		}
+		
+		Map<Integer, RedFlagUserHistoryLink> links = new HashMap<>();
+		if(numLinks > 0) {
+			int[] ids = new int[numLinks];
+			System.arraycopy(linkIds, 0, ids, 0, numLinks);
+			for(RedFlagUserHistoryLink link : database.getRedFlagUserHistoryLinkMapping().fetchByIDs(ids)) {
+				links.put(link.id, link);
+			}
+		}
+		
+		List<Item> result = new ArrayList<>(numKeys);
+		for(int i = 0; i < numKeys; i++) {
+			long key = pageKeys[i];
+			if(isComment(key)) {
+				RedFlagUserHistoryComment comment = comments.get(unpackId(key));
+				if(comment != null) {
+					result.add(new Item(comment, null));
+				}
+			}else {
+				RedFlagUserHistoryLink link = links.get(unpackId(key));
+				if(link != null) {
+					result.add(new Item(null, link));
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Packs a history item into a long which sorts by time, then links before
+	 * comments, then id. From the most significant bit: 1 unused sign bit, 31
+	 * bits of seconds since 2005, 1 bit which is set for comments, 31 bits of id.
+	 * 
+	 * @param seconds the seconds since the epoch the item was created at
+	 * @param comment true for a comment, false for a link
+	 * @param id the id of the item
+	 * @return the packed item
+	 */
+	private static long pack(long seconds, boolean comment, int id) {
+		long sinceEpoch = Math.max(0, Math.min(MAX_SECONDS, seconds - EPOCH_SECONDS));
+		return (sinceEpoch << SECONDS_SHIFT) | (comment ? COMMENT_BIT : 0) | (id & ID_MASK);
+	}
+	
+	private static boolean isComment(long key) {
+		return (key & COMMENT_BIT) != 0;
+	}
+	
+	private static int unpackId(long key) {
+		return (int) (key & ID_MASK);
+	}
+	
+	private static long toSeconds(Timestamp timestamp) {
+		return Math.floorDiv(timestamp.getTime(), 1000L);
+	}
+}
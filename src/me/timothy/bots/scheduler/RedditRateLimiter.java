@@ -0,0 +1,243 @@
+package me.timothy.bots.scheduler;
+
+import java.util.function.LongSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import me.timothy.bots.diagnostics.LatencyHistogram;
+import me.timothy.bots.diagnostics.MetricsRegistry;
+
+/**
+ * <p>Paces every request the bot makes to reddit. Callers {@link #acquire(Priority) acquire}
+ * a permit immediately before each request, rather than sleeping for a fixed time
+ * after it, so an idle bot can answer a burst of summons without waiting.</p>
+ * 
+ * <p>Permits come from a token bucket which holds up to a fixed burst and refills
+ * at a steady rate. The rate should stay under reddits documented limit, since
+ * the reddit library doesn't expose the X-Ratelimit headers of its responses.</p>
+ * 
+ * <p>When several threads are waiting, a permit always goes to the highest
+ * {@link Priority priority} waiting.</p>
+ * 
+ * <p>The permit should be closed as soon as the request is done, ideally with
+ * try-with-resources, so how long reddit takes to answer is recorded in the
+ * "reddit.&lt;priority&gt;" histogram of the default {@link MetricsRegistry}.
+ * How long the permit took to get is recorded in "reddit.&lt;priority&gt;.wait".</p>
+ * 
+ * @author Timothy
+ */
+public class RedditRateLimiter {
+	private static final Logger logger = LogManager.getLogger();
+	
+	/**
+	 * The classes of reddit requests, from most to least important
+	 */
+	public enum Priority {
+		/** Replying to summons, and anything needed to decide how to reply */
+		REPLY,
+		/** Sending personal messages such as claim codes and reset password links */
+		MESSAGE,
+		/** Rechecks and other background maintenance such as the lenders camp */
+		RECHECK,
+		/** Crawling user histories for red flag reports */
+		RED_FLAG_CRAWL
+	}
+	
+	private final double burst;
+	private final double tokensPerMS;
+	/** The current time in milliseconds */
+	private final LongSupplier clock;
+	
+	private double tokens;
+	private long lastRefillAt;
+	
+	private final int[] waiting;
+	private final long[] acquired;
+	private final long[] totalWaitMS;
+	private final long[] maxWaitMS;
+	
+	private final LatencyHistogram[] requestLatency;
+	private final LatencyHistogram[] waitLatency;
+	
+	/**
+	 * Creates a limiter which starts with a full bucket
+	 * 
+	 * @param burst how many requests may be made back-to-back after being idle
+	 * @param requestsPerMinute the sustained rate
+	 */
+	public RedditRateLimiter(int burst, double requestsPerMinute) {
+		this(burst, requestsPerMinute, System::currentTimeMillis);
+	}
+	
+	/**
+	 * Creates a limiter which starts with a full bucket and tells time with
+	 * the given clock. Waiting threads check the clock again at least as often
+	 * as they expect a permit, so a clock which jumps ahead is noticed.
+	 * 
+	 * @param burst how many requests may be made back-to-back after being idle
+	 * @param requestsPerMinute the sustained rate
+	 * @param clock supplies the current time in milliseconds
+	 */
+	public RedditRateLimiter(int burst, double requestsPerMinute, LongSupplier clock) {
+		if(burst < 1)
+			throw new IllegalArgumentException("burst must be at least 1");
+		if(requestsPerMinute <= 0)
+			throw new IllegalArgumentException("requestsPerMinute must be positive");
+		
+		this.burst = burst;
+		this.tokensPerMS = requestsPerMinute / (1000 * 60);
+		this.clock = clock;
+		this.tokens = burst;
+		this.lastRefillAt = clock.getAsLong();
+		
+		int numPriorities = Priority.values().length;
+		waiting = new int[numPriorities];
+		acquired = new long[numPriorities];
+		totalWaitMS = new long[numPriorities];
+		maxWaitMS = new long[numPriorities];
+		
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		requestLatency = new LatencyHistogram[numPriorities];
+		waitLatency = new LatencyHistogram[numPriorities];
+		for(Priority priority : Priority.values()) {
+			String name = "reddit." + priority.name().toLowerCase();
+			requestLatency[priority.ordinal()] = metrics.histogram(name);
+			waitLatency[priority.ordinal()] = metrics.histogram(name + ".wait");
+		}
+	}
+	
+	/**
+	 * Blocks until a request with the given priority may be made, then
+	 * uses up that permit.
+	 * 
+	 * @param priority what the request is for
+	 * @return the permit, which should be closed once the request is done
+	 */
+	public synchronized Permit acquire(Priority priority) {
+		long start = clock.getAsLong();
+		long startNanos = System.nanoTime();
+		int index = priority.ordinal();
+		waiting[index]++;
+		try {
+			while(true) {
+				refill(clock.getAsLong());
+				
+				long waitMS = timeUntilPermit();
+				if(waitMS == 0 && !higherPriorityWaiting(index)) {
+					tokens -= 1;
+					break;
+				}
+				
+				// woken early when a permit is taken
+				wait(Math.max(1, waitMS));
+			}
+		}catch(InterruptedException ex) {
+			logger.error(ex);
+			throw new RuntimeException("interrupted", ex);
+		}finally {
+			waiting[index]--;
+			notifyAll();
+		}
+		
+		long waited = clock.getAsLong() - start;
+		acquired[index]++;
+		totalWaitMS[index] += waited;
+		maxWaitMS[index] = Math.max(maxWaitMS[index], waited);
+		
+		long acquiredAt = System.nanoTime();
+		waitLatency[index].record(acquiredAt - startNanos);
+		return new Permit(requestLatency[index], acquiredAt);
+	}
+	
+	/**
+	 * @return how many threads are waiting for a permit right now
+	 */
+	public synchronized int getWaiting() {
+		int result = 0;
+		for(int count : waiting) {
+			result += count;
+		}
+		return result;
+	}
+	
+	/**
+	 * Describes how long each priority has waited for permits for diagnostics
+	 * 
+	 * @return a short human-readable summary of the waits
+	 */
+	public synchronized String describe() {
+		StringBuilder result = new StringBuilder();
+		for(Priority priority : Priority.values()) {
+			int index = priority.ordinal();
+			if(result.length() > 0)
+				result.append(", ");
+			
+			long avgWait = acquired[index] == 0 ? 0 : totalWaitMS[index] / acquired[index];
+			result.append(String.format("%s %d requests (avg wait %dms, max %dms)", priority.name().toLowerCase(),
+					acquired[index], avgWait, maxWaitMS[index]));
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * Adds the tokens earned since the last refill. Must be called while
+	 * synchronized on this.
+	 * 
+	 * @param now the current time
+	 */
+	private void refill(long now) {
+		long elapsed = now - lastRefillAt;
+		if(elapsed > 0) {
+			tokens = Math.min(burst, tokens + elapsed * tokensPerMS);
+			lastRefillAt = now;
+		}
+	}
+	
+	/**
+	 * Determines how long until a permit is available, ignoring priority. Must be
+	 * called while synchronized on this, just after refilling.
+	 * 
+	 * @return 0 if a permit is available now, otherwise milliseconds to wait
+	 */
+	private long timeUntilPermit() {
+		if(tokens >= 1)
+			return 0;
+		
+		return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerMS));
+	}
+	
+	private boolean higherPriorityWaiting(int index) {
+		for(int i = 0; i < index; i++) {
+			if(waiting[i] > 0)
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Permission to make a single request to reddit. Closing it records how
+	 * long the request took; closing it again does nothing.
+	 * 
+	 * @author Timothy
+	 */
+	public static class Permit implements AutoCloseable {
+		private final LatencyHistogram latency;
+		private final long acquiredAt;
+		private boolean closed;
+		
+		private Permit(LatencyHistogram latency, long acquiredAt) {
+			this.latency = latency;
+			this.acquiredAt = acquiredAt;
+		}
+		
+		@Override
+		public void close() {
+			if(closed)
+				return;
+			
+			closed = true;
+			latency.record(System.nanoTime() - acquiredAt);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package me.timothy.bots.scheduler;
+
+import me.timothy.bots.diagnostics.LatencyHistogram;
+import me.timothy.bots.diagnostics.MetricsRegistry;
+
+/**
+ * Describes a piece of recurring work for the {@link TaskScheduler}, such as
+ * sending claim codes or pruning a table, along with how often it should run
+ * and how long it is expected to take.
+ * 
+ * @author Timothy
+ */
+public class ScheduledTask {
+	/**
+	 * Where a task is allowed to run
+	 */
+	public enum TaskType {
+		/**
+		 * The task talks to reddit. These run on the driver thread, one at
+		 * a time, after summons have been handled.
+		 */
+		REDDIT,
+		
+		/**
+		 * The task only touches the database or local files. These run on
+		 * worker threads alongside everything else.
+		 */
+		DATABASE
+	}
+	
+	/** A short name for logging and diagnostics */
+	public final String name;
+	/** Where this task runs */
+	public final TaskType type;
+	/** Lower priorities run first when several tasks are due */
+	public final int priority;
+	/** The minimum time between the start of one run and the next */
+	public final long intervalMS;
+	/** How long a single run is expected to take; longer runs are logged */
+	public final long timeBudgetMS;
+	/** The work itself */
+	public final Runnable work;
+	
+	/** When this task was last started, or 0 if never */
+	long lastStartedAt;
+	/** How long the last run took */
+	long lastDurationMS;
+	/** How many times this task has run */
+	long runs;
+	/** How many runs have taken longer than the time budget */
+	long overBudgetRuns;
+	/** If this task is currently running (only used for database tasks) */
+	boolean running;
+	/** If this task was due but did not fit in the last loops reddit budget (only used for reddit tasks) */
+	boolean deferred;
+	/** How long each run takes, reported as "task.<name>" */
+	final LatencyHistogram latency;
+	
+	/**
+	 * Creates a new task
+	 * 
+	 * @param name a short name for logging
+	 * @param type where the task is allowed to run
+	 * @param priority lower priorities run first
+	 * @param intervalMS the minimum time between runs, or 0 to run every loop
+	 * @param timeBudgetMS how long a run is expected to take
+	 * @param work the work to do
+	 */
+	public ScheduledTask(String name, TaskType type, int priority, long intervalMS, long timeBudgetMS, Runnable work) {
+		this.name = name;
+		this.type = type;
+		this.priority = priority;
+		this.intervalMS = intervalMS;
+		this.timeBudgetMS = timeBudgetMS;
+		this.work = work;
+		this.latency = MetricsRegistry.getDefault().histogram("task." + name);
+	}
+	
+	/**
+	 * Determines if this task should run now
+	 * 
+	 * @param now the current time in milliseconds since the epoch
+	 * @return if this task is due
+	 */
+	boolean isDue(long now) {
+		return !running && (lastStartedAt == 0 || now - lastStartedAt >= intervalMS);
+	}
+}
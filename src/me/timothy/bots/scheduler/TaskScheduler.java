@@ -0,0 +1,187 @@
+package me.timothy.bots.scheduler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import me.timothy.bots.scheduler.ScheduledTask.TaskType;
+
+/**
+ * <p>Runs the drivers recurring work. Each {@link ScheduledTask task} has its own
+ * interval, priority and time budget.</p>
+ * 
+ * <p>{@link #runDue()} should be called once per loop, after summons have been
+ * handled so they always get the first claim on the reddit API. It hands every
+ * due {@link TaskType#DATABASE database} task to a small pool of worker threads,
+ * and then runs the due {@link TaskType#REDDIT reddit} tasks on the calling thread
+ * in order of priority until the loops reddit budget is spent. Reddit tasks which
+ * did not fit are deferred, and deferred tasks run before any other reddit task on
+ * the next loop, so a slow high priority task can't starve the ones after it. Reddit
+ * tasks pace their own requests through the {@link RedditRateLimiter}.</p>
+ * 
+ * @author Timothy
+ */
+public class TaskScheduler {
+	private static final Logger logger = LogManager.getLogger();
+	
+	private final List<ScheduledTask> tasks;
+	private final ExecutorService workers;
+	private final long redditBudgetPerLoopMS;
+	private final Runnable afterWorkerTask;
+	
+	/**
+	 * Creates a scheduler with no tasks
+	 * 
+	 * @param numWorkers the number of threads for database tasks
+	 * @param redditBudgetPerLoopMS how long reddit tasks may take in total per loop; the
+	 *                              first due task always runs
+	 * @param afterWorkerTask run on a worker thread after each database task (such as
+	 *                        releasing its database connection)
+	 */
+	public TaskScheduler(int numWorkers, long redditBudgetPerLoopMS, Runnable afterWorkerTask) {
+		this.tasks = new ArrayList<>();
+		this.redditBudgetPerLoopMS = redditBudgetPerLoopMS;
+		this.afterWorkerTask = afterWorkerTask;
+		
+		AtomicInteger counter = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(numWorkers, (runnable) -> {
+			Thread thread = new Thread(runnable, "scheduler-worker-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * Adds the task to this scheduler. It will be due immediately.
+	 * 
+	 * @param task the task
+	 */
+	public synchronized void schedule(ScheduledTask task) {
+		tasks.add(task);
+		tasks.sort(Comparator.comparingInt((ScheduledTask t) -> t.priority));
+	}
+	
+	/**
+	 * Starts every due database task on the workers, then runs due reddit
+	 * tasks on this thread until the reddit budget for this loop is spent.
+	 * Reddit tasks deferred by the last call run first, in priority order.
+	 * Exceptions from reddit tasks are passed on to the caller; exceptions
+	 * from database tasks are logged.
+	 */
+	public void runDue() {
+		long now = System.currentTimeMillis();
+		List<ScheduledTask> dueReddit = new ArrayList<>();
+		synchronized(this) {
+			for(ScheduledTask task : tasks) {
+				if(!task.isDue(now))
+					continue;
+				
+				if(task.type == TaskType.DATABASE) {
+					task.running = true;
+					task.lastStartedAt = now;
+					workers.execute(() -> runOnWorker(task));
+				}else {
+					dueReddit.add(task);
+				}
+			}
+		}
+		
+		// stable, so both groups stay in priority order
+		dueReddit.sort(Comparator.comparing((ScheduledTask t) -> !t.deferred));
+		
+		long loopStart = System.currentTimeMillis();
+		for(int i = 0; i < dueReddit.size(); i++) {
+			ScheduledTask task = dueReddit.get(i);
+			long elapsed = System.currentTimeMillis() - loopStart;
+			if(elapsed > 0 && elapsed >= redditBudgetPerLoopMS) {
+				synchronized(this) {
+					for(ScheduledTask skipped : dueReddit.subList(i, dueReddit.size())) {
+						logger.printf(Level.DEBUG, "Reddit budget spent after %d ms; deferring %s", elapsed, skipped.name);
+						skipped.deferred = true;
+					}
+				}
+				break;
+			}
+			
+			logger.debug("Running " + task.name + "..");
+			long start = System.currentTimeMillis();
+			synchronized(this) {
+				task.lastStartedAt = start;
+				task.deferred = false;
+			}
+			long startNanos = System.nanoTime();
+			try {
+				task.work.run();
+			}finally {
+				finished(task, System.nanoTime() - startNanos);
+			}
+		}
+	}
+	
+	/**
+	 * Describes how long each task took to run last time for diagnostics
+	 * 
+	 * @return a short human-readable summary of every task
+	 */
+	public synchronized String describe() {
+		StringBuilder result = new StringBuilder();
+		for(ScheduledTask task : tasks) {
+			if(result.length() > 0)
+				result.append(", ");
+			result.append(String.format("%s %dms (%d runs, %d over budget)", task.name, task.lastDurationMS,
+					task.runs, task.overBudgetRuns));
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * Stops the workers, waiting briefly for running tasks to finish
+	 */
+	public void shutdown() {
+		workers.shutdown();
+		try {
+			if(!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+				logger.warn("Scheduler workers did not finish within 30 seconds");
+			}
+		}catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void runOnWorker(ScheduledTask task) {
+		long startNanos = System.nanoTime();
+		try {
+			task.work.run();
+		}catch(Exception ex) {
+			logger.error("Scheduled task " + task.name + " failed");
+			logger.catching(ex);
+		}finally {
+			finished(task, System.nanoTime() - startNanos);
+			try {
+				afterWorkerTask.run();
+			}catch(Exception ex) {
+				logger.catching(ex);
+			}
+		}
+	}
+	
+	private synchronized void finished(ScheduledTask task, long durationNanos) {
+		long durationMS = TimeUnit.NANOSECONDS.toMillis(durationNanos);
+		task.latency.record(durationNanos);
+		task.running = false;
+		task.lastDurationMS = durationMS;
+		task.runs++;
+		if(durationMS > task.timeBudgetMS) {
+			task.overBudgetRuns++;
+			logger.printf(Level.WARN, "%s took %d ms (budget is %d ms)", task.name, durationMS, task.timeBudgetMS);
+		}
+	}
+}
@@ -4,6 +4,7 @@ import me.timothy.bots.Database;
 import me.timothy.bots.FileConfiguration;
 import me.timothy.bots.LoansDatabase;
 import me.timothy.bots.summon.patterns.PatternFactory;
+import me.timothy.bots.summon.patterns.SummonDispatcher;
 import me.timothy.bots.summon.patterns.SummonPattern;
 import me.timothy.jreddit.info.Comment;
 
@@ -17,10 +18,19 @@ import me.timothy.jreddit.info.Comment;
 public class BadLoanSummon implements CommentSummon {
 	private static final SummonPattern BAD_LOAN_PATTERN = new PatternFactory().addCaseInsensLiteral("$loan").addUsername("user1").addMoney("money1").build();
 
+	/**
+	 * Get the pattern that comments are matched against
+	 * 
+	 * @return the pattern for this summon
+	 */
+	public static SummonPattern getPattern() {
+		return BAD_LOAN_PATTERN;
+	}
+
 
 	@Override
 	public boolean mightInteractWith(Comment comment, Database db, FileConfiguration config) {
-		return BAD_LOAN_PATTERN.matcher(comment.body()).find();
+		return SummonDispatcher.COMMENTS.match(BAD_LOAN_PATTERN, comment.body()) != null;
 	}
 	
 	@Override
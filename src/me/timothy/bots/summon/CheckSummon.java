@@ -20,7 +20,8 @@ import me.timothy.bots.responses.ResponseFormatter;
 import me.timothy.bots.responses.ResponseInfo;
 import me.timothy.bots.responses.ResponseInfoFactory;
 import me.timothy.bots.summon.patterns.PatternFactory;
-import me.timothy.bots.summon.patterns.SummonMatcher;
+import me.timothy.bots.summon.patterns.SummonDispatcher;
+import me.timothy.bots.summon.patterns.SummonMatch;
 import me.timothy.bots.summon.patterns.SummonPattern;
 import me.timothy.jreddit.info.Comment;
 import me.timothy.jreddit.info.Link;
@@ -38,6 +39,15 @@ public class CheckSummon implements CommentSummon, LinkSummon {
 	 */
 	private static final SummonPattern CHECK_PATTERN = new PatternFactory().addCaseInsensLiteral("$check").addUsername("user1").build();
 
+	/**
+	 * Get the pattern that comments are matched against
+	 * 
+	 * @return the pattern for this summon
+	 */
+	public static SummonPattern getPattern() {
+		return CHECK_PATTERN;
+	}
+
 	private Logger logger;
 
 	public CheckSummon() {
@@ -139,7 +149,7 @@ public class CheckSummon implements CommentSummon, LinkSummon {
 
 	@Override
 	public boolean mightInteractWith(Comment comment, Database db, FileConfiguration config) {
-		return CHECK_PATTERN.matcher(comment.body()).find();
+		return SummonDispatcher.COMMENTS.match(CHECK_PATTERN, comment.body()) != null;
 	}
 	
 	@Override
@@ -148,12 +158,12 @@ public class CheckSummon implements CommentSummon, LinkSummon {
 			return null;
 		}
 		
-		SummonMatcher matcher = CHECK_PATTERN.matcher(comment.body());
+		SummonMatch match = SummonDispatcher.COMMENTS.match(CHECK_PATTERN, comment.body());
 		
-		if(matcher.find()) {
+		if(match != null) {
 			LoansDatabase database = (LoansDatabase) db;
 			
-			ResponseInfo respInfo = matcher.group();
+			ResponseInfo respInfo = match.group();
 			String author = comment.author();
 			ResponseInfoFactory.addCommentDetails(respInfo, comment);
 			String checked = respInfo.getObject("user1").toString();
@@ -18,7 +18,8 @@ import me.timothy.bots.responses.ResponseFormatter;
 import me.timothy.bots.responses.ResponseInfo;
 import me.timothy.bots.responses.ResponseInfoFactory;
 import me.timothy.bots.summon.patterns.PatternFactory;
-import me.timothy.bots.summon.patterns.SummonMatcher;
+import me.timothy.bots.summon.patterns.SummonDispatcher;
+import me.timothy.bots.summon.patterns.SummonMatch;
 import me.timothy.bots.summon.patterns.SummonPattern;
 import me.timothy.jreddit.info.Comment;
 
@@ -40,6 +41,15 @@ public class ConfirmSummon implements CommentSummon {
 			.addCurrency("convert_from", true)
 			.build();
 
+	/**
+	 * Get the pattern that comments are matched against
+	 * 
+	 * @return the pattern for this summon
+	 */
+	public static SummonPattern getPattern() {
+		return CONFIRM_PATTERN;
+	}
+
 	private Logger logger;
 
 	public ConfirmSummon() {
@@ -48,7 +58,7 @@ public class ConfirmSummon implements CommentSummon {
 
 	@Override
 	public boolean mightInteractWith(Comment comment, Database db, FileConfiguration config) {
-		return CONFIRM_PATTERN.matcher(comment.body()).find();
+		return SummonDispatcher.COMMENTS.match(CONFIRM_PATTERN, comment.body()) != null;
 	}
 	
 	@Override
@@ -56,9 +66,9 @@ public class ConfirmSummon implements CommentSummon {
 		if(comment.author().equalsIgnoreCase(config.getProperty("user.username")))
 			return null;
 		
-		SummonMatcher matcher = CONFIRM_PATTERN.matcher(comment.body());
-		if(matcher.find()) {
-			ResponseInfo ri = matcher.group();
+		SummonMatch match = SummonDispatcher.COMMENTS.match(CONFIRM_PATTERN, comment.body());
+		if(match != null) {
+			ResponseInfo ri = match.group();
 			ResponseInfoFactory.addCommentDetails(ri, comment);
 			
 			String borrower = ri.getObject("author").toString().toLowerCase();
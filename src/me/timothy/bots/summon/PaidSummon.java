@@ -25,7 +25,8 @@ import me.timothy.bots.responses.ResponseFormatter;
 import me.timothy.bots.responses.ResponseInfo;
 import me.timothy.bots.responses.ResponseInfoFactory;
 import me.timothy.bots.summon.patterns.PatternFactory;
-import me.timothy.bots.summon.patterns.SummonMatcher;
+import me.timothy.bots.summon.patterns.SummonDispatcher;
+import me.timothy.bots.summon.patterns.SummonMatch;
 import me.timothy.bots.summon.patterns.SummonPattern;
 import me.timothy.jreddit.info.Comment;
 
@@ -52,6 +53,15 @@ public class PaidSummon implements CommentSummon {
 			.addCurrency("convert_from", true)
 			.build();
 	
+	/**
+	 * Get the pattern that comments are matched against
+	 * 
+	 * @return the pattern for this summon
+	 */
+	public static SummonPattern getPattern() {
+		return PAID_PATTERN;
+	}
+	
 	/**
 	 * Constant for determining if repaying all loans should trigger being repaid
 	 * on /r/borrow
@@ -93,6 +103,7 @@ public class PaidSummon implements CommentSummon {
 	 */
 	private int updateLoans(List<Loan> relevantLoans, int remainingPennies, LoansDatabase database) {
 		List<Loan> changedLoans = new ArrayList<>();
+		List<Repayment> repayments = new ArrayList<>();
 
 		long time = System.currentTimeMillis();
 		for(Loan l : relevantLoans) {
@@ -102,31 +113,28 @@ public class PaidSummon implements CommentSummon {
 					int amount = (l.principalCents - l.principalRepaymentCents);
 					if(amount > 0) {
 						remainingPennies -= amount;
-						Repayment repayment = new Repayment(-1, l.id, amount, new Timestamp(time), new Timestamp(time));
-						database.getRepaymentMapping().save(repayment);
+						repayments.add(new Repayment(-1, l.id, amount, new Timestamp(time), new Timestamp(time)));
 						l.principalRepaymentCents += amount;
 						l.updatedAt = new Timestamp(System.currentTimeMillis());
-						database.getLoanMapping().save(l);
-						
-						if(l.unpaid) {
-							l.unpaid = false;
-							database.getLoanMapping().save(l);
-						}
+						l.unpaid = false;
 
 						if(remainingPennies == 0)
 							break;
 					}
 				}else {
-					Repayment repayment = new Repayment(-1, l.id, remainingPennies, new Timestamp(time), new Timestamp(time));
-					database.getRepaymentMapping().save(repayment);
+					repayments.add(new Repayment(-1, l.id, remainingPennies, new Timestamp(time), new Timestamp(time)));
 					l.principalRepaymentCents += remainingPennies;
-					database.getLoanMapping().save(l);
 					remainingPennies = 0;
 					break;
 				}
 			}
 		}
 		
+		database.inTransaction((db) -> {
+			db.getRepaymentMapping().saveAll(repayments);
+			db.getLoanMapping().saveAll(changedLoans);
+		});
+		
 		relevantLoans.clear();
 		relevantLoans.addAll(changedLoans);
 		return remainingPennies;
@@ -148,7 +156,7 @@ public class PaidSummon implements CommentSummon {
 
 	@Override
 	public boolean mightInteractWith(Comment comment, Database db, FileConfiguration config) {
-		return PAID_PATTERN.matcher(comment.body()).find();
+		return SummonDispatcher.COMMENTS.match(PAID_PATTERN, comment.body()) != null;
 	}
 	
 	@Override
@@ -157,10 +165,10 @@ public class PaidSummon implements CommentSummon {
 			return null;
 		
 		LoansDatabase database = (LoansDatabase) db;
-		SummonMatcher matcher = PAID_PATTERN.matcher(comment.body());
+		SummonMatch match = SummonDispatcher.COMMENTS.match(PAID_PATTERN, comment.body());
 		
-		if(matcher.find()) {
-			ResponseInfo respInfo = matcher.group();
+		if(match != null) {
+			ResponseInfo respInfo = match.group();
 			ResponseInfoFactory.addCommentDetails(respInfo, comment);
 			
 			String author = respInfo.getObject("author").toString();
@@ -24,7 +24,8 @@ import me.timothy.bots.responses.ResponseFormatter;
 import me.timothy.bots.responses.ResponseInfo;
 import me.timothy.bots.responses.ResponseInfoFactory;
 import me.timothy.bots.summon.patterns.PatternFactory;
-import me.timothy.bots.summon.patterns.SummonMatcher;
+import me.timothy.bots.summon.patterns.SummonDispatcher;
+import me.timothy.bots.summon.patterns.SummonMatch;
 import me.timothy.bots.summon.patterns.SummonPattern;
 import me.timothy.jreddit.info.Comment;
 
@@ -50,11 +51,20 @@ public class PaidWithIDSummon implements CommentSummon {
 			.addCurrency("convert_from", true)
 			.build();
 	
+	/**
+	 * Get the pattern that comments are matched against
+	 * 
+	 * @return the pattern for this summon
+	 */
+	public static SummonPattern getPattern() {
+		return PAID_PATTERN;
+	}
+	
 	private static final Logger logger = LogManager.getLogger();
 
 	@Override
 	public boolean mightInteractWith(Comment comment, Database db, FileConfiguration config) {
-		return PAID_PATTERN.matcher(comment.body()).find();
+		return SummonDispatcher.COMMENTS.match(PAID_PATTERN, comment.body()) != null;
 	}
 
 	@Override
@@ -62,9 +72,9 @@ public class PaidWithIDSummon implements CommentSummon {
 		if(comment.author().equalsIgnoreCase(config.getProperty("user.username")))
 			return null;
 		LoansDatabase database = (LoansDatabase) db;
-		SummonMatcher matcher = PAID_PATTERN.matcher(comment.body());
-		if(matcher.find()) {
-			ResponseInfo respInfo = matcher.group();
+		SummonMatch match = SummonDispatcher.COMMENTS.match(PAID_PATTERN, comment.body());
+		if(match != null) {
+			ResponseInfo respInfo = match.group();
 			ResponseInfoFactory.addCommentDetails(respInfo, comment);
 			
 			String author = respInfo.getObject("author").toString();
@@ -151,13 +161,18 @@ public class PaidWithIDSummon implements CommentSummon {
 			
 			long time = System.currentTimeMillis();
 			Repayment repayment = new Repayment(-1, loan.id, amountTowardPrincipal, new Timestamp(time), new Timestamp(time));
-			database.getRepaymentMapping().save(repayment);
 			loan.principalRepaymentCents += amountTowardPrincipal;
 			loan.updatedAt = new Timestamp(time);
-			if(loan.principalRepaymentCents == loan.principalCents && loan.unpaid) {
+			boolean repaidUnpaidLoan = loan.principalRepaymentCents == loan.principalCents && loan.unpaid;
+			if(repaidUnpaidLoan) {
 				loan.unpaid = false;
-				database.getLoanMapping().save(loan);
-				
+			}
+			database.inTransaction((db) -> {
+				db.getRepaymentMapping().save(repayment);
+				db.getLoanMapping().save(loan);
+			});
+			
+			if(repaidUnpaidLoan) {
 				if (!PaidSummon.hasUnpaidLoans(database, loan.borrowerId)) {
 					if (PaidSummon.UNBAN_ON_BORROW_WHEN_REPAID) {
 						unbanUser = true;
@@ -166,8 +181,6 @@ public class PaidWithIDSummon implements CommentSummon {
 					
 					pmResponses.add(PaidSummon.getPostRepayUnpaidModmail(database, config, respInfo));
 				}
-			}else {
-				database.getLoanMapping().save(loan);
 			}
 			
 			List<Loan> changedLoans = new ArrayList<>();
@@ -19,7 +19,8 @@ import me.timothy.bots.responses.ResponseFormatter;
 import me.timothy.bots.responses.ResponseInfo;
 import me.timothy.bots.responses.ResponseInfoFactory;
 import me.timothy.bots.summon.patterns.PatternFactory;
-import me.timothy.bots.summon.patterns.SummonMatcher;
+import me.timothy.bots.summon.patterns.SummonDispatcher;
+import me.timothy.bots.summon.patterns.SummonMatch;
 import me.timothy.bots.summon.patterns.SummonPattern;
 import me.timothy.jreddit.info.Comment;
 
@@ -41,6 +42,15 @@ public class UnpaidSummon implements CommentSummon {
 			.addUsername("user1")
 			.build();
 	
+	/**
+	 * Get the pattern that comments are matched against
+	 * 
+	 * @return the pattern for this summon
+	 */
+	public static SummonPattern getPattern() {
+		return UNPAID_PATTERN;
+	}
+	
 
 	private Logger logger;
 
@@ -50,7 +60,7 @@ public class UnpaidSummon implements CommentSummon {
 
 	@Override
 	public boolean mightInteractWith(Comment comment, Database db, FileConfiguration config) {
-		return UNPAID_PATTERN.matcher(comment.body()).find();
+		return SummonDispatcher.COMMENTS.match(UNPAID_PATTERN, comment.body()) != null;
 	}
 	
 	@Override
@@ -58,10 +68,10 @@ public class UnpaidSummon implements CommentSummon {
 		if(comment.author().equalsIgnoreCase(config.getProperty("user.username")))
 			return null;
 		
-		SummonMatcher matcher = UNPAID_PATTERN.matcher(comment.body());
+		SummonMatch match = SummonDispatcher.COMMENTS.match(UNPAID_PATTERN, comment.body());
 		
-		if(matcher.find()) {
-			ResponseInfo responseInfo = matcher.group();
+		if(match != null) {
+			ResponseInfo responseInfo = match.group();
 			ResponseInfoFactory.addCommentDetails(responseInfo, comment);
 			
 			LoansDatabase database = (LoansDatabase) db;
@@ -83,10 +93,10 @@ public class UnpaidSummon implements CommentSummon {
 			for(Loan l : relevantLoans) {
 				if(l.principalRepaymentCents != l.principalCents) {					
 					l.unpaid = true;
-					database.getLoanMapping().save(l);
 					changed.add(l);
 				}
 			}
+			database.inTransaction((db) -> db.getLoanMapping().saveAll(changed));
 			responseInfo.addTemporaryString("changed loans", LoansBotUtils.getLoansAsTable(changed, database, changed.size()));
 			
 			logger.printf(Level.INFO, "%s has defaulted on %d loans from %s", user1Username == null ? "null user " + user1 : user1Username.username, changed.size(), authorUsername == null ? ("null user '" + author + "'") : authorUsername.username);
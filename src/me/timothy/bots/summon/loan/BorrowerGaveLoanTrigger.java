@@ -54,7 +54,7 @@ public class BorrowerGaveLoanTrigger implements LoanTrigger {
 
 	@Override
 	public void onNewLoan(LoanSummonContext ctx) {
-		int numOutstandingAsBorrower = ctx.database.getLoanMapping().fetchNumberOfOutstandingLoansWithUserAsBorrower(ctx.lender.id);
+		int numOutstandingAsBorrower = ctx.database.getUserLoanStatsMapping().fetchByUserId(ctx.lender.id).outstandingAsBorrower;
 		if (numOutstandingAsBorrower <= 0)
 			return;
 
@@ -76,7 +76,7 @@ public class LenderReceivedLoanTrigger implements LoanTrigger {
 		if (ctx.borrower.auth >= 1)
 			return;
 		
-		int numBorrowerStartedAsLender = ctx.database.getLoanMapping().fetchNumberOfLoansWithUserAsLender(ctx.borrower.id);
+		int numBorrowerStartedAsLender = ctx.database.getUserLoanStatsMapping().fetchByUserId(ctx.borrower.id).loansAsLender;
 		if(numBorrowerStartedAsLender <= 0) 
 			return;
 		
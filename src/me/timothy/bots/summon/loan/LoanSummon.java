@@ -26,7 +26,8 @@ import me.timothy.bots.summon.CommentSummon;
 import me.timothy.bots.summon.PMResponse;
 import me.timothy.bots.summon.SummonResponse;
 import me.timothy.bots.summon.patterns.PatternFactory;
-import me.timothy.bots.summon.patterns.SummonMatcher;
+import me.timothy.bots.summon.patterns.SummonDispatcher;
+import me.timothy.bots.summon.patterns.SummonMatch;
 import me.timothy.bots.summon.patterns.SummonPattern;
 import me.timothy.jreddit.info.Comment;
 
@@ -58,6 +59,15 @@ public class LoanSummon implements CommentSummon {
 	private static final SummonPattern LOAN_PATTERN = new PatternFactory().addCaseInsensLiteral("$loan")
 			.addMoney("money1").addCurrency("convert_from", true).build();
 	
+	/**
+	 * Get the pattern that comments are matched against
+	 * 
+	 * @return the pattern for this summon
+	 */
+	public static SummonPattern getPattern() {
+		return LOAN_PATTERN;
+	}
+	
 	private static final LoanTrigger[] TRIGGERS = new LoanTrigger[] {
 			new NewLenderTrigger(),
 			new LenderReceivedLoanTrigger(),
@@ -72,7 +82,7 @@ public class LoanSummon implements CommentSummon {
 
 	@Override
 	public boolean mightInteractWith(Comment comment, Database db, FileConfiguration config) {
-		return LOAN_PATTERN.matcher(comment.body()).find();
+		return SummonDispatcher.COMMENTS.match(LOAN_PATTERN, comment.body()) != null;
 	}
 
 	@Override
@@ -81,11 +91,11 @@ public class LoanSummon implements CommentSummon {
 			return null;
 		}
 		
-		SummonMatcher matcher = LOAN_PATTERN.matcher(comment.body());
+		SummonMatch match = SummonDispatcher.COMMENTS.match(LOAN_PATTERN, comment.body());
 		
-		if(matcher.find()) {
+		if(match != null) {
 			LoansDatabase database = (LoansDatabase) db;
-			ResponseInfo respInfo = matcher.group();
+			ResponseInfo respInfo = match.group();
 			ResponseInfoFactory.addCommentDetails(respInfo, comment);
 			
 			if(respInfo.getObject("author").toString().equals(respInfo.getObject("link_author").toString()))
@@ -145,19 +155,21 @@ public class LoanSummon implements CommentSummon {
 			
 			Loan loan = new Loan(-1, doerU.id, doneToU.id, amountPennies, 0, false, false, null, new Timestamp(now), new Timestamp(now), null);
 			CreationInfo cInfoRetro = attemptRetroactiveLoan(database, loan); // this may set the loan id, which will cause it to be updated rather than added
-			database.getLoanMapping().save(loan);
+			database.inTransaction((db) -> {
+				db.getLoanMapping().save(loan);
+				
+				CreationInfo cInfo = null;
+				if(cInfoRetro != null) {
+					cInfo = new CreationInfo(cInfoRetro.id, loan.id, CreationInfo.CreationType.REDDIT, 
+							url, null, -1, new Timestamp(Math.min(now, cInfoRetro.createdAt.getTime())),
+							new Timestamp(Math.max(now, cInfoRetro.createdAt.getTime())));
+				}else {
+					cInfo = new CreationInfo(-1, loan.id, CreationInfo.CreationType.REDDIT, url, null, -1, new Timestamp(now), new Timestamp(now));
+				}
+				db.getCreationInfoMapping().save(cInfo);
+			});
 			respInfo.addTemporaryString("loan id", Integer.toString(loan.id));
 			
-			CreationInfo cInfo = null;
-			if(cInfoRetro != null) {
-				cInfo = new CreationInfo(cInfoRetro.id, loan.id, CreationInfo.CreationType.REDDIT, 
-						url, null, -1, new Timestamp(Math.min(now, cInfoRetro.createdAt.getTime())),
-						new Timestamp(Math.max(now, cInfoRetro.createdAt.getTime())));
-			}else {
-				cInfo = new CreationInfo(-1, loan.id, CreationInfo.CreationType.REDDIT, url, null, -1, new Timestamp(now), new Timestamp(now));
-			}
-			database.getCreationInfoMapping().save(cInfo);
-			
 			logger.printf(Level.INFO, "%s just lent %s to %s [loan %d] [retroactive = %s]", author, BotUtils.getCostString(amountPennies / 100.), linkAuthor, loan.id, cInfoRetro == null ? "no" : "yes");
 			
 			String resp = null;
@@ -62,8 +62,7 @@ public class NewLenderTrigger implements LoanTrigger {
 	
 	@Override
 	public void onNewLoan(LoanSummonContext ctx) {
-		int numLenderStartedAsLender = ctx.database.getLoanMapping()
-				.fetchNumberOfLoansCompletedWithUserAsLender(ctx.lender.id)[0];
+		int numLenderStartedAsLender = ctx.database.getUserLoanStatsMapping().fetchByUserId(ctx.lender.id).loansAsLender;
 		if(numLenderStartedAsLender >= 1)
 			return;
 		
@@ -0,0 +1,247 @@
+package me.timothy.bots.summon.patterns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>A case-insensitive trie over a set of literals which finds the words of a
+ * string that are one of those literals in a single pass. Words are separated by whitespace, just like tokens in a {@link SummonMatcher},
+ * and escape characters before markup-meaningful characters are skipped in the
+ * same way as a {@link StringLiteralToken} skips them.</p>
+ * 
+ * <p>This is used to jump straight to where a pattern could start instead of
+ * trying its tokens at every word. It never misses a word that the corresponding
+ * literal token would match, but may report words that the token rejects (for
+ * example due to case), so hits still need to be checked with the tokens.</p>
+ * 
+ * <p>Looking for hits doesn't allocate, so a string without any of the literals
+ * is rejected without garbage. Strings with a hit are not: checking it creates a
+ * {@link SummonMatcher}, the tokens allocate buffers as they parse, and each
+ * match found is a new {@link SummonMatch}.</p>
+ * 
+ * @author Timothy
+ */
+public class LiteralTrie {
+	/**
+	 * The lower-cased literals in this trie, in the order they were given
+	 */
+	private List<String> literals;
+	
+	/**
+	 * For each node, the lower-cased characters it has children for, sorted
+	 */
+	private char[][] edgeChars;
+	
+	/**
+	 * For each node, the child for the character at the same index in edgeChars
+	 */
+	private int[][] edgeNodes;
+	
+	/**
+	 * For each node, the index of the literal which ends at it or -1
+	 */
+	private int[] terminals;
+	
+	/**
+	 * The number of nodes in use
+	 */
+	private int numNodes;
+	
+	/**
+	 * Create a new trie for the given literals
+	 * 
+	 * @param literals the literals to find, compared without regard to case
+	 */
+	public LiteralTrie(List<String> literals) {
+		this.literals = new ArrayList<>();
+		
+		int maxNodes = 1;
+		for(String literal : literals) {
+			maxNodes += literal.length();
+		}
+		
+		edgeChars = new char[maxNodes][];
+		edgeNodes = new int[maxNodes][];
+		terminals = new int[maxNodes];
+		Arrays.fill(terminals, -1);
+		numNodes = 1;
+		edgeChars[0] = new char[0];
+		edgeNodes[0] = new int[0];
+		
+		for(String literal : literals) {
+			String lower = literal.toLowerCase();
+			if(lower.isEmpty())
+				throw new IllegalArgumentException("Literals cannot be empty");
+			if(this.literals.contains(lower))
+				throw new IllegalArgumentException("Duplicate literal " + literal);
+			
+			int node = 0;
+			for(int i = 0; i < lower.length(); i++) {
+				char c = lower.charAt(i);
+				int child = child(node, c);
+				if(child < 0) {
+					child = addChild(node, c);
+				}
+				node = child;
+			}
+			terminals[node] = this.literals.size();
+			this.literals.add(lower);
+		}
+	}
+	
+	/**
+	 * Get the number of literals in this trie
+	 * 
+	 * @return the number of literals
+	 */
+	public int size() {
+		return literals.size();
+	}
+	
+	/**
+	 * Get the index of the given literal, as used by {@link #literalAt(String, int)}
+	 * 
+	 * @param literal the literal, in any case
+	 * @return the index of the literal or -1 if it is not in this trie
+	 */
+	public int indexOf(String literal) {
+		return literals.indexOf(literal.toLowerCase());
+	}
+	
+	/**
+	 * Determines which literal the word starting at the given index is.
+	 * 
+	 * @param string the string to look in
+	 * @param start the index of the first character of the word
+	 * @return the index of the literal or -1 if the word isn't one of them
+	 */
+	public int literalAt(String string, int start) {
+		int node = 0;
+		int ind = start;
+		while(ind < string.length()) {
+			char c = string.charAt(ind);
+			if(Character.isWhitespace(c))
+				break;
+			
+			if(c == '\\' && ind != start && ind + 1 < string.length()) {
+				char escaped = Character.toLowerCase(string.charAt(ind + 1));
+				if(StringLiteralToken.ESCAPABLE_CHARACTERS.contains(escaped) && child(node, escaped) >= 0) {
+					ind++;
+					continue;
+				}
+			}
+			
+			node = child(node, Character.toLowerCase(c));
+			if(node < 0)
+				return -1;
+			ind++;
+		}
+		return terminals[node];
+	}
+	
+	/**
+	 * Finds the first word which starts at or after the given index and is one of
+	 * the literals. The index itself is treated as the start of a word if it isn't
+	 * whitespace.
+	 * 
+	 * @param string the string to look in
+	 * @param from where to start looking
+	 * @return the index of the first character of the word, or -1 if there is none
+	 */
+	public int nextHit(String string, int from) {
+		int ind = from;
+		while(true) {
+			while(ind < string.length() && Character.isWhitespace(string.charAt(ind))) {
+				ind++;
+			}
+			if(ind >= string.length())
+				return -1;
+			
+			if(literalAt(string, ind) >= 0)
+				return ind;
+			
+			while(ind < string.length() && !Character.isWhitespace(string.charAt(ind))) {
+				ind++;
+			}
+		}
+	}
+	
+	/**
+	 * Determines which of the literals are words in the given string, with a single
+	 * pass over the string.
+	 * 
+	 * @param string the string to look in
+	 * @return for each literal by index, if it is a word in the string
+	 */
+	public boolean[] findAll(String string) {
+		boolean[] result = new boolean[literals.size()];
+		findAll(string, result);
+		return result;
+	}
+	
+	/**
+	 * Determines which of the literals are words in the given string, like 
+	 * {@link #findAll(String)}, but into an existing array.
+	 * 
+	 * @param string the string to look in
+	 * @param result set to if each literal by index is a word in the string; must
+	 * have a length of at least {@link #size()}
+	 */
+	public void findAll(String string, boolean[] result) {
+		Arrays.fill(result, 0, literals.size(), false);
+		int ind = nextHit(string, 0);
+		while(ind >= 0) {
+			result[literalAt(string, ind)] = true;
+			while(ind < string.length() && !Character.isWhitespace(string.charAt(ind))) {
+				ind++;
+			}
+			ind = nextHit(string, ind);
+		}
+	}
+	
+	/**
+	 * Finds the child of the node for the given lower-cased character
+	 * 
+	 * @param node the parent node
+	 * @param c the lower-cased character
+	 * @return the child node or -1 if there is none
+	 */
+	private int child(int node, char c) {
+		int ind = Arrays.binarySearch(edgeChars[node], c);
+		if(ind < 0)
+			return -1;
+		return edgeNodes[node][ind];
+	}
+	
+	/**
+	 * Adds a new child to the node for the given lower-cased character, keeping
+	 * the edges sorted.
+	 * 
+	 * @param node the parent node
+	 * @param c the lower-cased character
+	 * @return the new child node
+	 */
+	private int addChild(int node, char c) {
+		int child = numNodes++;
+		edgeChars[child] = new char[0];
+		edgeNodes[child] = new int[0];
+		
+		char[] chars = edgeChars[node];
+		int[] nodes = edgeNodes[node];
+		int insertAt = -(Arrays.binarySearch(chars, c) + 1);
+		
+		char[] newChars = new char[chars.length + 1];
+		int[] newNodes = new int[nodes.length + 1];
+		System.arraycopy(chars, 0, newChars, 0, insertAt);
+		System.arraycopy(nodes, 0, newNodes, 0, insertAt);
+		newChars[insertAt] = c;
+		newNodes[insertAt] = child;
+		System.arraycopy(chars, insertAt, newChars, insertAt + 1, chars.length - insertAt);
+		System.arraycopy(nodes, insertAt, newNodes, insertAt + 1, nodes.length - insertAt);
+		
+		edgeChars[node] = newChars;
+		edgeNodes[node] = newNodes;
+		return child;
+	}
+}
@@ -14,7 +14,7 @@ import me.timothy.bots.responses.FormattableObject;
  * @author Timothy
  */
 public class StringLiteralToken implements ISummonToken {
-	private static Set<Character> ESCAPABLE_CHARACTERS = new HashSet<Character>(
+	static final Set<Character> ESCAPABLE_CHARACTERS = new HashSet<Character>(
 			Arrays.asList(new Character[] {
 				'`', '*', '_', '{', '}', '[', ']', '(', ')'
 			}));
@@ -47,6 +47,15 @@ public class StringLiteralToken implements ISummonToken {
 		this.caseInsensitive = caseInsensitive;
 	}
 	
+	/**
+	 * Get the text that this token matches
+	 * 
+	 * @return the literal
+	 */
+	public String getLiteral() {
+		return literal;
+	}
+	
 	@Override
 	public String id() {
 		return id;
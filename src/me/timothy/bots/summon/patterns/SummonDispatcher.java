@@ -0,0 +1,113 @@
+package me.timothy.bots.summon.patterns;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Matches summon patterns against the same string for several summons while
+ * only scanning it once. The first time a string is seen, a {@link LiteralTrie}
+ * of the $-commands of every pattern seen so far finds which commands are words
+ * in it. Patterns which start with a command that isn't one of those words are 
+ * rejected without running their matcher. Every other pattern is matched once, 
+ * and the match is kept so that handling a comment after deciding to interact 
+ * with it doesn't parse it again.</p>
+ * 
+ * <p>Only the most recent string is remembered, which suits going through every
+ * summon for one comment before moving on to the next comment.</p>
+ * 
+ * @author Timothy
+ */
+public class SummonDispatcher {
+	/**
+	 * The dispatcher shared by the comment summons
+	 */
+	public static final SummonDispatcher COMMENTS = new SummonDispatcher();
+	
+	/**
+	 * The commands of the patterns which have been matched so far
+	 */
+	private List<String> commands = new ArrayList<>();
+	
+	/**
+	 * Finds commands in strings, or null if no pattern with a command has been
+	 * matched yet
+	 */
+	private LiteralTrie commandTrie;
+	
+	/**
+	 * The string the commands and matches are for, or null if nothing has been
+	 * matched yet
+	 */
+	private String string;
+	
+	/**
+	 * For each command by its index in the trie, if it is a word in string, 
+	 * or null if the trie changed since it was last used
+	 */
+	private boolean[] presentCommands;
+	
+	/**
+	 * If presentCommands is for the current string and trie
+	 */
+	private boolean scanned;
+	
+	/**
+	 * The first match in string for each pattern which has been tried, where
+	 * a null value means there was no match
+	 */
+	private Map<SummonPattern, SummonMatch> matches;
+	
+	/**
+	 * Finds the first match of the pattern in the string, reusing the work done
+	 * for earlier patterns on the same string.
+	 * 
+	 * @param pattern the pattern to match
+	 * @param string the string to parse
+	 * @return the first match, or null if there is none
+	 */
+	public synchronized SummonMatch match(SummonPattern pattern, String string) {
+		if(this.string == null || !this.string.equals(string)) {
+			this.string = string;
+			scanned = false;
+			matches = new HashMap<>();
+		}
+		
+		if(matches.containsKey(pattern))
+			return matches.get(pattern);
+		
+		String command = pattern.command();
+		SummonMatch match = null;
+		if(command == null || isCommandPresent(command)) {
+			match = pattern.match(string);
+		}
+		matches.put(pattern, match);
+		return match;
+	}
+	
+	/**
+	 * Determines if the command is a word in the current string, adding it to
+	 * the commands that are looked for if it is new.
+	 * 
+	 * @param command the command
+	 * @return if the command might be a word in the string
+	 */
+	private boolean isCommandPresent(String command) {
+		if(commandTrie == null || commandTrie.indexOf(command) < 0) {
+			commands.add(command);
+			commandTrie = new LiteralTrie(commands);
+			presentCommands = null;
+			scanned = false;
+		}
+		
+		if(!scanned) {
+			if(presentCommands == null) {
+				presentCommands = new boolean[commandTrie.size()];
+			}
+			commandTrie.findAll(string, presentCommands);
+			scanned = true;
+		}
+		return presentCommands[commandTrie.indexOf(command)];
+	}
+}
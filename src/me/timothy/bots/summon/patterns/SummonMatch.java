@@ -0,0 +1,73 @@
+package me.timothy.bots.summon.patterns;
+
+import java.util.Collections;
+import java.util.Map;
+
+import me.timothy.bots.responses.FormattableObject;
+import me.timothy.bots.responses.ResponseInfo;
+import me.timothy.bots.responses.ResponseInfoFactory;
+
+/**
+ * A match found by a {@link SummonMatcher}, with its tokens already parsed into
+ * formattable objects. Unlike the matcher this does not depend on the string it
+ * was found in, so it can be kept around and grouped as many times as needed.
+ * 
+ * @author Timothy
+ */
+public class SummonMatch {
+	/**
+	 * The parsed tokens which have a standard representation, by their id
+	 */
+	private Map<String, FormattableObject> objects;
+	
+	/**
+	 * Create a new match from the parsed tokens
+	 * 
+	 * @param objects the standard representation of each token by its id
+	 */
+	public SummonMatch(Map<String, FormattableObject> objects) {
+		this.objects = Collections.unmodifiableMap(objects);
+	}
+	
+	/**
+	 * Get the standard representation of the token with the given id
+	 * 
+	 * @param id the id of the token
+	 * @return the object for that token, or null if it was not matched
+	 */
+	public FormattableObject getObject(String id) {
+		return objects.get(id);
+	}
+	
+	/**
+	 * Creates a new response info with each parsed token as a temporary object.
+	 * 
+	 * @return a new response info for this match
+	 */
+	public ResponseInfo group() {
+		return group(false);
+	}
+	
+	/**
+	 * Creates a new response info with each parsed token, using either long-term
+	 * or temporary objects.
+	 * 
+	 * @param longTerm true if long term objects should be used, false for temporary
+	 * @return a new response info for this match
+	 */
+	public ResponseInfo group(boolean longTerm) {
+		ResponseInfo result = new ResponseInfo(ResponseInfoFactory.base);
+		for(Map.Entry<String, FormattableObject> entry : objects.entrySet()) {
+			if(longTerm)
+				result.addLongtermObject(entry.getKey(), entry.getValue());
+			else
+				result.addTemporaryObject(entry.getKey(), entry.getValue());
+		}
+		return result;
+	}
+	
+	@Override
+	public String toString() {
+		return "SummonMatch [objects=" + objects + "]";
+	}
+}
@@ -1,11 +1,12 @@
 package me.timothy.bots.summon.patterns;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import me.timothy.bots.responses.FormattableObject;
 import me.timothy.bots.responses.ResponseInfo;
-import me.timothy.bots.responses.ResponseInfoFactory;
 
 /**
  * This handles the actual matching once given a pattern, for a specific string.
@@ -25,6 +26,11 @@ public class SummonMatcher {
 	 */
 	private List<ISummonToken> tokens;
 	
+	/**
+	 * Finds the words the first token could match, or null to try every word
+	 */
+	private LiteralTrie prefilter;
+	
 	/**
 	 * Where we are in the string so far.
 	 */
@@ -53,6 +59,19 @@ public class SummonMatcher {
 	 * @param string the string
 	 */
 	public SummonMatcher(List<ISummonToken> tokens, String string) {
+		this(tokens, null, string);
+	}
+	
+	/**
+	 * Create a new matcher for the given tokens in the given string, which only 
+	 * tries the tokens at words found by the prefilter. The prefilter must find
+	 * every word that the first token would match.
+	 * 
+	 * @param tokens the tokens
+	 * @param prefilter finds where the first token could match, or null for everywhere
+	 * @param string the string
+	 */
+	public SummonMatcher(List<ISummonToken> tokens, LiteralTrie prefilter, String string) {
 		boolean foundNonOptional = false;
 		for(ISummonToken token : tokens) {
 			if(!token.isOptional()) {
@@ -64,8 +83,10 @@ public class SummonMatcher {
 			throw new IllegalArgumentException("Without non-optional tokens this is an infinite loop!");
 		
 		this.tokens = tokens;
+		this.prefilter = prefilter;
 		this.string = string;
 		
+		matchedTokens = new ArrayList<>(tokens.size());
 		currentIndex = 0;
 		currentMatchStart = -1;
 		currentMatchEnd = -1;
@@ -77,13 +98,18 @@ public class SummonMatcher {
 	 * @return if a match was found
 	 */
 	public boolean find() {
-		matchedTokens = new ArrayList<>();
-		
 		while(true) {
 			if(currentIndex >= string.length())
 				break;
-			if(!skipWhitespace())
+			if(prefilter != null) {
+				// words which aren't hits would fail the first token and be skipped
+				int hit = prefilter.nextHit(string, currentIndex);
+				if(hit < 0)
+					break;
+				currentIndex = hit;
+			}else if(!skipWhitespace()) {
 				break;
+			}
 			
 			currentMatchStart = currentIndex;
 			
@@ -117,7 +143,7 @@ public class SummonMatcher {
 			}
 		}
 		
-		matchedTokens = null;
+		matchedTokens.clear();
 		currentMatchStart = -1;
 		currentMatchEnd = -1;
 		return false;
@@ -142,10 +168,20 @@ public class SummonMatcher {
 	 * @return the response info
 	 */
 	public ResponseInfo group(boolean longTerm) {
+		return match().group(longTerm);
+	}
+	
+	/**
+	 * Get the match that was just found using find, with its tokens parsed. The
+	 * match can be kept and grouped later without looking at the string again.
+	 * 
+	 * @return the match that was just found
+	 */
+	public SummonMatch match() {
 		if(currentMatchStart < 0)
 			throw new IllegalStateException("There is no current match!");
 		
-		ResponseInfo result = new ResponseInfo(ResponseInfoFactory.base);
+		Map<String, FormattableObject> objects = new LinkedHashMap<>();
 		
 		int[] indByRef = new int[] { currentMatchStart };
 		
@@ -159,14 +195,11 @@ public class SummonMatcher {
 			ISummonToken token = matchedTokens.get(i);
 			FormattableObject standard = getMatch(token, indByRef);
 			if(standard != null) {
-				if(longTerm)
-					result.addLongtermObject(token.id(), standard);
-				else
-					result.addTemporaryObject(token.id(), standard);
+				objects.put(token.id(), standard);
 			}
 		}
 		
-		return result;
+		return new SummonMatch(objects);
 	}
 	
 	/**
@@ -1,5 +1,6 @@
 package me.timothy.bots.summon.patterns;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -25,6 +26,12 @@ public class SummonPattern {
 	 */
 	private List<ISummonToken> tokens;
 	
+	/**
+	 * Finds the words where a match could start, or null if this pattern 
+	 * doesn't start with a {@link #command() command}
+	 */
+	private LiteralTrie prefilter;
+	
 	/**
 	 * Create a new summon pattern. Best done through the factory.
 	 * 
@@ -32,6 +39,11 @@ public class SummonPattern {
 	 */
 	public SummonPattern(List<ISummonToken> tokens) {
 		this.tokens = tokens;
+		
+		String command = command();
+		if(command != null) {
+			prefilter = new LiteralTrie(Collections.singletonList(command));
+		}
 	}
 	
 	/**
@@ -40,6 +52,49 @@ public class SummonPattern {
 	 * @return the corresponding matcher.
 	 */
 	public SummonMatcher matcher(String string) {
+		return new SummonMatcher(tokens, prefilter, string);
+	}
+	
+	/**
+	 * Create a matcher which tries the tokens at every word, instead of only at the
+	 * words where this pattern's command is. It finds the same matches as
+	 * {@link #matcher(String)}, and is kept for comparing the two.
+	 * 
+	 * @param string the string to parse
+	 * @return the corresponding matcher.
+	 */
+	public SummonMatcher unfilteredMatcher(String string) {
 		return new SummonMatcher(tokens, string);
 	}
+	
+	/**
+	 * Finds the first match of this pattern in the given string.
+	 * 
+	 * @param string the string to parse
+	 * @return the first match, or null if there is none
+	 */
+	public SummonMatch match(String string) {
+		SummonMatcher matcher = matcher(string);
+		if(!matcher.find())
+			return null;
+		return matcher.match();
+	}
+	
+	/**
+	 * Gets the $-command this pattern starts with, if it starts with a required
+	 * literal beginning with $, such as $paid. Every match of this pattern begins 
+	 * with that command as its own word.
+	 * 
+	 * @return the leading command, or null if this pattern doesn't start with one
+	 */
+	public String command() {
+		ISummonToken first = tokens.get(0);
+		if(first.isOptional() || !(first instanceof StringLiteralToken))
+			return null;
+		
+		String literal = ((StringLiteralToken) first).getLiteral();
+		if(!literal.startsWith("$"))
+			return null;
+		return literal;
+	}
 }
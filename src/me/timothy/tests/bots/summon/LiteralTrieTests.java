@@ -0,0 +1,60 @@
+package me.timothy.tests.bots.summon;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import me.timothy.bots.summon.patterns.LiteralTrie;
+
+/**
+ * Tests that the LiteralTrie finds exactly the words which are
+ * one of its literals.
+ * 
+ * @author Timothy
+ * @see me.timothy.bots.summon.patterns.LiteralTrie
+ */
+public class LiteralTrieTests {
+	private LiteralTrie trie;
+	
+	@Before
+	public void setUp() {
+		trie = new LiteralTrie(Arrays.asList("$paid", "$paid_with_id", "$loan", "$CHECK"));
+	}
+	
+	@Test
+	public void testTest() {
+		assertNotNull(trie);
+		assertEquals(4, trie.size());
+	}
+	
+	@Test
+	public void testLiteralAt() {
+		assertEquals(0, trie.literalAt("$paid /u/john 5", 0));
+		assertEquals(1, trie.literalAt("$PAID_with_id 12 5", 0));
+		assertEquals(1, trie.literalAt("$paid\\_with\\_id 12 5", 0));
+		assertEquals(3, trie.literalAt("thanks $check", 7));
+		assertEquals(-1, trie.literalAt("$pai", 0));
+		assertEquals(-1, trie.literalAt("$loans", 0));
+		assertEquals(-1, trie.literalAt("$paid\\\\_with_id", 0));
+	}
+	
+	@Test
+	public void testNextHit() {
+		String str = "a$loan $loanx\n\t$loan $check";
+		assertEquals(15, trie.nextHit(str, 0));
+		assertEquals(21, trie.nextHit(str, 16));
+		assertEquals(-1, trie.nextHit(str, 27));
+		assertEquals(-1, trie.nextHit("nothing to see", 0));
+		assertEquals(-1, trie.nextHit("   ", 0));
+	}
+	
+	@Test
+	public void testFindAll() {
+		assertTrue(Arrays.equals(new boolean[] { false, true, true, false },
+				trie.findAll("$paid_with_id 4 5 and $loan $checks")));
+		assertTrue(Arrays.equals(new boolean[] { false, false, false, false }, trie.findAll("")));
+	}
+}
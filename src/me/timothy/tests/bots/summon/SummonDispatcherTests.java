@@ -0,0 +1,70 @@
+package me.timothy.tests.bots.summon;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import me.timothy.bots.summon.patterns.PatternFactory;
+import me.timothy.bots.summon.patterns.SummonDispatcher;
+import me.timothy.bots.summon.patterns.SummonMatch;
+import me.timothy.bots.summon.patterns.SummonPattern;
+
+/**
+ * Tests that the SummonDispatcher finds the same matches as the
+ * patterns themselves while reusing them for the same string.
+ * 
+ * @author Timothy
+ * @see me.timothy.bots.summon.patterns.SummonDispatcher
+ */
+public class SummonDispatcherTests {
+	private SummonDispatcher dispatcher;
+	private SummonPattern checkPattern;
+	private SummonPattern paidWithIdPattern;
+	
+	@Before
+	public void setUp() {
+		dispatcher = new SummonDispatcher();
+		checkPattern = new PatternFactory().addCaseInsensLiteral("$check").addUsername("user1").build();
+		paidWithIdPattern = new PatternFactory().addLiteral("$paid_with_id").addInteger("loan_id").build();
+	}
+	
+	@Test
+	public void testTest() {
+		assertNotNull(dispatcher);
+		assertNotNull(checkPattern);
+		assertNotNull(paidWithIdPattern);
+	}
+	
+	@Test
+	public void testMatchesLikePattern() {
+		String body = "Hello $CHECK /u/paul and thanks";
+		SummonMatch match = dispatcher.match(checkPattern, body);
+		assertNotNull(match);
+		assertEquals("paul", match.getObject("user1").toString());
+		assertNull(dispatcher.match(paidWithIdPattern, body));
+		
+		assertNull(dispatcher.match(checkPattern, "I'll check /u/paul"));
+		assertNull(dispatcher.match(checkPattern, "a$check /u/paul"));
+		assertNull(dispatcher.match(checkPattern, "$check"));
+	}
+	
+	@Test
+	public void testIgnoresEscapes() {
+		SummonMatch match = dispatcher.match(paidWithIdPattern, "$paid\\_with\\_id 4512");
+		assertNotNull(match);
+		assertEquals("4512", match.getObject("loan_id").toString());
+	}
+	
+	@Test
+	public void testReusesMatchForSameString() {
+		String body = "$check /u/paul";
+		SummonMatch match = dispatcher.match(checkPattern, body);
+		assertSame(match, dispatcher.match(checkPattern, new String(body)));
+		assertNotSame(match.group(), match.group());
+		
+		SummonMatch other = dispatcher.match(checkPattern, "$check /u/john");
+		assertEquals("john", other.getObject("user1").toString());
+		assertNotSame(match, dispatcher.match(checkPattern, body));
+	}
+}
@@ -12,7 +12,9 @@ import org.junit.runners.Suite.SuiteClasses;
 	PaidSummonTests.class,
 	BadLoanSummonTests.class,
 	LoanSummonTests.class,
-	RecentPostSummonTests.class
+	RecentPostSummonTests.class,
+	SummonDispatcherTests.class,
+	LiteralTrieTests.class
 })
 public class SummonTests {
 
@@ -0,0 +1,119 @@
+package me.timothy.tests.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import me.timothy.bots.database.CachingResponseMapping;
+import me.timothy.bots.database.ResponseMapping;
+import me.timothy.bots.models.Response;
+
+/**
+ * Tests that the response cache notices every kind of change made behind
+ * its back, including deletes which leave the most recent updated at alone.
+ * 
+ * @author Timothy
+ */
+public class CachingResponseMappingTest {
+	private InMemoryResponseMapping delegate;
+	private CachingResponseMapping cache;
+	
+	@Before
+	public void setUp() {
+		delegate = new InMemoryResponseMapping();
+		cache = new CachingResponseMapping(delegate);
+		
+		delegate.save(new Response(-1, "hello", "Hello!", new Timestamp(1000), new Timestamp(1000)));
+		delegate.save(new Response(-1, "bye", "Bye!", new Timestamp(2000), new Timestamp(2000)));
+	}
+	
+	@Test
+	public void testUnchangedIsNotReloaded() {
+		assertEquals("Hello!", cache.fetchByName("hello").responseBody);
+		assertFalse(cache.refreshIfModified());
+	}
+	
+	@Test
+	public void testUpdateIsReloaded() {
+		assertEquals("Hello!", cache.fetchByName("hello").responseBody);
+		delegate.responses.set(0, new Response(1, "hello", "Hi!", new Timestamp(1000), new Timestamp(3000)));
+		
+		assertTrue(cache.refreshIfModified());
+		assertEquals("Hi!", cache.fetchByName("hello").responseBody);
+	}
+	
+	@Test
+	public void testDeleteIsReloaded() {
+		assertEquals("Hello!", cache.fetchByName("hello").responseBody);
+		
+		// the newest response is still "bye", so only the count changes
+		delegate.responses.remove(0);
+		
+		assertTrue(cache.refreshIfModified());
+		assertNull(cache.fetchByName("hello"));
+		assertEquals("Bye!", cache.fetchByName("bye").responseBody);
+	}
+	
+	/**
+	 * Keeps responses in a list, copying on the way out like a database would
+	 */
+	private static class InMemoryResponseMapping implements ResponseMapping {
+		final List<Response> responses = new ArrayList<>();
+		
+		@Override
+		public void save(Response a) {
+			if(a.id <= 0) {
+				a.id = responses.size() + 1;
+				responses.add(copy(a));
+				return;
+			}
+			
+			responses.set(a.id - 1, copy(a));
+		}
+		
+		@Override
+		public List<Response> fetchAll() {
+			List<Response> result = new ArrayList<>();
+			for(Response response : responses) {
+				result.add(copy(response));
+			}
+			return result;
+		}
+		
+		@Override
+		public Response fetchByName(String name) {
+			for(Response response : responses) {
+				if(response.name.equals(name))
+					return copy(response);
+			}
+			return null;
+		}
+		
+		@Override
+		public Timestamp fetchMaxUpdatedAt() {
+			Timestamp max = null;
+			for(Response response : responses) {
+				if(max == null || response.updatedAt.after(max))
+					max = response.updatedAt;
+			}
+			return max;
+		}
+		
+		@Override
+		public int fetchCount() {
+			return responses.size();
+		}
+		
+		private static Response copy(Response a) {
+			return new Response(a.id, a.name, a.responseBody, a.createdAt, a.updatedAt);
+		}
+	}
+}
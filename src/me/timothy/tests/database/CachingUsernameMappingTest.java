@@ -0,0 +1,140 @@
+package me.timothy.tests.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import me.timothy.bots.database.CachingUsernameMapping;
+import me.timothy.bots.database.UsernameMapping;
+import me.timothy.bots.models.Username;
+
+/**
+ * Tests that the username cache never keeps a value which a save replaced
+ * while it was being read. The underlying mapping is in memory and runs a
+ * save in the middle of a read to force the race deterministically.
+ * 
+ * @author Timothy
+ */
+public class CachingUsernameMappingTest {
+	private InMemoryUsernameMapping delegate;
+	private CachingUsernameMapping cache;
+	
+	@Before
+	public void setUp() {
+		delegate = new InMemoryUsernameMapping();
+		cache = new CachingUsernameMapping(delegate, 100, 60000);
+		delegate.save(new Username(-1, 5, "john", null, null));
+	}
+	
+	@Test
+	public void testSaveDuringUsernameReadIsNotCachedOver() {
+		Username renamed = delegate.usernames.get(0);
+		delegate.duringNextRead = () -> cache.save(new Username(renamed.id, renamed.userId, "johnny", null, null));
+		
+		// this read saw the row before the rename
+		assertEquals("john", cache.fetchByUsername("john").username);
+		
+		assertNull(cache.fetchByUsername("john"));
+		assertEquals("johnny", cache.fetchByUsername("johnny").username);
+	}
+	
+	@Test
+	public void testSaveDuringUserIdReadIsNotCachedOver() {
+		delegate.duringNextRead = () -> cache.save(new Username(-1, 5, "john2", null, null));
+		
+		assertEquals(1, cache.fetchByUserId(5).size());
+		assertEquals(2, cache.fetchByUserId(5).size());
+		assertEquals(2, cache.fetchByUserIds(5).size());
+	}
+	
+	@Test
+	public void testReadsAreCachedOtherwise() {
+		cache.fetchByUsername("john");
+		cache.fetchByUsername("JOHN");
+		cache.fetchByUserId(5);
+		cache.fetchByUserId(5);
+		
+		assertEquals(2, delegate.reads);
+		assertEquals(2, cache.getHits());
+	}
+	
+	/**
+	 * Keeps usernames in a list, copying on the way in and out like a database would
+	 */
+	private static class InMemoryUsernameMapping implements UsernameMapping {
+		final List<Username> usernames = new ArrayList<>();
+		Runnable duringNextRead;
+		int reads;
+		
+		@Override
+		public void save(Username a) {
+			if(a.id <= 0) {
+				a.id = usernames.size() + 1;
+				usernames.add(copy(a));
+				return;
+			}
+			
+			usernames.set(a.id - 1, copy(a));
+		}
+		
+		@Override
+		public List<Username> fetchAll() {
+			return read(null, -1);
+		}
+		
+		@Override
+		public Username fetchById(int usernameId) {
+			return copy(usernames.get(usernameId - 1));
+		}
+		
+		@Override
+		public List<Username> fetchByUserId(int userId) {
+			return read(null, userId);
+		}
+		
+		@Override
+		public List<Username> fetchByUserIds(int... userIds) {
+			List<Username> result = new ArrayList<>();
+			for(int userId : userIds) {
+				result.addAll(read(null, userId));
+			}
+			return result;
+		}
+		
+		@Override
+		public Username fetchByUsername(String username) {
+			List<Username> result = read(username, -1);
+			return result.isEmpty() ? null : result.get(0);
+		}
+		
+		/**
+		 * Takes a snapshot of the matching rows, then runs duringNextRead as if
+		 * a save committed after the snapshot but before the results came back
+		 */
+		private List<Username> read(String username, int userId) {
+			reads++;
+			List<Username> result = new ArrayList<>();
+			for(Username row : usernames) {
+				if((username == null || row.username.equalsIgnoreCase(username)) && (userId < 0 || row.userId == userId)) {
+					result.add(copy(row));
+				}
+			}
+			
+			Runnable hook = duringNextRead;
+			duringNextRead = null;
+			if(hook != null) {
+				hook.run();
+			}
+			return result;
+		}
+		
+		private static Username copy(Username a) {
+			return new Username(a.id, a.userId, a.username, a.createdAt, a.updatedAt);
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package me.timothy.tests.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.timothy.bots.database.BloomFilteredFullnameMapping;
+import me.timothy.bots.database.FullnameBloomFilter;
+import me.timothy.bots.database.FullnameMapping;
+import me.timothy.bots.models.Fullname;
+
+/**
+ * Tests the fullname bloom filter, its snapshots, and that the filtered
+ * mapping never reports a fullname missing which is in the table.
+ * 
+ * @author Timothy
+ */
+public class FullnameBloomFilterTest {
+	private File snapshotFile;
+	
+	@Before
+	public void setUp() throws IOException {
+		snapshotFile = File.createTempFile("fullnames_filter", ".dat");
+		snapshotFile.delete();
+	}
+	
+	@After
+	public void tearDown() {
+		snapshotFile.delete();
+	}
+	
+	@Test
+	public void testNoFalseNegatives() {
+		FullnameBloomFilter filter = new FullnameBloomFilter(10000);
+		for(int i = 0; i < 10000; i++) {
+			filter.add("t1_" + Integer.toString(i, 36));
+		}
+		
+		for(int i = 0; i < 10000; i++) {
+			assertTrue(filter.mightContain("t1_" + Integer.toString(i, 36)));
+			assertTrue(filter.mightContain("T1_" + Integer.toString(i, 36).toUpperCase()));
+		}
+		assertFalse(filter.isOverCapacity());
+	}
+	
+	@Test
+	public void testFalsePositiveRate() {
+		FullnameBloomFilter filter = new FullnameBloomFilter(10000);
+		for(int i = 0; i < 10000; i++) {
+			filter.add("t1_" + Integer.toString(i, 36));
+		}
+		
+		int falsePositives = 0;
+		for(int i = 10000; i < 20000; i++) {
+			if(filter.mightContain("t1_" + Integer.toString(i, 36)))
+				falsePositives++;
+		}
+		assertTrue("too many false positives: " + falsePositives, falsePositives < 300);
+	}
+	
+	@Test
+	public void testSnapshotRoundTrip() throws IOException {
+		FullnameBloomFilter filter = new FullnameBloomFilter(1000);
+		filter.add("t3_abc");
+		filter.add("t1_def");
+		filter.writeSnapshot(snapshotFile, 42);
+		
+		FullnameBloomFilter.Snapshot snapshot = FullnameBloomFilter.readSnapshot(snapshotFile);
+		assertNotNull(snapshot);
+		assertEquals(42, snapshot.highWaterMark);
+		assertEquals(1000, snapshot.filter.getCapacity());
+		assertEquals(2, snapshot.filter.getInsertions());
+		assertTrue(snapshot.filter.mightContain("t3_abc"));
+		assertTrue(snapshot.filter.mightContain("t1_def"));
+	}
+	
+	@Test
+	public void testMissingSnapshot() throws IOException {
+		assertNull(FullnameBloomFilter.readSnapshot(snapshotFile));
+	}
+	
+	@Test
+	public void testCorruptSnapshot() throws IOException {
+		try(DataOutputStream out = new DataOutputStream(new FileOutputStream(snapshotFile))) {
+			out.writeLong(12345);
+		}
+		assertNull(FullnameBloomFilter.readSnapshot(snapshotFile));
+		
+		// a valid header claiming far more words than the capacity needs
+		new FullnameBloomFilter(1000).writeSnapshot(snapshotFile, 1);
+		try(RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+			file.seek(4 + 4 + 8 + 8 + 8);
+			file.writeInt(Integer.MAX_VALUE);
+		}
+		assertNull(FullnameBloomFilter.readSnapshot(snapshotFile));
+	}
+	
+	@Test
+	public void testTruncatedSnapshot() throws IOException {
+		new FullnameBloomFilter(1000).writeSnapshot(snapshotFile, 1);
+		try(RandomAccessFile file = new RandomAccessFile(snapshotFile, "rw")) {
+			file.setLength(file.length() / 2);
+		}
+		
+		try {
+			FullnameBloomFilter.readSnapshot(snapshotFile);
+			fail("expected the truncated snapshot to fail to read");
+		}catch(IOException ex) {
+			// expected
+		}
+		
+		// the mapping rebuilds from the table instead
+		InMemoryFullnameMapping delegate = new InMemoryFullnameMapping();
+		delegate.insert("t1_abc");
+		BloomFilteredFullnameMapping mapping = new BloomFilteredFullnameMapping(delegate, snapshotFile);
+		mapping.maintain();
+		assertTrue(mapping.contains("t1_abc"));
+		assertFalse(mapping.contains("t1_xyz"));
+	}
+	
+	@Test
+	public void testStaleSnapshotIgnored() throws IOException {
+		// written before the table was truncated, so it knows about ids the table doesn't have
+		FullnameBloomFilter old = new FullnameBloomFilter(1000);
+		old.add("t1_gone");
+		old.writeSnapshot(snapshotFile, 50);
+		
+		InMemoryFullnameMapping delegate = new InMemoryFullnameMapping();
+		delegate.insert("t1_abc");
+		BloomFilteredFullnameMapping mapping = new BloomFilteredFullnameMapping(delegate, snapshotFile);
+		mapping.maintain();
+		
+		assertTrue(mapping.contains("t1_abc"));
+		int queries = delegate.containsQueries;
+		assertFalse(mapping.contains("t1_gone"));
+		assertEquals(queries, delegate.containsQueries);
+	}
+	
+	@Test
+	public void testCatchUpFindsRowsCommittedOutOfOrder() throws IOException {
+		InMemoryFullnameMapping delegate = new InMemoryFullnameMapping();
+		delegate.insert("t1_first");
+		Fullname slow = delegate.reserve("t1_slow");
+		delegate.insert("t1_fast");
+		
+		BloomFilteredFullnameMapping mapping = new BloomFilteredFullnameMapping(delegate, snapshotFile);
+		mapping.maintain();
+		mapping.flush();
+		
+		// committed after a row with a higher id was already seen and snapshotted
+		delegate.commit(slow);
+		mapping.maintain();
+		assertTrue(mapping.contains("t1_slow"));
+		
+		BloomFilteredFullnameMapping restarted = new BloomFilteredFullnameMapping(delegate, snapshotFile);
+		restarted.maintain();
+		assertTrue(restarted.contains("t1_slow"));
+	}
+	
+	@Test
+	public void testContainsBeforeLoadGoesToTable() {
+		InMemoryFullnameMapping delegate = new InMemoryFullnameMapping();
+		delegate.insert("t1_abc");
+		BloomFilteredFullnameMapping mapping = new BloomFilteredFullnameMapping(delegate, null);
+		
+		assertTrue(mapping.contains("t1_abc"));
+		assertFalse(mapping.contains("t1_xyz"));
+		assertEquals(0, delegate.pagesFetched);
+		assertEquals("not loaded", mapping.describe());
+	}
+	
+	@Test
+	public void testFailedBuildIsNotUsed() {
+		InMemoryFullnameMapping delegate = new InMemoryFullnameMapping();
+		delegate.insert("t1_abc");
+		delegate.failFetches = true;
+		BloomFilteredFullnameMapping mapping = new BloomFilteredFullnameMapping(delegate, null);
+		
+		try {
+			mapping.maintain();
+			fail("expected the build to fail");
+		}catch(IllegalStateException ex) {
+			// expected
+		}
+		assertEquals("not loaded", mapping.describe());
+		assertTrue(mapping.contains("t1_abc"));
+		
+		delegate.failFetches = false;
+		mapping.maintain();
+		assertTrue(mapping.contains("t1_abc"));
+	}
+	
+	@Test
+	public void testFailedCatchUpOfSnapshotIsNotUsed() throws IOException {
+		InMemoryFullnameMapping delegate = new InMemoryFullnameMapping();
+		delegate.insert("t1_old");
+		FullnameBloomFilter old = new FullnameBloomFilter(1000);
+		old.add("t1_old");
+		old.writeSnapshot(snapshotFile, 1);
+		
+		// inserted after the snapshot, so only catching up finds it
+		delegate.insert("t1_new");
+		delegate.failFetches = true;
+		BloomFilteredFullnameMapping mapping = new BloomFilteredFullnameMapping(delegate, snapshotFile);
+		try {
+			mapping.maintain();
+			fail("expected catching up to fail");
+		}catch(IllegalStateException ex) {
+			// expected
+		}
+		assertTrue(mapping.contains("t1_new"));
+		
+		delegate.failFetches = false;
+		mapping.maintain();
+		assertTrue(mapping.contains("t1_new"));
+		assertFalse(mapping.contains("t1_xyz"));
+	}
+	
+	/**
+	 * Keeps fullnames in a list. Rows can be reserved, which gives them an id
+	 * without making them visible, to imitate a transaction that commits late.
+	 */
+	private static class InMemoryFullnameMapping implements FullnameMapping {
+		final List<Fullname> rows = new ArrayList<>();
+		final List<Fullname> visible = new ArrayList<>();
+		int containsQueries;
+		int pagesFetched;
+		boolean failFetches;
+		
+		void insert(String fullname) {
+			commit(reserve(fullname));
+		}
+		
+		Fullname reserve(String fullname) {
+			Fullname row = new Fullname(rows.size() + 1, fullname);
+			rows.add(row);
+			return row;
+		}
+		
+		void commit(Fullname row) {
+			visible.add(row);
+			visible.sort((a, b) -> Integer.compare(a.id, b.id));
+		}
+		
+		@Override
+		public void save(Fullname a) {
+			Fullname row = reserve(a.fullname);
+			a.id = row.id;
+			commit(row);
+		}
+		
+		@Override
+		public List<Fullname> fetchAll() {
+			return new ArrayList<>(visible);
+		}
+		
+		@Override
+		public boolean contains(String fullname) {
+			containsQueries++;
+			for(Fullname row : visible) {
+				if(row.fullname.equalsIgnoreCase(fullname))
+					return true;
+			}
+			return false;
+		}
+		
+		@Override
+		public List<Fullname> fetchAfterId(int id, int limit) {
+			pagesFetched++;
+			if(failFetches)
+				throw new IllegalStateException("fetch failed");
+			
+			List<Fullname> result = new ArrayList<>();
+			for(Fullname row : visible) {
+				if(row.id > id && result.size() < limit)
+					result.add(row);
+			}
+			return result;
+		}
+		
+		@Override
+		public int fetchMaxId() {
+			return visible.isEmpty() ? 0 : visible.get(visible.size() - 1).id;
+		}
+	}
+}
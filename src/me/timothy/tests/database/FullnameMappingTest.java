@@ -72,4 +72,36 @@ public class FullnameMappingTest {
 		assertTrue(database.getFullnameMapping().contains(fullnameStr));
 		assertFalse(database.getFullnameMapping().contains("asdf%"));
 	}
+	
+	/**
+	 * Tests that {@link me.timothy.bots.database.FullnameMapping#fetchMaxId() fetchMaxId}
+	 * returns 0 when there are no fullnames and the largest id otherwise, and that
+	 * {@link me.timothy.bots.database.FullnameMapping#fetchAfterId(int, int) fetchAfterId}
+	 * pages through the fullnames in id order.
+	 */
+	@Test
+	public void testFetchAfterId() {
+		assertEquals(0, database.getFullnameMapping().fetchMaxId());
+		assertTrue(database.getFullnameMapping().fetchAfterId(0, 10).isEmpty());
+		
+		Fullname first = new Fullname(-1, "t1_abc");
+		database.getFullnameMapping().save(first);
+		Fullname second = new Fullname(-1, "t1_def");
+		database.getFullnameMapping().save(second);
+		Fullname third = new Fullname(-1, "t1_ghi");
+		database.getFullnameMapping().save(third);
+		
+		assertEquals(third.id, database.getFullnameMapping().fetchMaxId());
+		
+		List<Fullname> fromDb = database.getFullnameMapping().fetchAfterId(0, 2);
+		assertEquals(2, fromDb.size());
+		assertEquals(first, fromDb.get(0));
+		assertEquals(second, fromDb.get(1));
+		
+		fromDb = database.getFullnameMapping().fetchAfterId(second.id, 2);
+		assertEquals(1, fromDb.size());
+		assertEquals(third, fromDb.get(0));
+		
+		assertTrue(database.getFullnameMapping().fetchAfterId(third.id, 2).isEmpty());
+	}
 }
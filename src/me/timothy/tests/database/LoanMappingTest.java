@@ -4,6 +4,7 @@ import static org.junit.Assert.*;
 import static me.timothy.tests.database.mysql.MysqlTestUtils.assertListContents;
 
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -382,4 +383,28 @@ public class LoanMappingTest {
 		List<Integer> liFromDb = database.getLoanMapping().fetchLenderIdsWithNewLoanSince(past);
 		assertEquals(0, liFromDb.size());
 	}
+	
+	/**
+	 * Tests that {@link me.timothy.bots.database.LoanMapping#saveAll(List) saveAll}
+	 * inserts new {@link Loan loans}, setting their {@link Loan#id ids}, and updates
+	 * existing ones in the same call.
+	 */
+	@Test
+	public void testSaveAll() {
+		User paul = database.getUserMapping().fetchOrCreateByName("paul");
+		User john = database.getUserMapping().fetchOrCreateByName("john");
+		
+		Loan existing = new Loan(-1, paul.id, john.id, 100 * 100, 0, false, false, null, 
+				new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()), null);
+		database.getLoanMapping().save(existing);
+		
+		existing.principalRepaymentCents = 50 * 100;
+		Loan added = new Loan(-1, john.id, paul.id, 25 * 100, 0, false, false, null, 
+				new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()), null);
+		database.getLoanMapping().saveAll(Arrays.asList(existing, added));
+		
+		assertTrue(added.id > 0);
+		List<Loan> fromDb = database.getLoanMapping().fetchAll();
+		assertListContents(fromDb, existing, added);
+	}
 }
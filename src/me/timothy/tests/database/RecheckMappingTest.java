@@ -4,6 +4,8 @@ import static org.junit.Assert.*;
 import static me.timothy.tests.database.mysql.MysqlTestUtils.assertListContents;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -83,5 +85,19 @@ public class RecheckMappingTest {
 		assertEquals(0, fromDb.size());
 	}
 	
-	
+	@Test
+	public void testDeleteAll() {
+		Recheck r1 = new Recheck(-1, "t1_asdf", new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()));
+		database.getRecheckMapping().save(r1);
+		Recheck r2 = new Recheck(-1, "t1_ghjk", new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()));
+		database.getRecheckMapping().save(r2);
+		Recheck r3 = new Recheck(-1, "t3_qwer", new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()));
+		database.getRecheckMapping().save(r3);
+		
+		database.getRecheckMapping().deleteAll(new ArrayList<>());
+		assertListContents(database.getRecheckMapping().fetchAll(), r1, r2, r3);
+		
+		database.getRecheckMapping().deleteAll(Arrays.asList(r1, r3));
+		assertListContents(database.getRecheckMapping().fetchAll(), r2);
+	}
 }
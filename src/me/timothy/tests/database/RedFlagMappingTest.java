@@ -6,6 +6,8 @@ import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 
 import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
@@ -88,4 +90,73 @@ public class RedFlagMappingTest {
 		
 		assertEquals(database.getRedFlagMapping().fetchByReportAndTypeAndIden(johnReport.id, RedFlag.RedFlagType.NUKED_HISTORY.databaseIdentifier, "iden2"), johnFlag);
 	}
+	
+	@Test
+	public void testCopyToReport() {
+		final long now = System.currentTimeMillis();
+		
+		database.getUserMapping().fetchOrCreateByName("paul");
+		Username paulUsername = database.getUsernameMapping().fetchByUsername("paul");
+		
+		RedFlagReport oldReport = new RedFlagReport(-1, paulUsername.id, null, new Timestamp(now), null, null);
+		RedFlagReport newReport = new RedFlagReport(-1, paulUsername.id, null, new Timestamp(now + 5000), null, null);
+		database.getRedFlagReportMapping().save(oldReport);
+		database.getRedFlagReportMapping().save(newReport);
+		
+		RedFlag flag1 = new RedFlag(-1, oldReport.id, RedFlag.RedFlagType.SUBREDDIT, "iden", "testing", 3, new Timestamp(now));
+		RedFlag flag2 = new RedFlag(-1, oldReport.id, RedFlag.RedFlagType.ACTIVITY_GAP, "iden2", "test---ing", 1, new Timestamp(now + 1000));
+		database.getRedFlagMapping().save(flag1);
+		database.getRedFlagMapping().save(flag2);
+		
+		database.getRedFlagMapping().copyToReport(oldReport.id, newReport.id);
+		
+		assertListContents(database.getRedFlagMapping().fetchByReportID(oldReport.id), flag1, flag2);
+		
+		RedFlag copy1 = database.getRedFlagMapping().fetchByReportAndTypeAndIden(newReport.id, flag1.type.databaseIdentifier, flag1.identifier);
+		RedFlag copy2 = database.getRedFlagMapping().fetchByReportAndTypeAndIden(newReport.id, flag2.type.databaseIdentifier, flag2.identifier);
+		assertNotNull(copy1);
+		assertNotNull(copy2);
+		assertEquals(2, database.getRedFlagMapping().fetchByReportID(newReport.id).size());
+		
+		assertNotEquals(flag1.id, copy1.id);
+		copy1.id = flag1.id;
+		copy1.reportId = flag1.reportId;
+		assertEquals(flag1, copy1);
+		
+		copy2.id = flag2.id;
+		copy2.reportId = flag2.reportId;
+		assertEquals(flag2, copy2);
+	}
+	
+	@Test
+	public void testMergeIntoReport() {
+		final long now = System.currentTimeMillis();
+		
+		database.getUserMapping().fetchOrCreateByName("paul");
+		Username paulUsername = database.getUsernameMapping().fetchByUsername("paul");
+		
+		RedFlagReport report = new RedFlagReport(-1, paulUsername.id, null, new Timestamp(now), null, null);
+		database.getRedFlagReportMapping().save(report);
+		
+		RedFlag existing = new RedFlag(-1, report.id, RedFlag.RedFlagType.SUBREDDIT, "iden", "testing", 3, new Timestamp(now));
+		database.getRedFlagMapping().save(existing);
+		
+		database.getRedFlagMapping().mergeIntoReport(report.id, Collections.emptyList());
+		assertListContents(database.getRedFlagMapping().fetchByReportID(report.id), existing);
+		
+		RedFlag merged = new RedFlag(-1, 1, RedFlag.RedFlagType.SUBREDDIT, "iden", "testing", 2, new Timestamp(now + 1000));
+		RedFlag added1 = new RedFlag(-1, 1, RedFlag.RedFlagType.SUBREDDIT, "iden2", "test---ing", 4, new Timestamp(now + 1000));
+		RedFlag added2 = new RedFlag(-1, 1, RedFlag.RedFlagType.ACTIVITY_GAP, "iden", "gap", 1, new Timestamp(now + 2000));
+		database.getRedFlagMapping().mergeIntoReport(report.id, Arrays.asList(merged, added1, added2));
+		
+		assertEquals(existing.id, merged.id);
+		assertNotEquals(-1, added1.id);
+		assertNotEquals(-1, added2.id);
+		assertNotEquals(added1.id, added2.id);
+		
+		existing.count = 5;
+		added1.reportId = report.id;
+		added2.reportId = report.id;
+		assertListContents(database.getRedFlagMapping().fetchByReportID(report.id), existing, added1, added2);
+	}
 }
@@ -0,0 +1,135 @@
+package me.timothy.tests.database;
+
+import static org.junit.Assert.*;
+
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+import me.timothy.bots.database.MappingDatabase;
+import me.timothy.bots.models.RedFlagQueueClaim;
+import me.timothy.bots.models.RedFlagQueueSpot;
+import me.timothy.bots.models.Username;
+
+import static me.timothy.tests.database.mysql.MysqlTestUtils.assertListContents;
+
+/**
+ * A suite of tests focused on testing a RedFlagQueueClaimMapping, and
+ * claiming spots in the red flag queue. The database should be cleared 
+ * prior to each test. The database will be modified after each test. 
+ * Do not run against a production database.
+ * 
+ * @author Timothy
+ */
+public class RedFlagQueueClaimMappingTest {
+	protected MappingDatabase database;
+	
+	@Test
+	public void testTest() {
+		assertNotNull(database);
+	}
+	
+	@Test
+	public void testClaim() {
+		final long now = System.currentTimeMillis();
+		Timestamp staleBefore = new Timestamp(now - 60000);
+		
+		database.getUserMapping().fetchOrCreateByName("paul");
+		Username paulUsername = database.getUsernameMapping().fetchByUsername("paul");
+		
+		RedFlagQueueSpot spot = new RedFlagQueueSpot(-1, null, paulUsername.id, new Timestamp(now), null, null);
+		database.getRedFlagQueueSpotMapping().save(spot);
+		
+		assertNull(database.getRedFlagQueueClaimMapping().fetchByQueueSpotID(spot.id));
+		assertFalse(database.getRedFlagQueueClaimMapping().renew(spot.id, "worker-1"));
+		
+		assertTrue(database.getRedFlagQueueClaimMapping().claim(spot.id, paulUsername.id, "worker-1", staleBefore));
+		assertFalse(database.getRedFlagQueueClaimMapping().claim(spot.id, paulUsername.id, "worker-2", staleBefore));
+		assertTrue(database.getRedFlagQueueClaimMapping().claim(spot.id, paulUsername.id, "worker-1", staleBefore));
+		assertEquals("worker-1", database.getRedFlagQueueClaimMapping().fetchByQueueSpotID(spot.id).worker);
+		
+		assertTrue(database.getRedFlagQueueClaimMapping().renew(spot.id, "worker-1"));
+		assertFalse(database.getRedFlagQueueClaimMapping().renew(spot.id, "worker-2"));
+		
+		database.getRedFlagQueueClaimMapping().release(spot.id, "worker-2");
+		assertNotNull(database.getRedFlagQueueClaimMapping().fetchByQueueSpotID(spot.id));
+		
+		database.getRedFlagQueueClaimMapping().release(spot.id, "worker-1");
+		assertNull(database.getRedFlagQueueClaimMapping().fetchByQueueSpotID(spot.id));
+		
+		RedFlagQueueClaim abandoned = new RedFlagQueueClaim(spot.id, paulUsername.id, "worker-1", new Timestamp(now - 120000));
+		database.getRedFlagQueueClaimMapping().save(abandoned);
+		assertListContents(database.getRedFlagQueueClaimMapping().fetchAll(), abandoned);
+		
+		assertTrue(database.getRedFlagQueueClaimMapping().claim(spot.id, paulUsername.id, "worker-2", staleBefore));
+		assertFalse(database.getRedFlagQueueClaimMapping().renew(spot.id, "worker-1"));
+		assertEquals("worker-2", database.getRedFlagQueueClaimMapping().fetchByQueueSpotID(spot.id).worker);
+	}
+	
+	@Test
+	public void testClaimIsPerUsername() {
+		final long now = System.currentTimeMillis();
+		Timestamp staleBefore = new Timestamp(now - 60000);
+		
+		database.getUserMapping().fetchOrCreateByName("paul");
+		Username paulUsername = database.getUsernameMapping().fetchByUsername("paul");
+		
+		RedFlagQueueSpot spot1 = new RedFlagQueueSpot(-1, null, paulUsername.id, new Timestamp(now - 20000), null, null);
+		RedFlagQueueSpot spot2 = new RedFlagQueueSpot(-1, null, paulUsername.id, new Timestamp(now - 10000), null, null);
+		database.getRedFlagQueueSpotMapping().save(spot1);
+		database.getRedFlagQueueSpotMapping().save(spot2);
+		
+		// both spots were offered, but only one worker can have pauls spots
+		assertTrue(database.getRedFlagQueueClaimMapping().claim(spot1.id, paulUsername.id, "worker-1", staleBefore));
+		assertFalse(database.getRedFlagQueueClaimMapping().claim(spot2.id, paulUsername.id, "worker-2", staleBefore));
+		assertNull(database.getRedFlagQueueClaimMapping().fetchByQueueSpotID(spot2.id));
+		
+		// once the claimed spot is done, the next one can be claimed even before the release
+		spot1.startedAt = new Timestamp(now);
+		spot1.completedAt = new Timestamp(now);
+		database.getRedFlagQueueSpotMapping().save(spot1);
+		assertTrue(database.getRedFlagQueueClaimMapping().claim(spot2.id, paulUsername.id, "worker-2", staleBefore));
+		assertFalse(database.getRedFlagQueueClaimMapping().renew(spot1.id, "worker-1"));
+		assertTrue(database.getRedFlagQueueClaimMapping().renew(spot2.id, "worker-2"));
+		
+		database.getRedFlagQueueClaimMapping().release(spot1.id, "worker-1");
+		assertEquals("worker-2", database.getRedFlagQueueClaimMapping().fetchByQueueSpotID(spot2.id).worker);
+	}
+	
+	@Test
+	public void testFetchOldestUnclaimed() {
+		final long now = System.currentTimeMillis();
+		Timestamp staleBefore = new Timestamp(now - 60000);
+		
+		database.getUserMapping().fetchOrCreateByName("paul");
+		database.getUserMapping().fetchOrCreateByName("john");
+		Username paulUsername = database.getUsernameMapping().fetchByUsername("paul");
+		Username johnUsername = database.getUsernameMapping().fetchByUsername("john");
+		
+		RedFlagQueueSpot paulSpot1 = new RedFlagQueueSpot(-1, null, paulUsername.id, new Timestamp(now - 30000), null, null);
+		RedFlagQueueSpot johnSpot = new RedFlagQueueSpot(-1, null, johnUsername.id, new Timestamp(now - 20000), null, null);
+		RedFlagQueueSpot paulSpot2 = new RedFlagQueueSpot(-1, null, paulUsername.id, new Timestamp(now - 10000), null, null);
+		RedFlagQueueSpot doneSpot = new RedFlagQueueSpot(-1, null, johnUsername.id, new Timestamp(now - 40000), 
+				new Timestamp(now - 40000), new Timestamp(now - 35000));
+		database.getRedFlagQueueSpotMapping().save(paulSpot1);
+		database.getRedFlagQueueSpotMapping().save(johnSpot);
+		database.getRedFlagQueueSpotMapping().save(paulSpot2);
+		database.getRedFlagQueueSpotMapping().save(doneSpot);
+		
+		assertEquals(3, database.getRedFlagQueueSpotMapping().countUncompleted());
+		assertEquals(paulSpot1, database.getRedFlagQueueSpotMapping().fetchOldestUnclaimed(staleBefore, 1).get(0));
+		assertListContents(database.getRedFlagQueueSpotMapping().fetchOldestUnclaimed(staleBefore, 5), paulSpot1, johnSpot, paulSpot2);
+		
+		// claiming one of pauls spots hides the other until the claim is released or abandoned
+		assertTrue(database.getRedFlagQueueClaimMapping().claim(paulSpot1.id, paulUsername.id, "worker-1", staleBefore));
+		assertListContents(database.getRedFlagQueueSpotMapping().fetchOldestUnclaimed(staleBefore, 5), johnSpot);
+		assertListContents(database.getRedFlagQueueSpotMapping().fetchOldestUnclaimed(new Timestamp(now + 60000), 5), paulSpot1, johnSpot, paulSpot2);
+		
+		database.getRedFlagQueueClaimMapping().release(paulSpot1.id, "worker-1");
+		assertListContents(database.getRedFlagQueueSpotMapping().fetchOldestUnclaimed(staleBefore, 5), paulSpot1, johnSpot, paulSpot2);
+		
+		// claims on completed spots don't matter
+		database.getRedFlagQueueClaimMapping().claim(doneSpot.id, johnUsername.id, "worker-1", staleBefore);
+		assertListContents(database.getRedFlagQueueSpotMapping().fetchOldestUnclaimed(staleBefore, 5), paulSpot1, johnSpot, paulSpot2);
+	}
+}
@@ -0,0 +1,70 @@
+package me.timothy.tests.database;
+
+import static org.junit.Assert.*;
+
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+import me.timothy.bots.database.MappingDatabase;
+import me.timothy.bots.models.RedFlagReport;
+import me.timothy.bots.models.RedFlagReportCheckpoint;
+import me.timothy.bots.models.User;
+import me.timothy.bots.models.Username;
+
+import static me.timothy.tests.database.mysql.MysqlTestUtils.assertListContents;
+
+/**
+ * Describes a suite of tests focusing on a RedFlagReportCheckpointMapping.
+ * The database should be cleared prior to each test. The database 
+ * will be modified after each test. Do not run against a production 
+ * database.
+ * 
+ * @author Timothy
+ */
+public class RedFlagReportCheckpointMappingTest {
+	protected MappingDatabase database;
+	
+	@Test
+	public void testTest() {
+		assertNotNull(database);
+	}
+	
+	@Test
+	public void testAll() {
+		final long now = System.currentTimeMillis();
+		
+		User paul = database.getUserMapping().fetchOrCreateByName("paul");
+		Username paulUsername = database.getUsernameMapping().fetchByUserId(paul.id).get(0);
+		
+		RedFlagReport report1 = new RedFlagReport(-1, paulUsername.id, null, new Timestamp(now), null, null);
+		RedFlagReport report2 = new RedFlagReport(-1, paulUsername.id, null, new Timestamp(now + 5000), null, null);
+		database.getRedFlagReportMapping().save(report1);
+		database.getRedFlagReportMapping().save(report2);
+		
+		assertNull(database.getRedFlagReportCheckpointMapping().fetchByReportID(report1.id));
+		
+		RedFlagReportCheckpoint empty = new RedFlagReportCheckpoint(report1.id, null, null, "{}", new Timestamp(now));
+		assertTrue(empty.isValid());
+		database.getRedFlagReportCheckpointMapping().save(empty);
+		
+		assertEquals(empty, database.getRedFlagReportCheckpointMapping().fetchByReportID(report1.id));
+		assertNull(database.getRedFlagReportCheckpointMapping().fetchByReportID(report2.id));
+		
+		RedFlagReportCheckpoint updated = new RedFlagReportCheckpoint(report1.id, "t1_abc", new Timestamp(now - 60000), 
+				"{\"RedFlagForActivityGapDetector\":\"12345\"}", new Timestamp(now + 1000));
+		assertTrue(updated.isValid());
+		database.getRedFlagReportCheckpointMapping().save(updated);
+		
+		assertEquals(updated, database.getRedFlagReportCheckpointMapping().fetchByReportID(report1.id));
+		
+		RedFlagReportCheckpoint other = new RedFlagReportCheckpoint(report2.id, "t3_def", new Timestamp(now), "{}", new Timestamp(now));
+		database.getRedFlagReportCheckpointMapping().save(other);
+		
+		assertEquals(updated, database.getRedFlagReportCheckpointMapping().fetchByReportID(report1.id));
+		assertEquals(other, database.getRedFlagReportCheckpointMapping().fetchByReportID(report2.id));
+		assertListContents(database.getRedFlagReportCheckpointMapping().fetchAll(), updated, other);
+		
+		assertFalse(new RedFlagReportCheckpoint(report1.id, "t1_abc", null, "{}", new Timestamp(now)).isValid());
+	}
+}
@@ -7,6 +7,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -78,4 +80,30 @@ public class RedFlagUserHistoryCommentMappingTest {
 		mapping.deleteByReportID(report2.id);
 		MysqlTestUtils.assertListContents(mapping.fetchAll());
 	}
+	
+	@Test
+	public void testSaveAll() {
+		RedFlagUserHistoryCommentMapping mapping = database.getRedFlagUserHistoryCommentMapping();
+		
+		User john = database.getUserMapping().fetchOrCreateByName("john");
+		Username johnUsername = database.getUsernameMapping().fetchByUsername("john");
+		
+		RedFlagReport report = new RedFlagReport(-1, johnUsername.id, "asdf", new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()), null);
+		database.getRedFlagReportMapping().save(report);
+		
+		List<RedFlagUserHistoryComment> comments = new ArrayList<>();
+		for(int i = 0; i < 25; i++) {
+			comments.add(new RedFlagUserHistoryComment(-1, report.id, john.id, "t1_comment" + i, "link", "body " + i, "sub", new Timestamp(System.currentTimeMillis() - 10000 * i), null));
+		}
+		mapping.saveAll(comments);
+		
+		for(RedFlagUserHistoryComment comment : comments) {
+			assertTrue(comment.id > 0);
+			assertEquals(comment, mapping.fetchByID(comment.id));
+		}
+		assertEquals(comments.size(), mapping.fetchAll().size());
+		
+		mapping.saveAll(new ArrayList<>());
+		assertEquals(comments.size(), mapping.fetchAll().size());
+	}
 }
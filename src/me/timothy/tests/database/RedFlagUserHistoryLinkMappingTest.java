@@ -7,6 +7,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -85,4 +87,41 @@ public class RedFlagUserHistoryLinkMappingTest {
 		mapping.deleteByReportID(report2.id);
 		MysqlTestUtils.assertListContents(mapping.fetchAll());
 	}
+	
+	@Test
+	public void testSaveAll() {
+		RedFlagUserHistoryLinkMapping mapping = database.getRedFlagUserHistoryLinkMapping();
+		
+		User john = database.getUserMapping().fetchOrCreateByName("john");
+		Username johnUsername = database.getUsernameMapping().fetchByUsername("john");
+		
+		RedFlagReport report = new RedFlagReport(-1, johnUsername.id, "asdf", new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()), null);
+		database.getRedFlagReportMapping().save(report);
+		
+		RedFlagUserHistoryLink existing = new RedFlagUserHistoryLink(-1, report.id, john.id, "t3_existing", "title", "url", null, "permalink", "subreddit", new Timestamp(System.currentTimeMillis() - 10000), null);
+		mapping.save(existing);
+		existing.title = "new title";
+		
+		// more than one batch worth of inserts alongside an update
+		List<RedFlagUserHistoryLink> links = new ArrayList<>();
+		links.add(existing);
+		for(int i = 0; i < 600; i++) {
+			links.add(new RedFlagUserHistoryLink(-1, report.id, john.id, "t3_link" + i, "title " + i, null, "self text " + i, "permalink", "subreddit", new Timestamp(System.currentTimeMillis() - 10000 * i), null));
+		}
+		mapping.saveAll(links);
+		
+		int lastId = 0;
+		for(RedFlagUserHistoryLink link : links.subList(1, links.size())) {
+			assertTrue(link.id > lastId);
+			lastId = link.id;
+		}
+		
+		for(RedFlagUserHistoryLink link : links) {
+			assertEquals(link, mapping.fetchByID(link.id));
+		}
+		assertEquals(links.size(), mapping.fetchAll().size());
+		
+		mapping.saveAll(new ArrayList<>());
+		assertEquals(links.size(), mapping.fetchAll().size());
+	}
 }
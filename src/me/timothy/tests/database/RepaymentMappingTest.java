@@ -4,6 +4,8 @@ import static org.junit.Assert.*;
 import static me.timothy.tests.database.mysql.MysqlTestUtils.assertListContents;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -116,4 +118,45 @@ public class RepaymentMappingTest {
 		fromDb = database.getRepaymentMapping().fetchByLoanId(loanPaulToJohn.id);
 		assertListContents(fromDb, repaymentPaulToJohn);
 	}
+	
+	@Test
+	public void testSaveAll() {
+		User paul = database.getUserMapping().fetchOrCreateByName("paul");
+		User greg = database.getUserMapping().fetchOrCreateByName("greg");
+		
+		Loan loanPaulToGreg = new Loan();
+		loanPaulToGreg.id = -1;
+		loanPaulToGreg.borrowerId = greg.id;
+		loanPaulToGreg.lenderId = paul.id;
+		loanPaulToGreg.principalCents = 100 * 100; // $100
+		loanPaulToGreg.principalRepaymentCents = 0;
+		loanPaulToGreg.createdAt = new Timestamp(System.currentTimeMillis());
+		loanPaulToGreg.updatedAt = new Timestamp(System.currentTimeMillis());
+		database.getLoanMapping().save(loanPaulToGreg);
+		
+		List<Repayment> repayments = new ArrayList<>();
+		for(int i = 0; i < 3; i++) {
+			repayments.add(new Repayment(-1, loanPaulToGreg.id, 10 * 100, 
+					new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis())));
+		}
+		database.getRepaymentMapping().saveAll(repayments);
+		
+		for(Repayment repayment : repayments) {
+			assertTrue(repayment.id > 0);
+		}
+		List<Repayment> fromDb = database.getRepaymentMapping().fetchAll();
+		assertListContents(fromDb, repayments.get(0), repayments.get(1), repayments.get(2));
+		
+		repayments.get(1).amountCents = 20 * 100;
+		Repayment another = new Repayment(-1, loanPaulToGreg.id, 30 * 100, 
+				new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()));
+		database.getRepaymentMapping().saveAll(Arrays.asList(repayments.get(1), another));
+		
+		assertTrue(another.id > 0);
+		fromDb = database.getRepaymentMapping().fetchAll();
+		assertListContents(fromDb, repayments.get(0), repayments.get(1), repayments.get(2), another);
+		
+		database.getRepaymentMapping().saveAll(new ArrayList<>());
+		assertEquals(4, database.getRepaymentMapping().fetchAll().size());
+	}
 }
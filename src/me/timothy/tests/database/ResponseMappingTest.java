@@ -41,7 +41,7 @@ public class ResponseMappingTest {
 		List<Response> fromDb = database.getResponseMapping().fetchAll();
 		assertListContents(fromDb, response);
 	}
-
+	
 	@Test
 	public void testFetchByName() {
 		Response test = new Response();
@@ -75,4 +75,55 @@ public class ResponseMappingTest {
 		fromDb = database.getResponseMapping().fetchByName("shenanigans");
 		assertNull(fromDb);
 	}
+	
+	@Test
+	public void testFetchMaxUpdatedAt() {
+		assertNull(database.getResponseMapping().fetchMaxUpdatedAt());
+		
+		long now = System.currentTimeMillis();
+		Response test = new Response();
+		test.id = -1;
+		test.name = "test";
+		test.responseBody = "this is a test response";
+		test.createdAt = new Timestamp(now - 10000);
+		test.updatedAt = new Timestamp(now - 10000);
+		database.getResponseMapping().save(test);
+		
+		assertEquals(test.updatedAt, database.getResponseMapping().fetchMaxUpdatedAt());
+		
+		Response hello = new Response();
+		hello.id = -1;
+		hello.name = "hello";
+		hello.responseBody = "Hello! I'm a bot, are you <name>?";
+		hello.createdAt = new Timestamp(now - 20000);
+		hello.updatedAt = new Timestamp(now - 20000);
+		database.getResponseMapping().save(hello);
+		
+		assertEquals(test.updatedAt, database.getResponseMapping().fetchMaxUpdatedAt());
+		
+		hello.responseBody = "Hello! I'm a bot, are you <user>?";
+		hello.updatedAt = new Timestamp(now);
+		database.getResponseMapping().save(hello);
+		
+		assertEquals(hello.updatedAt, database.getResponseMapping().fetchMaxUpdatedAt());
+		assertEquals(hello, database.getResponseMapping().fetchByName("hello"));
+	}
+	
+	@Test
+	public void testFetchCount() {
+		assertEquals(0, database.getResponseMapping().fetchCount());
+		
+		long now = System.currentTimeMillis();
+		Response test = new Response(-1, "test", "this is a test response", new Timestamp(now), new Timestamp(now));
+		database.getResponseMapping().save(test);
+		assertEquals(1, database.getResponseMapping().fetchCount());
+		
+		test.responseBody = "this is still a test response";
+		database.getResponseMapping().save(test);
+		assertEquals(1, database.getResponseMapping().fetchCount());
+		
+		Response hello = new Response(-1, "hello", "Hello! I'm a bot", new Timestamp(now), new Timestamp(now));
+		database.getResponseMapping().save(hello);
+		assertEquals(2, database.getResponseMapping().fetchCount());
+	}
 }
@@ -0,0 +1,123 @@
+package me.timothy.tests.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Timestamp;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import me.timothy.bots.database.MappingDatabase;
+import me.timothy.bots.database.RedFlagUserHistoryCommentMapping;
+import me.timothy.bots.database.RedFlagUserHistoryLinkMapping;
+import me.timothy.bots.models.RedFlagReport;
+import me.timothy.bots.models.RedFlagUserHistoryComment;
+import me.timothy.bots.models.RedFlagUserHistoryLink;
+import me.timothy.bots.models.User;
+import me.timothy.bots.models.Username;
+import me.timothy.bots.redflags.SortedUserHistory;
+
+public class SortedUserHistoryTest {
+	protected MappingDatabase database;
+	
+	@Test
+	public void testTest() {
+		assertNotNull(database);
+	}
+	
+	@Test
+	public void testAll() {
+		long now = System.currentTimeMillis();
+		long step = 2000;
+		
+		RedFlagUserHistoryComment comment, comment2, comment3;
+		RedFlagUserHistoryLink link, link2;
+		RedFlagUserHistoryCommentMapping cMapping = database.getRedFlagUserHistoryCommentMapping();
+		RedFlagUserHistoryLinkMapping lMapping = database.getRedFlagUserHistoryLinkMapping();
+		
+		User john = database.getUserMapping().fetchOrCreateByName("john");
+		Username johnUsername = database.getUsernameMapping().fetchByUsername("john");
+		
+		RedFlagReport report = new RedFlagReport(-1, johnUsername.id, "asdf", new Timestamp(System.currentTimeMillis()), new Timestamp(now - 100 * step), null);
+		database.getRedFlagReportMapping().save(report);
+		
+		SortedUserHistory history = SortedUserHistory.produce(database, report.id, 8);
+		assertEquals(0, history.size());
+		assertFalse(history.iterator().hasNext());
+		history.dispose();
+		
+		link = new RedFlagUserHistoryLink(-1, report.id, john.id, "t3_link", "title", "url", null, "permalink", "subreddit", new Timestamp(now - 50 * step), null);
+		lMapping.save(link);
+		
+		comment = new RedFlagUserHistoryComment(-1, report.id, john.id, "t1_comment", "http://www.site.com/link", "the body of the comment", "subreddit", new Timestamp(now - 55 * step), null);
+		cMapping.save(comment);
+		
+		comment2 = new RedFlagUserHistoryComment(-1, report.id, john.id, "t1_comment2", "permalink2", "body2", "subreddit", new Timestamp(now - 45 * step), null);
+		cMapping.save(comment2);
+		
+		link2 = new RedFlagUserHistoryLink(-1, report.id, john.id, "t3_link2", "title2", "Url2", null, "permalink2", "subreddit", new Timestamp(now - 40 * step), null);
+		lMapping.save(link2);
+		
+		// same time as link2; links come first
+		comment3 = new RedFlagUserHistoryComment(-1, report.id, john.id, "t1_comment3", "permalink3", "body3", "subreddit", new Timestamp(now - 40 * step), null);
+		cMapping.save(comment3);
+		
+		history = SortedUserHistory.produce(database, report.id, 8);
+		assertEquals(5, history.size());
+		
+		for(int sweep = 0; sweep < 2; sweep++) {
+			Iterator<SortedUserHistory.Item> iter = history.iterator();
+			SortedUserHistory.Item item = iter.next();
+			assertEquals(comment, item.comment);
+			assertNull(item.link);
+			
+			item = iter.next();
+			assertEquals(link, item.link);
+			assertNull(item.comment);
+			
+			item = iter.next();
+			assertEquals(comment2, item.comment);
+			
+			item = iter.next();
+			assertEquals(link2, item.link);
+			
+			item = iter.next();
+			assertEquals(comment3, item.comment);
+			
+			assertFalse(iter.hasNext());
+		}
+		history.dispose();
+	}
+	
+	@Test
+	public void testSpillsToDisk() {
+		long now = System.currentTimeMillis();
+		
+		User john = database.getUserMapping().fetchOrCreateByName("john");
+		Username johnUsername = database.getUsernameMapping().fetchByUsername("john");
+		
+		RedFlagReport report = new RedFlagReport(-1, johnUsername.id, "asdf", new Timestamp(now), new Timestamp(now), null);
+		database.getRedFlagReportMapping().save(report);
+		
+		int numComments = 40;
+		for(int i = 0; i < numComments; i++) {
+			// saved newest first, like the crawler does
+			database.getRedFlagUserHistoryCommentMapping().save(new RedFlagUserHistoryComment(-1, report.id, john.id, "t1_c" + i, 
+					"permalink", "body", "subreddit", new Timestamp(now - i * 2000), null));
+		}
+		
+		SortedUserHistory history = SortedUserHistory.produce(database, report.id, 8);
+		assertEquals(numComments, history.size());
+		
+		int expected = numComments - 1;
+		for(SortedUserHistory.Item item : history) {
+			assertEquals("t1_c" + expected, item.comment.fullname);
+			expected--;
+		}
+		assertEquals(-1, expected);
+		history.dispose();
+	}
+}
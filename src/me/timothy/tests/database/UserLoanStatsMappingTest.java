@@ -0,0 +1,228 @@
+package me.timothy.tests.database;
+
+import static org.junit.Assert.*;
+import static me.timothy.tests.database.mysql.MysqlTestUtils.assertListContents;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import me.timothy.bots.database.MappingDatabase;
+import me.timothy.bots.models.DelayedVettingRequest;
+import me.timothy.bots.models.LendersCampContributor;
+import me.timothy.bots.models.Loan;
+import me.timothy.bots.models.PromotionBlacklist;
+import me.timothy.bots.models.Repayment;
+import me.timothy.bots.models.User;
+import me.timothy.bots.models.UserLoanStats;
+
+/**
+ * Describes a test focused on a UserLoanStatsMapping in a MappingDatabase, and
+ * that the loan and repayment mappings keep it up to date. The database must be
+ * <i>completely</i> empty after each setUp. The database <i>will</i> be modified
+ * after each run - do not run against real databases.
+ * 
+ * @author Timothy
+ */
+public class UserLoanStatsMappingTest {
+	/**
+	 * The {@link MappingDatabase MappingDatabase} that contains the
+	 * {@link me.timothy.bots.database.UserLoanStatsMapping UserLoanStatsMapping} to test.
+	 */
+	protected MappingDatabase database;
+	
+	@Test
+	public void testTest() {
+		assertNotNull(database);
+	}
+	
+	/**
+	 * Users without any loans get a summary with every count at zero
+	 */
+	@Test
+	public void testFetchMissing() {
+		User paul = database.getUserMapping().fetchOrCreateByName("paul");
+		
+		UserLoanStats stats = database.getUserLoanStatsMapping().fetchByUserId(paul.id);
+		assertEquals(new UserLoanStats(paul.id), stats);
+		assertEquals(Long.MAX_VALUE, stats.timeSinceEarliestRepaid());
+	}
+	
+	/**
+	 * Saving loans and repayments refreshes the summaries of the lender
+	 * and borrower, and deleted loans are not counted.
+	 */
+	@Test
+	public void testKeptUpToDate() {
+		User paul = database.getUserMapping().fetchOrCreateByName("paul");
+		User john = database.getUserMapping().fetchOrCreateByName("john");
+		
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		Loan loan = new Loan(-1, paul.id, john.id, 100 * 100, 0, false, false, null, now, now, null);
+		database.getLoanMapping().save(loan);
+		
+		assertEquals(new UserLoanStats(paul.id, 1, 0, 0, 0, null, null),
+				database.getUserLoanStatsMapping().fetchByUserId(paul.id));
+		assertEquals(new UserLoanStats(john.id, 0, 0, 1, 1, null, null),
+				database.getUserLoanStatsMapping().fetchByUserId(john.id));
+		
+		Repayment repayment = new Repayment(-1, loan.id, 100 * 100, now, now);
+		database.getRepaymentMapping().save(repayment);
+		loan.principalRepaymentCents = 100 * 100;
+		database.getLoanMapping().save(loan);
+		
+		assertEquals(new UserLoanStats(paul.id, 1, 1, 0, 0, repayment.createdAt, null),
+				database.getUserLoanStatsMapping().fetchByUserId(paul.id));
+		assertEquals(new UserLoanStats(john.id, 0, 0, 1, 0, null, null),
+				database.getUserLoanStatsMapping().fetchByUserId(john.id));
+		
+		loan.deleted = true;
+		loan.deletedAt = new Timestamp(System.currentTimeMillis());
+		database.getLoanMapping().save(loan);
+		
+		assertEquals(new UserLoanStats(paul.id), database.getUserLoanStatsMapping().fetchByUserId(paul.id));
+		assertEquals(new UserLoanStats(john.id), database.getUserLoanStatsMapping().fetchByUserId(john.id));
+	}
+	
+	/**
+	 * Saves adjust the summaries by how the loan changed rather than recomputing
+	 * them, including when the lender changes or a loan stops being repaid in full,
+	 * and refresh repairs a summary which was wrong.
+	 */
+	@Test
+	public void testSavesApplyDeltas() {
+		User paul = database.getUserMapping().fetchOrCreateByName("paul");
+		User john = database.getUserMapping().fetchOrCreateByName("john");
+		User greg = database.getUserMapping().fetchOrCreateByName("greg");
+		
+		long now = System.currentTimeMillis();
+		Timestamp lastWeek = new Timestamp(now - 1000 * 60 * 60 * 24 * 7);
+		Timestamp yesterday = new Timestamp(now - 1000 * 60 * 60 * 24);
+		
+		Loan first = new Loan(-1, paul.id, john.id, 10 * 100, 10 * 100, false, false, null, lastWeek, lastWeek, null);
+		database.getLoanMapping().save(first);
+		database.getRepaymentMapping().save(new Repayment(-1, first.id, 10 * 100, lastWeek, lastWeek));
+		Loan second = new Loan(-1, paul.id, john.id, 10 * 100, 0, false, false, null, yesterday, yesterday, null);
+		database.getLoanMapping().save(second);
+		Repayment secondRepayment = new Repayment(-1, second.id, 10 * 100, yesterday, yesterday);
+		database.getRepaymentMapping().save(secondRepayment);
+		second.principalRepaymentCents = 10 * 100;
+		database.getLoanMapping().save(second);
+		
+		assertEquals(new UserLoanStats(paul.id, 2, 2, 0, 0, lastWeek, null),
+				database.getUserLoanStatsMapping().fetchByUserId(paul.id));
+		
+		// the earliest repayment moves forward to the other loan
+		first.principalRepaymentCents = 5 * 100;
+		first.unpaid = true;
+		database.getLoanMapping().save(first);
+		assertEquals(new UserLoanStats(paul.id, 2, 1, 0, 0, secondRepayment.createdAt, null),
+				database.getUserLoanStatsMapping().fetchByUserId(paul.id));
+		assertEquals(new UserLoanStats(john.id, 0, 0, 2, 0, null, null),
+				database.getUserLoanStatsMapping().fetchByUserId(john.id));
+		
+		// moving a loan to another lender moves it between their summaries
+		second.lenderId = greg.id;
+		database.getLoanMapping().saveAll(Arrays.asList(first, second));
+		assertEquals(new UserLoanStats(paul.id, 1, 0, 0, 0, null, null),
+				database.getUserLoanStatsMapping().fetchByUserId(paul.id));
+		assertEquals(new UserLoanStats(greg.id, 1, 1, 0, 0, secondRepayment.createdAt, null),
+				database.getUserLoanStatsMapping().fetchByUserId(greg.id));
+		
+		// a wrong summary stays wrong by the same amount, since saves don't recompute
+		database.getUserLoanStatsMapping().save(new UserLoanStats(john.id, 7, 0, 7, 0, null, null));
+		database.getLoanMapping().save(new Loan(-1, greg.id, john.id, 10 * 100, 0, false, false, null, yesterday, yesterday, null));
+		assertEquals(new UserLoanStats(john.id, 7, 0, 8, 1, null, null),
+				database.getUserLoanStatsMapping().fetchByUserId(john.id));
+		
+		database.getUserLoanStatsMapping().refresh(john.id);
+		assertEquals(new UserLoanStats(john.id, 0, 0, 3, 1, null, null),
+				database.getUserLoanStatsMapping().fetchByUserId(john.id));
+	}
+	
+	/**
+	 * Rebuilding the summaries from scratch gives the same result as keeping
+	 * them up to date, and replaces summaries which were wrong.
+	 */
+	@Test
+	public void testRebuild() {
+		User paul = database.getUserMapping().fetchOrCreateByName("paul");
+		User john = database.getUserMapping().fetchOrCreateByName("john");
+		User greg = database.getUserMapping().fetchOrCreateByName("greg");
+		
+		Timestamp now = new Timestamp(System.currentTimeMillis());
+		Loan paulToJohn = new Loan(-1, paul.id, john.id, 50 * 100, 50 * 100, false, false, null, now, now, null);
+		database.getLoanMapping().save(paulToJohn);
+		Repayment repayment = new Repayment(-1, paulToJohn.id, 50 * 100, now, now);
+		database.getRepaymentMapping().save(repayment);
+		Loan paulToGreg = new Loan(-1, paul.id, greg.id, 20 * 100, 0, true, false, null, now, now, null);
+		database.getLoanMapping().save(paulToGreg);
+		Loan johnToGreg = new Loan(-1, john.id, greg.id, 10 * 100, 0, false, false, null, now, now, null);
+		database.getLoanMapping().save(johnToGreg);
+		
+		UserLoanStats paulStats = new UserLoanStats(paul.id, 2, 1, 0, 0, repayment.createdAt, null);
+		UserLoanStats johnStats = new UserLoanStats(john.id, 1, 0, 1, 0, null, null);
+		UserLoanStats gregStats = new UserLoanStats(greg.id, 0, 0, 2, 1, null, null);
+		assertListContents(database.getUserLoanStatsMapping().fetchAll(), paulStats, johnStats, gregStats);
+		
+		database.getUserLoanStatsMapping().save(new UserLoanStats(greg.id, 7, 7, 7, 7, null, null));
+		database.getUserLoanStatsMapping().rebuild();
+		
+		assertListContents(database.getUserLoanStatsMapping().fetchAll(), paulStats, johnStats, gregStats);
+	}
+	
+	/**
+	 * Vetting candidates meet every threshold and exclude lenderscamp contributors
+	 * and blacklisted users, unless they have a delayed vetting request whose
+	 * number of loans has been reached.
+	 */
+	@Test
+	public void testFetchVettingCandidates() {
+		User paul = database.getUserMapping().fetchOrCreateByName("paul");
+		User john = database.getUserMapping().fetchOrCreateByName("john");
+		User greg = database.getUserMapping().fetchOrCreateByName("greg");
+		User bob = database.getUserMapping().fetchOrCreateByName("bob");
+		
+		long now = System.currentTimeMillis();
+		Timestamp lastWeek = new Timestamp(now - 1000 * 60 * 60 * 24 * 7);
+		for(User lender : new User[] { paul, john, greg }) {
+			Loan loan = new Loan(-1, lender.id, bob.id, 10 * 100, 10 * 100, false, false, null, lastWeek, lastWeek, null);
+			database.getLoanMapping().save(loan);
+			database.getRepaymentMapping().save(new Repayment(-1, loan.id, 10 * 100, lastWeek, lastWeek));
+		}
+		
+		Timestamp yesterday = new Timestamp(now - 1000 * 60 * 60 * 24);
+		UserLoanStats paulStats = database.getUserLoanStatsMapping().fetchByUserId(paul.id);
+		UserLoanStats johnStats = database.getUserLoanStatsMapping().fetchByUserId(john.id);
+		UserLoanStats gregStats = database.getUserLoanStatsMapping().fetchByUserId(greg.id);
+		assertListContents(database.getUserLoanStatsMapping().fetchVettingCandidates(1, 1, yesterday, 10), paulStats, johnStats, gregStats);
+		assertListContents(database.getUserLoanStatsMapping().fetchVettingCandidates(2, 1, yesterday, 10));
+		assertListContents(database.getUserLoanStatsMapping().fetchVettingCandidates(1, 2, yesterday, 10));
+		assertListContents(database.getUserLoanStatsMapping().fetchVettingCandidates(1, 1, new Timestamp(now - 1000 * 60 * 60 * 24 * 14), 10));
+		assertEquals(1, database.getUserLoanStatsMapping().fetchVettingCandidates(1, 1, yesterday, 1).size());
+		
+		database.getLccMapping().save(new LendersCampContributor(-1, john.id, false, new Timestamp(now), new Timestamp(now)));
+		database.getPromotionBlacklistMapping().save(new PromotionBlacklist(-1, greg.id, paul.id, "Vetting required", new Timestamp(now), null));
+		assertListContents(database.getUserLoanStatsMapping().fetchVettingCandidates(1, 1, yesterday, 10), paulStats);
+		
+		DelayedVettingRequest dvr = new DelayedVettingRequest(-1, greg.id, 2, "wait a bit", new Timestamp(now), null);
+		database.getDelayedVettingRequestMapping().save(dvr);
+		assertListContents(database.getUserLoanStatsMapping().fetchVettingCandidates(1, 1, yesterday, 10), paulStats);
+		
+		dvr.numberLoans = 1;
+		database.getDelayedVettingRequestMapping().save(dvr);
+		assertListContents(database.getUserLoanStatsMapping().fetchVettingCandidates(1, 1, yesterday, 10), paulStats, gregStats);
+		
+		dvr.rerequestedAt = new Timestamp(now + 1000);
+		database.getDelayedVettingRequestMapping().save(dvr);
+		assertListContents(database.getUserLoanStatsMapping().fetchVettingCandidates(1, 1, yesterday, 10), paulStats);
+		
+		// a completed loan without any repayments leaves no earliest repayment
+		User dave = database.getUserMapping().fetchOrCreateByName("dave");
+		database.getLoanMapping().save(new Loan(-1, dave.id, bob.id, 10 * 100, 10 * 100, false, false, null, lastWeek, lastWeek, null));
+		UserLoanStats daveStats = database.getUserLoanStatsMapping().fetchByUserId(dave.id);
+		assertNull(daveStats.earliestRepaidAt);
+		assertListContents(database.getUserLoanStatsMapping().fetchVettingCandidates(1, 1, yesterday, 10), paulStats, daveStats);
+	}
+}
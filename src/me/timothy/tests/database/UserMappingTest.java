@@ -66,6 +66,25 @@ public class UserMappingTest {
 		assertEquals(user2, fromDb);
 	}
 	
+	@Test
+	public void testFetchManyByIds() {
+		User paul = database.getUserMapping().fetchOrCreateByName("paul");
+		User john = database.getUserMapping().fetchOrCreateByName("john");
+		User greg = database.getUserMapping().fetchOrCreateByName("greg");
+		
+		List<User> fromDb = database.getUserMapping().fetchManyByIds(paul.id);
+		assertListContents(fromDb, paul);
+		
+		fromDb = database.getUserMapping().fetchManyByIds(greg.id, paul.id);
+		assertListContents(fromDb, paul, greg);
+		
+		fromDb = database.getUserMapping().fetchManyByIds(john.id, greg.id, paul.id);
+		assertListContents(fromDb, paul, john, greg);
+		
+		fromDb = database.getUserMapping().fetchManyByIds();
+		assertEquals(0, fromDb.size());
+	}
+	
 	@Test
 	public void testFetchOrCreateByName() {
 		User john = database.getUserMapping().fetchOrCreateByName("john");
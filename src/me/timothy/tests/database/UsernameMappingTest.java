@@ -99,6 +99,31 @@ public class UsernameMappingTest {
 		assertListContents(fromDb, greg);
 	}
 	
+	@Test
+	public void testFetchByUserIds() {
+		User paulUser = createUser();
+		Username paul = new Username(-1, paulUser.id, "paul", 
+				new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()));
+		database.getUsernameMapping().save(paul);
+		Username paulNickname = new Username(-1, paulUser.id, "P.J.", 
+				new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()));
+		database.getUsernameMapping().save(paulNickname);
+		
+		User gregUser = createUser();
+		Username greg = new Username(-1, gregUser.id, "greg", 
+				new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()));
+		database.getUsernameMapping().save(greg);
+		
+		List<Username> fromDb = database.getUsernameMapping().fetchByUserIds(paulUser.id);
+		assertListContents(fromDb, paul, paulNickname);
+		
+		fromDb = database.getUsernameMapping().fetchByUserIds(gregUser.id, paulUser.id);
+		assertListContents(fromDb, paul, paulNickname, greg);
+		
+		fromDb = database.getUsernameMapping().fetchByUserIds();
+		assertEquals(0, fromDb.size());
+	}
+	
 	@Test
 	public void testFetchByUsername() {
 		User paulUser = createUser();
@@ -126,5 +151,34 @@ public class UsernameMappingTest {
 		fromDb = database.getUsernameMapping().fetchByUsername(paulNickname.username);
 		assertEquals(paulNickname, fromDb);
 	}
+	
+	/**
+	 * Lookups are cached in some mappings, so saving a changed username
+	 * must be reflected by the next fetch in both directions.
+	 */
+	@Test
+	public void testFetchAfterUpdate() {
+		User paulUser = createUser();
+		Username paul = new Username(-1, paulUser.id, "paul",
+				new Timestamp(System.currentTimeMillis()), new Timestamp(System.currentTimeMillis()));
+		database.getUsernameMapping().save(paul);
+		
+		assertEquals(paul, database.getUsernameMapping().fetchByUsername("paul"));
+		assertListContents(database.getUsernameMapping().fetchByUserId(paulUser.id), paul);
+		
+		paul.username = "paulo";
+		database.getUsernameMapping().save(paul);
+		
+		assertNull(database.getUsernameMapping().fetchByUsername("paul"));
+		assertEquals(paul, database.getUsernameMapping().fetchByUsername("paulo"));
+		assertListContents(database.getUsernameMapping().fetchByUserId(paulUser.id), paul);
+		
+		User pauloUser = createUser();
+		paul.userId = pauloUser.id;
+		database.getUsernameMapping().save(paul);
+		
+		assertEquals(0, database.getUsernameMapping().fetchByUserId(paulUser.id).size());
+		assertListContents(database.getUsernameMapping().fetchByUserId(pauloUser.id), paul);
+		assertEquals(paul, database.getUsernameMapping().fetchByUsername("paulo"));
+	}
 }
-
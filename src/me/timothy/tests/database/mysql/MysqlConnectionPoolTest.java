@@ -0,0 +1,190 @@
+package me.timothy.tests.database.mysql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.timothy.bots.database.mysql.MysqlConnectionPool;
+
+/**
+ * Tests the connection pool against the test database. Statements are
+ * compared by the real statement behind the pools wrapper, which is what
+ * unwrap returns.
+ * 
+ * @author Timothy
+ */
+public class MysqlConnectionPoolTest {
+	private MysqlConnectionPool pool;
+	
+	@Before
+	public void setUp() throws SQLException {
+		pool = createPool(2);
+	}
+	
+	@After
+	public void tearDown() {
+		pool.close();
+	}
+	
+	@Test
+	public void testLeasePerThread() throws Exception {
+		long mine = connectionId(pool.getConnection());
+		assertEquals(mine, connectionId(pool.getConnection()));
+		
+		long[] theirs = new long[1];
+		runOnThread(() -> {
+			theirs[0] = connectionId(pool.getConnection());
+			pool.release();
+		});
+		assertNotEquals(mine, theirs[0]);
+	}
+	
+	@Test
+	public void testReleasedConnectionIsReused() throws Exception {
+		long[] theirs = new long[1];
+		runOnThread(() -> {
+			theirs[0] = connectionId(pool.getConnection());
+			pool.release();
+		});
+		
+		assertEquals(theirs[0], connectionId(pool.getConnection()));
+	}
+	
+	@Test
+	public void testStatementReuse() throws SQLException {
+		Connection conn = pool.getConnection();
+		
+		PreparedStatement first = conn.prepareStatement("SELECT 1");
+		PreparedStatement firstReal = first.unwrap(PreparedStatement.class);
+		first.close();
+		assertTrue(first.isClosed());
+		
+		PreparedStatement second = conn.prepareStatement("SELECT 1");
+		assertSame(firstReal, second.unwrap(PreparedStatement.class));
+		
+		// the first is still in use, so nesting gets a separate statement
+		PreparedStatement nested = conn.prepareStatement("SELECT 1");
+		assertNotSame(firstReal, nested.unwrap(PreparedStatement.class));
+		nested.close();
+		second.close();
+	}
+	
+	@Test
+	public void testEvictionSkipsStatementsInUse() throws SQLException {
+		Connection conn = pool.getConnection();
+		
+		PreparedStatement held = conn.prepareStatement("SELECT 1");
+		PreparedStatement heldReal = held.unwrap(PreparedStatement.class);
+		
+		PreparedStatement evicted = conn.prepareStatement("SELECT 2");
+		PreparedStatement evictedReal = evicted.unwrap(PreparedStatement.class);
+		evicted.close();
+		
+		PreparedStatement kept = conn.prepareStatement("SELECT 3");
+		PreparedStatement keptReal = kept.unwrap(PreparedStatement.class);
+		kept.close();
+		
+		// "SELECT 1" is the least recently used but is in use, so "SELECT 2" went instead
+		assertTrue(evictedReal.isClosed());
+		assertTrue(!heldReal.isClosed());
+		
+		kept = conn.prepareStatement("SELECT 3");
+		assertSame(keptReal, kept.unwrap(PreparedStatement.class));
+		kept.close();
+		held.close();
+	}
+	
+	@Test
+	public void testLeakedStatementReclaimedOnRelease() throws Exception {
+		PreparedStatement[] leaked = new PreparedStatement[2];
+		runOnThread(() -> {
+			leaked[0] = pool.getConnection().prepareStatement("SELECT 1");
+			leaked[1] = leaked[0].unwrap(PreparedStatement.class);
+			pool.release();
+		});
+		assertTrue(leaked[0].isClosed());
+		
+		// this thread gets the released connection back, statement cache and all
+		PreparedStatement statement = pool.getConnection().prepareStatement("SELECT 1");
+		assertSame(leaked[1], statement.unwrap(PreparedStatement.class));
+		statement.close();
+	}
+	
+	@Test
+	public void testClosedConnectionIsReplaced() throws SQLException {
+		Connection conn = pool.getConnection();
+		long before = connectionId(conn);
+		
+		conn.unwrap(Connection.class).close();
+		
+		long after = connectionId(conn);
+		assertNotEquals(before, after);
+		assertEquals(after, connectionId(conn));
+	}
+	
+	@Test
+	public void testClosedPoolRefusesWork() {
+		pool.close();
+		try {
+			pool.getConnection().prepareStatement("SELECT 1");
+			fail("expected the closed pool to refuse");
+		}catch(SQLException ex) {
+			// expected
+		}
+	}
+	
+	private static MysqlConnectionPool createPool(int maxStatementsPerConnection) throws SQLException {
+		Properties properties = MysqlTestUtils.fetchTestDatabaseProperties();
+		String url = properties.getProperty("url");
+		if(url == null || !url.contains("test")) {
+			throw new IllegalArgumentException("url does not contain \"test\"");
+		}
+		
+		boolean useSSL = Boolean.getBoolean(properties.getProperty("database.useSSL"));
+		MysqlConnectionPool result = new MysqlConnectionPool(url + "?useSSL=" + useSSL, properties.getProperty("username"),
+				properties.getProperty("password"), 1, maxStatementsPerConnection);
+		result.verify();
+		return result;
+	}
+	
+	private static long connectionId(Connection conn) throws SQLException {
+		try(PreparedStatement statement = conn.prepareStatement("SELECT CONNECTION_ID()")) {
+			try(ResultSet set = statement.executeQuery()) {
+				set.next();
+				return set.getLong(1);
+			}
+		}
+	}
+	
+	private interface SqlWork {
+		void run() throws SQLException;
+	}
+	
+	private static void runOnThread(SqlWork work) throws Exception {
+		Exception[] failure = new Exception[1];
+		Thread thread = new Thread(() -> {
+			try {
+				work.run();
+			}catch(SQLException ex) {
+				failure[0] = ex;
+			}
+		});
+		thread.start();
+		thread.join();
+		if(failure[0] != null)
+			throw failure[0];
+	}
+}
@@ -28,10 +28,13 @@ import org.junit.runners.Suite.SuiteClasses;
 			MysqlRedFlagQueueSpotMappingTest.class,
 			MysqlRedFlagUserHistoryCommentMappingTest.class,
 			MysqlRedFlagUserHistoryLinkMappingTest.class,
-			MysqlRedFlagUserHistorySortMappingTest.class,
+			MysqlRedFlagReportCheckpointMappingTest.class,
+			MysqlRedFlagQueueClaimMappingTest.class,
+			MysqlSortedUserHistoryTest.class,
 			MysqlPromotionBlacklistMappingTest.class,
 			MysqlDelayedVettingRequestMappingTest.class,
-			MysqlResponseOptOutMappingTest.class
+			MysqlResponseOptOutMappingTest.class,
+			MysqlUserLoanStatsMappingTest.class
 		})
 public class MysqlDatabaseTests {
 
@@ -6,9 +6,9 @@ import org.junit.After;
 import org.junit.Before;
 
 import me.timothy.bots.LoansDatabase;
-import me.timothy.tests.database.RedFlagUserHistorySortMappingTest;
+import me.timothy.tests.database.RedFlagQueueClaimMappingTest;
 
-public class MysqlRedFlagUserHistorySortMappingTest extends RedFlagUserHistorySortMappingTest {
+public class MysqlRedFlagQueueClaimMappingTest extends RedFlagQueueClaimMappingTest {
 	@Before
 	public void setUp() {
 		Properties testDBProperties = MysqlTestUtils.fetchTestDatabaseProperties();
@@ -0,0 +1,76 @@
+package me.timothy.tests.diagnostics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import me.timothy.bots.diagnostics.LatencyHistogram;
+import me.timothy.bots.diagnostics.MetricsRegistry;
+
+public class LatencyHistogramTest {
+	@Test
+	public void testPercentilesWithinBucketError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(long i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000);
+		}
+		
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(1000, snapshot.getCount());
+		assertEquals(1000000, snapshot.getMax());
+		assertEquals(500500, snapshot.getMean());
+		assertWithin(500000, snapshot.getPercentile(50), 0.07);
+		assertWithin(990000, snapshot.getPercentile(99), 0.07);
+		assertEquals(1000000, snapshot.getPercentile(100));
+	}
+	
+	@Test
+	public void testSmallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for(long i = 0; i < 16; i++) {
+			histogram.record(i);
+		}
+		
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(7, snapshot.getPercentile(50));
+		assertEquals(15, snapshot.getPercentile(100));
+	}
+	
+	@Test
+	public void testSnapshotResets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(5000);
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(2, histogram.snapshot().getCount());
+		
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getPercentile(99));
+		assertEquals(2, histogram.getTotalCount());
+	}
+	
+	@Test
+	public void testReportSkipsIdleHistograms() {
+		MetricsRegistry metrics = new MetricsRegistry();
+		metrics.counter("requests").add(3);
+		metrics.gauge("waiting", () -> 2);
+		metrics.histogram("idle");
+		metrics.histogram("sql.loans.fetch").record(2500000);
+		
+		List<String> report = metrics.report();
+		assertEquals(3, report.size());
+		assertEquals("requests: 3", report.get(0));
+		assertEquals("waiting: 2", report.get(1));
+		assertTrue(report.get(2).startsWith("sql.loans.fetch: 1 calls"));
+		
+		// the histogram was emptied by the last report
+		assertEquals(2, metrics.report().size());
+	}
+	
+	private static void assertWithin(long expected, long actual, double relativeError) {
+		assertTrue("expected " + expected + " but got " + actual, Math.abs(actual - expected) <= expected * relativeError);
+	}
+}
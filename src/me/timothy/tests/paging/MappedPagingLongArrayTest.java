@@ -0,0 +1,15 @@
+package me.timothy.tests.paging;
+
+import me.timothy.bots.paging.PagingLongArray;
+
+/**
+ * Runs the PagingLongArray tests against a memory mapped array
+ * 
+ * @author Timothy
+ */
+public class MappedPagingLongArrayTest extends PagingLongArrayTest {
+	@Override
+	protected PagingLongArray create(int maxArraySize) {
+		return new PagingLongArray(maxArraySize, true);
+	}
+}
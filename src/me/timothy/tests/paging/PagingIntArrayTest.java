@@ -0,0 +1,62 @@
+package me.timothy.tests.paging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+import me.timothy.bots.paging.PagingIntArray;
+
+public class PagingIntArrayTest {
+	private PagingIntArray arr;
+	
+	@Test
+	public void testSortAndSearch() {
+		for(boolean memoryMapped : new boolean[] { false, true }) {
+			arr = new PagingIntArray(null, 8, memoryMapped);
+			int[] real = new int[100];
+			Random rand = new Random();
+			
+			for(int i = 0; i < real.length; i++) {
+				real[i] = rand.nextInt(10000) * 2;
+				arr.add(real[i]);
+			}
+			
+			for(int i = 0; i < real.length; i++) {
+				assertEquals(real[i], arr.get(i));
+			}
+			
+			Arrays.sort(real);
+			arr.sort();
+			
+			PrimitiveIterator.OfInt iter = arr.iterator();
+			for(int i = 0; i < real.length; i++) {
+				assertTrue(iter.hasNext());
+				assertEquals(real[i], iter.nextInt());
+			}
+			assertFalse(iter.hasNext());
+			
+			for(int i = 0; i < real.length; i++) {
+				assertEquals(real[i], arr.get(arr.binarySearch(real[i])));
+				assertEquals(Arrays.binarySearch(real, real[i] + 1), arr.binarySearch(real[i] + 1));
+			}
+			
+			arr.dispose();
+			arr = null;
+		}
+	}
+	
+	@After
+	public void cleanup() {
+		if(arr != null) {
+			arr.dispose();
+			arr = null;
+		}
+	}
+}
@@ -1,8 +1,11 @@
 package me.timothy.tests.paging;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.PrimitiveIterator;
 import java.util.Random;
 
 import org.junit.After;
@@ -13,9 +16,19 @@ import me.timothy.bots.paging.PagingLongArray;
 public class PagingLongArrayTest {
 	private PagingLongArray arr;
 	
+	/**
+	 * Create the array being tested
+	 * 
+	 * @param maxArraySize the maximum array size in memory
+	 * @return the new array
+	 */
+	protected PagingLongArray create(int maxArraySize) {
+		return new PagingLongArray(maxArraySize);
+	}
+	
 	@Test
 	public void testUnsorted() {
-		arr = new PagingLongArray(8);
+		arr = create(8);
 		long[] real = new long[24];
 		Random rand = new Random();
 		
@@ -44,10 +57,49 @@ public class PagingLongArrayTest {
 		realTestSort(8, 24);
 	}
 	
-	private void realTestSort(int memorySize, int realSize) {
-		arr = new PagingLongArray(memorySize);
+	@Test
+	public void testIteratorAndRangeScan() {
+		arr = create(8000 * 16);
+		long[] real = new long[8000 * 64];
+		Random rand = new Random();
 		
+		for(int i = 0; i < real.length; i++) {
+			real[i] = rand.nextInt(100000);
+			arr.add(real[i]);
+		}
 		
+		Arrays.sort(real);
+		arr.sort();
+		
+		PrimitiveIterator.OfLong iter = arr.iterator();
+		for(int i = 0; i < real.length; i++) {
+			assertTrue(iter.hasNext());
+			assertEquals(real[i], iter.nextLong());
+		}
+		assertFalse(iter.hasNext());
+		
+		for(int trial = 0; trial < 20; trial++) {
+			long fromValue = rand.nextInt(100000);
+			long toValue = fromValue + rand.nextInt(5000);
+			
+			PrimitiveIterator.OfLong scan = arr.rangeScan(fromValue, toValue);
+			for(int i = 0; i < real.length; i++) {
+				if(real[i] >= fromValue && real[i] < toValue) {
+					assertTrue(scan.hasNext());
+					assertEquals(real[i], scan.nextLong());
+				}
+			}
+			assertFalse(scan.hasNext());
+		}
+		
+		arr.dispose();
+		arr = null;
+	}
+	
+	private void realTestSort(int memorySize, int realSize) {
+		arr = create(memorySize);
+		
+
 		long[] real = new long[realSize];
 		Random rand = new Random();
 		
@@ -0,0 +1,95 @@
+package me.timothy.tests.paging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.timothy.bots.paging.PageManager;
+import me.timothy.bots.paging.PagingLongArray;
+import me.timothy.bots.paging.PagingRecordArray;
+
+public class PagingRecordArrayTest {
+	private PageManager manager;
+	private PagingRecordArray arr;
+	
+	@Before
+	public void setUp() {
+		manager = new PageManager(1024);
+	}
+	
+	@Test
+	public void testSortByKey() {
+		for(boolean memoryMapped : new boolean[] { false, true }) {
+			arr = new PagingRecordArray(manager, 16, 2, 1, memoryMapped);
+			long[][] real = new long[200][];
+			Random rand = new Random();
+			
+			for(int i = 0; i < real.length; i++) {
+				real[i] = new long[] { i, rand.nextInt(50) };
+				arr.add(real[i]);
+			}
+			
+			long[] record = new long[2];
+			for(int i = 0; i < real.length; i++) {
+				arr.get(i, record);
+				assertEquals(real[i][0], record[0]);
+				assertEquals(real[i][1], record[1]);
+			}
+			
+			arr.sort();
+			
+			boolean[] seen = new boolean[real.length];
+			long lastKey = Long.MIN_VALUE;
+			PagingRecordArray.Cursor cursor = arr.cursor();
+			for(int i = 0; i < real.length; i++) {
+				assertTrue(cursor.next());
+				int id = (int)cursor.get(0);
+				assertFalse(seen[id]);
+				seen[id] = true;
+				
+				assertEquals(real[id][1], cursor.get(1));
+				assertTrue(lastKey <= cursor.get(1));
+				lastKey = cursor.get(1);
+			}
+			assertFalse(cursor.next());
+			
+			long index = arr.binarySearch(real[17][1]);
+			assertEquals(real[17][1], arr.get(index, 1));
+			
+			arr.dispose();
+			arr = null;
+		}
+	}
+	
+	@Test
+	public void testBudget() {
+		arr = new PagingRecordArray(manager, 32, 2, 0, false);
+		assertEquals(1024 - 32 * 16, manager.getRemainingBudget());
+		
+		try {
+			new PagingLongArray(manager, 128, false);
+			fail("expected the budget to be exceeded");
+		}catch(IllegalStateException ex) {
+		}
+		
+		arr.dispose();
+		arr = null;
+		assertEquals(1024, manager.getRemainingBudget());
+	}
+	
+	@After
+	public void cleanup() {
+		if(arr != null) {
+			arr.dispose();
+			arr = null;
+		}
+		manager.dispose();
+	}
+}
@@ -19,6 +19,7 @@ import me.timothy.bots.models.RedFlagForSubreddit;
 import me.timothy.bots.models.RedFlagQueueSpot;
 import me.timothy.bots.models.User;
 import me.timothy.bots.redflags.RedFlagsDriver;
+import me.timothy.bots.scheduler.RedditRateLimiter;
 import me.timothy.tests.database.mysql.MysqlTestUtils;
 
 public class RedFlagReportOnUser {
@@ -50,7 +51,7 @@ public class RedFlagReportOnUser {
 			@Override
 			public void run() {
 			}
-		}, 2000);
+		}, new RedditRateLimiter(1, 30));
 		
 		
 		database.getRedFlagForSubredditMapping().save(new RedFlagForSubreddit(-1, "UniversalScammerList", "testing", new Timestamp(System.currentTimeMillis())));
@@ -0,0 +1,112 @@
+package me.timothy.tests.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import me.timothy.bots.scheduler.RedditRateLimiter;
+import me.timothy.bots.scheduler.RedditRateLimiter.Priority;
+
+/**
+ * Tests the rate limiter against a clock that only moves when the test moves
+ * it, so whether a permit is handed out never depends on how fast the test runs.
+ * 
+ * @author Timothy
+ */
+public class RedditRateLimiterTest {
+	private final AtomicLong now = new AtomicLong(1000000);
+	
+	@Test
+	public void testBurstDoesNotWait() {
+		RedditRateLimiter limiter = new RedditRateLimiter(5, 60, now::get);
+		
+		// would block forever if any of these had to wait, since the clock never moves
+		for(int i = 0; i < 5; i++) {
+			limiter.acquire(Priority.REPLY);
+		}
+		assertEquals(0, limiter.getWaiting());
+	}
+	
+	@Test
+	public void testWaitsForRefill() throws InterruptedException {
+		// one token every 100ms
+		RedditRateLimiter limiter = new RedditRateLimiter(1, 600, now::get);
+		limiter.acquire(Priority.RECHECK);
+		
+		List<Priority> acquired = Collections.synchronizedList(new ArrayList<>());
+		Thread waiter = startAcquiring(limiter, Priority.RECHECK, acquired);
+		awaitWaiting(limiter, 1);
+		
+		now.addAndGet(50);
+		Thread.sleep(150);
+		assertTrue(acquired.isEmpty());
+		
+		now.addAndGet(50);
+		waiter.join();
+		assertEquals(1, acquired.size());
+	}
+	
+	@Test
+	public void testBucketDoesNotOverfill() throws InterruptedException {
+		RedditRateLimiter limiter = new RedditRateLimiter(2, 600, now::get);
+		now.addAndGet(60 * 60 * 1000);
+		limiter.acquire(Priority.REPLY);
+		limiter.acquire(Priority.REPLY);
+		
+		List<Priority> acquired = Collections.synchronizedList(new ArrayList<>());
+		Thread waiter = startAcquiring(limiter, Priority.REPLY, acquired);
+		awaitWaiting(limiter, 1);
+		Thread.sleep(150);
+		assertTrue(acquired.isEmpty());
+		
+		now.addAndGet(100);
+		waiter.join();
+		assertEquals(1, acquired.size());
+	}
+	
+	@Test
+	public void testHigherPriorityGoesFirst() throws InterruptedException {
+		// one token every 100ms
+		RedditRateLimiter limiter = new RedditRateLimiter(1, 600, now::get);
+		limiter.acquire(Priority.REPLY);
+		
+		List<Priority> order = Collections.synchronizedList(new ArrayList<>());
+		Thread crawl = startAcquiring(limiter, Priority.RED_FLAG_CRAWL, order);
+		awaitWaiting(limiter, 1);
+		Thread reply = startAcquiring(limiter, Priority.REPLY, order);
+		awaitWaiting(limiter, 2);
+		
+		now.addAndGet(100);
+		reply.join();
+		assertEquals(1, order.size());
+		
+		now.addAndGet(100);
+		crawl.join();
+		
+		assertEquals(2, order.size());
+		assertEquals(Priority.REPLY, order.get(0));
+		assertEquals(Priority.RED_FLAG_CRAWL, order.get(1));
+	}
+	
+	private static Thread startAcquiring(RedditRateLimiter limiter, Priority priority, List<Priority> acquired) {
+		Thread thread = new Thread(() -> {
+			limiter.acquire(priority);
+			acquired.add(priority);
+		});
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+	
+	private static void awaitWaiting(RedditRateLimiter limiter, int count) throws InterruptedException {
+		while(limiter.getWaiting() < count) {
+			Thread.sleep(1);
+		}
+	}
+}
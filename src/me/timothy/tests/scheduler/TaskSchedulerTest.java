@@ -0,0 +1,84 @@
+package me.timothy.tests.scheduler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import me.timothy.bots.scheduler.ScheduledTask;
+import me.timothy.bots.scheduler.ScheduledTask.TaskType;
+import me.timothy.bots.scheduler.TaskScheduler;
+
+public class TaskSchedulerTest {
+	private TaskScheduler scheduler;
+	private List<String> ran;
+	
+	@Before
+	public void setUp() {
+		ran = new ArrayList<>();
+	}
+	
+	@After
+	public void tearDown() {
+		if(scheduler != null)
+			scheduler.shutdown();
+	}
+	
+	@Test
+	public void testRunsInPriorityOrderWithinBudget() {
+		scheduler = new TaskScheduler(1, 1000, () -> {});
+		scheduler.schedule(new ScheduledTask("second", TaskType.REDDIT, 1, 0, 1000, () -> ran.add("second")));
+		scheduler.schedule(new ScheduledTask("first", TaskType.REDDIT, 0, 0, 1000, () -> ran.add("first")));
+		
+		scheduler.runDue();
+		assertEquals(2, ran.size());
+		assertEquals("first", ran.get(0));
+		assertEquals("second", ran.get(1));
+	}
+	
+	@Test
+	public void testDeferredTasksAreNotStarved() {
+		scheduler = new TaskScheduler(1, 10, () -> {});
+		
+		// the first task spends the whole budget every time it runs
+		scheduler.schedule(new ScheduledTask("slow", TaskType.REDDIT, 0, 0, 1000, () -> {
+			ran.add("slow");
+			sleep(20);
+		}));
+		scheduler.schedule(new ScheduledTask("low", TaskType.REDDIT, 1, 0, 1000, () -> ran.add("low")));
+		scheduler.schedule(new ScheduledTask("lower", TaskType.REDDIT, 2, 0, 1000, () -> ran.add("lower")));
+		
+		scheduler.runDue();
+		assertEquals(1, ran.size());
+		assertEquals("slow", ran.get(0));
+		
+		// the tasks deferred last loop go before it this time
+		scheduler.runDue();
+		assertEquals(4, ran.size());
+		assertEquals("low", ran.get(1));
+		assertEquals("lower", ran.get(2));
+		assertEquals("slow", ran.get(3));
+	}
+	
+	@Test
+	public void testIntervalRespected() {
+		scheduler = new TaskScheduler(1, 1000, () -> {});
+		scheduler.schedule(new ScheduledTask("hourly", TaskType.REDDIT, 0, 60 * 60 * 1000, 1000, () -> ran.add("hourly")));
+		
+		scheduler.runDue();
+		scheduler.runDue();
+		assertEquals(1, ran.size());
+	}
+	
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		}catch(InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}